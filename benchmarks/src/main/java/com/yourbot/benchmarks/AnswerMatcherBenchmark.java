@@ -0,0 +1,98 @@
+package com.yourbot.benchmarks;
+
+import com.yourbot.scheduler.ScheduledTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进群验证答案匹配的基准测试
+ * 使用从进群申请中提取出的典型答案：正确答案、带多余文字的答案、错别字、同音字、全角字符和无关内容，
+ * 每次调用依次检查下一个答案
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnswerMatcherBenchmark {
+    // 配置的正确答案
+    private static final List<String> ANSWERS = List.of(
+            "面向对象", "Java", "北京市", "Spring Boot", "垃圾回收", "虚拟机", "多线程并发编程");
+
+    // 提取出的用户答案
+    private static final String[] COMMENTS = {
+            "面向对象",
+            "我觉得是面向对象吧",
+            "面象对象",
+            "ＪＡＶＡ",
+            "java 17",
+            "北京",
+            "背景市",
+            "spring   boot",
+            "springbot",
+            "垃圾回收机制",
+            "拉圾回收",
+            "JVM虚拟机",
+            "多线程并法编程",
+            "不知道",
+            "朋友推荐来的，想学习一下",
+            "a",
+            "https://example.com/广告 加V领取资料",
+            "我是来学习Java多线程并发编程和垃圾回收的，请通过一下谢谢管理员"
+    };
+
+    @Param({"EXACT", "CONTAINS", "EDIT_DISTANCE", "EDIT_DISTANCE_PINYIN"})
+    public String mode;
+
+    @Param({"7", "200"})
+    public int answerCount;
+
+    private ScheduledTask task;
+    private int index;
+
+    @Setup
+    public void setup() {
+        List<String> answers = new ArrayList<>(ANSWERS);
+        for (int i = answers.size(); i < answerCount; i++) {
+            answers.add("答案" + i + "号关键词");
+        }
+
+        task = new ScheduledTask();
+        task.setVerifyAnswers(answers);
+        task.setIgnoreWhitespace(true);
+        task.setFuzzyMatch(!mode.equals("EXACT"));
+        task.setFuzzyMode(mode.startsWith("EDIT_DISTANCE")
+                ? ScheduledTask.FuzzyMode.EDIT_DISTANCE : ScheduledTask.FuzzyMode.CONTAINS);
+        task.setFuzzyPinyin(mode.equals("EDIT_DISTANCE_PINYIN"));
+        task.compileAnswerMatcher();
+    }
+
+    @Benchmark
+    public boolean checkAnswer() {
+        String comment = COMMENTS[index];
+        index = index + 1 == COMMENTS.length ? 0 : index + 1;
+        return task.checkAnswer(comment);
+    }
+
+    /**
+     * 配置加载时编译答案的开销
+     */
+    @Benchmark
+    public Object compile() {
+        return task.compileAnswerMatcher();
+    }
+}
@@ -0,0 +1,71 @@
+package com.yourbot.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourbot.onebot.OneBotEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件分发的基准测试
+ * 注册N个监听器后分发一个群消息事件；监听器与机器人中的监听器一样先判断事件名，
+ * 只有一个监听器关心该事件，其余直接返回
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventListenerBenchmark {
+    @Param({"1", "4", "16", "64"})
+    public int listeners;
+
+    private JsonNode event;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException {
+        event = new ObjectMapper().readTree("{\"post_type\":\"message\",\"message_type\":\"group\","
+                + "\"message_id\":1,\"group_id\":987654321,\"user_id\":10001,\"raw_message\":\"收到\","
+                + "\"sender\":{\"user_id\":10001}}");
+
+        OneBotEventListener.clearListeners();
+        OneBotEventListener.registerListener((name, data) -> {
+            if ("message.group".equals(name)) {
+                blackhole.consume(data.get("group_id").asLong());
+            }
+        });
+        for (int i = 1; i < listeners; i++) {
+            String interested = "request.group.add." + i;
+            OneBotEventListener.registerListener((name, data) -> {
+                if (interested.equals(name)) {
+                    blackhole.consume(data);
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        OneBotEventListener.clearListeners();
+    }
+
+    @Benchmark
+    public void fireEvent() {
+        OneBotEventListener.fireEvent("message.group", event);
+    }
+}
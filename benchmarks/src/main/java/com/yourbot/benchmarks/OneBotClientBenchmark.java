@@ -0,0 +1,327 @@
+package com.yourbot.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yourbot.config.ConfigManager;
+import com.yourbot.onebot.MessageMarkup;
+import com.yourbot.onebot.OneBotClient;
+import com.yourbot.onebot.OneBotEventListener;
+import com.yourbot.util.ConsoleUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * OneBot客户端收发路径的基准测试
+ * 在本机启动一个模拟的OneBot服务器，客户端连接后只调用公开的方法：
+ * 出站测试消息标记转换，以及发送动作到收到响应的往返（序列化、发送、响应解析和echo关联）；
+ * 入站由服务器推送事件，测试从发出事件到监听器收到事件的耗时（解析、重复事件过滤和分发）。
+ * 往返和入站的耗时包含本机WebSocket传输；入站事件的message_id或flag每次都不同，避免被重复事件过滤器丢弃
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djmh.shutdownTimeout=0")
+public class OneBotClientBenchmark {
+    // 定时消息任务中常见的消息内容
+    private static final String PLAIN = "各位早上好！今天是工作日，请按时打卡。\\n午休时间 12:00-13:30";
+    private static final String MENTIONS = "[艾特全体] 今晚8点开会，[艾特:10001] [艾特:10002] [艾特:10003] 请准备汇报";
+    private static final String IMAGES = "今日值班表：[图片:https://example.com/duty/2024-05-01.png]\\n"
+            + "[图片:file:///data/images/notice.jpg] 有问题请 [艾特:10001]";
+
+    // 入站事件模板，{id} 替换为递增的编号
+    private static final String GROUP_MESSAGE = "{\"time\":1714528800,\"self_id\":123456,\"post_type\":\"message\","
+            + "\"message_type\":\"group\",\"sub_type\":\"normal\",\"message_id\":{id},\"group_id\":987654321,"
+            + "\"user_id\":10001,\"anonymous\":null,\"message\":[{\"type\":\"text\",\"data\":{\"text\":\"收到，马上处理\"}}],"
+            + "\"raw_message\":\"收到，马上处理\",\"font\":0,\"sender\":{\"user_id\":10001,\"nickname\":\"张三\","
+            + "\"card\":\"\",\"role\":\"member\",\"level\":\"12\"}}";
+    private static final String JOIN_REQUEST = "{\"time\":1714528800,\"self_id\":123456,\"post_type\":\"request\","
+            + "\"request_type\":\"group\",\"sub_type\":\"add\",\"group_id\":987654321,\"user_id\":20002,"
+            + "\"comment\":\"问题：本群的主题是什么？\\n答案：Java\",\"flag\":\"flag-{id}\",\"invitor_id\":0}";
+    // 模拟服务器对每个动作的响应，{echo} 替换为动作的echo
+    private static final String ACTION_RESPONSE = "{\"status\":\"ok\",\"retcode\":0,\"data\":{\"message_id\":1},"
+            + "\"message\":\"\",\"wording\":\"\",\"echo\":\"{echo}\"}";
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Setup
+    public void setup() {
+        // 与正常运行一样不输出调试信息
+        ConsoleUtil.setLevel(ConsoleUtil.Level.INFO);
+    }
+
+    /**
+     * 模拟的OneBot服务器：只接受一个连接，对收到的每个动作返回成功响应
+     * 使用阻塞读写实现WebSocket握手和帧格式，每个响应和事件写入后立即发出，
+     * 不经过服务器端的发送队列，测到的是客户端的处理耗时加本机传输
+     */
+    private static final class StubServer implements Runnable {
+        private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+        private final ObjectMapper mapper = new ObjectMapper();
+        private final ServerSocket serverSocket;
+        private OutputStream out;
+
+        StubServer() throws IOException {
+            serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                synchronized (this) {
+                    out = new BufferedOutputStream(socket.getOutputStream());
+                }
+                handshake(in);
+                while (true) {
+                    int opcode = in.readUnsignedByte() & 0x0F;
+                    byte[] payload = readPayload(in);
+                    if (opcode == 0x1) {
+                        String echo = mapper.readTree(payload).get("echo").asText();
+                        send(0x1, ACTION_RESPONSE.replace("{echo}", echo).getBytes(StandardCharsets.UTF_8));
+                    } else if (opcode == 0x9) {
+                        send(0xA, payload);
+                    } else if (opcode == 0x8) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // 连接断开
+            }
+        }
+
+        private void handshake(DataInputStream in) throws IOException {
+            String key = null;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:")) {
+                    key = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            String accept;
+            try {
+                accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            synchronized (this) {
+                out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+            }
+        }
+
+        private String readLine(DataInputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException();
+                }
+                if (c != '\r') {
+                    sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * 读取客户端发来的帧内容，客户端的帧总是带掩码
+         */
+        private byte[] readPayload(DataInputStream in) throws IOException {
+            int b = in.readUnsignedByte();
+            long length = b & 0x7F;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            byte[] mask = new byte[4];
+            if ((b & 0x80) != 0) {
+                in.readFully(mask);
+            }
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+            return payload;
+        }
+
+        /**
+         * 发送一个不分片、不带掩码的帧
+         */
+        synchronized void send(int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length < 65536) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) payload.length >>> shift));
+                }
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    /**
+     * 连接到模拟服务器的客户端，只有往返和入站的测试使用
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+        private final Semaphore received = new Semaphore(0);
+        private final BiConsumer<String, JsonNode> listener = (name, data) -> received.release();
+        private StubServer server;
+        private OneBotClient client;
+
+        @Setup
+        public void setup() throws IOException, InterruptedException {
+            server = new StubServer();
+            Thread thread = new Thread(server, "StubOneBotServer");
+            thread.setDaemon(true);
+            thread.start();
+            ConfigManager.BotConfig config = new ConfigManager.BotConfig();
+            config.setWebsocket("ws://127.0.0.1:" + server.getPort());
+            ConfigManager.getInstance().setBotConfig(config);
+
+            // 只注册计数的监听器，监听器本身的开销由 EventListenerBenchmark 单独测试
+            OneBotEventListener.clearListeners();
+            OneBotEventListener.registerListener(listener);
+
+            // 创建客户端时按上面的配置连接
+            client = OneBotClient.getInstance();
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+            while (!client.isConnected()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("未能连接到模拟的OneBot服务器");
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        /**
+         * 客户端没有断开连接的方法，测试结束时保持连接；
+         * 客户端的连接线程不是守护线程，由JMH在测试结束后直接结束进程，见 @Fork 的参数
+         */
+        @TearDown
+        public void tearDown() {
+            OneBotEventListener.removeListener(listener);
+        }
+    }
+
+    /**
+     * 出站消息内容
+     */
+    @State(Scope.Thread)
+    public static class Outbound {
+        @Param({"PLAIN", "MENTIONS", "IMAGES"})
+        public String message;
+
+        String text;
+
+        @Setup
+        public void setup() {
+            text = message.equals("MENTIONS") ? MENTIONS : message.equals("IMAGES") ? IMAGES : PLAIN;
+        }
+    }
+
+    /**
+     * 入站事件，模板中的 {id} 每次调用替换为新的编号
+     */
+    @State(Scope.Thread)
+    public static class Inbound {
+        @Param({"GROUP_MESSAGE", "JOIN_REQUEST"})
+        public String event;
+
+        private String[] parts;
+        private long sequence;
+
+        @Setup
+        public void setup() {
+            String template = event.equals("JOIN_REQUEST") ? JOIN_REQUEST : GROUP_MESSAGE;
+            parts = template.split("\\{id}", -1);
+        }
+
+        String next() {
+            long id = ++sequence;
+            StringBuilder sb = new StringBuilder(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                sb.append(id).append(parts[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 发送前将消息中的换行、艾特和图片标记转换为CQ码
+     */
+    @Benchmark
+    public String toCqCode(Outbound outbound) {
+        return MessageMarkup.toCqCode(outbound.text);
+    }
+
+    /**
+     * 发送群消息动作并等待响应
+     */
+    @Benchmark
+    public JsonNode callAction(Outbound outbound, Connection connection) {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("group_id", 987654321L);
+        params.put("message", outbound.text);
+        params.put("auto_escape", false);
+        return connection.client.callAction("send_group_msg", params).join();
+    }
+
+    /**
+     * 服务器推送一个事件，等待客户端解析并分发给监听器
+     */
+    @Benchmark
+    public void onEvent(Inbound inbound, Connection connection) throws IOException, InterruptedException {
+        connection.server.send(0x1, inbound.next().getBytes(StandardCharsets.UTF_8));
+        connection.received.acquire();
+    }
+}
@@ -0,0 +1,141 @@
+package com.yourbot.benchmarks;
+
+import com.yourbot.log.TaskExecutionLog;
+import com.yourbot.log.TaskLogManager;
+import com.yourbot.log.TaskLogPage;
+import com.yourbot.log.TaskLogQuery;
+import com.yourbot.util.ConsoleUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务执行日志写入和查询的基准测试
+ * 日志写入当前目录下的 logs/tasks，请在单独的目录中运行；每次运行使用新的任务名，
+ * 查询前先写入 PRELOAD 条日志（十分之一失败，执行时间分布在最近7天）并等待写入完成
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskLogBenchmark {
+    private static final int PRELOAD = 20000;
+    private static final long WAIT_TIMEOUT_MS = 60000;
+
+    private TaskLogManager manager;
+    private String writeTask;
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        ConsoleUtil.setLevel(ConsoleUtil.Level.INFO);
+        manager = TaskLogManager.getInstance();
+        writeTask = "基准测试-写入-" + ProcessHandle.current().pid();
+    }
+
+    @TearDown
+    public void tearDown() {
+        // 等待写入线程写完队列中的日志
+        manager.close();
+    }
+
+    /**
+     * 已写入日志的查询条件
+     */
+    @State(Scope.Benchmark)
+    public static class Preloaded {
+        String taskName;
+
+        @Setup
+        public void setup(TaskLogBenchmark benchmark) throws InterruptedException {
+            taskName = "基准测试-查询-" + ProcessHandle.current().pid();
+            long before = benchmark.manager.getWriterStats().getWritten();
+            LocalDateTime start = LocalDateTime.now().minusDays(7);
+            long stepSeconds = 7L * 24 * 3600 / PRELOAD;
+            for (int i = 0; i < PRELOAD; i++) {
+                benchmark.manager.logTaskExecution(
+                        newLog(taskName, i, start.plusSeconds(i * stepSeconds), i % 10 != 0));
+            }
+
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+            while (benchmark.manager.getWriterStats().getWritten() - before < PRELOAD) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("等待预先写入的任务日志超时");
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static TaskExecutionLog newLog(String taskName, long sequence, LocalDateTime time, boolean success) {
+        TaskExecutionLog log = new TaskExecutionLog();
+        log.setId(TaskExecutionLog.generateId());
+        log.setTaskName(taskName);
+        log.setTaskType("SEND_MESSAGE");
+        log.setExecutionTime(time);
+        log.setTargetType("GROUP");
+        log.setTargetIds(List.of(987654321L + sequence % 8));
+        log.setSuccess(success);
+        log.setDetails("发送定时消息: 各位早上好！今天是工作日，请按时打卡。");
+        if (!success) {
+            log.setErrorMessage("retcode 1200: 发送失败");
+        }
+        log.setDurationMs(120 + sequence % 50);
+        return log;
+    }
+
+    /**
+     * 提交一条日志；队列满后写入线程跟不上时在当前线程直接写入，因此稳定后反映持续写入的速度
+     */
+    @Benchmark
+    public void logTaskExecution() {
+        long id = ++sequence;
+        manager.logTaskExecution(newLog(writeTask, id, LocalDateTime.now(), id % 10 != 0));
+    }
+
+    /**
+     * 查询一个任务最新的一页日志
+     */
+    @Benchmark
+    public TaskLogPage queryLatestPage(Preloaded preloaded) {
+        TaskLogQuery query = new TaskLogQuery();
+        query.setTaskName(preloaded.taskName);
+        query.setLimit(20);
+        return manager.queryLogs(query);
+    }
+
+    /**
+     * 查询一个任务最近3天失败的日志，大部分记录被过滤
+     */
+    @Benchmark
+    public TaskLogPage queryFailures(Preloaded preloaded) {
+        TaskLogQuery query = new TaskLogQuery();
+        query.setTaskName(preloaded.taskName);
+        query.setSuccess(false);
+        query.setFrom(LocalDateTime.now().minusDays(3));
+        query.setLimit(20);
+        return manager.queryLogs(query);
+    }
+
+    /**
+     * 所有任务最近的日志，多个任务按执行时间归并
+     */
+    @Benchmark
+    public List<TaskExecutionLog> getRecentLogs(Preloaded preloaded) {
+        return manager.getRecentLogs(50);
+    }
+}
@@ -0,0 +1,86 @@
+package com.yourbot.benchmarks;
+
+import com.yourbot.onebot.VerifyTaskLookup;
+import com.yourbot.scheduler.ScheduledTask;
+import com.yourbot.scheduler.TaskType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查找群对应验证任务的基准测试
+ * 任务列表直接交给查找器，不经过配置管理器，也不创建进群请求处理器；
+ * 配置中一半是定时消息任务，一半是进群验证任务，每个任务有5个目标群；
+ * 查找的群号中四分之三有验证任务，其余没有
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyTaskLookupBenchmark {
+    private static final int GROUPS_PER_TASK = 5;
+    private static final int LOOKUPS = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int taskCount;
+
+    private VerifyTaskLookup lookup;
+    private long[] groupIds;
+    private int index;
+
+    @Setup
+    public void setup() {
+        List<ScheduledTask> tasks = new ArrayList<>(taskCount);
+        long nextGroupId = 100000000L;
+        List<Long> verifiedGroups = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            ScheduledTask task = new ScheduledTask();
+            boolean verify = i % 2 == 1;
+            task.setName((verify ? "进群验证-" : "定时消息-") + i);
+            task.setType(verify ? TaskType.GROUP_REQUEST_VERIFY : TaskType.SEND_MESSAGE);
+            task.setTargetType("GROUP");
+            task.setCronExpression("0 0 8 * * ?");
+            List<Long> targets = new ArrayList<>();
+            for (int j = 0; j < GROUPS_PER_TASK; j++) {
+                long groupId = nextGroupId++;
+                targets.add(groupId);
+                if (verify) {
+                    verifiedGroups.add(groupId);
+                }
+            }
+            task.setTargetIds(targets);
+            tasks.add(task);
+        }
+        lookup = new VerifyTaskLookup(tasks);
+
+        Random random = new Random(42);
+        groupIds = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            groupIds[i] = i % 4 == 3 || verifiedGroups.isEmpty()
+                    ? 900000000L + random.nextInt(1000000)
+                    : verifiedGroups.get(random.nextInt(verifiedGroups.size()));
+        }
+    }
+
+    @Benchmark
+    public ScheduledTask find() {
+        long groupId = groupIds[index];
+        index = (index + 1) & (LOOKUPS - 1);
+        return lookup.find(groupId);
+    }
+}
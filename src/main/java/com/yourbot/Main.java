@@ -16,9 +16,15 @@ import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 
+import com.yourbot.log.TaskDeliveryReceipt;
 import com.yourbot.log.TaskExecutionLog;
 import com.yourbot.log.TaskLogManager;
+import com.yourbot.log.TaskLogPage;
+import com.yourbot.log.TaskLogQuery;
+import com.yourbot.log.TaskLogRollupBucket;
+import com.yourbot.log.TaskLogWriterStats;
 import com.yourbot.onebot.OneBotClient;
+import com.yourbot.onebot.GroupRequestManager;
 import com.yourbot.onebot.GroupRequestProcessor;
 import com.yourbot.command.GroupRequestCommand;
 
@@ -26,6 +32,9 @@ public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
     private static boolean guiMode = true;
     
+    // 上一次日志查询，用于 logs next 翻页
+    private static TaskLogQuery lastLogQuery;
+    
     // 添加版本号常量
     public static final String VERSION = "1.2.4";
     
@@ -54,8 +63,9 @@ public class Main {
         
         logger.info("设置默认字符编码: UTF-8");
         
-        // 设置GUI模式
+        // 设置GUI模式和控制台日志级别
         ConsoleUtil.setGuiEnabled(guiMode);
+        applyConsoleLevel();
         
         // 创建日志目录
         File logDir = new File("logs");
@@ -86,8 +96,7 @@ public class Main {
             SchedulerManager.getInstance().loadTasks();
             
             // 初始化进群请求处理器
-            GroupRequestProcessor processor = new GroupRequestProcessor();
-            processor.init();
+            GroupRequestProcessor.getInstance().init();
             
             // 初始化完成
             logger.info("机器人初始化完成，版本: {}", VERSION);
@@ -165,7 +174,11 @@ public class Main {
                 } catch (Exception e) {
                     logger.error("关闭调度器时出错", e);
                 }
+                // 写完排队中的任务日志并关闭
+                TaskLogManager.getInstance().close();
+                GroupRequestManager.getInstance().close();
                 logger.info("程序已关闭");
+                ConsoleUtil.flush();
             }));
         } catch (Exception e) {
             logger.error("程序启动过程中发生错误", e);
@@ -173,6 +186,15 @@ public class Main {
         }
     }
     
+    /**
+     * 按配置设置控制台日志级别，未启用调试日志时不输出DEBUG级别
+     */
+    private static void applyConsoleLevel() {
+        ConfigManager.BotConfig botConfig = ConfigManager.getInstance().getBotConfig();
+        boolean debug = botConfig != null && botConfig.getLog() != null && botConfig.getLog().isEnableDebugLog();
+        ConsoleUtil.setLevel(debug ? ConsoleUtil.Level.DEBUG : ConsoleUtil.Level.INFO);
+    }
+    
     /**
      * 检查配置是否需要修改，并提示用户
      */
@@ -222,14 +244,23 @@ public class Main {
         ConsoleUtil.info("    logs         - 显示最近10条日志");
         ConsoleUtil.info("    logs recent [数量] - 显示最近的日志，可指定数量");
         ConsoleUtil.info("    logs task [任务名] - 显示特定任务的日志");
-        ConsoleUtil.info("    logs export [任务名] - 导出特定任务的日志到文件");
+        ConsoleUtil.info("    logs export [任务名|all] [txt|csv|jsonl] [gzip] [from=时间] [to=时间] - 导出日志到文件");
+        ConsoleUtil.info("    logs query [条件...] - 按条件分页查询日志");
+        ConsoleUtil.info("      条件: task=任务名 from=开始时间 to=结束时间 status=success|failed type=GROUP|PRIVATE target=目标ID limit=每页数量");
+        ConsoleUtil.info("      时间格式: 2025-03-01 或 2025-03-01T08:00");
+        ConsoleUtil.info("    logs next    - 显示上一次查询的下一页");
+        ConsoleUtil.info("    logs stats   - 显示日志写入队列和延迟指标");
+        ConsoleUtil.info("    logs rollup [minute|hour|day] [task=任务名|group=群号|private=QQ号] [数量] - 按时间段显示执行统计");
         ConsoleUtil.info("  request - 管理进群申请");
         ConsoleUtil.info("    request menu     - 显示进群申请管理菜单");
         ConsoleUtil.info("    request list     - 查看所有挂起的申请");
         ConsoleUtil.info("    request group [群号] - 查看指定群的申请");
         ConsoleUtil.info("    request approve [flag] - 同意申请");
         ConsoleUtil.info("    request reject [flag] - 拒绝申请");
-        ConsoleUtil.info("    request clean    - 清理过期申请");
+        ConsoleUtil.info("    request approve-all [条件] - 批量同意满足条件的申请");
+        ConsoleUtil.info("    request reject-all [条件] - 批量拒绝满足条件的申请");
+        ConsoleUtil.info("      条件: group=群号 older=2h comment=正则 level=10-20 reason=理由 concurrency=10，或 all");
+        ConsoleUtil.info("    request clean    - 立即处理到期申请");
         ConsoleUtil.info("    request stats    - 显示申请统计");
         ConsoleUtil.info("");
         ConsoleUtil.info("配置文件: config.yml");
@@ -244,6 +275,7 @@ public class Main {
         ConsoleUtil.info("  SEND_MESSAGE    - 发送消息");
         ConsoleUtil.info("  GROUP_BAN_ALL   - 全体禁言/解禁");
         ConsoleUtil.info("  GROUP_BAN_MEMBER - 禁言/解禁特定成员");
+        ConsoleUtil.info("  WORKFLOW        - 工作流（按依赖执行多个步骤）");
         ConsoleUtil.info("");
         ConsoleUtil.info("Cron表达式示例:");
         ConsoleUtil.info("  0 0 8 * * ?     - 每天早上8点");
@@ -284,6 +316,31 @@ public class Main {
                 } else {
                     ConsoleUtil.warn("请指定任务名称，例如: logs task 早安问候");
                 }
+            } else if ("query".equalsIgnoreCase(subCommand)) {
+                // 按条件分页查询
+                try {
+                    lastLogQuery = parseLogQuery(parts.length > 2 ? parts[2] : "");
+                    showLogPage(lastLogQuery);
+                } catch (IllegalArgumentException | java.time.DateTimeException e) {
+                    ConsoleUtil.warn("无效的查询条件: " + e.getMessage());
+                }
+            } else if ("next".equalsIgnoreCase(subCommand)) {
+                // 显示下一页
+                if (lastLogQuery == null || lastLogQuery.getCursor() == null) {
+                    ConsoleUtil.info("没有更多日志，请先使用 logs query 查询");
+                } else {
+                    showLogPage(lastLogQuery);
+                }
+            } else if ("stats".equalsIgnoreCase(subCommand)) {
+                // 显示日志写入指标
+                showLogWriterStats();
+            } else if ("rollup".equalsIgnoreCase(subCommand)) {
+                // 显示按时间段汇总的执行统计
+                try {
+                    showLogRollups(parts.length > 2 ? parts[2] : "");
+                } catch (IllegalArgumentException e) {
+                    ConsoleUtil.warn("无效的统计参数: " + e.getMessage());
+                }
             } else if ("export".equalsIgnoreCase(subCommand)) {
                 // 导出特定任务的日志
                 if (parts.length > 2) {
@@ -298,7 +355,11 @@ public class Main {
                 ConsoleUtil.info("  logs         - 显示最近10条日志");
                 ConsoleUtil.info("  logs recent [数量] - 显示最近的日志，可指定数量");
                 ConsoleUtil.info("  logs task [任务名] - 显示特定任务的日志");
-                ConsoleUtil.info("  logs export [任务名] - 导出特定任务的日志到文件");
+                ConsoleUtil.info("  logs export [任务名|all] [txt|csv|jsonl] [gzip] [from=时间] [to=时间] - 导出日志到文件");
+                ConsoleUtil.info("  logs query [条件...] - 按条件分页查询日志，如 task=早安问候 status=failed from=2025-03-01");
+                ConsoleUtil.info("  logs next    - 显示上一次查询的下一页");
+                ConsoleUtil.info("  logs stats   - 显示日志写入队列和延迟指标");
+                ConsoleUtil.info("  logs rollup [minute|hour|day] [task=任务名|group=群号|private=QQ号] [数量] - 按时间段显示执行统计");
             }
         }
     }
@@ -326,6 +387,9 @@ public class Main {
                     log.getTaskName() + " | " + status);
             ConsoleUtil.info("  类型: " + log.getTaskType() + ", 目标: " + log.getTargetType() + " " + log.getTargetId());
             ConsoleUtil.info("  详情: " + log.getDetails());
+            if (!log.getReceipts().isEmpty()) {
+                ConsoleUtil.info("  送达: " + formatReceipts(log));
+            }
             
             if (!log.isSuccess() && log.getErrorMessage() != null) {
                 ConsoleUtil.info("  错误: " + ConsoleUtil.ANSI_RED + log.getErrorMessage() + ConsoleUtil.ANSI_RESET);
@@ -335,6 +399,222 @@ public class Main {
         }
     }
 
+    /**
+     * 解析日志查询条件，格式为 key=value，以空格分隔
+     */
+    private static TaskLogQuery parseLogQuery(String args) {
+        TaskLogQuery query = new TaskLogQuery();
+        for (String arg : args.trim().split("\\s+")) {
+            if (arg.isEmpty()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException(arg);
+            }
+            String key = arg.substring(0, eq).toLowerCase();
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "task":
+                    query.setTaskName(value);
+                    break;
+                case "from":
+                    query.setFrom(parseQueryTime(value, false));
+                    break;
+                case "to":
+                    query.setTo(parseQueryTime(value, true));
+                    break;
+                case "status":
+                    query.setSuccess("success".equalsIgnoreCase(value) || "成功".equals(value));
+                    break;
+                case "type":
+                    query.setTargetType(value.toUpperCase());
+                    break;
+                case "target":
+                    query.setTargetId(Long.parseLong(value));
+                    break;
+                case "limit":
+                    query.setLimit(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException(arg);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * 解析查询时间，只有日期时取当天开始或结束
+     */
+    private static LocalDateTime parseQueryTime(String value, boolean endOfDay) {
+        if (value.contains("T")) {
+            return LocalDateTime.parse(value);
+        }
+        java.time.LocalDate date = java.time.LocalDate.parse(value);
+        return endOfDay ? date.atTime(java.time.LocalTime.MAX) : date.atStartOfDay();
+    }
+
+    /**
+     * 显示一页查询结果，并记录下一页的游标
+     */
+    private static void showLogPage(TaskLogQuery query) {
+        TaskLogPage page = TaskLogManager.getInstance().queryLogs(query);
+        query.setCursor(page.getNextCursor());
+        
+        if (page.getLogs().isEmpty()) {
+            ConsoleUtil.info("没有找到符合条件的任务执行日志");
+            return;
+        }
+        
+        ConsoleUtil.info("查询到 " + page.getLogs().size() + " 条任务执行日志:");
+        ConsoleUtil.info("=".repeat(50));
+        
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        for (TaskExecutionLog log : page.getLogs()) {
+            String status = log.isSuccess() ? ConsoleUtil.ANSI_GREEN + "成功" + ConsoleUtil.ANSI_RESET : 
+                                             ConsoleUtil.ANSI_RED + "失败" + ConsoleUtil.ANSI_RESET;
+            
+            ConsoleUtil.info(log.getExecutionTime().format(formatter) + " | " + 
+                    log.getTaskName() + " | " + status);
+            ConsoleUtil.info("  类型: " + log.getTaskType() + ", 目标: " + log.getTargetType() + " " + log.getTargetIds());
+            ConsoleUtil.info("  详情: " + log.getDetails());
+            if (!log.getReceipts().isEmpty()) {
+                ConsoleUtil.info("  送达: " + formatReceipts(log));
+            }
+            
+            if (!log.isSuccess() && log.getErrorMessage() != null) {
+                ConsoleUtil.info("  错误: " + ConsoleUtil.ANSI_RED + log.getErrorMessage() + ConsoleUtil.ANSI_RESET);
+            }
+            
+            ConsoleUtil.info("-".repeat(50));
+        }
+        
+        if (page.hasMore()) {
+            ConsoleUtil.info("输入 logs next 查看下一页");
+        }
+    }
+
+    /**
+     * 送达回执摘要：成功数/动作数、平均响应耗时和失败的目标
+     */
+    private static String formatReceipts(TaskExecutionLog log) {
+        List<TaskDeliveryReceipt> receipts = log.getReceipts();
+        double avgLatency = receipts.stream().mapToLong(TaskDeliveryReceipt::getLatencyMs).average().orElse(0);
+        StringBuilder sb = new StringBuilder();
+        sb.append(log.countDelivered()).append("/").append(receipts.size())
+          .append(String.format(", 平均响应 %.0fms", avgLatency));
+        for (TaskDeliveryReceipt receipt : receipts) {
+            if (!receipt.isOk()) {
+                sb.append("; ").append(receipt.getTargetId());
+                if (receipt.getMemberId() != 0) {
+                    sb.append("/").append(receipt.getMemberId());
+                }
+                sb.append(" ").append(receipt.getAction()).append(": ").append(receipt.getError());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 显示日志写入线程的指标
+     */
+    private static void showLogWriterStats() {
+        TaskLogWriterStats stats = TaskLogManager.getInstance().getWriterStats();
+        ConsoleUtil.info("任务日志写入统计:");
+        ConsoleUtil.info("  刷盘策略: " + stats.getDurability());
+        ConsoleUtil.info("  队列深度: " + stats.getQueueDepth() + "/" + stats.getQueueCapacity());
+        ConsoleUtil.info("  已写入: " + stats.getWritten() + " 条, 失败: " + stats.getFailed() +
+                " 条, 队列满时直接写入: " + stats.getWrittenInline() + " 条");
+        ConsoleUtil.info(String.format("  批次: %d, 平均每批 %.1f 条, 刷盘: %d 次",
+                stats.getBatches(), stats.getAvgBatchSize(), stats.getSyncs()));
+        ConsoleUtil.info(String.format("  写入延迟: 平均 %.2f 毫秒, 最大 %.2f 毫秒",
+                stats.getAvgLatencyMs(), stats.getMaxLatencyMs()));
+    }
+
+    /**
+     * 显示按时间段汇总的执行统计
+     * @param args 粒度、统计对象和时间段数量，均可省略，默认显示全部任务最近24小时
+     */
+    private static void showLogRollups(String args) {
+        TaskLogManager.RollupResolution resolution = TaskLogManager.RollupResolution.HOUR;
+        String series = TaskLogManager.ROLLUP_ALL;
+        String seriesName = "全部任务";
+        int count = 24;
+        for (String arg : args.trim().split("\\s+")) {
+            if (arg.isEmpty()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0 && arg.matches("\\d+")) {
+                count = Integer.parseInt(arg);
+            } else if (eq < 0) {
+                resolution = TaskLogManager.RollupResolution.valueOf(arg.toUpperCase());
+            } else {
+                String key = arg.substring(0, eq).toLowerCase();
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "task":
+                        series = TaskLogManager.rollupSeriesOfTask(value);
+                        seriesName = "任务 " + value;
+                        break;
+                    case "group":
+                        series = TaskLogManager.rollupSeriesOfTarget("GROUP", Long.parseLong(value));
+                        seriesName = "群 " + value;
+                        break;
+                    case "private":
+                        series = TaskLogManager.rollupSeriesOfTarget("PRIVATE", Long.parseLong(value));
+                        seriesName = "私聊 " + value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的统计对象: " + key);
+                }
+            }
+        }
+        
+        List<TaskLogRollupBucket> buckets = TaskLogManager.getInstance().getRollups(series, resolution, count);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(
+                resolution == TaskLogManager.RollupResolution.DAY ? "yyyy-MM-dd" : "yyyy-MM-dd HH:mm");
+        TaskLogRollupBucket total = new TaskLogRollupBucket();
+        ConsoleUtil.info(seriesName + " 的执行统计 (每" + rollupUnitName(resolution) + ", 最近 " + buckets.size() + " 个):");
+        ConsoleUtil.info("=".repeat(50));
+        for (TaskLogRollupBucket bucket : buckets) {
+            total.add(bucket);
+            if (bucket.getExecutions() == 0) {
+                continue;
+            }
+            ConsoleUtil.info(bucket.getStart().format(formatter) + " | " + formatRollup(bucket));
+        }
+        ConsoleUtil.info("-".repeat(50));
+        ConsoleUtil.info("合计 | " + formatRollup(total));
+    }
+
+    private static String rollupUnitName(TaskLogManager.RollupResolution resolution) {
+        switch (resolution) {
+            case MINUTE:
+                return "分钟";
+            case DAY:
+                return "天";
+            case HOUR:
+            default:
+                return "小时";
+        }
+    }
+
+    private static String formatRollup(TaskLogRollupBucket bucket) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("执行 ").append(bucket.getExecutions())
+          .append(", 成功 ").append(bucket.getSuccesses())
+          .append(", 失败 ").append(bucket.getFailures())
+          .append(String.format(" (%.1f%%)", bucket.getFailureRate() * 100))
+          .append(", 目标 ").append(bucket.getTargetsHit());
+        if (bucket.getLatencyCount() > 0) {
+            long p95 = bucket.getLatencyPercentile(95);
+            sb.append(String.format(", 平均耗时 %.0fms, P95 ", bucket.getAvgLatencyMs()))
+              .append(p95 >= 0 ? "≤" + p95 + "ms" : ">" + TaskLogRollupBucket.LATENCY_BOUNDS_MS[TaskLogRollupBucket.LATENCY_BOUNDS_MS.length - 1] + "ms");
+        }
+        return sb.toString();
+    }
+
     /**
      * 显示特定任务的日志
      */
@@ -356,6 +636,9 @@ public class Main {
             
             ConsoleUtil.info(log.getExecutionTime().format(formatter) + " | " + status);
             ConsoleUtil.info("  详情: " + log.getDetails());
+            if (!log.getReceipts().isEmpty()) {
+                ConsoleUtil.info("  送达: " + formatReceipts(log));
+            }
             
             if (!log.isSuccess() && log.getErrorMessage() != null) {
                 ConsoleUtil.info("  错误: " + ConsoleUtil.ANSI_RED + log.getErrorMessage() + ConsoleUtil.ANSI_RESET);
@@ -366,10 +649,45 @@ public class Main {
     }
 
     /**
-     * 导出特定任务的日志
+     * 导出任务日志
+     * 参数末尾可以跟导出选项：txt/csv/jsonl 格式、gzip 压缩、from=/to= 时间范围，任务名为 all 时导出所有任务
      */
-    private static void exportTaskLogs(String taskName) {
-        String filePath = TaskLogManager.getInstance().exportTaskLogs(taskName, 0);
+    private static void exportTaskLogs(String args) {
+        List<String> tokens = new java.util.ArrayList<>(Arrays.asList(args.trim().split("\\s+")));
+        TaskLogQuery query = new TaskLogQuery();
+        query.setLimit(0);
+        TaskLogManager.ExportFormat format = TaskLogManager.ExportFormat.TXT;
+        boolean gzip = false;
+        
+        // 从末尾解析导出选项，剩余部分为任务名（任务名中可以包含空格）
+        try {
+            while (tokens.size() > 1) {
+                String option = tokens.get(tokens.size() - 1);
+                String lower = option.toLowerCase();
+                if ("txt".equals(lower) || "csv".equals(lower) || "jsonl".equals(lower)) {
+                    format = TaskLogManager.ExportFormat.valueOf(lower.toUpperCase());
+                } else if ("gzip".equals(lower)) {
+                    gzip = true;
+                } else if (lower.startsWith("from=")) {
+                    query.setFrom(parseQueryTime(option.substring(5), false));
+                } else if (lower.startsWith("to=")) {
+                    query.setTo(parseQueryTime(option.substring(3), true));
+                } else {
+                    break;
+                }
+                tokens.remove(tokens.size() - 1);
+            }
+        } catch (java.time.DateTimeException e) {
+            ConsoleUtil.warn("无效的时间: " + e.getMessage());
+            return;
+        }
+        
+        String taskName = String.join(" ", tokens);
+        if (!"all".equalsIgnoreCase(taskName)) {
+            query.setTaskName(taskName);
+        }
+        
+        String filePath = TaskLogManager.getInstance().exportLogs(query, format, gzip);
         
         if (filePath == null) {
             ConsoleUtil.warn("没有找到任务 '" + taskName + "' 的执行日志，或导出失败");
@@ -393,7 +711,10 @@ public class Main {
             ConsoleUtil.info("  request group [群号] - 查看指定群的申请");
             ConsoleUtil.info("  request approve [flag] - 同意申请");
             ConsoleUtil.info("  request reject [flag] - 拒绝申请");
-            ConsoleUtil.info("  request clean    - 清理过期申请");
+            ConsoleUtil.info("  request approve-all [条件] - 批量同意满足条件的申请");
+            ConsoleUtil.info("  request reject-all [条件] - 批量拒绝满足条件的申请");
+            ConsoleUtil.info("    条件: group=群号 older=2h comment=正则 level=10-20 reason=理由 concurrency=10，或 all");
+            ConsoleUtil.info("  request clean    - 立即处理到期申请");
             ConsoleUtil.info("  request stats    - 显示申请统计");
             return;
         }
@@ -434,6 +755,12 @@ public class Main {
                     ConsoleUtil.warn("请指定申请标识，例如: request reject abc123");
                 }
                 break;
+            case "approve-all":
+                requestCommand.bulkResolve(true, parts.length > 2 ? parts[2] : "");
+                break;
+            case "reject-all":
+                requestCommand.bulkResolve(false, parts.length > 2 ? parts[2] : "");
+                break;
             case "clean":
                 requestCommand.cleanExpiredRequests();
                 break;
@@ -455,6 +782,7 @@ public class Main {
             logger.info("用户请求重新加载配置");
             ConsoleUtil.info("正在重新加载配置...");
             ConfigManager.getInstance().loadConfig();
+            applyConsoleLevel();
             SchedulerManager.getInstance().loadTasks();
             logger.info("配置重新加载完成");
             ConsoleUtil.success("配置重新加载完成");
@@ -1,7 +1,11 @@
 package com.yourbot.command;
 
 import com.yourbot.onebot.GroupRequestManager;
+import com.yourbot.onebot.GroupRequestManager.BulkResult;
 import com.yourbot.onebot.GroupRequestManager.PendingGroupRequest;
+import com.yourbot.onebot.GroupRequestManager.RequestSelector;
+import com.yourbot.onebot.GroupRequestProcessor;
+import com.yourbot.onebot.OneBotClient;
 import com.yourbot.util.ConsoleUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +14,8 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * 进群申请管理命令
@@ -18,6 +24,12 @@ public class GroupRequestCommand {
     private static final Logger logger = LoggerFactory.getLogger(GroupRequestCommand.class);
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     
+    // 批量处理时同时等待响应的动作数
+    private static final int DEFAULT_BULK_CONCURRENCY = 10;
+    private static final int MAX_BULK_CONCURRENCY = 100;
+    // 批量处理结果中最多列出的失败数
+    private static final int MAX_LISTED_FAILURES = 20;
+    
     private final GroupRequestManager requestManager = GroupRequestManager.getInstance();
     private final Scanner scanner = new Scanner(System.in);
     
@@ -31,7 +43,7 @@ public class GroupRequestCommand {
             ConsoleUtil.info("2. 按群号查看挂起的申请");
             ConsoleUtil.info("3. 同意申请");
             ConsoleUtil.info("4. 拒绝申请");
-            ConsoleUtil.info("5. 清理过期申请");
+            ConsoleUtil.info("5. 处理到期申请");
             ConsoleUtil.info("6. 查看申请统计");
             ConsoleUtil.info("0. 返回主菜单");
             ConsoleUtil.info("请选择操作: ");
@@ -84,6 +96,7 @@ public class GroupRequestCommand {
             ConsoleUtil.info(String.format("   申请信息: %s", request.getComment()));
             ConsoleUtil.info(String.format("   挂起原因: %s", request.getReason()));
             ConsoleUtil.info(String.format("   申请时间: %s", dateFormat.format(new Date(request.getTimestamp()))));
+            ConsoleUtil.info(String.format("   到期处理: %s", formatExpiry(request)));
             ConsoleUtil.info("");
         }
     }
@@ -199,16 +212,38 @@ public class GroupRequestCommand {
     }
     
     /**
-     * 清理过期申请
+     * 立即处理到期申请
      */
     private void cleanupExpiredRequests() {
-        ConsoleUtil.info("正在清理过期的挂起申请...");
+        ConsoleUtil.info("正在处理到期的挂起申请...");
         requestManager.cleanupExpiredRequests();
-        ConsoleUtil.success("清理完成");
+        ConsoleUtil.success("处理完成");
     }
     
 
     
+    /**
+     * 到期时间和到期后的处理方式
+     */
+    private String formatExpiry(PendingGroupRequest request) {
+        if (request.getExpireAt() == Long.MAX_VALUE) {
+            return "不过期";
+        }
+        String action;
+        switch (request.getExpireAction()) {
+            case APPROVE:
+                action = "自动同意";
+                break;
+            case REJECT:
+                action = "自动拒绝";
+                break;
+            default:
+                action = "移除";
+                break;
+        }
+        return dateFormat.format(new Date(request.getExpireAt())) + " " + action;
+    }
+    
     // 以下是公共方法，供命令行直接调用
     
     /**
@@ -237,6 +272,7 @@ public class GroupRequestCommand {
             ConsoleUtil.info(String.format("   申请信息: %s", request.getComment()));
             ConsoleUtil.info(String.format("   挂起原因: %s", request.getReason()));
             ConsoleUtil.info(String.format("   申请时间: %s", dateFormat.format(new Date(request.getTimestamp()))));
+            ConsoleUtil.info(String.format("   到期处理: %s", formatExpiry(request)));
             ConsoleUtil.info("");
         }
     }
@@ -305,12 +341,151 @@ public class GroupRequestCommand {
     }
     
     /**
-     * 清理过期申请（公共方法）
+     * 批量同意或拒绝满足条件的挂起申请（公共方法）
+     * @param args 以空格分隔的条件：group=群号 older=时长(如30m、2h、1d) comment=正则 level=最低-最高
+     *             reason=拒绝理由 concurrency=并发数，或者 all 表示所有挂起的申请
+     */
+    public void bulkResolve(boolean approve, String args) {
+        String action = approve ? "同意" : "拒绝";
+        RequestSelector selector = new RequestSelector();
+        String reason = null;
+        int concurrency = DEFAULT_BULK_CONCURRENCY;
+        boolean hasCondition = false;
+        
+        try {
+            for (String arg : args == null ? new String[0] : args.trim().split("\\s+")) {
+                if (arg.isEmpty()) {
+                    continue;
+                }
+                if (arg.equalsIgnoreCase("all")) {
+                    hasCondition = true;
+                    continue;
+                }
+                int eq = arg.indexOf('=');
+                if (eq <= 0) {
+                    ConsoleUtil.warn("无法识别的条件: " + arg);
+                    return;
+                }
+                String key = arg.substring(0, eq).toLowerCase();
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "group":
+                        selector.setGroupId(Long.parseLong(value));
+                        hasCondition = true;
+                        break;
+                    case "older":
+                        selector.setMinAgeMs(parseDuration(value));
+                        hasCondition = true;
+                        break;
+                    case "comment":
+                        selector.setCommentPattern(Pattern.compile(value, Pattern.CASE_INSENSITIVE));
+                        hasCondition = true;
+                        break;
+                    case "level":
+                        int dash = value.indexOf('-');
+                        String min = dash < 0 ? value : value.substring(0, dash);
+                        String max = dash < 0 ? value : value.substring(dash + 1);
+                        selector.setMinLevel(min.isEmpty() ? null : Integer.parseInt(min));
+                        selector.setMaxLevel(max.isEmpty() ? null : Integer.parseInt(max));
+                        hasCondition = true;
+                        break;
+                    case "reason":
+                        reason = value;
+                        break;
+                    case "concurrency":
+                        concurrency = Math.max(1, Math.min(MAX_BULK_CONCURRENCY, Integer.parseInt(value)));
+                        break;
+                    default:
+                        ConsoleUtil.warn("无法识别的条件: " + arg);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            ConsoleUtil.warn("无效的数值: " + e.getMessage());
+            return;
+        } catch (PatternSyntaxException e) {
+            ConsoleUtil.warn("无效的正则表达式: " + e.getDescription());
+            return;
+        } catch (IllegalArgumentException e) {
+            ConsoleUtil.warn(e.getMessage());
+            return;
+        }
+        
+        if (!hasCondition) {
+            // 避免误操作处理全部申请
+            ConsoleUtil.warn("请至少指定一个条件，处理所有挂起的申请请使用 all");
+            return;
+        }
+        
+        List<PendingGroupRequest> requests = requestManager.findSuspendedRequests(selector);
+        if (requests.isEmpty()) {
+            ConsoleUtil.info("没有满足条件的挂起申请");
+            return;
+        }
+        
+        ConsoleUtil.info(String.format("正在批量%s %d 个申请，并发数 %d...", action, requests.size(), concurrency));
+        BulkResult result;
+        try {
+            result = requestManager.bulkResolve(requests, approve, reason, concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ConsoleUtil.warn("批量" + action + "被中断");
+            return;
+        }
+        
+        String summary = String.format("批量%s完成: 选中 %d 个, 成功 %d 个, 失败 %d 个, 跳过 %d 个, 用时 %.1f 秒, %.1f 个/秒",
+                action, result.getSelected(), result.getSucceeded(), result.getFailed(), result.getSkipped(),
+                result.getElapsedMs() / 1000.0, result.getThroughput());
+        if (result.getFailed() == 0) {
+            ConsoleUtil.success(summary);
+        } else {
+            ConsoleUtil.warn(summary);
+            List<String> failures = result.getFailures();
+            for (int i = 0; i < Math.min(MAX_LISTED_FAILURES, failures.size()); i++) {
+                ConsoleUtil.warn("  " + failures.get(i));
+            }
+            if (failures.size() > MAX_LISTED_FAILURES) {
+                ConsoleUtil.warn("  ... 另有 " + (failures.size() - MAX_LISTED_FAILURES) + " 个失败，详见日志");
+                failures.subList(MAX_LISTED_FAILURES, failures.size()).forEach(f -> logger.warn("批量{}失败: {}", action, f));
+            }
+        }
+    }
+    
+    /**
+     * 解析时长，支持 s、m、h、d 后缀，没有后缀时按分钟计算
+     */
+    private static long parseDuration(String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("时长不能为空");
+        }
+        char unit = Character.toLowerCase(value.charAt(value.length() - 1));
+        long multiplier;
+        switch (unit) {
+            case 's':
+                multiplier = 1000L;
+                break;
+            case 'h':
+                multiplier = 3600_000L;
+                break;
+            case 'd':
+                multiplier = 86400_000L;
+                break;
+            case 'm':
+                multiplier = 60_000L;
+                break;
+            default:
+                return Long.parseLong(value) * 60_000L;
+        }
+        return Long.parseLong(value.substring(0, value.length() - 1)) * multiplier;
+    }
+    
+    /**
+     * 立即处理到期申请（公共方法）
      */
     public void cleanExpiredRequests() {
-        ConsoleUtil.info("正在清理过期的挂起申请...");
+        ConsoleUtil.info("正在处理到期的挂起申请...");
         requestManager.cleanupExpiredRequests();
-        ConsoleUtil.success("清理完成");
+        ConsoleUtil.success("处理完成");
     }
     
     /**
@@ -321,18 +496,20 @@ public class GroupRequestCommand {
         
         ConsoleUtil.info("\n=== 申请统计 ===");
         ConsoleUtil.info("当前挂起的申请数量: " + suspendedCount);
+        ConsoleUtil.info("本次运行已同意: " + requestManager.getRequestCount(GroupRequestManager.RequestStatus.APPROVED)
+                + ", 已拒绝: " + requestManager.getRequestCount(GroupRequestManager.RequestStatus.REJECTED));
+        
+        GroupRequestProcessor processor = GroupRequestProcessor.getInstance();
+        ConsoleUtil.info("正在处理的申请: " + processor.getInFlightCount()
+                + ", 最早的已处理 " + processor.getOldestInFlightAgeMs() / 1000 + " 秒"
+                + ", 超时或超出容量不再跟踪: " + processor.getInFlightEvictions());
+        ConsoleUtil.info("已忽略的重复事件: " + OneBotClient.getInstance().getDuplicateEventCount());
         
         if (suspendedCount > 0) {
-            List<PendingGroupRequest> requests = requestManager.getSuspendedRequests();
-            
             // 按群号统计
             ConsoleUtil.info("\n按群号统计:");
-            requests.stream()
-                    .collect(java.util.stream.Collectors.groupingBy(
-                            PendingGroupRequest::getGroupId,
-                            java.util.stream.Collectors.counting()))
-                    .forEach((groupId, count) -> 
-                            ConsoleUtil.info(String.format("群 %d: %d 个申请", groupId, count)));
+            requestManager.getSuspendedRequestCountByGroup().forEach((groupId, count) -> 
+                    ConsoleUtil.info(String.format("群 %d: %d 个申请", groupId, count)));
         }
     }
 }
\ No newline at end of file
@@ -80,13 +80,22 @@ public class ConfigManager {
             ConsoleUtil.success("配置文件加载成功，共加载 " + scheduledTasks.size() + " 个定时任务");
             
             logger.debug("机器人配置: {}", botConfig);
-            ConsoleUtil.debug("机器人配置: websocket=" + botConfig.getWebsocket());
+            ConsoleUtil.debug("机器人配置: websocket={}", botConfig.getWebsocket());
             
             for (ScheduledTask task : scheduledTasks) {
                 logger.debug("加载任务: {}, 类型: {}, Cron表达式: {}", 
                         task.getName(), task.getType(), task.getCronExpression());
-                ConsoleUtil.debug("加载任务: " + task.getName() + ", 类型: " + task.getType() + 
+                ConsoleUtil.debug(() -> "加载任务: " + task.getName() + ", 类型: " + task.getType() + 
                         ", Cron表达式: " + task.getCronExpression());
+                if (task.getType() == TaskType.GROUP_REQUEST_VERIFY) {
+                    task.compileAnswerMatcher();
+                    try {
+                        task.compileVerifyRule();
+                    } catch (IllegalArgumentException e) {
+                        logger.error("任务 {} 的{}，该任务的进群申请将被挂起", task.getName(), e.getMessage());
+                        ConsoleUtil.error("任务 " + task.getName() + " 的" + e.getMessage() + "，该任务的进群申请将被挂起");
+                    }
+                }
             }
         } catch (IOException e) {
             logger.error("加载配置文件失败", e);
@@ -268,6 +277,12 @@ public class ConfigManager {
         private boolean includeInfoInNormal = true;  // 是否在普通日志中包含INFO和MIXIN日志
         private int maxMessageLogs = 1000;          // 最大消息日志数量
         private int maxDays = 30;                   // 日志保留天数
+        private int taskLogMaxSizeMb = 0;           // 每个任务的执行日志大小上限（MB），0表示只按保留天数清理
+        private String taskLogDurability = "PERIODIC"; // 任务日志刷盘策略：RECORD/PERIODIC/NONE
+        private int taskLogFsyncIntervalMs = 1000;  // PERIODIC策略的刷盘间隔（毫秒）
+        private int taskLogQueueCapacity = 10000;   // 任务日志写入队列容量
+        private boolean compressTaskLogDetails = true; // 是否压缩较长的任务日志详情
+        private int guiLogLines = 5000;             // 图形界面日志面板保留的最大行数
     }
     
     @Data
@@ -278,5 +293,8 @@ public class ConfigManager {
         private int privateMsgLimit = 10;
         private int taskMinIntervalMs = 5000;
         private boolean enableAutoRiskControl = true;
+        private boolean enableLoadSpreading = false; // 是否为同时触发的任务自动错峰
+        private int maxSpreadSeconds = 300;          // 自动错峰的最大偏移（秒）
+        private int loadPlanHorizonHours = 24;       // 负载规划的时间窗口（小时）
     }
 }
\ No newline at end of file
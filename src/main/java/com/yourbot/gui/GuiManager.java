@@ -1,6 +1,8 @@
 package com.yourbot.gui;
 
 import com.yourbot.config.ConfigManager;
+import com.yourbot.log.TaskLogManager;
+import com.yourbot.log.TaskLogRollupBucket;
 import com.yourbot.scheduler.ScheduledTask;
 import com.yourbot.scheduler.SchedulerManager;
 import org.slf4j.Logger;
@@ -14,44 +16,54 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
 import java.lang.management.OperatingSystemMXBean;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.function.Consumer;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class GuiManager {
     private static final Logger logger = LoggerFactory.getLogger(GuiManager.class);
     private static GuiManager instance;
     
     private JFrame mainFrame;
-    private JTextPane logPane;
+    private LogView logView;
     private JTextField commandField;
     private JTextPane taskListPane;
     private JTextPane systemInfoPane;
+    // 当前时间每次刷新都会变化，单独显示，不参与系统信息的逐行比较
+    private JLabel clockLabel;
     
-    private DefaultStyledDocument logDocument;
     private StyledDocument taskDocument;
     private StyledDocument systemInfoDocument;
     
     private Map<String, AttributeSet> styles;
-    private Timer updateTimer;
-    private Consumer<String> commandHandler;
+    private RowDocument systemInfoRows;
+    private RowDocument taskRowsDocument;
+    
+    // 最近一次交给EDT的内容，只在定时器线程中访问
+    private List<RowDocument.Row> publishedSystemRows;
+    private List<RowDocument.Row> publishedTaskRows;
     
-    // 标记GUI是否已初始化
-    private boolean guiInitialized = false;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
     
-    // 用于缓存初始化前的日志
-    private ConcurrentLinkedQueue<LogEntry> pendingLogs = new ConcurrentLinkedQueue<>();
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private Timer updateTimer;
+    private Consumer<String> commandHandler;
     
     private GuiManager() {
         styles = new HashMap<>();
         initStyles();
+        // 初始化前追加的日志暂存在日志面板的队列中
+        logView = new LogView(level -> StyleConstants.getForeground(style(level)));
     }
     
     public static GuiManager getInstance() {
@@ -86,6 +98,10 @@ public class GuiManager {
         styles.put("system_value", styleContext.addAttribute(SimpleAttributeSet.EMPTY, StyleConstants.Foreground, new Color(255, 255, 85)));
     }
     
+    private AttributeSet style(String name) {
+        return styles.getOrDefault(name, styles.get("normal"));
+    }
+    
     // 初始化GUI界面
     public void initGui(Consumer<String> commandHandler) {
         this.commandHandler = commandHandler;
@@ -146,15 +162,9 @@ public class GuiManager {
                     splitPane.setContinuousLayout(true);
                     
                     // 创建日志面板
-                    logDocument = new DefaultStyledDocument();
-                    logPane = new JTextPane(logDocument);
-                    logPane.setEditable(false);
-                    logPane.setBackground(new Color(30, 30, 30)); // 只为日志区域设置深色背景
-                    logPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
-                    logPane.setForeground(Color.WHITE);
-                    
-                    JScrollPane logScrollPane = new JScrollPane(logPane);
-                    logScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+                    ConfigManager.BotConfig botConfig = ConfigManager.getInstance().getBotConfig();
+                    int logLines = botConfig != null ? botConfig.getLog().getGuiLogLines() : new ConfigManager.LogConfig().getGuiLogLines();
+                    JComponent logPanel = logView.createComponent(logLines);
                     
                     // 创建右侧面板
                     JPanel rightPanel = new JPanel();
@@ -166,16 +176,26 @@ public class GuiManager {
                     systemInfoPane.setEditable(false);
                     systemInfoPane.setBackground(new Color(30, 30, 30)); // 只为系统信息区域设置深色背景
                     systemInfoPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    systemInfoRows = new RowDocument(systemInfoDocument, this::style);
                     
                     JScrollPane systemInfoScrollPane = new JScrollPane(systemInfoPane);
                     systemInfoScrollPane.setPreferredSize(new Dimension(300, 200));
                     
+                    // 创建时钟标签
+                    clockLabel = new JLabel();
+                    clockLabel.setOpaque(true);
+                    clockLabel.setBackground(new Color(30, 30, 30));
+                    clockLabel.setForeground(StyleConstants.getForeground(style("system_value")));
+                    clockLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    clockLabel.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+                    
                     // 创建任务列表面板
                     taskDocument = new DefaultStyledDocument();
                     taskListPane = new JTextPane(taskDocument);
                     taskListPane.setEditable(false);
                     taskListPane.setBackground(new Color(30, 30, 30)); // 只为任务列表区域设置深色背景
                     taskListPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    taskRowsDocument = new RowDocument(taskDocument, this::style);
                     
                     JScrollPane taskListScrollPane = new JScrollPane(taskListPane);
                     
@@ -186,10 +206,11 @@ public class GuiManager {
                     rightSplitPane.setResizeWeight(0.3); // 系统信息占30%
                     rightSplitPane.setContinuousLayout(true);
                     
+                    rightPanel.add(clockLabel, BorderLayout.NORTH);
                     rightPanel.add(rightSplitPane, BorderLayout.CENTER);
                     
                     // 设置分割面板
-                    splitPane.setLeftComponent(logScrollPane);
+                    splitPane.setLeftComponent(logPanel);
                     splitPane.setRightComponent(rightPanel);
                     
                     // 创建命令输入面板
@@ -236,18 +257,9 @@ public class GuiManager {
                     updateTimer.scheduleAtFixedRate(new TimerTask() {
                         @Override
                         public void run() {
-                            SwingUtilities.invokeLater(() -> {
-                                updateSystemInfo();
-                                updateTaskList();
-                            });
+                            refreshPanes();
                         }
                     }, 0, 2000); // 每2秒更新一次
-                    
-                    // 标记GUI初始化完成
-                    guiInitialized = true;
-                    
-                    // 显示缓存的日志
-                    processPendingLogs();
                 } catch (Exception e) {
                     logger.error("GUI初始化失败", e);
                 }
@@ -257,96 +269,91 @@ public class GuiManager {
         }
     }
     
-    // 处理初始化前缓存的日志
-    private void processPendingLogs() {
-        LogEntry entry;
-        while ((entry = pendingLogs.poll()) != null) {
-            try {
-                AttributeSet style = styles.getOrDefault(entry.level, styles.get("normal"));
-                appendToDocument(logDocument, entry.message + "\n", style);
-            } catch (Exception e) {
-                logger.error("处理缓存日志失败", e);
-            }
+    // 在定时器线程中生成系统信息和任务列表，内容有变化时才交给EDT更新文档
+    private void refreshPanes() {
+        String clock = "当前时间: " + LocalDateTime.now().format(TIME_FORMATTER);
+        SwingUtilities.invokeLater(() -> clockLabel.setText(clock));
+        
+        List<RowDocument.Row> systemRows = buildSystemInfo();
+        if (systemRows != null && !systemRows.equals(publishedSystemRows)) {
+            publishedSystemRows = systemRows;
+            SwingUtilities.invokeLater(() -> systemInfoRows.update(systemRows));
+        }
+        
+        List<RowDocument.Row> taskRows = buildTaskList();
+        if (taskRows != null && !taskRows.equals(publishedTaskRows)) {
+            publishedTaskRows = taskRows;
+            SwingUtilities.invokeLater(() -> taskRowsDocument.update(taskRows));
         }
     }
     
-    // 更新系统信息
-    private void updateSystemInfo() {
+    // 生成系统信息
+    private List<RowDocument.Row> buildSystemInfo() {
         try {
-            MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
-            OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
-            
-            long usedMemory = memoryBean.getHeapMemoryUsage().getUsed();
-            long maxMemory = memoryBean.getHeapMemoryUsage().getMax();
+            List<RowDocument.Row> rows = new ArrayList<>();
+            MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+            long usedMemory = heap.getUsed();
+            long maxMemory = heap.getMax();
             int memoryPercent = (int)((usedMemory * 100) / maxMemory);
             
             // 格式化为MB
             usedMemory = usedMemory / (1024 * 1024);
             maxMemory = maxMemory / (1024 * 1024);
             
-            double cpuLoad = -1;
-            try {
-                java.lang.reflect.Method method = osBean.getClass().getDeclaredMethod("getProcessCpuLoad");
-                method.setAccessible(true);
-                cpuLoad = (double) method.invoke(osBean) * 100;
-            } catch (Exception e) {
-                // 如果不支持这个方法，就忽略
-            }
+            rows.add(new RowDocument.Row().add("=== 系统信息 ===", "system_header"));
+            rows.add(new RowDocument.Row().add("内存使用: ", "normal")
+                    .add(usedMemory + "MB / " + maxMemory + "MB (" + memoryPercent + "%)", "system_value"));
             
-            systemInfoDocument.remove(0, systemInfoDocument.getLength());
-            
-            appendToDocument(systemInfoDocument, "=== 系统信息 ===\n", styles.get("system_header"));
-            appendToDocument(systemInfoDocument, "内存使用: ", styles.get("normal"));
-            appendToDocument(systemInfoDocument, usedMemory + "MB / " + maxMemory + "MB (" + memoryPercent + "%)\n", styles.get("system_value"));
-            
-            if (cpuLoad >= 0) {
-                appendToDocument(systemInfoDocument, "CPU使用: ", styles.get("normal"));
-                appendToDocument(systemInfoDocument, String.format("%.1f%%\n", cpuLoad), styles.get("system_value"));
+            // 不是HotSpot系的JVM时不显示CPU使用率
+            if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+                double cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+                if (cpuLoad >= 0) {
+                    rows.add(new RowDocument.Row().add("CPU使用: ", "normal")
+                            .add(String.format("%.1f%%", cpuLoad * 100), "system_value"));
+                }
             }
             
-            appendToDocument(systemInfoDocument, "操作系统: ", styles.get("normal"));
-            appendToDocument(systemInfoDocument, System.getProperty("os.name") + "\n", styles.get("system_value"));
-            
-            appendToDocument(systemInfoDocument, "Java版本: ", styles.get("normal"));
-            appendToDocument(systemInfoDocument, System.getProperty("java.version") + "\n", styles.get("system_value"));
-            
-            appendToDocument(systemInfoDocument, "当前时间: ", styles.get("normal"));
-            appendToDocument(systemInfoDocument, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n", styles.get("system_value"));
+            rows.add(new RowDocument.Row().add("操作系统: ", "normal").add(System.getProperty("os.name"), "system_value"));
+            rows.add(new RowDocument.Row().add("Java版本: ", "normal").add(System.getProperty("java.version"), "system_value"));
             
             // 添加WebSocket连接信息
-            appendToDocument(systemInfoDocument, "WebSocket: ", styles.get("normal"));
-            if (com.yourbot.onebot.OneBotClient.getInstance().isConnected()) {
-                appendToDocument(systemInfoDocument, "已连接\n", styles.get("INFO"));
-            } else {
-                appendToDocument(systemInfoDocument, "未连接\n", styles.get("ERROR"));
+            boolean connected = com.yourbot.onebot.OneBotClient.getInstance().isConnected();
+            rows.add(new RowDocument.Row().add("WebSocket: ", "normal")
+                    .add(connected ? "已连接" : "未连接", connected ? "INFO" : "ERROR"));
+            
+            // 最近1小时的任务执行统计，直接读取内存中的汇总
+            TaskLogRollupBucket recent = TaskLogManager.getInstance()
+                    .getRollupSummary(TaskLogManager.ROLLUP_ALL, TaskLogManager.RollupResolution.MINUTE, 60);
+            RowDocument.Row recentRow = new RowDocument.Row().add("近1小时任务: ", "normal")
+                    .add("执行 " + recent.getExecutions() + " 次, 失败 " + recent.getFailures() + " 次",
+                            recent.getFailures() > 0 ? "ERROR" : "system_value");
+            if (recent.getLatencyCount() > 0) {
+                recentRow.add(String.format(", 平均耗时 %.0fms", recent.getAvgLatencyMs()), "system_value");
             }
+            rows.add(recentRow);
+            return rows;
         } catch (Exception e) {
             logger.error("更新系统信息失败", e);
+            return null;
         }
     }
     
-    // 更新任务列表
-    private void updateTaskList() {
+    // 生成任务列表
+    private List<RowDocument.Row> buildTaskList() {
         try {
             List<ScheduledTask> tasks = ConfigManager.getInstance().getScheduledTasks();
+            List<RowDocument.Row> rows = new ArrayList<>(tasks.size() * 6 + 1);
             
-            taskDocument.remove(0, taskDocument.getLength());
-            
-            appendToDocument(taskDocument, "=== 任务列表 (" + tasks.size() + ") ===\n", styles.get("task_header"));
+            rows.add(new RowDocument.Row().add("=== 任务列表 (" + tasks.size() + ") ===", "task_header"));
             
             for (ScheduledTask task : tasks) {
-                appendToDocument(taskDocument, task.getName() + "\n", styles.get("INFO"));
-                appendToDocument(taskDocument, "  类型: " + task.getType() + "\n", styles.get("task_info"));
-                appendToDocument(taskDocument, "  目标: " + task.getTargetType() + " ", styles.get("task_info"));
+                rows.add(new RowDocument.Row().add(task.getName(), "INFO"));
+                rows.add(new RowDocument.Row().add("  类型: " + task.getType(), "task_info"));
                 
                 // 显示目标ID列表
-                if (!task.getTargetIds().isEmpty()) {
-                    appendToDocument(taskDocument, task.getTargetIds().toString() + "\n", styles.get("task_info"));
-                } else {
-                    appendToDocument(taskDocument, task.getTargetId() + "\n", styles.get("task_info"));
-                }
-                
-                appendToDocument(taskDocument, "  时间: " + task.getCronExpression() + "\n", styles.get("task_info"));
+                String targets = !task.getTargetIds().isEmpty() ? task.getTargetIds().toString() : String.valueOf(task.getTargetId());
+                rows.add(new RowDocument.Row().add("  目标: " + task.getTargetType() + " " + targets, "task_info"));
+                rows.add(new RowDocument.Row().add("  时间: " + task.getCronExpression(), "task_info"));
                 
                 // 获取任务下一次执行时间
                 try {
@@ -354,77 +361,30 @@ public class GuiManager {
                     if (trigger != null) {
                         java.util.Date nextFireTime = trigger.getNextFireTime();
                         if (nextFireTime != null) {
-                            appendToDocument(taskDocument, "  下次执行: " + new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(nextFireTime) + "\n", styles.get("task_info"));
+                            LocalDateTime next = LocalDateTime.ofInstant(nextFireTime.toInstant(), ZoneId.systemDefault());
+                            rows.add(new RowDocument.Row().add("  下次执行: " + next.format(TIME_FORMATTER), "task_info"));
                         }
                     }
                 } catch (Exception e) {
                     logger.error("获取任务下一次执行时间失败", e);
                 }
                 
-                appendToDocument(taskDocument, "\n", styles.get("normal"));
+                rows.add(new RowDocument.Row());
             }
+            return rows;
         } catch (Exception e) {
             logger.error("更新任务列表失败", e);
+            return null;
         }
     }
     
-    // 向文档添加带样式的文本
-    private void appendToDocument(StyledDocument doc, String text, AttributeSet style) {
-        if (doc == null) return;
-        
-        try {
-            doc.insertString(doc.getLength(), text, style);
-        } catch (BadLocationException e) {
-            logger.error("添加文本到文档失败", e);
-        }
-    }
-    
-    // 添加日志到日志面板
+    // 添加日志到日志面板，同一帧内追加的日志合并为一次更新
     public void appendLog(String message, String level) {
-        // 如果GUI未初始化完成，添加到等待队列
-        if (!guiInitialized) {
-            pendingLogs.offer(new LogEntry(message, level));
-            return;
-        }
-        
-        SwingUtilities.invokeLater(() -> {
-            try {
-                if (logDocument != null) {
-                    AttributeSet style = styles.getOrDefault(level, styles.get("normal"));
-                    appendToDocument(logDocument, message + "\n", style);
-                    
-                    // 自动滚动到底部
-                    logPane.setCaretPosition(logDocument.getLength());
-                }
-            } catch (Exception e) {
-                logger.error("添加日志到GUI失败", e);
-            }
-        });
+        logView.append(message, level);
     }
     
     // 清空日志
     public void clearLog() {
-        if (!guiInitialized) return;
-        
-        SwingUtilities.invokeLater(() -> {
-            try {
-                if (logDocument != null) {
-                    logDocument.remove(0, logDocument.getLength());
-                }
-            } catch (BadLocationException e) {
-                logger.error("清空日志失败", e);
-            }
-        });
-    }
-    
-    // 日志条目类 - 用于暂存初始化前的日志
-    private static class LogEntry {
-        final String message;
-        final String level;
-        
-        LogEntry(String message, String level) {
-            this.message = message;
-            this.level = level;
-        }
+        logView.clear();
     }
-} 
\ No newline at end of file
+}
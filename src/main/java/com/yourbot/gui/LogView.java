@@ -0,0 +1,453 @@
+package com.yourbot.gui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 日志面板
+ * 日志保存在固定容量的环形缓冲区中，超过容量时丢弃最早的行；
+ * 其他线程追加的日志先进入队列，由EDT合并为一批写入缓冲区，每批只触发一次列表更新；
+ * 列表使用固定行高，只绘制可见的行，级别过滤和搜索在缓冲区上完成；
+ * 单元格宽度取显示的最长一行，超过窗口宽度时可以水平滚动
+ */
+class LogView {
+    // 单元格的最小宽度和文字两侧的留白
+    private static final int MIN_CELL_WIDTH = 100;
+    private static final int CELL_PADDING = 8;
+    
+    private final Function<String, Color> levelColors;
+    
+    // 其他线程追加、等待EDT处理的日志
+    private final Queue<LogLine> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    // 以下字段只在EDT中访问
+    private LogListModel model;
+    private JList<LogLine> list;
+    private JScrollPane scrollPane;
+    private JComboBox<LevelFilter> levelBox;
+    private JTextField searchField;
+    private FontMetrics metrics;
+    
+
+    /**
+     * @param levelColors 各级别的文字颜色
+     */
+    LogView(Function<String, Color> levelColors) {
+        this.levelColors = levelColors;
+    }
+    
+    /**
+     * 创建面板，必须在EDT中调用；创建前追加的日志在创建后显示
+     * @param capacity 保留的最大行数
+     */
+    JComponent createComponent(int capacity) {
+        model = new LogListModel(Math.max(100, capacity));
+        list = new JList<>(model);
+        Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        list.setFont(font);
+        list.setBackground(new Color(30, 30, 30));
+        list.setForeground(Color.WHITE);
+        // 固定行高和宽度，布局时不需要逐行测量；宽度随追加的行增大，见fitWidth
+        metrics = list.getFontMetrics(font);
+        list.setFixedCellHeight(metrics.getHeight() + 2);
+        list.setFixedCellWidth(MIN_CELL_WIDTH);
+        list.setCellRenderer(new LogLineRenderer());
+        
+        scrollPane = new JScrollPane(list);
+        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        
+        levelBox = new JComboBox<>(LevelFilter.values());
+        levelBox.addActionListener(e -> applyFilter());
+        searchField = new JTextField();
+        searchField.setToolTipText("搜索日志（不区分大小写）");
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        
+        JPanel toolbar = new JPanel(new BorderLayout(5, 0));
+        toolbar.setBorder(BorderFactory.createEmptyBorder(0, 0, 3, 0));
+        toolbar.add(levelBox, BorderLayout.WEST);
+        toolbar.add(searchField, BorderLayout.CENTER);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(toolbar, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        
+        scheduleFlush();
+        return panel;
+    }
+    
+    /**
+     * 追加一行日志，可在任意线程调用
+     */
+    void append(String message, String level) {
+        incoming.offer(new LogLine(message, level));
+        if (model != null) {
+            scheduleFlush();
+        }
+    }
+    
+    /**
+     * 清空日志，可在任意线程调用
+     */
+    void clear() {
+        SwingUtilities.invokeLater(() -> {
+            incoming.clear();
+            if (model != null) {
+                model.clear();
+                list.setFixedCellWidth(MIN_CELL_WIDTH);
+            }
+        });
+    }
+    
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+    
+    /**
+     * 将队列中的日志一次性写入缓冲区，用户停留在底部时保持滚动到最新一行
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        List<LogLine> batch = new ArrayList<>();
+        LogLine line;
+        while ((line = incoming.poll()) != null) {
+            batch.add(line);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - list.getFixedCellHeight();
+        model.append(batch);
+        fitWidth(batch, false);
+        if (atBottom && model.getSize() > 0) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+    }
+    
+    private void applyFilter() {
+        LevelFilter filter = (LevelFilter) levelBox.getSelectedItem();
+        String search = searchField.getText().trim().toLowerCase(Locale.ROOT);
+        model.setFilter(filter != null ? filter.minRank : 0, search);
+        List<LogLine> shown = new ArrayList<>(model.getSize());
+        for (int i = 0; i < model.getSize(); i++) {
+            shown.add(model.getElementAt(i));
+        }
+        fitWidth(shown, true);
+        if (model.getSize() > 0) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+    }
+    
+    /**
+     * 按显示的行调整单元格宽度，每行的宽度只测量一次
+     * 追加时只会变宽，被挤出的行不缩小宽度；过滤条件改变时按当前显示的行重新计算
+     * @param reset 是否忽略当前宽度重新计算
+     */
+    private void fitWidth(List<LogLine> lines, boolean reset) {
+        int width = reset ? MIN_CELL_WIDTH : list.getFixedCellWidth();
+        for (LogLine line : lines) {
+            if (model.shows(line)) {
+                width = Math.max(width, line.width(metrics) + CELL_PADDING);
+            }
+        }
+        if (width != list.getFixedCellWidth()) {
+            list.setFixedCellWidth(width);
+        }
+    }
+    
+    private static int rank(String level) {
+        switch (level) {
+            case "DEBUG":
+                return 0;
+            case "WARN":
+                return 2;
+            case "ERROR":
+                return 3;
+            default:
+                return 1;
+        }
+    }
+    
+    // 级别过滤选项
+    private enum LevelFilter {
+        ALL("全部级别", 0),
+        INFO("隐藏调试", 1),
+        WARN("警告和错误", 2),
+        ERROR("仅错误", 3);
+        
+        final String label;
+        final int minRank;
+        
+        LevelFilter(String label, int minRank) {
+            this.label = label;
+            this.minRank = minRank;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    /**
+     * 一行日志
+     */
+    private static class LogLine {
+        final String message;
+        final String level;
+        final int rank;
+        private String lowerCase;
+        private int width = -1;
+        
+        LogLine(String message, String level) {
+            this.message = message;
+            this.level = level;
+            this.rank = rank(level);
+        }
+        
+        boolean contains(String search) {
+            if (lowerCase == null) {
+                lowerCase = message.toLowerCase(Locale.ROOT);
+            }
+            return lowerCase.contains(search);
+        }
+        
+        int width(FontMetrics metrics) {
+            if (width < 0) {
+                width = metrics.stringWidth(message);
+            }
+            return width;
+        }
+        
+        // 复制选中的行时使用
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+    
+    /**
+     * 固定容量的环形数组，满时追加会挤出最早的元素
+     */
+    private static class Ring {
+        private final LogLine[] items;
+        private int head;
+        private int size;
+        
+        Ring(int capacity) {
+            items = new LogLine[capacity];
+        }
+        
+        /**
+         * @return 被挤出的元素，没有时返回null
+         */
+        LogLine add(LogLine item) {
+            LogLine evicted = null;
+            if (size == items.length) {
+                evicted = items[head];
+                items[head] = item;
+                head = (head + 1) % items.length;
+            } else {
+                items[(head + size) % items.length] = item;
+                size++;
+            }
+            return evicted;
+        }
+        
+        LogLine get(int index) {
+            return items[(head + index) % items.length];
+        }
+        
+        LogLine first() {
+            return size == 0 ? null : items[head];
+        }
+        
+        void removeFirst() {
+            items[head] = null;
+            head = (head + 1) % items.length;
+            size--;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void clear() {
+            Arrays.fill(items, null);
+            head = 0;
+            size = 0;
+        }
+    }
+    
+    /**
+     * 列表模型：未过滤时直接显示缓冲区，过滤时显示另一个只包含匹配行的环形数组，
+     * 两者顺序一致，缓冲区挤出的行如果匹配一定是过滤结果中的第一行
+     */
+    private static class LogListModel extends AbstractListModel<LogLine> {
+        private final Ring all;
+        private final Ring matched;
+        private int minRank;
+        private String search = "";
+        
+        LogListModel(int capacity) {
+            all = new Ring(capacity);
+            matched = new Ring(capacity);
+        }
+        
+        private boolean filtered() {
+            return minRank > 0 || !search.isEmpty();
+        }
+        
+        private Ring view() {
+            return filtered() ? matched : all;
+        }
+        
+        private boolean matches(LogLine line) {
+            return line.rank >= minRank && (search.isEmpty() || line.contains(search));
+        }
+        
+        /**
+         * 该行在当前过滤条件下是否显示
+         */
+        boolean shows(LogLine line) {
+            return !filtered() || matches(line);
+        }
+        
+        @Override
+        public int getSize() {
+            return view().size();
+        }
+        
+        @Override
+        public LogLine getElementAt(int index) {
+            return view().get(index);
+        }
+        
+        /**
+         * 追加一批日志，只触发一次删除和一次插入事件
+         */
+        void append(List<LogLine> batch) {
+            int oldSize = getSize();
+            if (batch.size() >= all.items.length) {
+                // 整个缓冲区都被替换
+                all.clear();
+                matched.clear();
+                for (LogLine line : batch.subList(batch.size() - all.items.length, batch.size())) {
+                    all.add(line);
+                    if (matches(line)) {
+                        matched.add(line);
+                    }
+                }
+                fireReplaced(oldSize);
+                return;
+            }
+            
+            boolean filtered = filtered();
+            int removed = 0;
+            int added = 0;
+            for (LogLine line : batch) {
+                LogLine evicted = all.add(line);
+                if (filtered) {
+                    if (evicted != null && matched.first() == evicted) {
+                        matched.removeFirst();
+                        removed++;
+                    }
+                    if (matches(line)) {
+                        matched.add(line);
+                        added++;
+                    }
+                } else {
+                    removed += evicted != null ? 1 : 0;
+                    added++;
+                }
+            }
+            if (removed > 0) {
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+            if (added > 0) {
+                int size = getSize();
+                fireIntervalAdded(this, size - added, size - 1);
+            }
+        }
+        
+        /**
+         * 修改过滤条件，在缓冲区上重新筛选
+         */
+        void setFilter(int newMinRank, String newSearch) {
+            int oldSize = getSize();
+            minRank = newMinRank;
+            search = newSearch;
+            matched.clear();
+            if (filtered()) {
+                for (int i = 0; i < all.size(); i++) {
+                    LogLine line = all.get(i);
+                    if (matches(line)) {
+                        matched.add(line);
+                    }
+                }
+            }
+            fireReplaced(oldSize);
+        }
+        
+        void clear() {
+            int oldSize = getSize();
+            all.clear();
+            matched.clear();
+            fireReplaced(oldSize);
+        }
+        
+        private void fireReplaced(int oldSize) {
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (getSize() > 0) {
+                fireIntervalAdded(this, 0, getSize() - 1);
+            }
+        }
+    }
+    
+    /**
+     * 按日志级别着色的单元格
+     */
+    private class LogLineRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, false);
+            LogLine line = (LogLine) value;
+            setForeground(levelColors.apply(line.level));
+            setBackground(isSelected ? new Color(70, 70, 90) : list.getBackground());
+            return this;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.yourbot.gui;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyledDocument;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 按行更新的文档
+ * 内容由若干行组成，每行是一组带样式的文本；更新时与上次的内容逐行比较，
+ * 只替换发生变化的行，多出的行追加到末尾，减少的行从末尾删除
+ */
+class RowDocument {
+    private static final Logger logger = LoggerFactory.getLogger(RowDocument.class);
+    
+    private final StyledDocument document;
+    private final Function<String, AttributeSet> styles;
+    
+    // 文档当前显示的行，只在EDT中访问
+    private List<Row> current = Collections.emptyList();
+    
+    RowDocument(StyledDocument document, Function<String, AttributeSet> styles) {
+        this.document = document;
+        this.styles = styles;
+    }
+    
+    /**
+     * 将文档更新为指定的行，必须在EDT中调用
+     */
+    void update(List<Row> rows) {
+        try {
+            int common = Math.min(current.size(), rows.size());
+            for (int i = 0; i < common; i++) {
+                if (!current.get(i).equals(rows.get(i))) {
+                    replaceRow(i, rows.get(i));
+                }
+            }
+            if (current.size() > rows.size()) {
+                // 删除多出的行，从第一行多出的行的起点删到末尾
+                int start = document.getDefaultRootElement().getElement(rows.size()).getStartOffset();
+                document.remove(start, document.getLength() - start);
+            }
+            for (int i = common; i < rows.size(); i++) {
+                insertRow(document.getLength(), rows.get(i));
+            }
+            current = rows;
+        } catch (BadLocationException e) {
+            logger.error("更新文档失败", e);
+        }
+    }
+    
+    private void replaceRow(int index, Row row) throws BadLocationException {
+        Element paragraph = document.getDefaultRootElement().getElement(index);
+        int start = paragraph.getStartOffset();
+        // 保留行尾的换行符，只替换行内的文本
+        document.remove(start, paragraph.getEndOffset() - 1 - start);
+        insertText(start, row);
+    }
+    
+    private void insertRow(int offset, Row row) throws BadLocationException {
+        offset = insertText(offset, row);
+        document.insertString(offset, "\n", styles.apply("normal"));
+    }
+    
+    /**
+     * @return 插入的文本之后的位置
+     */
+    private int insertText(int offset, Row row) throws BadLocationException {
+        for (int i = 0; i < row.texts.size(); i++) {
+            String text = row.texts.get(i);
+            document.insertString(offset, text, styles.apply(row.styles.get(i)));
+            offset += text.length();
+        }
+        return offset;
+    }
+    
+    /**
+     * 一行内容，由若干段带样式的文本组成，文本中不应包含换行符
+     */
+    static class Row {
+        private final List<String> texts = new ArrayList<>(2);
+        private final List<String> styles = new ArrayList<>(2);
+        
+        /**
+         * 追加一段文本
+         * @param style 样式名称
+         */
+        Row add(String text, String style) {
+            texts.add(text);
+            styles.add(style);
+            return this;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Row)) return false;
+            Row other = (Row) o;
+            return texts.equals(other.texts) && styles.equals(other.styles);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * texts.hashCode() + styles.hashCode();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.yourbot.log;
+
+import lombok.Data;
+
+/**
+ * 任务中一个出站动作的送达回执，由OneBot的动作响应得到
+ */
+@Data
+public class TaskDeliveryReceipt {
+    // OneBot动作名称，如 send_group_msg
+    private String action;
+    
+    // 目标ID（群号/QQ号）
+    private long targetId;
+    
+    // 成员ID，动作不针对成员时为0
+    private long memberId;
+    
+    // 是否收到成功响应
+    private boolean ok;
+    
+    // 响应的retcode，未收到响应时为-1
+    private int retcode = -1;
+    
+    // 发送消息的message_id（如果有）
+    private Long messageId;
+    
+    // 从发送到收到响应的耗时（毫秒）
+    private long latencyMs;
+    
+    // 失败原因（如果有）
+    private String error;
+}
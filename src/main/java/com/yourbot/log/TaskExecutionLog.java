@@ -19,7 +19,7 @@ public class TaskExecutionLog {
     // 任务类型
     private String taskType;
     
-    // 执行时间
+    // 执行时间：执行结束、写入日志时的时间，同一任务的日志按此时间有序，查询时据此归并多个任务
     private LocalDateTime executionTime;
     
     // 执行结果（成功/失败）
@@ -40,6 +40,12 @@ public class TaskExecutionLog {
     // 错误信息（如果有）
     private String errorMessage;
     
+    // 执行耗时（毫秒，包含等待动作响应的时间），0表示未记录
+    private long durationMs;
+    
+    // 各出站动作的送达回执
+    private List<TaskDeliveryReceipt> receipts = new ArrayList<>();
+    
     /**
      * 生成唯一ID
      */
@@ -47,6 +53,26 @@ public class TaskExecutionLog {
         return java.util.UUID.randomUUID().toString();
     }
     
+    /**
+     * 记录送达回执，有动作未成功送达时将本次执行标记为失败
+     */
+    public void applyReceipts(List<TaskDeliveryReceipt> deliveryReceipts) {
+        this.receipts.addAll(deliveryReceipts);
+        long failed = deliveryReceipts.stream().filter(r -> !r.isOk()).count();
+        if (failed > 0) {
+            this.success = false;
+            String message = failed + "/" + deliveryReceipts.size() + " 个动作未成功送达";
+            this.errorMessage = this.errorMessage == null ? message : this.errorMessage + "; " + message;
+        }
+    }
+    
+    /**
+     * 成功送达的动作数
+     */
+    public long countDelivered() {
+        return receipts.stream().filter(TaskDeliveryReceipt::isOk).count();
+    }
+    
     // 兼容旧版本的setter/getter
     public void setTargetId(long targetId) {
         this.targetIds.clear();
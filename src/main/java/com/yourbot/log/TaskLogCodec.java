@@ -0,0 +1,337 @@
+package com.yourbot.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 任务执行日志的二进制编码
+ * 格式：[版本][标志][ID][执行时间毫秒 varint][毫秒内纳秒 varint][任务名][任务类型][目标类型]
+ * [目标ID数量 varint][目标ID varint...][成员ID数量 varint][成员ID varint...][详情][错误信息][执行耗时 varint][送达回执]
+ * 任务名、任务类型和目标类型保存为字典编号；详情较长时可用deflate压缩
+ */
+class TaskLogCodec {
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_SUCCESS = 1;
+    private static final int FLAG_UUID_ID = 1 << 1;
+    private static final int FLAG_HAS_DETAILS = 1 << 2;
+    private static final int FLAG_DEFLATED_DETAILS = 1 << 3;
+    private static final int FLAG_HAS_ERROR = 1 << 4;
+    private static final int FLAG_HAS_DURATION = 1 << 5;
+    private static final int FLAG_HAS_RECEIPTS = 1 << 6;
+
+    // 送达回执的标志位
+    private static final int RECEIPT_OK = 1;
+    private static final int RECEIPT_HAS_MESSAGE_ID = 1 << 1;
+    private static final int RECEIPT_HAS_ERROR = 1 << 2;
+
+    // 详情达到该长度（字节）才尝试压缩
+    private static final int COMPRESS_THRESHOLD = 256;
+
+    private final boolean compress;
+
+    TaskLogCodec(boolean compress) {
+        this.compress = compress;
+    }
+
+    byte[] encode(TaskExecutionLog log, TaskLogDictionary dictionary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(VERSION);
+
+        UUID uuid = parseUuid(log.getId());
+        byte[] details = log.getDetails() != null ? log.getDetails().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] deflated = details != null && compress && details.length >= COMPRESS_THRESHOLD ? deflate(details) : null;
+
+        int flags = 0;
+        flags |= log.isSuccess() ? FLAG_SUCCESS : 0;
+        flags |= uuid != null ? FLAG_UUID_ID : 0;
+        flags |= details != null ? FLAG_HAS_DETAILS : 0;
+        flags |= deflated != null ? FLAG_DEFLATED_DETAILS : 0;
+        flags |= log.getErrorMessage() != null ? FLAG_HAS_ERROR : 0;
+        flags |= log.getDurationMs() > 0 ? FLAG_HAS_DURATION : 0;
+        flags |= log.getReceipts() != null && !log.getReceipts().isEmpty() ? FLAG_HAS_RECEIPTS : 0;
+        out.write(flags);
+
+        if (uuid != null) {
+            ByteBuffer id = ByteBuffer.allocate(16);
+            id.putLong(uuid.getMostSignificantBits());
+            id.putLong(uuid.getLeastSignificantBits());
+            out.write(id.array());
+        } else {
+            writeString(out, log.getId() != null ? log.getId() : "");
+        }
+
+        LocalDateTime time = log.getExecutionTime();
+        long seconds = time != null ? time.toEpochSecond(ZoneOffset.UTC) : 0;
+        int nanos = time != null ? time.getNano() : 0;
+        writeVarLong(out, zigZag(seconds * 1000 + nanos / 1_000_000));
+        writeVarLong(out, nanos % 1_000_000);
+
+        writeDictionaryRef(out, log.getTaskName(), dictionary);
+        writeDictionaryRef(out, log.getTaskType(), dictionary);
+        writeDictionaryRef(out, log.getTargetType(), dictionary);
+        writeIds(out, log.getTargetIds());
+        writeIds(out, log.getMemberIds());
+
+        if (deflated != null) {
+            writeVarLong(out, details.length);
+            writeVarLong(out, deflated.length);
+            out.write(deflated);
+        } else if (details != null) {
+            writeVarLong(out, details.length);
+            out.write(details);
+        }
+        if (log.getErrorMessage() != null) {
+            writeString(out, log.getErrorMessage());
+        }
+        if (log.getDurationMs() > 0) {
+            writeVarLong(out, log.getDurationMs());
+        }
+        if ((flags & FLAG_HAS_RECEIPTS) != 0) {
+            writeReceipts(out, log.getReceipts(), dictionary);
+        }
+        return out.toByteArray();
+    }
+
+    TaskExecutionLog decode(byte[] payload, TaskLogDictionary dictionary) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("不支持的任务日志编码版本: " + version);
+            }
+            int flags = in.get() & 0xFF;
+
+            TaskExecutionLog log = new TaskExecutionLog();
+            log.setSuccess((flags & FLAG_SUCCESS) != 0);
+            if ((flags & FLAG_UUID_ID) != 0) {
+                log.setId(new UUID(in.getLong(), in.getLong()).toString());
+            } else {
+                log.setId(readString(in));
+            }
+
+            long millis = unZigZag(readVarLong(in));
+            long subMillisNanos = readVarLong(in);
+            log.setExecutionTime(LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                    (int) (Math.floorMod(millis, 1000) * 1_000_000 + subMillisNanos), ZoneOffset.UTC));
+
+            log.setTaskName(readDictionaryRef(in, dictionary));
+            log.setTaskType(readDictionaryRef(in, dictionary));
+            log.setTargetType(readDictionaryRef(in, dictionary));
+            log.setTargetIds(readIds(in));
+            log.setMemberIds(readIds(in));
+
+            if ((flags & FLAG_DEFLATED_DETAILS) != 0) {
+                int rawLength = (int) readVarLong(in);
+                byte[] compressed = new byte[(int) readVarLong(in)];
+                in.get(compressed);
+                log.setDetails(new String(inflate(compressed, rawLength), StandardCharsets.UTF_8));
+            } else if ((flags & FLAG_HAS_DETAILS) != 0) {
+                log.setDetails(readString(in));
+            }
+            if ((flags & FLAG_HAS_ERROR) != 0) {
+                log.setErrorMessage(readString(in));
+            }
+            if ((flags & FLAG_HAS_DURATION) != 0) {
+                log.setDurationMs(readVarLong(in));
+            }
+            if ((flags & FLAG_HAS_RECEIPTS) != 0) {
+                log.setReceipts(readReceipts(in, dictionary));
+            }
+            return log;
+        } catch (RuntimeException e) {
+            throw new IOException("任务日志记录格式错误", e);
+        }
+    }
+
+    private static UUID parseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            // 只有能原样还原的ID才按UUID保存
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeDictionaryRef(ByteArrayOutputStream out, String value,
+                                           TaskLogDictionary dictionary) throws IOException {
+        // 0 表示 null，其余为字典编号加一
+        writeVarLong(out, value == null ? 0 : dictionary.idOf(value) + 1L);
+    }
+
+    private static String readDictionaryRef(ByteBuffer in, TaskLogDictionary dictionary) {
+        long ref = readVarLong(in);
+        return ref == 0 ? null : dictionary.valueOf((int) (ref - 1));
+    }
+
+    private static void writeIds(ByteArrayOutputStream out, List<Long> ids) {
+        if (ids == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        writeVarLong(out, ids.size());
+        for (Long id : ids) {
+            writeVarLong(out, zigZag(id));
+        }
+    }
+
+    private static List<Long> readIds(ByteBuffer in) {
+        int count = (int) readVarLong(in);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(unZigZag(readVarLong(in)));
+        }
+        return ids;
+    }
+
+    /**
+     * 每条回执：[动作名][目标ID][成员ID][标志][retcode][message_id][耗时][失败原因]
+     */
+    private static void writeReceipts(ByteArrayOutputStream out, List<TaskDeliveryReceipt> receipts,
+                                      TaskLogDictionary dictionary) throws IOException {
+        writeVarLong(out, receipts.size());
+        for (TaskDeliveryReceipt receipt : receipts) {
+            writeDictionaryRef(out, receipt.getAction(), dictionary);
+            writeVarLong(out, zigZag(receipt.getTargetId()));
+            writeVarLong(out, zigZag(receipt.getMemberId()));
+            int flags = 0;
+            flags |= receipt.isOk() ? RECEIPT_OK : 0;
+            flags |= receipt.getMessageId() != null ? RECEIPT_HAS_MESSAGE_ID : 0;
+            flags |= receipt.getError() != null ? RECEIPT_HAS_ERROR : 0;
+            out.write(flags);
+            writeVarLong(out, zigZag(receipt.getRetcode()));
+            if (receipt.getMessageId() != null) {
+                writeVarLong(out, zigZag(receipt.getMessageId()));
+            }
+            writeVarLong(out, receipt.getLatencyMs());
+            if (receipt.getError() != null) {
+                writeString(out, receipt.getError());
+            }
+        }
+    }
+
+    private static List<TaskDeliveryReceipt> readReceipts(ByteBuffer in, TaskLogDictionary dictionary) {
+        int count = (int) readVarLong(in);
+        List<TaskDeliveryReceipt> receipts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TaskDeliveryReceipt receipt = new TaskDeliveryReceipt();
+            receipt.setAction(readDictionaryRef(in, dictionary));
+            receipt.setTargetId(unZigZag(readVarLong(in)));
+            receipt.setMemberId(unZigZag(readVarLong(in)));
+            int flags = in.get() & 0xFF;
+            receipt.setOk((flags & RECEIPT_OK) != 0);
+            receipt.setRetcode((int) unZigZag(readVarLong(in)));
+            if ((flags & RECEIPT_HAS_MESSAGE_ID) != 0) {
+                receipt.setMessageId(unZigZag(readVarLong(in)));
+            }
+            receipt.setLatencyMs(readVarLong(in));
+            if ((flags & RECEIPT_HAS_ERROR) != 0) {
+                receipt.setError(readString(in));
+            }
+            receipts.add(receipt);
+        }
+        return receipts;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint过长");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 压缩后没有变小时返回null
+     */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished() || length >= data.length) {
+                return null;
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(buffer, 0, result, 0, length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(result, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("任务日志详情解压失败");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("任务日志详情解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.yourbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务日志字符串字典
+ * 任务名、任务类型、目标类型等重复出现的字符串在记录中只保存编号，
+ * 字典文件按编号顺序追加 [长度 int][UTF-8内容]，不随日志段清理
+ */
+class TaskLogDictionary {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLogDictionary.class);
+
+    static final String FILE_NAME = "dictionary.dat";
+
+    private final Path path;
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private TaskLogDictionary(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * 加载字典文件，截断末尾未写完整的条目
+     */
+    static TaskLogDictionary open(Path dir) throws IOException {
+        TaskLogDictionary dictionary = new TaskLogDictionary(dir.resolve(FILE_NAME));
+        try (FileChannel channel = FileChannel.open(dictionary.path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读取整个文件
+            }
+            buffer.flip();
+
+            long validEnd = 0;
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                validEnd = buffer.position();
+            }
+            if (validEnd < channel.size()) {
+                logger.warn("字典文件 {} 尾部不完整，已截断", dictionary.path);
+                channel.truncate(validEnd);
+            }
+        }
+        return dictionary;
+    }
+
+    static boolean exists(Path dir) {
+        return dir.resolve(FILE_NAME).toFile().exists();
+    }
+
+    private void add(String value) {
+        ids.put(value, values.size());
+        values.add(value);
+    }
+
+    /**
+     * 获取字符串的编号，不存在时追加到字典文件并刷盘
+     */
+    synchronized int idOf(String value) throws IOException {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+        entry.putInt(bytes.length);
+        entry.put(bytes);
+        entry.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+            // 记录引用编号之前字典必须已落盘
+            channel.force(false);
+        }
+        add(value);
+        return values.size() - 1;
+    }
+
+    synchronized String valueOf(int id) {
+        if (id < 0 || id >= values.size()) {
+            throw new IllegalArgumentException("字典中不存在编号 " + id);
+        }
+        return values.get(id);
+    }
+}
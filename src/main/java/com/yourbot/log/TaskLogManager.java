@@ -1,32 +1,82 @@
 package com.yourbot.log;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.yourbot.util.ConsoleUtil;
+import com.yourbot.config.ConfigManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 任务日志管理器
+ * 每个任务的执行日志追加写入 logs/tasks/<任务名>/ 下的滚动段文件
  */
 public class TaskLogManager {
     private static final Logger logger = LoggerFactory.getLogger(TaskLogManager.class);
     private static TaskLogManager instance;
     
     private final String LOG_DIR = "logs/tasks";
-    private final int MAX_LOGS_PER_TASK = 100; // 每个任务最多保留的日志数量
+    // 转换旧格式日志时使用的临时目录后缀
+    private static final String CONVERTING_SUFFIX = ".converting";
+    // 关闭时等待动作响应的最长时间（毫秒），略长于OneBot动作的响应超时
+    private static final long DELIVERY_WAIT_MS = 15000;
+    // 汇总保存间隔（秒）
+    private static final int ROLLUP_SAVE_INTERVAL_SECONDS = 60;
+    // 所有任务的汇总
+    public static final String ROLLUP_ALL = TaskLogRollup.ALL;
     private final ObjectMapper mapper;
+    private final ObjectWriter jsonLineWriter;
+    private final TaskLogCodec codec;
+    private final int maxDays;
+    private final int maxSizeMb;
+    private final TaskLogWriter writer;
+    private final TaskLogRollup rollup;
+    private final ScheduledExecutorService rollupSaver;
+    
+    // 各任务的日志，键为清理后的任务名
+    private final Map<String, TaskLogStore> stores = new ConcurrentHashMap<>();
+    
+    // 已知的任务日志目录，日志在第一次读写时才打开
+    private final Set<String> taskDirNames = ConcurrentHashMap.newKeySet();
+    
+    // 等待动作响应后才写入的日志
+    private final Set<CompletableFuture<Void>> pendingLogs = ConcurrentHashMap.newKeySet();
     
     private TaskLogManager() {
         // 创建日志目录
@@ -39,9 +89,50 @@ public class TaskLogManager {
         // 配置ObjectMapper以支持Java 8日期时间
         mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
+        jsonLineWriter = mapper.writer().without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        
+        ConfigManager.BotConfig botConfig = ConfigManager.getInstance().getBotConfig();
+        ConfigManager.LogConfig logConfig = botConfig != null ? botConfig.getLog() : new ConfigManager.LogConfig();
+        maxDays = logConfig.getMaxDays();
+        maxSizeMb = logConfig.getTaskLogMaxSizeMb();
+        codec = new TaskLogCodec(logConfig.isCompressTaskLogDetails());
+        
+        // 只记录已有任务的目录名，不读取日志内容
+        File[] taskDirs = logDir.listFiles(File::isDirectory);
+        if (taskDirs != null) {
+            for (File taskDir : taskDirs) {
+                if (taskDir.getName().endsWith(CONVERTING_SUFFIX)) {
+                    // 上次转换未完成，原目录仍然完整
+                    try {
+                        deleteDirectory(taskDir.toPath());
+                    } catch (IOException e) {
+                        logger.warn("删除未完成的日志转换目录失败: {}", taskDir.getAbsolutePath(), e);
+                    }
+                    continue;
+                }
+                taskDirNames.add(taskDir.getName());
+            }
+        }
+        
+        rollup = TaskLogRollup.load(Paths.get(LOG_DIR, TaskLogRollup.FILE_NAME), maxDays);
+        rollupSaver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TaskLogRollupSaver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rollupSaver.scheduleWithFixedDelay(this::saveRollup,
+                ROLLUP_SAVE_INTERVAL_SECONDS, ROLLUP_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        writer = new TaskLogWriter(this, TaskLogWriter.Durability.parse(logConfig.getTaskLogDurability()),
+                logConfig.getTaskLogFsyncIntervalMs(), logConfig.getTaskLogQueueCapacity());
+        
+        // 后台打开已有任务的日志，补统计上次保存汇总之后写入的记录
+        Thread warmUp = new Thread(this::openAllStores, "TaskLogWarmUp");
+        warmUp.setDaemon(true);
+        warmUp.start();
     }
     
-    public static TaskLogManager getInstance() {
+    public static synchronized TaskLogManager getInstance() {
         if (instance == null) {
             instance = new TaskLogManager();
         }
@@ -49,118 +140,470 @@ public class TaskLogManager {
     }
     
     /**
-     * 记录任务执行日志
+     * 获取任务的日志，不存在时创建
      */
-    public void logTaskExecution(TaskExecutionLog log) {
-        try {
-            // 确保任务目录存在
-            String taskDir = LOG_DIR + "/" + sanitizeFileName(log.getTaskName());
-            File dir = new File(taskDir);
-            if (!dir.exists()) {
-                dir.mkdirs();
+    private TaskLogStore getStore(String dirName) {
+        taskDirNames.add(dirName);
+        return stores.computeIfAbsent(dirName, name -> {
+            try {
+                Path dir = Paths.get(LOG_DIR, name);
+                if (!TaskLogDictionary.exists(dir) && TaskLogStore.hasSegments(dir)) {
+                    convertJsonStore(dir);
+                }
+                TaskLogStore store = TaskLogStore.open(dir, maxDays, maxSizeMb, this::describeRecord);
+                catchUpRollup(name, store);
+                importLegacyLogs(dir, store);
+                return store;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    private void openAllStores() {
+        for (String dirName : new ArrayList<>(taskDirNames)) {
+            try {
+                getStore(dirName);
+            } catch (UncheckedIOException e) {
+                logger.error("打开任务日志失败: {}", dirName, e);
             }
-            
-            // 生成日志文件名
-            String fileName = log.getId() + ".json";
-            String filePath = taskDir + "/" + fileName;
-            
-            // 写入日志文件
-            mapper.writeValue(new File(filePath), log);
-            
-            // 清理旧日志
-            cleanupOldLogs(taskDir);
-            
-            logger.debug("已记录任务执行日志: {}", filePath);
-        } catch (IOException e) {
-            logger.error("记录任务执行日志失败", e);
         }
     }
     
     /**
-     * 获取指定任务的所有日志
+     * 统计汇总位置之后写入的记录，日志第一次打开时调用，此时还没有其他线程写入
      */
-    public List<TaskExecutionLog> getTaskLogs(String taskName) {
-        String taskDir = LOG_DIR + "/" + sanitizeFileName(taskName);
-        File dir = new File(taskDir);
-        if (!dir.exists()) {
-            return Collections.emptyList();
+    private void catchUpRollup(String dirName, TaskLogStore store) throws IOException {
+        long[] watermark = rollup.watermark(dirName);
+        long[] count = {0};
+        TaskLogStore.RecordConsumer consumer = record -> {
+            try {
+                rollup.record(dirName, record.segmentId, record.end, decodeLog(store, record));
+                count[0]++;
+            } catch (IOException e) {
+                logger.error("解析任务日志记录失败", e);
+            }
+        };
+        if (watermark != null) {
+            store.replayAfter(watermark[0], watermark[1], consumer);
+        } else {
+            store.replay(consumer);
         }
-        
-        List<TaskExecutionLog> logs = new ArrayList<>();
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
-        if (files == null) {
-            return Collections.emptyList();
+        if (count[0] > 0) {
+            logger.info("已补充统计 {} 条任务执行记录: {}", count[0], dirName);
+        }
+    }
+    
+    /**
+     * 将旧版本每次执行一个JSON文件的日志导入段文件
+     */
+    private void importLegacyLogs(Path dir, TaskLogStore store) throws IOException {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null || files.length == 0) {
+            return;
         }
         
+        List<TaskExecutionLog> legacyLogs = new ArrayList<>();
         for (File file : files) {
             try {
-                TaskExecutionLog log = mapper.readValue(file, TaskExecutionLog.class);
-                logs.add(log);
+                legacyLogs.add(mapper.readValue(file, TaskExecutionLog.class));
             } catch (IOException e) {
                 logger.error("读取任务日志失败: {}", file.getName(), e);
             }
         }
+        legacyLogs.sort(Comparator.comparing(TaskExecutionLog::getExecutionTime));
+        for (TaskExecutionLog log : legacyLogs) {
+            appendLog(store, log);
+        }
+        store.sync();
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warn("无法删除已导入的旧日志文件: {}", file.getAbsolutePath());
+            }
+        }
+        logger.info("已导入 {} 条旧版任务日志: {}", legacyLogs.size(), dir);
+    }
+    
+    /**
+     * 将JSON格式记录的日志段整体转换为二进制编码
+     * 先写入临时目录，完成后替换原目录，转换中断时原日志不受影响
+     */
+    private void convertJsonStore(Path dir) throws IOException {
+        Path converting = dir.resolveSibling(dir.getFileName() + CONVERTING_SUFFIX);
+        deleteDirectory(converting);
         
-        // 按执行时间降序排序
-        logs.sort((a, b) -> b.getExecutionTime().compareTo(a.getExecutionTime()));
-        return logs;
+        TaskLogStore source = TaskLogStore.open(dir, 0, 0, this::describeRecord);
+        TaskLogStore target = TaskLogStore.open(converting, 0, 0, this::describeRecord);
+        long[] count = {0};
+        try {
+            source.replay(record -> {
+                writeRecord(target, decodeLog(source, record));
+                count[0]++;
+            });
+            target.sync();
+        } finally {
+            source.close();
+            target.close();
+        }
+        
+        deleteDirectory(dir);
+        Files.move(converting, dir);
+        logger.info("已将 {} 条JSON格式任务日志转换为二进制格式: {}", count[0], dir);
+    }
+    
+    private static void deleteDirectory(Path dir) throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(dir);
+    }
+    
+    TaskLogStore storeFor(TaskExecutionLog log) {
+        return getStore(sanitizeFileName(log.getTaskName()));
+    }
+    
+    /**
+     * 写入一条执行记录并计入汇总
+     * 写入和统计在同一把锁内完成，保证汇总位置按写入顺序推进
+     */
+    void appendLog(TaskLogStore store, TaskExecutionLog log) throws IOException {
+        synchronized (store) {
+            TaskLogStore.Record record = writeRecord(store, log);
+            rollup.record(store.getDir().getFileName().toString(), record.segmentId, record.end, log);
+        }
+    }
+    
+    private TaskLogStore.Record writeRecord(TaskLogStore store, TaskExecutionLog log) throws IOException {
+        byte[] payload = codec.encode(log, store.getDictionary());
+        return store.append(TaskLogSegment.TYPE_EXECUTION_BINARY, payload, recordMeta(store.getDictionary(), log));
+    }
+    
+    private static TaskLogSegment.RecordMeta recordMeta(TaskLogDictionary dictionary, TaskExecutionLog log) throws IOException {
+        long timestamp = log.getExecutionTime() != null ?
+                toEpochMillis(log.getExecutionTime()) : System.currentTimeMillis();
+        int taskId = log.getTaskName() != null ? dictionary.idOf(log.getTaskName()) : -1;
+        return new TaskLogSegment.RecordMeta(timestamp, taskId,
+                log.isSuccess() ? TaskLogSegment.STATUS_SUCCESS : TaskLogSegment.STATUS_FAILURE);
+    }
+    
+    /**
+     * 为缺少索引的旧记录生成索引信息
+     */
+    private TaskLogSegment.RecordMeta describeRecord(TaskLogDictionary dictionary, byte type, byte[] payload) throws IOException {
+        TaskExecutionLog log = type == TaskLogSegment.TYPE_EXECUTION
+                ? mapper.readValue(payload, TaskExecutionLog.class)
+                : codec.decode(payload, dictionary);
+        return recordMeta(dictionary, log);
+    }
+    
+    /**
+     * 解码一条执行记录，兼容旧版JSON格式
+     */
+    TaskExecutionLog decodeLog(TaskLogStore store, TaskLogStore.Record record) throws IOException {
+        if (record.type == TaskLogSegment.TYPE_EXECUTION) {
+            return mapper.readValue(record.payload, TaskExecutionLog.class);
+        }
+        return codec.decode(record.payload, store.getDictionary());
+    }
+    
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * 记录任务执行日志
+     * 日志进入写入队列后立即返回，由后台线程写入磁盘
+     */
+    public void logTaskExecution(TaskExecutionLog log) {
+        writer.submit(log);
+        logger.debug("已提交任务执行日志: {} ({})", log.getTaskName(), log.getId());
+    }
+    
+    /**
+     * 在指定操作完成后记录任务执行日志，用于等待送达回执后再写入
+     * @param completion 完成后写入日志，异常完成时仍然写入
+     */
+    public void logTaskExecutionWhenDone(TaskExecutionLog log, CompletableFuture<?> completion) {
+        CompletableFuture<Void> logged = completion.handle((result, error) -> {
+            if (error != null) {
+                logger.warn("等待任务 {} 的动作响应失败", log.getTaskName(), error);
+            }
+            logTaskExecution(log);
+            return null;
+        });
+        pendingLogs.add(logged);
+        logged.whenComplete((result, error) -> pendingLogs.remove(logged));
+    }
+    
+    /**
+     * 获取日志写入线程的运行指标
+     */
+    public TaskLogWriterStats getWriterStats() {
+        return writer.getStats();
+    }
+    
+    /**
+     * 获取最近若干个时间桶的执行统计，直接读取内存中的汇总
+     * @param series 统计对象，见 ROLLUP_ALL、rollupSeriesOfTask 和 rollupSeriesOfTarget
+     * @param resolution 时间粒度
+     * @param count 桶数，超过该粒度保留的桶数时按保留的桶数返回
+     * @return 按时间升序排列，最后一个为当前时间所在的桶
+     */
+    public List<TaskLogRollupBucket> getRollups(String series, RollupResolution resolution, int count) {
+        return rollup.buckets(series, resolution, count, LocalDateTime.now());
+    }
+    
+    /**
+     * 将最近若干个时间桶合计为一个
+     */
+    public TaskLogRollupBucket getRollupSummary(String series, RollupResolution resolution, int count) {
+        List<TaskLogRollupBucket> buckets = getRollups(series, resolution, count);
+        TaskLogRollupBucket summary = new TaskLogRollupBucket();
+        summary.setStart(buckets.get(0).getStart());
+        buckets.forEach(summary::add);
+        return summary;
+    }
+    
+    public static String rollupSeriesOfTask(String taskName) {
+        return TaskLogRollup.taskSeries(taskName);
+    }
+    
+    /**
+     * @param targetType GROUP或PRIVATE
+     */
+    public static String rollupSeriesOfTarget(String targetType, long targetId) {
+        return TaskLogRollup.targetSeries(targetType, targetId);
+    }
+    
+    private void saveRollup() {
+        try {
+            rollup.save();
+        } catch (IOException e) {
+            logger.warn("保存任务日志汇总失败", e);
+        }
+    }
+    
+    /**
+     * 获取指定任务的所有日志
+     */
+    public List<TaskExecutionLog> getTaskLogs(String taskName) {
+        TaskLogQuery query = new TaskLogQuery();
+        query.setTaskName(taskName);
+        query.setLimit(0);
+        return queryLogs(query).getLogs();
     }
     
     /**
      * 获取最近的任务日志
      */
     public List<TaskExecutionLog> getRecentLogs(int limit) {
-        List<TaskExecutionLog> allLogs = new ArrayList<>();
-        File rootDir = new File(LOG_DIR);
-        File[] taskDirs = rootDir.listFiles(File::isDirectory);
-        if (taskDirs == null) {
-            return Collections.emptyList();
+        TaskLogQuery query = new TaskLogQuery();
+        query.setLimit(limit);
+        return queryLogs(query).getLogs();
+    }
+    
+    /**
+     * 分页查询任务日志
+     * 每个任务从新到旧读取，多个任务按执行时间多路归并，
+     * 只读取填满一页所需的记录；时间和成功/失败条件在映射的索引上判断，不读取被过滤的记录
+     * @throws IllegalArgumentException 游标无效时抛出
+     */
+    public TaskLogPage queryLogs(TaskLogQuery query) {
+        LogMerger merger = new LogMerger(query);
+        TaskLogPage page = new TaskLogPage();
+        while (merger.hasNext()) {
+            if (query.getLimit() > 0 && page.getLogs().size() >= query.getLimit()) {
+                page.setNextCursor(merger.cursor());
+                break;
+            }
+            page.getLogs().add(merger.next());
         }
+        return page;
+    }
+    
+    /**
+     * 按执行时间降序逐条读取满足条件的日志，内存中只保留每个任务的当前记录
+     */
+    private class LogMerger {
+        private final PriorityQueue<MergeHead> heads = new PriorityQueue<>(
+                (a, b) -> b.log.getExecutionTime().compareTo(a.log.getExecutionTime()));
+        private final TaskLogQuery query;
         
-        for (File taskDir : taskDirs) {
-            File[] logFiles = taskDir.listFiles((d, name) -> name.endsWith(".json"));
-            if (logFiles == null) continue;
+        LogMerger(TaskLogQuery query) {
+            this.query = query;
+            TaskLogStore.IndexFilter filter = new TaskLogStore.IndexFilter(
+                    query.getFrom() != null ? toEpochMillis(query.getFrom()) : Long.MIN_VALUE,
+                    query.getTo() != null ? toEpochMillis(query.getTo()) : Long.MAX_VALUE,
+                    query.getSuccess() == null ? TaskLogSegment.STATUS_NONE
+                            : query.getSuccess() ? TaskLogSegment.STATUS_SUCCESS : TaskLogSegment.STATUS_FAILURE);
             
-            for (File logFile : logFiles) {
+            // 确定参与查询的任务及各自的读取位置
+            Map<String, long[]> positions = new LinkedHashMap<>();
+            if (query.getCursor() != null && !query.getCursor().isEmpty()) {
+                positions.putAll(decodeCursor(query.getCursor()));
+            } else {
+                for (String dirName : taskDirNames) {
+                    positions.put(dirName, new long[]{Long.MAX_VALUE, Long.MAX_VALUE});
+                }
+            }
+            if (query.getTaskName() != null) {
+                positions.keySet().retainAll(Collections.singleton(sanitizeFileName(query.getTaskName())));
+            }
+            
+            positions.forEach((dirName, position) -> {
+                if (!taskDirNames.contains(dirName)) {
+                    return;
+                }
+                TaskLogStore store;
                 try {
-                    TaskExecutionLog log = mapper.readValue(logFile, TaskExecutionLog.class);
-                    allLogs.add(log);
-                } catch (IOException e) {
-                    logger.error("读取任务日志失败: {}", logFile.getName(), e);
+                    store = getStore(dirName);
+                } catch (UncheckedIOException e) {
+                    logger.error("打开任务日志失败: {}", dirName, e);
+                    return;
+                }
+                MergeHead head = new MergeHead(dirName, store, store.reader(position[0], position[1], filter));
+                if (head.advance(query)) {
+                    heads.add(head);
                 }
+            });
+        }
+        
+        boolean hasNext() {
+            return !heads.isEmpty();
+        }
+        
+        TaskExecutionLog next() {
+            MergeHead head = heads.poll();
+            TaskExecutionLog log = head.log;
+            if (head.advance(query)) {
+                heads.add(head);
             }
+            return log;
         }
         
-        // 按执行时间降序排序并限制数量
-        return allLogs.stream()
-                .sorted((a, b) -> b.getExecutionTime().compareTo(a.getExecutionTime()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        String cursor() {
+            return heads.isEmpty() ? null : encodeCursor(heads);
+        }
+    }
+    
+    private static boolean matches(TaskLogQuery query, TaskExecutionLog log) {
+        if (log.getExecutionTime() == null) {
+            return false;
+        }
+        if (query.getFrom() != null && log.getExecutionTime().isBefore(query.getFrom())) {
+            return false;
+        }
+        if (query.getTo() != null && log.getExecutionTime().isAfter(query.getTo())) {
+            return false;
+        }
+        if (query.getSuccess() != null && log.isSuccess() != query.getSuccess()) {
+            return false;
+        }
+        if (query.getTargetType() != null && !query.getTargetType().equalsIgnoreCase(log.getTargetType())) {
+            return false;
+        }
+        if (query.getTargetId() != null) {
+            return log.getTargetIds().contains(query.getTargetId())
+                    || log.getMemberIds().contains(query.getTargetId());
+        }
+        return true;
     }
     
     /**
-     * 清理旧日志文件
+     * 游标记录每个任务下一条未返回记录的结束位置：任务名\t段序号\t位置，每行一个任务
      */
-    private void cleanupOldLogs(String taskDir) {
-        File dir = new File(taskDir);
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
-        if (files == null || files.length <= MAX_LOGS_PER_TASK) {
-            return;
+    private static String encodeCursor(Collection<MergeHead> heads) {
+        StringBuilder sb = new StringBuilder();
+        for (MergeHead head : heads) {
+            sb.append(head.dirName).append('\t')
+              .append(head.record.segmentId).append('\t')
+              .append(head.record.end).append('\n');
         }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Map<String, long[]> decodeCursor(String cursor) {
+        Map<String, long[]> positions = new LinkedHashMap<>();
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            for (String line : text.split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                positions.put(fields[0], new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        return positions;
+    }
+    
+    /**
+     * 多路归并中某个任务的当前记录
+     */
+    private class MergeHead {
+        final String dirName;
+        final TaskLogStore store;
+        final TaskLogStore.Reader reader;
+        TaskLogStore.Record record;
+        TaskExecutionLog log;
         
-        // 按最后修改时间排序
-        List<File> fileList = new ArrayList<>();
-        Collections.addAll(fileList, files);
-        fileList.sort((a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        MergeHead(String dirName, TaskLogStore store, TaskLogStore.Reader reader) {
+            this.dirName = dirName;
+            this.store = store;
+            this.reader = reader;
+        }
         
-        // 删除多余的旧日志
-        for (int i = MAX_LOGS_PER_TASK; i < fileList.size(); i++) {
-            if (!fileList.get(i).delete()) {
-                logger.warn("无法删除旧日志文件: {}", fileList.get(i).getAbsolutePath());
+        /**
+         * 前进到下一条满足条件的记录
+         * @return 是否还有记录
+         */
+        boolean advance(TaskLogQuery query) {
+            try {
+                while ((record = reader.next()) != null) {
+                    try {
+                        log = decodeLog(store, record);
+                    } catch (IOException e) {
+                        logger.error("解析任务日志记录失败", e);
+                        continue;
+                    }
+                    if (matches(query, log)) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("读取任务日志失败: {}", dirName, e);
             }
+            return false;
         }
     }
     
+    /**
+     * 写完队列中的日志后关闭所有任务日志
+     */
+    public void close() {
+        if (!pendingLogs.isEmpty()) {
+            logger.info("等待 {} 条任务日志的动作响应", pendingLogs.size());
+            try {
+                CompletableFuture.allOf(pendingLogs.toArray(new CompletableFuture[0]))
+                        .get(DELIVERY_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("仍有 {} 条任务日志未等到动作响应，将不会写入", pendingLogs.size());
+            }
+        }
+        writer.close();
+        rollupSaver.shutdown();
+        saveRollup();
+        stores.values().forEach(TaskLogStore::close);
+    }
+    
     /**
      * 清理文件名，确保安全
      */
@@ -172,48 +615,171 @@ public class TaskLogManager {
      * 导出任务日志到文本文件
      */
     public String exportTaskLogs(String taskName, int limit) {
-        List<TaskExecutionLog> logs = getTaskLogs(taskName);
-        if (logs.isEmpty()) {
+        TaskLogQuery query = new TaskLogQuery();
+        query.setTaskName(taskName);
+        query.setLimit(limit);
+        return exportLogs(query, ExportFormat.TXT, false);
+    }
+    
+    /**
+     * 按条件流式导出任务日志，记录逐条从日志读取并写入文件，内存占用与日志总量无关
+     * @param query 查询条件，任务名为空时导出所有任务，limit大于0时限制导出条数
+     * @param format 导出格式
+     * @param gzip 是否使用gzip压缩
+     * @return 导出文件路径，没有符合条件的日志或导出失败时返回null
+     */
+    public String exportLogs(TaskLogQuery query, ExportFormat format, boolean gzip) {
+        LogMerger merger = new LogMerger(query);
+        if (!merger.hasNext()) {
             return null;
         }
         
-        if (limit > 0 && logs.size() > limit) {
-            logs = logs.subList(0, limit);
+        String exportDir = "exports";
+        File dir = new File(exportDir);
+        if (!dir.exists()) {
+            dir.mkdirs();
         }
         
+        String name = query.getTaskName() != null ? sanitizeFileName(query.getTaskName()) : "all";
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String fileName = exportDir + "/" + name + "_" + timestamp + format.getExtension() + (gzip ? ".gz" : "");
+        
+        OutputStream out = null;
         try {
-            String exportDir = "exports";
-            File dir = new File(exportDir);
-            if (!dir.exists()) {
-                dir.mkdirs();
+            out = new FileOutputStream(fileName);
+            if (gzip) {
+                out = new GZIPOutputStream(out, 64 * 1024);
             }
-            
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String fileName = exportDir + "/" + sanitizeFileName(taskName) + "_" + timestamp + ".txt";
-            
-            StringBuilder content = new StringBuilder();
-            content.append("任务执行日志: ").append(taskName).append("\n");
-            content.append("导出时间: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n");
-            content.append("=".repeat(50)).append("\n\n");
-            
-            for (TaskExecutionLog log : logs) {
-                content.append("ID: ").append(log.getId()).append("\n");
-                content.append("执行时间: ").append(log.getExecutionTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n");
-                content.append("任务类型: ").append(log.getTaskType()).append("\n");
-                content.append("目标: ").append(log.getTargetType()).append(" ").append(log.getTargetId()).append("\n");
-                content.append("结果: ").append(log.isSuccess() ? "成功" : "失败").append("\n");
-                content.append("详情: ").append(log.getDetails()).append("\n");
-                if (!log.isSuccess() && log.getErrorMessage() != null) {
-                    content.append("错误: ").append(log.getErrorMessage()).append("\n");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+                out = null;
+                writeExportHeader(writer, format, query.getTaskName());
+                int count = 0;
+                while (merger.hasNext() && (query.getLimit() <= 0 || count < query.getLimit())) {
+                    writeExportRecord(writer, format, merger.next());
+                    count++;
                 }
-                content.append("-".repeat(50)).append("\n\n");
+                logger.info("已导出 {} 条任务日志到 {}", count, fileName);
             }
-            
-            Files.write(Paths.get(fileName), content.toString().getBytes());
             return fileName;
         } catch (IOException e) {
             logger.error("导出任务日志失败", e);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // 已经在处理导出失败
+                }
+            }
             return null;
         }
     }
-} 
\ No newline at end of file
+    
+    private void writeExportHeader(Writer writer, ExportFormat format, String taskName) throws IOException {
+        switch (format) {
+            case TXT:
+                writer.write("任务执行日志: " + (taskName != null ? taskName : "全部任务") + "\n");
+                writer.write("导出时间: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n");
+                writer.write("=".repeat(50) + "\n\n");
+                break;
+            case CSV:
+                // 带BOM以便Excel识别UTF-8
+                writer.write('\uFEFF');
+                writer.write("id,taskName,taskType,executionTime,success,targetType,targetIds,memberIds,details,errorMessage,delivered,durationMs\n");
+                break;
+            case JSONL:
+                break;
+        }
+    }
+    
+    private void writeExportRecord(Writer writer, ExportFormat format, TaskExecutionLog log) throws IOException {
+        switch (format) {
+            case TXT:
+                writer.write("ID: " + log.getId() + "\n");
+                writer.write("执行时间: " + log.getExecutionTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n");
+                writer.write("任务类型: " + log.getTaskType() + "\n");
+                writer.write("目标: " + log.getTargetType() + " " + log.getTargetId() + "\n");
+                writer.write("结果: " + (log.isSuccess() ? "成功" : "失败") + "\n");
+                writer.write("详情: " + log.getDetails() + "\n");
+                if (!log.getReceipts().isEmpty()) {
+                    writer.write("送达: " + log.countDelivered() + "/" + log.getReceipts().size() + "\n");
+                }
+                if (!log.isSuccess() && log.getErrorMessage() != null) {
+                    writer.write("错误: " + log.getErrorMessage() + "\n");
+                }
+                writer.write("-".repeat(50) + "\n\n");
+                break;
+            case CSV:
+                writer.write(String.join(",",
+                        csvField(log.getId()),
+                        csvField(log.getTaskName()),
+                        csvField(log.getTaskType()),
+                        csvField(log.getExecutionTime().toString()),
+                        String.valueOf(log.isSuccess()),
+                        csvField(log.getTargetType()),
+                        csvField(joinIds(log.getTargetIds())),
+                        csvField(joinIds(log.getMemberIds())),
+                        csvField(log.getDetails()),
+                        csvField(log.getErrorMessage()),
+                        log.getReceipts().isEmpty() ? "" : log.countDelivered() + "/" + log.getReceipts().size(),
+                        String.valueOf(log.getDurationMs())));
+                writer.write("\n");
+                break;
+            case JSONL:
+                writer.write(jsonLineWriter.writeValueAsString(log));
+                writer.write("\n");
+                break;
+        }
+    }
+    
+    private static String joinIds(List<Long> ids) {
+        return ids == null ? "" : ids.stream().map(String::valueOf).collect(Collectors.joining(";"));
+    }
+    
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+    
+    /**
+     * 汇总的时间粒度
+     */
+    public enum RollupResolution {
+        MINUTE(60),      // 保留24小时
+        HOUR(3600),      // 保留日志保留天数
+        DAY(86400);      // 保留日志保留天数
+        
+        private final int bucketSeconds;
+        
+        RollupResolution(int bucketSeconds) {
+            this.bucketSeconds = bucketSeconds;
+        }
+        
+        public int getBucketSeconds() {
+            return bucketSeconds;
+        }
+    }
+    
+    /**
+     * 日志导出格式
+     */
+    public enum ExportFormat {
+        TXT(".txt"),    // 与控制台显示一致的文本格式
+        CSV(".csv"),    // 逗号分隔，可用表格软件打开
+        JSONL(".jsonl"); // 每行一条JSON记录
+        
+        private final String extension;
+        
+        ExportFormat(String extension) {
+            this.extension = extension;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.yourbot.log;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 任务日志查询结果的一页
+ */
+@Data
+public class TaskLogPage {
+    // 本页日志，按执行时间降序
+    private List<TaskExecutionLog> logs = new ArrayList<>();
+    
+    // 下一页的游标，没有更多记录时为null
+    private String nextCursor;
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.yourbot.log;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 任务日志查询条件
+ * 未设置的条件不参与过滤
+ */
+@Data
+public class TaskLogQuery {
+    // 任务名称
+    private String taskName;
+    
+    // 执行时间范围（含两端）
+    private LocalDateTime from;
+    private LocalDateTime to;
+    
+    // 只查询成功或失败的记录
+    private Boolean success;
+    
+    // 目标类型（GROUP/PRIVATE）
+    private String targetType;
+    
+    // 目标ID，匹配目标列表或成员列表
+    private Long targetId;
+    
+    // 每页数量，小于等于0表示不限制
+    private int limit = 20;
+    
+    // 上一页返回的游标，为空时从最新的记录开始
+    private String cursor;
+}
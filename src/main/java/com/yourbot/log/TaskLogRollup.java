@@ -0,0 +1,402 @@
+package com.yourbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务执行结果的时间序列汇总
+ * 按分钟、小时、天三种粒度分别统计全部任务、单个任务和单个目标的执行情况。
+ * 每种粒度是一个固定大小的环形数组，槽位由时间桶编号取模得到，
+ * 新的时间桶覆盖同一槽位上的旧桶，因此内存占用有上限，过期数据自然淘汰，查询时间与日志量无关。
+ * 环形数组按页分配，执行次数少的统计对象只占用写入过的几页。
+ * 汇总定期保存到文件，并记录每个任务日志已统计到的位置，重启后只需补统计之后写入的记录
+ */
+class TaskLogRollup {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLogRollup.class);
+
+    static final String FILE_NAME = "rollups.dat";
+    private static final int MAGIC = 0x544C5255;
+    private static final int VERSION = 1;
+
+    // 分钟粒度保留24小时
+    private static final int MINUTE_SLOTS = 24 * 60;
+    // 未配置日志保留天数时小时和天粒度保留的天数
+    private static final int DEFAULT_DAYS = 30;
+
+    // 所有任务的汇总
+    static final String ALL = "*";
+
+    private final Path file;
+    private final int[] slots;
+    private final Map<String, Series> series = new HashMap<>();
+    // 各任务日志目录已统计到的位置：段序号和记录结束位置
+    private final Map<String, long[]> watermarks = new HashMap<>();
+    private boolean dirty;
+
+    private TaskLogRollup(Path file, int maxDays) {
+        this.file = file;
+        int days = maxDays > 0 ? maxDays : DEFAULT_DAYS;
+        slots = new int[TaskLogManager.RollupResolution.values().length];
+        slots[TaskLogManager.RollupResolution.MINUTE.ordinal()] = MINUTE_SLOTS;
+        slots[TaskLogManager.RollupResolution.HOUR.ordinal()] = days * 24;
+        slots[TaskLogManager.RollupResolution.DAY.ordinal()] = days;
+    }
+
+    /**
+     * 加载保存的汇总，文件不存在或损坏时从空汇总开始，之后由日志重新统计
+     * @param maxDays 日志保留天数，决定小时和天粒度保留的桶数
+     */
+    static TaskLogRollup load(Path file, int maxDays) {
+        TaskLogRollup rollup = new TaskLogRollup(file, maxDays);
+        if (!Files.exists(file)) {
+            return rollup;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            rollup.read(in);
+        } catch (IOException e) {
+            logger.warn("读取任务日志汇总失败，将根据日志重新统计: {}", file, e);
+            rollup.series.clear();
+            rollup.watermarks.clear();
+        }
+        return rollup;
+    }
+
+    static String taskSeries(String taskName) {
+        return "task:" + taskName;
+    }
+
+    static String targetSeries(String targetType, long targetId) {
+        return targetType.toLowerCase() + ":" + targetId;
+    }
+
+    /**
+     * 任务日志目录已统计到的位置
+     * @return 段序号和记录结束位置，从未统计过时返回null
+     */
+    synchronized long[] watermark(String dirName) {
+        long[] position = watermarks.get(dirName);
+        return position != null ? position.clone() : null;
+    }
+
+    /**
+     * 统计一条执行记录，并将任务日志目录的统计位置推进到该记录之后
+     */
+    synchronized void record(String dirName, long segmentId, long end, TaskExecutionLog log) {
+        if (log.getExecutionTime() != null) {
+            long localMillis = localMillis(log.getExecutionTime());
+            int targets = log.getTargetIds() != null ? log.getTargetIds().size() : 0;
+            List<String> keys = new ArrayList<>();
+            keys.add(ALL);
+            if (log.getTaskName() != null) {
+                keys.add(taskSeries(log.getTaskName()));
+            }
+            if (log.getTargetType() != null && log.getTargetIds() != null) {
+                for (long targetId : log.getTargetIds()) {
+                    keys.add(targetSeries(log.getTargetType(), targetId));
+                }
+            }
+            for (String key : keys) {
+                Series s = series.computeIfAbsent(key, k -> new Series());
+                for (TaskLogManager.RollupResolution resolution : TaskLogManager.RollupResolution.values()) {
+                    s.ring(resolution).add(Math.floorDiv(localMillis, resolution.getBucketSeconds() * 1000L),
+                            log.isSuccess(), targets, log.getDurationMs());
+                }
+            }
+        }
+        watermarks.put(dirName, new long[]{segmentId, end});
+        dirty = true;
+    }
+
+    /**
+     * 获取截止到指定时间的最近若干个时间桶，不存在的桶统计为0
+     * @return 按时间升序排列
+     */
+    synchronized List<TaskLogRollupBucket> buckets(String key, TaskLogManager.RollupResolution resolution,
+                                                   int count, LocalDateTime now) {
+        count = Math.max(1, Math.min(count, slots[resolution.ordinal()]));
+        long bucketMillis = resolution.getBucketSeconds() * 1000L;
+        long last = Math.floorDiv(localMillis(now), bucketMillis);
+        Series s = series.get(key);
+        List<TaskLogRollupBucket> result = new ArrayList<>(count);
+        for (long id = last - count + 1; id <= last; id++) {
+            TaskLogRollupBucket bucket = new TaskLogRollupBucket();
+            bucket.setStart(LocalDateTime.ofEpochSecond(Math.floorDiv(id * bucketMillis, 1000L), 0, ZoneOffset.UTC));
+            if (s != null) {
+                s.ring(resolution).fill(id, bucket);
+            }
+            result.add(bucket);
+        }
+        return result;
+    }
+
+    /**
+     * 保存汇总，先写入临时文件再替换
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(watermarks.size());
+        for (Map.Entry<String, long[]> entry : watermarks.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+        out.writeInt(series.size());
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            out.writeUTF(entry.getKey());
+            for (Ring ring : entry.getValue().rings) {
+                ring.write(out);
+            }
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("不支持的汇总文件格式");
+        }
+        int watermarkCount = in.readInt();
+        for (int i = 0; i < watermarkCount; i++) {
+            watermarks.put(in.readUTF(), new long[]{in.readLong(), in.readLong()});
+        }
+        int seriesCount = in.readInt();
+        for (int i = 0; i < seriesCount; i++) {
+            Series s = new Series();
+            series.put(in.readUTF(), s);
+            for (Ring ring : s.rings) {
+                ring.read(in);
+            }
+        }
+    }
+
+    /**
+     * 按本地时间计算的毫秒数，使天粒度的桶从本地零点开始
+     */
+    private static long localMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    /**
+     * 一个统计对象在各粒度上的环形数组
+     */
+    private class Series {
+        final Ring[] rings = new Ring[slots.length];
+
+        Series() {
+            for (int i = 0; i < slots.length; i++) {
+                rings[i] = new Ring(slots[i]);
+            }
+        }
+
+        Ring ring(TaskLogManager.RollupResolution resolution) {
+            return rings[resolution.ordinal()];
+        }
+    }
+
+    /**
+     * 固定槽位数的环形时间桶数组
+     * 槽位按页分配，每页的各字段各是一个数组，只有写入过的页才占用内存，
+     * 执行次数少的统计对象（如单个群）只分配用到的几页
+     */
+    private static class Ring {
+        private static final int HISTOGRAM_SIZE = TaskLogRollupBucket.LATENCY_BOUNDS_MS.length + 1;
+        private static final int PAGE_SLOTS = 64;
+
+        final int slots;
+        final Page[] pages;
+
+        Ring(int slots) {
+            this.slots = slots;
+            pages = new Page[(slots + PAGE_SLOTS - 1) / PAGE_SLOTS];
+        }
+
+        /**
+         * 一页槽位，每个字段一个数组
+         */
+        private static class Page {
+            final long[] ids = new long[PAGE_SLOTS];
+            final int[] executions = new int[PAGE_SLOTS];
+            final int[] successes = new int[PAGE_SLOTS];
+            final int[] failures = new int[PAGE_SLOTS];
+            final int[] targets = new int[PAGE_SLOTS];
+            final long[] latencyTotal = new long[PAGE_SLOTS];
+            final int[] latencyCount = new int[PAGE_SLOTS];
+            final int[] histogram = new int[PAGE_SLOTS * HISTOGRAM_SIZE];
+
+            Page() {
+                Arrays.fill(ids, Long.MIN_VALUE);
+            }
+        }
+
+        private int slotOf(long id) {
+            return (int) Math.floorMod(id, (long) slots);
+        }
+
+        /**
+         * 定位时间桶所在的页，需要时分配该页；槽位上是更早的桶时清空后复用
+         * @return 槽位已被更新的桶占用时返回null
+         */
+        private Page page(long id) {
+            int slot = slotOf(id);
+            Page page = pages[slot / PAGE_SLOTS];
+            if (page == null) {
+                page = new Page();
+                pages[slot / PAGE_SLOTS] = page;
+            }
+            int i = slot % PAGE_SLOTS;
+            if (page.ids[i] == id) {
+                return page;
+            }
+            if (page.ids[i] > id) {
+                return null;
+            }
+            page.ids[i] = id;
+            page.executions[i] = 0;
+            page.successes[i] = 0;
+            page.failures[i] = 0;
+            page.targets[i] = 0;
+            page.latencyTotal[i] = 0;
+            page.latencyCount[i] = 0;
+            Arrays.fill(page.histogram, i * HISTOGRAM_SIZE, (i + 1) * HISTOGRAM_SIZE, 0);
+            return page;
+        }
+
+        void add(long id, boolean success, int targetCount, long durationMs) {
+            Page page = page(id);
+            if (page == null) {
+                return;
+            }
+            int i = slotOf(id) % PAGE_SLOTS;
+            page.executions[i]++;
+            if (success) {
+                page.successes[i]++;
+            } else {
+                page.failures[i]++;
+            }
+            page.targets[i] += targetCount;
+            if (durationMs > 0) {
+                page.latencyTotal[i] += durationMs;
+                page.latencyCount[i]++;
+                page.histogram[i * HISTOGRAM_SIZE + TaskLogRollupBucket.latencySlot(durationMs)]++;
+            }
+        }
+
+        void fill(long id, TaskLogRollupBucket bucket) {
+            int slot = slotOf(id);
+            Page page = pages[slot / PAGE_SLOTS];
+            int i = slot % PAGE_SLOTS;
+            if (page == null || page.ids[i] != id) {
+                return;
+            }
+            bucket.setExecutions(page.executions[i]);
+            bucket.setSuccesses(page.successes[i]);
+            bucket.setFailures(page.failures[i]);
+            bucket.setTargetsHit(page.targets[i]);
+            bucket.setTotalLatencyMs(page.latencyTotal[i]);
+            bucket.setLatencyCount(page.latencyCount[i]);
+            long[] latencyHistogram = bucket.getLatencyHistogram();
+            for (int h = 0; h < HISTOGRAM_SIZE; h++) {
+                latencyHistogram[h] = page.histogram[i * HISTOGRAM_SIZE + h];
+            }
+        }
+
+        /**
+         * 只写入有数据的槽位
+         */
+        void write(DataOutputStream out) throws IOException {
+            int used = 0;
+            for (Page page : pages) {
+                if (page == null) {
+                    continue;
+                }
+                for (long id : page.ids) {
+                    if (id != Long.MIN_VALUE) {
+                        used++;
+                    }
+                }
+            }
+            out.writeInt(used);
+            for (Page page : pages) {
+                if (page == null) {
+                    continue;
+                }
+                for (int i = 0; i < PAGE_SLOTS; i++) {
+                    if (page.ids[i] == Long.MIN_VALUE) {
+                        continue;
+                    }
+                    out.writeLong(page.ids[i]);
+                    out.writeInt(page.executions[i]);
+                    out.writeInt(page.successes[i]);
+                    out.writeInt(page.failures[i]);
+                    out.writeInt(page.targets[i]);
+                    out.writeLong(page.latencyTotal[i]);
+                    out.writeInt(page.latencyCount[i]);
+                    for (int h = 0; h < HISTOGRAM_SIZE; h++) {
+                        out.writeInt(page.histogram[i * HISTOGRAM_SIZE + h]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 按时间桶编号重新放入槽位，保留天数改变后槽位数不同也能正确加载
+         */
+        void read(DataInputStream in) throws IOException {
+            int used = in.readInt();
+            for (int n = 0; n < used; n++) {
+                long id = in.readLong();
+                int[] values = new int[4];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readInt();
+                }
+                long total = in.readLong();
+                int count = in.readInt();
+                int[] buckets = new int[HISTOGRAM_SIZE];
+                for (int h = 0; h < HISTOGRAM_SIZE; h++) {
+                    buckets[h] = in.readInt();
+                }
+                Page page = page(id);
+                if (page == null) {
+                    continue;
+                }
+                int i = slotOf(id) % PAGE_SLOTS;
+                page.executions[i] += values[0];
+                page.successes[i] += values[1];
+                page.failures[i] += values[2];
+                page.targets[i] += values[3];
+                page.latencyTotal[i] += total;
+                page.latencyCount[i] += count;
+                for (int h = 0; h < HISTOGRAM_SIZE; h++) {
+                    page.histogram[i * HISTOGRAM_SIZE + h] += buckets[h];
+                }
+            }
+        }
+    }
+}
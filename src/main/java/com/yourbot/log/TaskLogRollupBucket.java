@@ -0,0 +1,86 @@
+package com.yourbot.log;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 一个时间桶内的任务执行统计
+ */
+@Data
+public class TaskLogRollupBucket {
+    // 执行耗时直方图的分界（毫秒），最后一格统计超过最大分界的执行
+    public static final long[] LATENCY_BOUNDS_MS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+    
+    // 时间桶的起始时间
+    private LocalDateTime start;
+    
+    // 执行次数、成功次数和失败次数
+    private long executions;
+    private long successes;
+    private long failures;
+    
+    // 执行涉及的目标数（群或用户）
+    private long targetsHit;
+    
+    // 记录了耗时的执行的总耗时（毫秒）和次数
+    private long totalLatencyMs;
+    private long latencyCount;
+    
+    // 执行耗时直方图，长度为分界数加一
+    private long[] latencyHistogram = new long[LATENCY_BOUNDS_MS.length + 1];
+    
+    public double getFailureRate() {
+        return executions == 0 ? 0 : (double) failures / executions;
+    }
+    
+    public double getAvgLatencyMs() {
+        return latencyCount == 0 ? 0 : (double) totalLatencyMs / latencyCount;
+    }
+    
+    /**
+     * 估算执行耗时的百分位数
+     * @param percentile 0到100之间
+     * @return 该百分位所在直方图格的上界（毫秒）；没有耗时记录时返回0，超过最大分界时返回-1
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(latencyCount * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+            seen += latencyHistogram[i];
+            if (seen >= rank) {
+                return LATENCY_BOUNDS_MS[i];
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 将另一个时间桶的统计累加到本桶
+     */
+    public void add(TaskLogRollupBucket other) {
+        executions += other.executions;
+        successes += other.successes;
+        failures += other.failures;
+        targetsHit += other.targetsHit;
+        totalLatencyMs += other.totalLatencyMs;
+        latencyCount += other.latencyCount;
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            latencyHistogram[i] += other.latencyHistogram[i];
+        }
+    }
+    
+    /**
+     * 耗时落入的直方图格
+     */
+    static int latencySlot(long durationMs) {
+        for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+            if (durationMs <= LATENCY_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BOUNDS_MS.length;
+    }
+}
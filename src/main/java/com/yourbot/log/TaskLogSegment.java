@@ -0,0 +1,498 @@
+package com.yourbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 任务日志段文件
+ * 记录格式：[内容长度 int][CRC32 int][记录类型 byte][内容]，CRC覆盖类型和内容
+ * 每条记录在内存映射的索引文件中有一个定长索引项：
+ * [时间戳 long][截至该记录的最大时间戳 long][文件位置 long][任务编号 int][记录类型 byte][状态 byte][保留 2字节]
+ * 索引文件预先分配空间，记录类型为0的索引项表示未使用；最大时间戳单调不减，可二分查找时间范围
+ */
+class TaskLogSegment {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLogSegment.class);
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    // 旧版本的稀疏时间索引，打开时替换为定长索引
+    private static final String LEGACY_INDEX_SUFFIX = ".tidx";
+
+    static final int HEADER_SIZE = 9;
+    static final int INDEX_ENTRY_SIZE = 32;
+    // 当前写入段的索引每次扩展的条目数
+    private static final int INDEX_GROW_ENTRIES = 4096;
+
+    // 记录类型：任务执行日志（JSON，旧格式，只读）
+    static final byte TYPE_EXECUTION = 1;
+    // 记录类型：任务执行日志（二进制编码）
+    static final byte TYPE_EXECUTION_BINARY = 2;
+
+    // 记录状态
+    static final byte STATUS_NONE = 0;
+    static final byte STATUS_SUCCESS = 1;
+    static final byte STATUS_FAILURE = 2;
+
+    private final long id;
+    private final Path logPath;
+    private final Path indexPath;
+
+    // 仅当前写入段持有
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+
+    private volatile MappedByteBuffer indexMap;
+    private volatile int entryCount;
+    private volatile long size;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    // 日志内容的只读映射，随写入增长时重新映射
+    private volatile MappedByteBuffer logMap;
+
+    private TaskLogSegment(Path dir, long id) {
+        this.id = id;
+        this.logPath = dir.resolve(fileName(id) + LOG_SUFFIX);
+        this.indexPath = dir.resolve(fileName(id) + INDEX_SUFFIX);
+    }
+
+    static boolean isExecution(byte type) {
+        return type == TYPE_EXECUTION || type == TYPE_EXECUTION_BINARY;
+    }
+
+    static String fileName(long id) {
+        return String.format("%020d", id);
+    }
+
+    /**
+     * 打开已封存的段（只读），索引只做映射，不读取日志内容
+     */
+    static TaskLogSegment openSealed(Path dir, long id, RecordIndexer indexer) throws IOException {
+        TaskLogSegment segment = new TaskLogSegment(dir, id);
+        segment.size = Files.size(segment.logPath);
+        if (!Files.exists(segment.indexPath)) {
+            segment.rebuildIndex(indexer);
+        }
+        try (FileChannel channel = FileChannel.open(segment.indexPath, StandardOpenOption.READ)) {
+            segment.indexMap = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        segment.entryCount = segment.countEntries();
+        if (segment.entryCount > 0) {
+            segment.maxTimestamp = segment.entryMaxTimestamp(segment.entryCount - 1);
+        }
+        return segment;
+    }
+
+    /**
+     * 打开或创建可写的段，截断末尾未写完整的记录，并为已写入但未建立索引的记录补建索引
+     */
+    static TaskLogSegment openActive(Path dir, long id, long minTimestamp, RecordIndexer indexer) throws IOException {
+        TaskLogSegment segment = new TaskLogSegment(dir, id);
+        segment.maxTimestamp = minTimestamp;
+        segment.logChannel = FileChannel.open(segment.logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.indexChannel = FileChannel.open(segment.indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacity = Math.max(segment.indexChannel.size(), (long) INDEX_GROW_ENTRIES * INDEX_ENTRY_SIZE);
+        segment.indexMap = segment.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        segment.entryCount = segment.countEntries();
+        segment.recover(indexer);
+        return segment;
+    }
+
+    /**
+     * 已使用的索引项是连续的前缀，二分查找第一个记录类型为0的索引项
+     */
+    private int countEntries() {
+        int low = 0;
+        int high = indexMap.capacity() / INDEX_ENTRY_SIZE;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryType(mid) != 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 丢弃指向不完整记录的索引项和不完整的尾部记录，为索引之后的完整记录补建索引
+     */
+    private void recover(RecordIndexer indexer) throws IOException {
+        long fileSize = logChannel.size();
+
+        long scanFrom = 0;
+        while (entryCount > 0) {
+            long position = entryPosition(entryCount - 1);
+            List<Frame> frames = position < fileSize ? readFrames(logChannel, position, fileSize, 1) : List.of();
+            if (!frames.isEmpty()) {
+                scanFrom = frames.get(0).end();
+                maxTimestamp = Math.max(maxTimestamp, entryMaxTimestamp(entryCount - 1));
+                break;
+            }
+            clearEntry(--entryCount);
+        }
+
+        long validEnd = scanFrom;
+        size = scanFrom;
+        List<Frame> unindexed = readFrames(logChannel, scanFrom, fileSize, Integer.MAX_VALUE);
+        for (Frame frame : unindexed) {
+            addEntry(frame.type, frame.position, indexer.describe(frame.type, frame.payload));
+            validEnd = frame.end();
+        }
+        if (!unindexed.isEmpty()) {
+            logger.info("日志段 {} 为 {} 条记录补建了索引", logPath, unindexed.size());
+        }
+        if (validEnd < fileSize) {
+            logger.warn("日志段 {} 尾部有 {} 字节不完整的记录，已截断", logPath, fileSize - validEnd);
+            logChannel.truncate(validEnd);
+        }
+        size = validEnd;
+        logChannel.position(size);
+
+        Files.deleteIfExists(logPath.resolveSibling(fileName(id) + LEGACY_INDEX_SUFFIX));
+    }
+
+    /**
+     * 从日志内容重建定长索引（用于旧版本的段）
+     */
+    private void rebuildIndex(RecordIndexer indexer) throws IOException {
+        List<Frame> frames;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            frames = readFrames(channel, 0, size, Integer.MAX_VALUE);
+        }
+        ByteBuffer index = ByteBuffer.allocate(frames.size() * INDEX_ENTRY_SIZE);
+        for (int i = 0; i < frames.size(); i++) {
+            Frame frame = frames.get(i);
+            RecordMeta meta = indexer.describe(frame.type, frame.payload);
+            maxTimestamp = Math.max(maxTimestamp, meta.timestamp);
+            putEntry(index, i * INDEX_ENTRY_SIZE, meta, maxTimestamp, frame.position, frame.type);
+        }
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.write(tmp, index.array());
+        Files.move(tmp, indexPath);
+        Files.deleteIfExists(logPath.resolveSibling(fileName(id) + LEGACY_INDEX_SUFFIX));
+        logger.info("已为日志段 {} 重建索引，共 {} 条记录", logPath, frames.size());
+    }
+
+    /**
+     * 追加一条记录及其索引项，不刷盘
+     */
+    void append(byte type, byte[] payload, RecordMeta meta) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.put(type);
+        frame.put(payload);
+        frame.flip();
+
+        long position = size;
+        while (frame.hasRemaining()) {
+            logChannel.write(frame);
+        }
+        size += HEADER_SIZE + payload.length;
+        addEntry(type, position, meta);
+    }
+
+    private void addEntry(byte type, long position, RecordMeta meta) throws IOException {
+        maxTimestamp = Math.max(maxTimestamp, meta.timestamp);
+        int offset = entryCount * INDEX_ENTRY_SIZE;
+        if (offset + INDEX_ENTRY_SIZE > indexMap.capacity()) {
+            indexMap = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    indexMap.capacity() + (long) INDEX_GROW_ENTRIES * INDEX_ENTRY_SIZE);
+        }
+        putEntry(indexMap, offset, meta, maxTimestamp, position, type);
+        // 计数是发布点，读取方只访问计数以内的索引项
+        entryCount++;
+    }
+
+    private static void putEntry(ByteBuffer buffer, int offset, RecordMeta meta,
+                                 long maxTimestamp, long position, byte type) {
+        buffer.putLong(offset, meta.timestamp);
+        buffer.putLong(offset + 8, maxTimestamp);
+        buffer.putLong(offset + 16, position);
+        buffer.putInt(offset + 24, meta.taskId);
+        buffer.put(offset + 29, meta.status);
+        // 记录类型最后写入，非0表示索引项有效
+        buffer.put(offset + 28, type);
+    }
+
+    private void clearEntry(int index) {
+        for (int i = 0; i < INDEX_ENTRY_SIZE; i += 8) {
+            indexMap.putLong(index * INDEX_ENTRY_SIZE + i, 0);
+        }
+    }
+
+    /**
+     * 将已写入的记录和索引强制刷盘
+     */
+    void force() throws IOException {
+        if (logChannel != null) {
+            logChannel.force(false);
+            indexMap.force();
+        }
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    long entryTimestamp(int index) {
+        return indexMap.getLong(index * INDEX_ENTRY_SIZE);
+    }
+
+    long entryMaxTimestamp(int index) {
+        return indexMap.getLong(index * INDEX_ENTRY_SIZE + 8);
+    }
+
+    long entryPosition(int index) {
+        return indexMap.getLong(index * INDEX_ENTRY_SIZE + 16);
+    }
+
+    int entryTaskId(int index) {
+        return indexMap.getInt(index * INDEX_ENTRY_SIZE + 24);
+    }
+
+    byte entryType(int index) {
+        return indexMap.get(index * INDEX_ENTRY_SIZE + 28);
+    }
+
+    byte entryStatus(int index) {
+        return indexMap.get(index * INDEX_ENTRY_SIZE + 29);
+    }
+
+    /**
+     * 二分查找最大时间戳不早于指定时间的第一个索引项，之前的记录都早于该时间
+     */
+    int firstEntryNotBefore(long timestamp, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryMaxTimestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 二分查找文件位置不小于指定位置的第一个索引项
+     */
+    int firstEntryAtOrAfter(long position, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryPosition(mid) < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 通过内存映射读取第 index 条记录的内容
+     * @throws IOException 记录不完整或校验失败时抛出
+     */
+    byte[] readPayload(int index) throws IOException {
+        long position = entryPosition(index);
+        ByteBuffer view = logView(position + HEADER_SIZE);
+        int offset = (int) position;
+        int length = view.getInt(offset);
+        int checksum = view.getInt(offset + 4);
+        byte type = view.get(offset + 8);
+        if (length < 0 || offset + HEADER_SIZE + (long) length > view.capacity()) {
+            view = logView(offset + HEADER_SIZE + (long) Math.max(length, 0));
+            if (length < 0 || offset + HEADER_SIZE + (long) length > view.capacity()) {
+                throw new IOException("日志段 " + logPath + " 位置 " + position + " 的记录不完整");
+            }
+        }
+        byte[] payload = new byte[length];
+        view.get(offset + HEADER_SIZE, payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("日志段 " + logPath + " 位置 " + position + " 的记录校验失败");
+        }
+        return payload;
+    }
+
+    /**
+     * 获取至少覆盖到指定位置的日志只读映射
+     */
+    private ByteBuffer logView(long required) throws IOException {
+        MappedByteBuffer map = logMap;
+        if (map == null || map.capacity() < required) {
+            synchronized (this) {
+                map = logMap;
+                if (map == null || map.capacity() < required) {
+                    try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, channel.size()));
+                    }
+                    logMap = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 读取段内所有完整的记录，按写入顺序返回
+     */
+    List<Frame> readAll() throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            return readFrames(channel, 0, Math.min(size, channel.size()), Integer.MAX_VALUE);
+        }
+    }
+
+    private static List<Frame> readFrames(FileChannel channel, long from, long to, int limit) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        if (to <= from) {
+            return frames;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        buffer.flip();
+
+        while (buffer.remaining() >= HEADER_SIZE && frames.size() < limit) {
+            long position = from + buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            byte type = buffer.get();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            frames.add(new Frame(position, type, payload));
+        }
+        return frames;
+    }
+
+    /**
+     * 停止写入并关闭文件，索引映射保留用于读取
+     */
+    void seal() throws IOException {
+        if (logChannel != null) {
+            logChannel.force(false);
+            indexMap.force();
+            logChannel.close();
+            logChannel = null;
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+    }
+
+    /**
+     * 关闭段并删除段文件及其索引
+     * 段已从日志中移除后调用；正在读取该段的查询仍持有索引映射，映射在段不再被引用后由GC释放，
+     * Windows上仍被映射的文件无法删除，返回给调用方稍后重试
+     * @return 未能删除的文件
+     */
+    List<Path> delete() {
+        try {
+            seal();
+        } catch (IOException e) {
+            logger.warn("关闭日志段 {} 失败", logPath, e);
+        }
+        logMap = null;
+        List<Path> failed = new ArrayList<>();
+        for (Path path : List.of(logPath, indexPath)) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                failed.add(path);
+            }
+        }
+        return failed;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * 段内的一条记录
+     */
+    static class Frame {
+        final long position;
+        final byte type;
+        final byte[] payload;
+
+        Frame(long position, byte type, byte[] payload) {
+            this.position = position;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        long end() {
+            return position + HEADER_SIZE + payload.length;
+        }
+    }
+
+    /**
+     * 写入索引的记录信息
+     */
+    static class RecordMeta {
+        final long timestamp;
+        final int taskId;
+        final byte status;
+
+        RecordMeta(long timestamp, int taskId, byte status) {
+            this.timestamp = timestamp;
+            this.taskId = taskId;
+            this.status = status;
+        }
+    }
+
+    /**
+     * 从记录内容提取索引信息，用于补建或重建索引
+     */
+    interface RecordIndexer {
+        RecordMeta describe(byte type, byte[] payload) throws IOException;
+    }
+}
@@ -0,0 +1,370 @@
+package com.yourbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 单个任务的追加式日志
+ * 日志由多个按序号命名的段文件组成，只向最新的段追加；
+ * 段达到大小上限后滚动，清理时整段删除，写入时不再扫描目录
+ */
+class TaskLogStore {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLogStore.class);
+
+    static final long SEGMENT_MAX_BYTES = 1024 * 1024;
+
+    private final Path dir;
+    private final int maxDays;
+    // 保留的段数上限，0表示只按天数清理
+    private final int maxSegments;
+    private final TaskLogSegment.RecordIndexer indexer;
+    private TaskLogDictionary dictionary;
+
+    // 按序号升序排列，最后一个为当前写入段
+    private final List<TaskLogSegment> segments = new ArrayList<>();
+
+    // 已清理但未能删除的段文件（Windows上仍被映射的文件无法删除），之后每次滚动时重试
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    private TaskLogStore(Path dir, int maxDays, int maxSizeMb, RecordDescriber describer) {
+        this.dir = dir;
+        this.maxDays = maxDays;
+        this.maxSegments = maxSizeMb > 0 ? (int) Math.max(2, maxSizeMb * 1024L * 1024 / SEGMENT_MAX_BYTES) : 0;
+        this.indexer = (type, payload) -> describer.describe(dictionary, type, payload);
+    }
+
+    /**
+     * 打开任务日志目录，封存的段只映射索引，只恢复当前写入段的尾部
+     * @param maxDays 日志保留天数，0表示不按天数清理
+     * @param maxSizeMb 日志大小上限（MB），超过后即使未到保留天数也删除最早的段，0表示不限
+     * @param describer 为缺少索引的记录提取索引信息
+     */
+    static TaskLogStore open(Path dir, int maxDays, int maxSizeMb, RecordDescriber describer) throws IOException {
+        TaskLogStore store = new TaskLogStore(dir, maxDays, maxSizeMb, describer);
+        TaskLogSegment.RecordIndexer indexer = store.indexer;
+        dir.toFile().mkdirs();
+        store.dictionary = TaskLogDictionary.open(dir);
+
+        List<Long> ids = new ArrayList<>();
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(TaskLogSegment.LOG_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - TaskLogSegment.LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("忽略无法识别的日志段文件: {}", file.getAbsolutePath());
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        // 上次运行中段文件已删除但索引未能删除时，删除遗留的索引
+        File[] indexes = dir.toFile().listFiles((d, name) -> name.endsWith(TaskLogSegment.INDEX_SUFFIX));
+        if (indexes != null) {
+            for (File index : indexes) {
+                String name = index.getName();
+                File log = new File(dir.toFile(), name.substring(0, name.length() - TaskLogSegment.INDEX_SUFFIX.length())
+                        + TaskLogSegment.LOG_SUFFIX);
+                if (!log.exists() && !index.delete()) {
+                    logger.warn("删除遗留的日志段索引失败: {}", index.getAbsolutePath());
+                }
+            }
+        }
+
+        for (int i = 0; i < ids.size() - 1; i++) {
+            store.segments.add(TaskLogSegment.openSealed(dir, ids.get(i), indexer));
+        }
+        long activeId = ids.isEmpty() ? 1 : ids.get(ids.size() - 1);
+        long minTimestamp = store.segments.isEmpty() ? Long.MIN_VALUE
+                : store.segments.get(store.segments.size() - 1).getMaxTimestamp();
+        store.segments.add(TaskLogSegment.openActive(dir, activeId, minTimestamp, indexer));
+        return store;
+    }
+
+    /**
+     * 追加一条记录，必要时滚动到新段；刷盘由调用方通过 sync() 控制
+     * @return 写入的记录
+     */
+    synchronized Record append(byte type, byte[] payload, TaskLogSegment.RecordMeta meta) throws IOException {
+        TaskLogSegment active = activeSegment();
+        if (active.getSize() > 0 && active.getSize() + TaskLogSegment.HEADER_SIZE + payload.length > SEGMENT_MAX_BYTES) {
+            active = roll();
+        }
+        active.append(type, payload, meta);
+        return new Record(active.getId(), active.getSize(), type, payload);
+    }
+
+    /**
+     * 将当前写入段刷盘，滚动时被封存的段已在封存时刷盘
+     */
+    synchronized void sync() throws IOException {
+        activeSegment().force();
+    }
+
+    private TaskLogSegment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    /**
+     * 封存当前段并创建新段，同时按保留策略整段删除旧日志
+     */
+    private TaskLogSegment roll() throws IOException {
+        TaskLogSegment previous = activeSegment();
+        previous.seal();
+        TaskLogSegment next = TaskLogSegment.openActive(dir, previous.getId() + 1, previous.getMaxTimestamp(), indexer);
+        segments.add(next);
+        logger.debug("任务日志滚动到新段: {}/{}", dir, TaskLogSegment.fileName(next.getId()));
+
+        applyRetention();
+        return next;
+    }
+
+    private void applyRetention() {
+        retryPendingDeletes();
+
+        long expireBefore = System.currentTimeMillis() - maxDays * 24L * 3600 * 1000;
+        while (segments.size() > 1) {
+            TaskLogSegment oldest = segments.get(0);
+            boolean expired = maxDays > 0 && oldest.getMaxTimestamp() < expireBefore;
+            boolean oversized = maxSegments > 0 && segments.size() > maxSegments;
+            if (!expired && !oversized) {
+                break;
+            }
+            if (!expired) {
+                logger.warn("任务日志 {} 超过大小上限，删除未到保留天数的日志段 {}，其中最晚的记录时间为 {}",
+                        dir, TaskLogSegment.fileName(oldest.getId()), new Date(oldest.getMaxTimestamp()));
+            }
+            // 先从日志中移除，文件删除失败不影响之后的清理
+            segments.remove(0);
+            List<Path> failed = oldest.delete();
+            if (failed.isEmpty()) {
+                logger.debug("已删除过期的任务日志段: {}/{}", dir, TaskLogSegment.fileName(oldest.getId()));
+            } else {
+                logger.warn("任务日志段 {}/{} 仍被占用，将在之后滚动时重试删除", dir, TaskLogSegment.fileName(oldest.getId()));
+                pendingDeletes.addAll(failed);
+            }
+        }
+    }
+
+    private void retryPendingDeletes() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                logger.debug("已删除之前未能删除的任务日志文件: {}", path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * 创建从新到旧读取的游标
+     * @param segmentId 起始段序号，Long.MAX_VALUE 表示从最新段开始
+     * @param endPosition 在起始段内读取的结束位置（不含），Long.MAX_VALUE 表示段末尾
+     * @param filter 在索引上完成的过滤条件，不满足的记录不读取内容
+     */
+    Reader reader(long segmentId, long endPosition, IndexFilter filter) {
+        List<TaskLogSegment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        return new Reader(snapshot, segmentId, endPosition, filter);
+    }
+
+    /**
+     * 按写入顺序（从旧到新）遍历所有执行记录
+     */
+    void replay(RecordConsumer consumer) throws IOException {
+        replayAfter(Long.MIN_VALUE, 0, consumer);
+    }
+
+    /**
+     * 按写入顺序遍历指定位置之后的执行记录
+     * @param segmentId 段序号
+     * @param end 该段内已处理记录的结束位置，从这里开始遍历
+     */
+    void replayAfter(long segmentId, long end, RecordConsumer consumer) throws IOException {
+        List<TaskLogSegment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        for (TaskLogSegment segment : snapshot) {
+            if (segment.getId() < segmentId) {
+                continue;
+            }
+            int count = segment.getEntryCount();
+            int start = segment.getId() == segmentId ? segment.firstEntryAtOrAfter(end, count) : 0;
+            for (int i = start; i < count; i++) {
+                byte type = segment.entryType(i);
+                if (TaskLogSegment.isExecution(type)) {
+                    byte[] payload = segment.readPayload(i);
+                    long recordEnd = segment.entryPosition(i) + TaskLogSegment.HEADER_SIZE + payload.length;
+                    consumer.accept(new Record(segment.getId(), recordEnd, type, payload));
+                }
+            }
+        }
+    }
+
+    /**
+     * 目录中是否已有日志段
+     */
+    static boolean hasSegments(Path dir) {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(TaskLogSegment.LOG_SUFFIX));
+        return files != null && files.length > 0;
+    }
+
+    Path getDir() {
+        return dir;
+    }
+
+    TaskLogDictionary getDictionary() {
+        return dictionary;
+    }
+
+    interface RecordConsumer {
+        void accept(Record record) throws IOException;
+    }
+
+    /**
+     * 根据记录内容和本日志的字典生成索引信息
+     */
+    interface RecordDescriber {
+        TaskLogSegment.RecordMeta describe(TaskLogDictionary dictionary, byte type, byte[] payload) throws IOException;
+    }
+
+    /**
+     * 关闭当前写入段
+     */
+    synchronized void close() {
+        try {
+            activeSegment().seal();
+        } catch (IOException e) {
+            logger.warn("关闭任务日志失败: {}", dir, e);
+        }
+    }
+
+    /**
+     * 日志中的一条执行记录
+     */
+    static class Record {
+        final long segmentId;
+        final long end;
+        final byte type;
+        final byte[] payload;
+
+        Record(long segmentId, long end, byte type, byte[] payload) {
+            this.segmentId = segmentId;
+            this.end = end;
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 可以只用索引判断的过滤条件
+     */
+    static class IndexFilter {
+        final long fromTimestamp;
+        final long toTimestamp;
+        // STATUS_NONE 表示不限
+        final byte status;
+
+        IndexFilter(long fromTimestamp, long toTimestamp, byte status) {
+            this.fromTimestamp = fromTimestamp;
+            this.toTimestamp = toTimestamp;
+            this.status = status;
+        }
+
+        static IndexFilter all() {
+            return new IndexFilter(Long.MIN_VALUE, Long.MAX_VALUE, TaskLogSegment.STATUS_NONE);
+        }
+    }
+
+    /**
+     * 从新到旧的读取游标
+     * 在映射的索引上逆序遍历，时间和状态条件只看索引项，满足条件的记录才读取内容；
+     * 查询起始时间通过二分查找确定停止位置
+     */
+    class Reader {
+        private final List<TaskLogSegment> snapshot;
+        private final IndexFilter filter;
+
+        private int segmentIndex;
+        private TaskLogSegment segment;
+        private int entryIndex = -1;
+        private int stopIndex;
+        private boolean lastSegment;
+
+        private Reader(List<TaskLogSegment> snapshot, long segmentId, long endPosition, IndexFilter filter) {
+            this.snapshot = snapshot;
+            this.filter = filter;
+
+            segmentIndex = snapshot.size() - 1;
+            while (segmentIndex >= 0 && snapshot.get(segmentIndex).getId() > segmentId) {
+                segmentIndex--;
+            }
+            if (segmentIndex >= 0) {
+                // 起始段已被清理时从其之前的段末尾开始
+                boolean exact = snapshot.get(segmentIndex).getId() == segmentId;
+                loadSegment(exact ? endPosition : Long.MAX_VALUE);
+            } else {
+                lastSegment = true;
+            }
+        }
+
+        /**
+         * 读取下一条（更早的）满足索引条件的执行记录
+         * @return 没有更多记录时返回 null
+         */
+        Record next() throws IOException {
+            while (true) {
+                while (entryIndex >= stopIndex) {
+                    int i = entryIndex--;
+                    byte type = segment.entryType(i);
+                    if (!TaskLogSegment.isExecution(type)) {
+                        continue;
+                    }
+                    long timestamp = segment.entryTimestamp(i);
+                    if (timestamp < filter.fromTimestamp || timestamp > filter.toTimestamp) {
+                        continue;
+                    }
+                    if (filter.status != TaskLogSegment.STATUS_NONE && segment.entryStatus(i) != filter.status) {
+                        continue;
+                    }
+                    byte[] payload = segment.readPayload(i);
+                    long end = segment.entryPosition(i) + TaskLogSegment.HEADER_SIZE + payload.length;
+                    return new Record(segment.getId(), end, type, payload);
+                }
+                if (lastSegment || segmentIndex <= 0) {
+                    return null;
+                }
+                segmentIndex--;
+                if (snapshot.get(segmentIndex).getMaxTimestamp() < filter.fromTimestamp) {
+                    // 更早的段都早于查询起始时间
+                    return null;
+                }
+                loadSegment(Long.MAX_VALUE);
+            }
+        }
+
+        private void loadSegment(long endPosition) {
+            segment = snapshot.get(segmentIndex);
+            int count = segment.getEntryCount();
+            entryIndex = (endPosition == Long.MAX_VALUE ? count : segment.firstEntryAtOrAfter(endPosition, count)) - 1;
+            stopIndex = filter.fromTimestamp == Long.MIN_VALUE ? 0 : segment.firstEntryNotBefore(filter.fromTimestamp, count);
+            // 停止位置之前还有记录时，它们和更早的段都早于查询起始时间
+            lastSegment = stopIndex > 0;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.yourbot.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务日志写入线程
+ * 任务线程只把日志放入有界队列，由后台线程批量序列化、追加并按刷盘策略组提交
+ */
+class TaskLogWriter {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLogWriter.class);
+
+    // 每批最多写入的日志数
+    private static final int MAX_BATCH = 256;
+    // 队列已满时等待的最长时间，超时后由调用线程直接写入
+    private static final long OFFER_TIMEOUT_MS = 2000;
+    // 关闭时等待队列写完的最长时间
+    private static final long CLOSE_TIMEOUT_MS = 10000;
+
+    /**
+     * 刷盘策略
+     */
+    enum Durability {
+        RECORD,    // 每批写入后立即刷盘，日志在写入线程确认前已落盘
+        PERIODIC,  // 按固定间隔刷盘
+        NONE;      // 只在关闭时刷盘，由操作系统决定何时落盘
+
+        static Durability parse(String value) {
+            if (value != null) {
+                for (Durability durability : values()) {
+                    if (durability.name().equalsIgnoreCase(value.trim())) {
+                        return durability;
+                    }
+                }
+                logger.warn("未知的任务日志刷盘策略: {}，使用 PERIODIC", value);
+            }
+            return PERIODIC;
+        }
+    }
+
+    private final TaskLogManager manager;
+    private final Durability durability;
+    private final long fsyncIntervalMs;
+    private final int capacity;
+    private final BlockingQueue<Pending> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // 仅由写入线程访问：已写入但未刷盘的日志
+    private final Set<TaskLogStore> dirty = new HashSet<>();
+    private long lastSyncTime = System.currentTimeMillis();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong writtenInline = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    TaskLogWriter(TaskLogManager manager, Durability durability, long fsyncIntervalMs, int capacity) {
+        this.manager = manager;
+        this.durability = durability;
+        this.fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+
+        thread = new Thread(this::run, "TaskLogWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 提交一条日志，队列已满时最多等待 OFFER_TIMEOUT_MS，之后在当前线程直接写入
+     */
+    void submit(TaskExecutionLog log) {
+        if (!running) {
+            logger.warn("任务日志已关闭，丢弃日志: {} ({})", log.getTaskName(), log.getId());
+            return;
+        }
+        Pending pending = new Pending(log, System.nanoTime());
+        try {
+            if (queue.offer(pending, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.warn("任务日志写入队列已满，直接写入: {}", log.getTaskName());
+        try {
+            TaskLogStore store = manager.storeFor(log);
+            manager.appendLog(store, log);
+            if (durability != Durability.NONE) {
+                store.sync();
+            }
+            writtenInline.incrementAndGet();
+            written.incrementAndGet();
+            recordLatency(pending);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.error("记录任务执行日志失败", e);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        long pollTimeout = durability == Durability.PERIODIC ? fsyncIntervalMs : 1000;
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(pollTimeout, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (durability == Durability.PERIODIC
+                        && System.currentTimeMillis() - lastSyncTime >= fsyncIntervalMs) {
+                    syncDirty();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("任务日志写入线程出错", e);
+            }
+        }
+        syncDirty();
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        for (Pending pending : batch) {
+            try {
+                TaskLogStore store = manager.storeFor(pending.log);
+                manager.appendLog(store, pending.log);
+                dirty.add(store);
+                written.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                logger.error("记录任务执行日志失败: {}", pending.log.getTaskName(), e);
+            }
+        }
+        batches.incrementAndGet();
+
+        // 组提交：整批写完后每个日志只刷盘一次
+        if (durability == Durability.RECORD) {
+            syncDirty();
+        }
+        for (Pending pending : batch) {
+            recordLatency(pending);
+        }
+    }
+
+    private void syncDirty() {
+        for (TaskLogStore store : dirty) {
+            try {
+                store.sync();
+                syncs.incrementAndGet();
+            } catch (IOException e) {
+                logger.error("任务日志刷盘失败: {}", store.getDir(), e);
+            }
+        }
+        dirty.clear();
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    private void recordLatency(Pending pending) {
+        long latency = System.nanoTime() - pending.enqueueTime;
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * 停止接收新日志，等待队列写完并刷盘
+     */
+    void close() {
+        // 不中断写入线程，避免中断正在写入的文件通道；写入线程最多在一个轮询周期后发现关闭
+        running = false;
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("任务日志写入线程未能在 {} 毫秒内结束，剩余 {} 条日志未写入", CLOSE_TIMEOUT_MS, queue.size());
+        }
+    }
+
+    TaskLogWriterStats getStats() {
+        TaskLogWriterStats stats = new TaskLogWriterStats();
+        stats.setDurability(durability.name());
+        stats.setQueueDepth(queue.size());
+        stats.setQueueCapacity(capacity);
+        stats.setWritten(written.get());
+        stats.setFailed(failed.get());
+        stats.setWrittenInline(writtenInline.get());
+        stats.setBatches(batches.get());
+        stats.setSyncs(syncs.get());
+        long completed = written.get() + failed.get();
+        stats.setAvgLatencyMs(completed == 0 ? 0 : totalLatencyNanos.get() / 1e6 / completed);
+        stats.setMaxLatencyMs(maxLatencyNanos.get() / 1e6);
+        return stats;
+    }
+
+    /**
+     * 排队中的日志
+     */
+    private static class Pending {
+        final TaskExecutionLog log;
+        final long enqueueTime;
+
+        Pending(TaskExecutionLog log, long enqueueTime) {
+            this.log = log;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.yourbot.log;
+
+import lombok.Data;
+
+/**
+ * 任务日志写入线程的运行指标
+ */
+@Data
+public class TaskLogWriterStats {
+    // 刷盘策略
+    private String durability;
+    
+    // 当前排队等待写入的日志数
+    private int queueDepth;
+    
+    // 写入队列容量
+    private int queueCapacity;
+    
+    // 已写入的日志数
+    private long written;
+    
+    // 写入失败的日志数
+    private long failed;
+    
+    // 队列已满时由调用线程直接写入的日志数
+    private long writtenInline;
+    
+    // 批次数和刷盘次数
+    private long batches;
+    private long syncs;
+    
+    // 从提交到写入（RECORD策略下为刷盘）完成的平均和最大耗时（毫秒）
+    private double avgLatencyMs;
+    private double maxLatencyMs;
+    
+    public double getAvgBatchSize() {
+        return batches == 0 ? 0 : (double) (written + failed) / batches;
+    }
+}
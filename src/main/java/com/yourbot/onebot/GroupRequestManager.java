@@ -1,13 +1,32 @@
 package com.yourbot.onebot;
 
+import com.yourbot.scheduler.ScheduledTask;
+import com.yourbot.scheduler.ScheduledTask.SuspendExpireAction;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.yourbot.util.ConsoleUtil;
+import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * 进群申请管理器
@@ -21,10 +40,62 @@ public class GroupRequestManager {
     // 挂起的进群请求，键为请求标识(flag)，值为请求信息
     private final Map<String, PendingGroupRequest> suspendedRequests = new ConcurrentHashMap<>();
     
+    // 群号到该群挂起请求标识的索引
+    private final Map<Long, Set<String>> flagsByGroup = new ConcurrentHashMap<>();
+    
+    // 按到期时间排序的挂起请求，后台线程等待队首到期后按顺序处理
+    private final NavigableSet<PendingGroupRequest> expiryQueue = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(PendingGroupRequest::getExpireAt).thenComparing(PendingGroupRequest::getFlag));
+    
+    // 没有指定验证任务时的保留时间，与原先固定的7天一致
+    private static final int DEFAULT_TTL_HOURS = 168;
+    // 队首为空或很久以后才到期时，最长等待多久重新检查
+    private static final long MAX_EXPIRY_WAIT_MS = 60 * 1000L;
+    // 到期自动处理失败（如未连接）时，推迟多久重试
+    private static final long EXPIRY_RETRY_MS = 60 * 1000L;
+    // 到期自动同意和拒绝时同时等待响应的动作上限
+    private static final int EXPIRY_CONCURRENCY = 10;
+    
+    // 队首变化时唤醒到期处理线程
+    private final Object expiryLock = new Object();
+    private final Thread expiryThread;
+    private volatile boolean closed = false;
+    
+    // 各状态的请求数：SUSPENDED为当前挂起数，其他为本次运行以来的处理数
+    private final Map<RequestStatus, AtomicInteger> statusCounts = new EnumMap<>(RequestStatus.class);
+    
+    // 批量处理中已发送、等待响应的请求标识，期间不能被单独处理或到期处理
+    private final Set<String> inFlightFlags = ConcurrentHashMap.newKeySet();
+    
     // OneBotClient实例
     private final OneBotClient client = OneBotClient.getInstance();
     
-    private GroupRequestManager() {}
+    // 挂起申请的持久化存储
+    private static final String STORE_DIR = "data/requests";
+    private final GroupRequestStore store = new GroupRequestStore(Paths.get(STORE_DIR));
+    
+    private GroupRequestManager() {
+        for (RequestStatus status : RequestStatus.values()) {
+            statusCounts.put(status, new AtomicInteger());
+        }
+        try {
+            List<PendingGroupRequest> restored = store.load();
+            for (PendingGroupRequest request : restored) {
+                index(request);
+            }
+            if (!restored.isEmpty()) {
+                logger.info("已恢复 {} 个挂起的进群申请", restored.size());
+                ConsoleUtil.info("已恢复 " + restored.size() + " 个挂起的进群申请");
+            }
+        } catch (IOException e) {
+            logger.error("加载挂起的进群申请失败，本次运行中的挂起申请不会被保存", e);
+            ConsoleUtil.error("加载挂起的进群申请失败: " + e.getMessage());
+        }
+        
+        expiryThread = new Thread(this::runExpiry, "GroupRequestExpiry");
+        expiryThread.setDaemon(true);
+        expiryThread.start();
+    }
     
     public static synchronized GroupRequestManager getInstance() {
         if (instance == null) {
@@ -34,26 +105,50 @@ public class GroupRequestManager {
     }
     
     /**
-     * 添加挂起的请求
+     * 添加挂起的请求，按默认的7天保留，到期后移除
      */
     public void addSuspendedRequest(long groupId, long userId, String flag, String comment, String reason) {
+        addSuspendedRequest(null, groupId, userId, -1, flag, comment, reason);
+    }
+    
+    /**
+     * 添加挂起的请求，按验证任务的配置决定保留时间和到期后的处理方式
+     * @param verifyTask 挂起请求的验证任务，为null时使用默认配置
+     * @param level 申请人的等级，未知时为-1
+     */
+    public void addSuspendedRequest(ScheduledTask verifyTask, long groupId, long userId, int level,
+                                    String flag, String comment, String reason) {
+        long now = System.currentTimeMillis();
+        int ttlHours = verifyTask != null ? verifyTask.getSuspendTtlHours() : DEFAULT_TTL_HOURS;
+        SuspendExpireAction action = verifyTask != null && verifyTask.getSuspendExpireAction() != null
+                ? verifyTask.getSuspendExpireAction() : SuspendExpireAction.DROP;
+        
         PendingGroupRequest request = new PendingGroupRequest();
         request.setGroupId(groupId);
         request.setUserId(userId);
+        request.setLevel(level);
         request.setFlag(flag);
         request.setComment(comment);
         request.setReason(reason);
-        request.setTimestamp(System.currentTimeMillis());
+        request.setTimestamp(now);
         request.setStatus(RequestStatus.SUSPENDED);
+        request.setExpireAt(ttlHours > 0 ? now + ttlHours * 3600 * 1000L : Long.MAX_VALUE);
+        request.setExpireAction(action);
+        request.setExpireMessage(verifyTask != null ? verifyTask.getSuspendExpireMessage() : null);
         
-        suspendedRequests.put(flag, request);
+        try {
+            store.recordSuspended(request);
+        } catch (IOException e) {
+            logger.error("保存挂起的进群申请失败: {}", flag, e);
+        }
+        index(request);
         
         logger.info("进群申请已挂起: 群 {}, 用户 {}, 原因: {}", groupId, userId, reason);
         ConsoleUtil.info("进群申请已挂起: 群 " + groupId + ", 用户 " + userId + ", 原因: " + reason);
     }
     
     /**
-     * 手动同意挂起的请求
+     * 手动同意挂起的请求，收到成功响应后才记为已处理
      */
     public boolean approveRequest(String flag) {
         PendingGroupRequest request = suspendedRequests.get(flag);
@@ -63,16 +158,10 @@ public class GroupRequestManager {
             return false;
         }
         
-        boolean success = client.handleGroupRequest(flag, true, null);
+        boolean success = handleManually(request, true, null);
         if (success) {
-            request.setStatus(RequestStatus.APPROVED);
-            suspendedRequests.remove(flag);
-            
             logger.info("手动同意进群申请: 群 {}, 用户 {}", request.getGroupId(), request.getUserId());
             ConsoleUtil.success("手动同意进群申请: 群 " + request.getGroupId() + ", 用户 " + request.getUserId());
-        } else {
-            logger.error("同意进群申请失败: 群 {}, 用户 {}", request.getGroupId(), request.getUserId());
-            ConsoleUtil.error("同意进群申请失败: 群 " + request.getGroupId() + ", 用户 " + request.getUserId());
         }
         
         return success;
@@ -90,38 +179,278 @@ public class GroupRequestManager {
         }
         
         String rejectMessage = reason != null && !reason.trim().isEmpty() ? reason : "申请被拒绝";
-        boolean success = client.handleGroupRequest(flag, false, rejectMessage);
-        
+        boolean success = handleManually(request, false, rejectMessage);
         if (success) {
-            request.setStatus(RequestStatus.REJECTED);
-            suspendedRequests.remove(flag);
-            
             logger.info("手动拒绝进群申请: 群 {}, 用户 {}, 原因: {}", request.getGroupId(), request.getUserId(), rejectMessage);
             ConsoleUtil.warn("手动拒绝进群申请: 群 " + request.getGroupId() + ", 用户 " + request.getUserId() + ", 原因: " + rejectMessage);
-        } else {
-            logger.error("拒绝进群申请失败: 群 {}, 用户 {}", request.getGroupId(), request.getUserId());
-            ConsoleUtil.error("拒绝进群申请失败: 群 " + request.getGroupId() + ", 用户 " + request.getUserId());
         }
         
         return success;
     }
     
     /**
-     * 获取所有挂起的请求
+     * 发送同意或拒绝动作并在当前线程等待响应，只有收到成功响应才记为已处理
+     * 等待期间申请标记为处理中而不持有申请对象的锁，同一申请的其他处理会被跳过
+     * @return 收到成功响应并记为已处理时返回true
+     */
+    private boolean handleManually(PendingGroupRequest request, boolean approve, String reason) {
+        String flag = request.getFlag();
+        // 同一申请同时只能有一个处理，已处理的申请不再调用接口
+        synchronized (request) {
+            if (request.getStatus() != RequestStatus.SUSPENDED || !inFlightFlags.add(flag)) {
+                logger.warn("标识为 {} 的申请已被处理", flag);
+                ConsoleUtil.warn("标识为 " + flag + " 的申请已被处理");
+                return false;
+            }
+        }
+        
+        String failure = awaitAction(client.handleGroupRequestAsync(flag, approve, reason));
+        synchronized (request) {
+            inFlightFlags.remove(flag);
+            if (failure == null) {
+                resolve(request, approve ? RequestStatus.APPROVED : RequestStatus.REJECTED);
+                return true;
+            }
+        }
+        String verb = approve ? "同意" : "拒绝";
+        logger.error("{}进群申请失败: 群 {}, 用户 {}, 原因: {}", verb, request.getGroupId(), request.getUserId(), failure);
+        ConsoleUtil.error(verb + "进群申请失败: 群 " + request.getGroupId() + ", 用户 " + request.getUserId() + ", 原因: " + failure);
+        return false;
+    }
+    
+    /**
+     * 记录申请的处理结果并从挂起列表中移除，调用方需持有申请对象的锁
+     */
+    private void resolve(PendingGroupRequest request, RequestStatus status) {
+        try {
+            store.recordResolved(request.getFlag(), status);
+        } catch (IOException e) {
+            logger.error("保存进群申请处理结果失败: {}", request.getFlag(), e);
+        }
+        markResolved(request, status);
+    }
+    
+    /**
+     * 将已保存处理结果的申请从挂起列表中移除，调用方需持有申请对象的锁
+     */
+    private void markResolved(PendingGroupRequest request, RequestStatus status) {
+        request.setStatus(status);
+        if (unindex(request)) {
+            statusCounts.get(status).incrementAndGet();
+        }
+    }
+    
+    /**
+     * 将请求加入挂起列表和各索引，同一标识已有请求时替换
+     */
+    private void index(PendingGroupRequest request) {
+        synchronized (suspendedRequests) {
+            PendingGroupRequest previous = suspendedRequests.get(request.getFlag());
+            if (previous != null) {
+                unindex(previous);
+            }
+            suspendedRequests.put(request.getFlag(), request);
+            flagsByGroup.computeIfAbsent(request.getGroupId(), k -> ConcurrentHashMap.newKeySet()).add(request.getFlag());
+            expiryQueue.add(request);
+            statusCounts.get(RequestStatus.SUSPENDED).incrementAndGet();
+        }
+        if (expiryHead() == request) {
+            // 新请求比原队首更早到期
+            synchronized (expiryLock) {
+                expiryLock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * 将请求从挂起列表和各索引中移除
+     * @return 请求仍在挂起列表中并被移除时返回true
+     */
+    private boolean unindex(PendingGroupRequest request) {
+        synchronized (suspendedRequests) {
+            if (!suspendedRequests.remove(request.getFlag(), request)) {
+                return false;
+            }
+            flagsByGroup.computeIfPresent(request.getGroupId(), (groupId, flags) -> {
+                flags.remove(request.getFlag());
+                return flags.isEmpty() ? null : flags;
+            });
+            expiryQueue.remove(request);
+            statusCounts.get(RequestStatus.SUSPENDED).decrementAndGet();
+            return true;
+        }
+    }
+    
+    /**
+     * 获取所有挂起的请求，按到期时间排序
      */
     public List<PendingGroupRequest> getSuspendedRequests() {
-        return suspendedRequests.values().stream()
-                .filter(request -> request.getStatus() == RequestStatus.SUSPENDED)
-                .collect(Collectors.toList());
+        return new ArrayList<>(expiryQueue);
     }
     
     /**
-     * 获取指定群的挂起请求
+     * 获取指定群的挂起请求，按到期时间排序
      */
     public List<PendingGroupRequest> getSuspendedRequestsByGroup(long groupId) {
-        return suspendedRequests.values().stream()
-                .filter(request -> request.getStatus() == RequestStatus.SUSPENDED && request.getGroupId() == groupId)
-                .collect(Collectors.toList());
+        Set<String> flags = flagsByGroup.get(groupId);
+        if (flags == null) {
+            return new ArrayList<>();
+        }
+        List<PendingGroupRequest> requests = new ArrayList<>(flags.size());
+        for (String flag : flags) {
+            PendingGroupRequest request = suspendedRequests.get(flag);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort(expiryQueue.comparator());
+        return requests;
+    }
+    
+    /**
+     * 获取各群的挂起请求数量
+     */
+    public Map<Long, Integer> getSuspendedRequestCountByGroup() {
+        Map<Long, Integer> counts = new HashMap<>();
+        flagsByGroup.forEach((groupId, flags) -> counts.put(groupId, flags.size()));
+        return counts;
+    }
+    
+    /**
+     * 查找满足条件的挂起请求，指定群号时只读取该群的请求
+     */
+    public List<PendingGroupRequest> findSuspendedRequests(RequestSelector selector) {
+        List<PendingGroupRequest> candidates = selector.getGroupId() != null
+                ? getSuspendedRequestsByGroup(selector.getGroupId()) : getSuspendedRequests();
+        long now = System.currentTimeMillis();
+        List<PendingGroupRequest> matched = new ArrayList<>();
+        for (PendingGroupRequest request : candidates) {
+            if (selector.matches(request, now)) {
+                matched.add(request);
+            }
+        }
+        return matched;
+    }
+    
+    /**
+     * 批量同意或拒绝挂起的请求
+     * 动作通过echo关联响应并发发送，同时等待响应的动作不超过并发上限；
+     * 只有收到成功响应的请求才记为已处理，失败的请求保持挂起。
+     * 响应回调在WebSocket读取线程上执行，只记录结果；处理结果在全部响应到达后由调用线程一次写入并刷盘
+     * @param requests 要处理的请求
+     * @param approve true为同意，false为拒绝
+     * @param reason 拒绝理由，同意时忽略
+     * @param concurrency 同时等待响应的动作上限
+     */
+    public BulkResult bulkResolve(List<PendingGroupRequest> requests, boolean approve, String reason, int concurrency)
+            throws InterruptedException {
+        RequestStatus status = approve ? RequestStatus.APPROVED : RequestStatus.REJECTED;
+        String rejectMessage = reason != null && !reason.trim().isEmpty() ? reason : "申请被拒绝";
+        Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        BulkResult result = new BulkResult();
+        result.setSelected(requests.size());
+        List<CompletableFuture<Void>> pending = new ArrayList<>(requests.size());
+        // 收到成功响应、等待写入处理结果的请求，写入前仍标记为处理中
+        List<PendingGroupRequest> accepted = new ArrayList<>();
+        
+        long startTime = System.nanoTime();
+        for (PendingGroupRequest request : requests) {
+            String flag = request.getFlag();
+            synchronized (request) {
+                if (request.getStatus() != RequestStatus.SUSPENDED || !suspendedRequests.containsKey(flag)
+                        || !inFlightFlags.add(flag)) {
+                    result.skipped++;
+                    continue;
+                }
+            }
+            
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                inFlightFlags.remove(flag);
+                // 已发送的动作仍等待响应并保存结果，避免成功的请求一直标记为处理中
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+                resolveAll(accepted, status);
+                throw e;
+            }
+            CompletableFuture<Void> done = client.handleGroupRequestAsync(flag, approve, rejectMessage)
+                    .handle((response, error) -> {
+                        String failure = error != null ? describeError(error)
+                                : OneBotClient.isActionOk(response) ? null : describeResponse(response);
+                        if (failure != null) {
+                            inFlightFlags.remove(flag);
+                        }
+                        synchronized (result) {
+                            if (failure == null) {
+                                accepted.add(request);
+                                result.succeeded++;
+                            } else {
+                                result.failed++;
+                                result.failures.add("群 " + request.getGroupId() + " 用户 " + request.getUserId()
+                                        + " (" + flag + "): " + failure);
+                            }
+                        }
+                        permits.release();
+                        return null;
+                    });
+            pending.add(done);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        resolveAll(accepted, status);
+        result.setElapsedMs((System.nanoTime() - startTime) / 1_000_000);
+        
+        logger.info("批量{}进群申请: 选中 {} 个, 成功 {} 个, 失败 {} 个, 跳过 {} 个, 用时 {} 毫秒",
+                approve ? "同意" : "拒绝", result.getSelected(), result.getSucceeded(), result.getFailed(),
+                result.getSkipped(), result.getElapsedMs());
+        return result;
+    }
+    
+    /**
+     * 一次写入一批已成功处理的申请并移出挂起列表
+     */
+    private void resolveAll(List<PendingGroupRequest> requests, RequestStatus status) {
+        List<String> flags = new ArrayList<>(requests.size());
+        for (PendingGroupRequest request : requests) {
+            flags.add(request.getFlag());
+        }
+        try {
+            store.recordResolved(flags, status);
+        } catch (IOException e) {
+            logger.error("保存 {} 个进群申请的处理结果失败", flags.size(), e);
+        }
+        for (PendingGroupRequest request : requests) {
+            synchronized (request) {
+                inFlightFlags.remove(request.getFlag());
+                markResolved(request, status);
+            }
+        }
+    }
+    
+    /**
+     * 等待动作响应
+     * @return 收到成功响应时返回null，否则返回失败原因
+     */
+    private static String awaitAction(CompletableFuture<JsonNode> action) {
+        try {
+            JsonNode response = action.join();
+            return OneBotClient.isActionOk(response) ? null : describeResponse(response);
+        } catch (CompletionException e) {
+            return describeError(e);
+        }
+    }
+    
+    private static String describeError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "等待响应超时";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+    
+    private static String describeResponse(JsonNode response) {
+        return response.has("wording") ? response.get("wording").asText()
+                : response.has("msg") ? response.get("msg").asText()
+                : "retcode " + response.path("retcode").asInt(-1);
     }
     
     /**
@@ -132,33 +461,190 @@ public class GroupRequestManager {
     }
     
     /**
-     * 清理过期的挂起请求（超过7天）
+     * 立即处理已到期的挂起请求，到期的请求也会由后台线程自动处理
      */
     public void cleanupExpiredRequests() {
-        long expireTime = System.currentTimeMillis() - (7 * 24 * 60 * 60 * 1000L); // 7天
+        expireDueRequests(System.currentTimeMillis());
+    }
+    
+    /**
+     * 按到期顺序处理到期时间不晚于指定时间的请求，只读取过期队列的头部
+     * 自动同意和拒绝的动作先全部发送，同时等待响应的动作不超过并发上限，
+     * 再在当前线程依次等待响应，只有收到成功响应的请求才记为已处理
+     */
+    private void expireDueRequests(long now) {
+        List<PendingGroupRequest> due = new ArrayList<>();
+        for (PendingGroupRequest request : expiryQueue) {
+            if (request.getExpireAt() > now) {
+                break;
+            }
+            due.add(request);
+        }
         
-        List<String> expiredFlags = suspendedRequests.entrySet().stream()
-                .filter(entry -> entry.getValue().getTimestamp() < expireTime)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        int expired = 0;
+        Semaphore permits = new Semaphore(EXPIRY_CONCURRENCY);
+        List<PendingGroupRequest> sent = new ArrayList<>();
+        List<CompletableFuture<JsonNode>> actions = new ArrayList<>();
+        for (PendingGroupRequest request : due) {
+            boolean needsAction = request.getExpireAction() != SuspendExpireAction.DROP;
+            if (needsAction) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    // 正在关闭，不再发送，已发送的动作仍等待响应并保存结果
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            CompletableFuture<JsonNode> action = null;
+            // 与同意、拒绝互斥，已被处理的请求不再处理
+            synchronized (request) {
+                if (request.getStatus() == RequestStatus.SUSPENDED && suspendedRequests.containsKey(request.getFlag())) {
+                    if (inFlightFlags.contains(request.getFlag())) {
+                        // 正在批量处理，响应失败时保留到期处理
+                        postpone(request, now + EXPIRY_RETRY_MS, "正在批量处理");
+                    } else if (request.getExpireAction() == SuspendExpireAction.APPROVE) {
+                        action = client.handleGroupRequestAsync(request.getFlag(), true, null);
+                    } else if (request.getExpireAction() == SuspendExpireAction.REJECT) {
+                        String message = request.getExpireMessage() != null && !request.getExpireMessage().trim().isEmpty()
+                                ? request.getExpireMessage() : "申请超时未处理";
+                        action = client.handleGroupRequestAsync(request.getFlag(), false, message);
+                    } else if (drop(request)) {
+                        expired++;
+                    }
+                    if (action != null) {
+                        inFlightFlags.add(request.getFlag());
+                    }
+                }
+            }
+            if (action == null) {
+                if (needsAction) {
+                    permits.release();
+                }
+                continue;
+            }
+            // 收到响应或超时后释放许可，回调只释放许可，结果由当前线程处理
+            action.whenComplete((response, error) -> permits.release());
+            sent.add(request);
+            actions.add(action);
+        }
         
-        for (String flag : expiredFlags) {
-            PendingGroupRequest request = suspendedRequests.remove(flag);
-            logger.info("清理过期的挂起请求: 群 {}, 用户 {}", request.getGroupId(), request.getUserId());
+        for (int i = 0; i < sent.size(); i++) {
+            if (finishExpire(sent.get(i), actions.get(i), now)) {
+                expired++;
+            }
         }
         
-        if (!expiredFlags.isEmpty()) {
-            ConsoleUtil.info("清理了 " + expiredFlags.size() + " 个过期的挂起请求");
+        if (expired > 0) {
+            ConsoleUtil.info("处理了 " + expired + " 个到期的挂起请求");
+        }
+    }
+    
+    /**
+     * 清理到期处理方式为DROP的请求，调用方需持有申请对象的锁
+     * @return 请求仍在挂起列表中并被移除时返回true
+     */
+    private boolean drop(PendingGroupRequest request) {
+        if (!unindex(request)) {
+            return false;
+        }
+        try {
+            store.recordRemoved(request.getFlag());
+        } catch (IOException e) {
+            logger.error("保存过期申请的清理结果失败: {}", request.getFlag(), e);
+        }
+        logger.info("清理过期的挂起请求: 群 {}, 用户 {}", request.getGroupId(), request.getUserId());
+        return true;
+    }
+    
+    /**
+     * 等待自动同意或拒绝的响应，成功时记为已处理，失败时推迟重试
+     * @return 请求已被处理并移出挂起列表时返回true
+     */
+    private boolean finishExpire(PendingGroupRequest request, CompletableFuture<JsonNode> action, long now) {
+        String failure = awaitAction(action);
+        boolean approve = request.getExpireAction() == SuspendExpireAction.APPROVE;
+        synchronized (request) {
+            inFlightFlags.remove(request.getFlag());
+            if (failure != null) {
+                postpone(request, now + EXPIRY_RETRY_MS, failure);
+                return false;
+            }
+            resolve(request, approve ? RequestStatus.APPROVED : RequestStatus.REJECTED);
         }
+        logger.info("挂起请求到期，自动{}: 群 {}, 用户 {}", approve ? "同意" : "拒绝", request.getGroupId(), request.getUserId());
+        return true;
+    }
+    
+    /**
+     * 推迟请求的到期时间，只影响本次运行，重启后按原到期时间立即处理
+     */
+    private void postpone(PendingGroupRequest request, long expireAt, String failure) {
+        synchronized (suspendedRequests) {
+            if (expiryQueue.remove(request)) {
+                request.setExpireAt(expireAt);
+                expiryQueue.add(request);
+            }
+        }
+        logger.warn("自动处理到期的挂起请求失败，{} 秒后重试: 群 {}, 用户 {}, 原因: {}",
+                EXPIRY_RETRY_MS / 1000, request.getGroupId(), request.getUserId(), failure);
+    }
+    
+    /**
+     * 到期处理线程：等待到过期队列队首的到期时间，新请求更早到期时被提前唤醒
+     */
+    private void runExpiry() {
+        while (!closed) {
+            try {
+                synchronized (expiryLock) {
+                    long delay = nextExpiryDelay();
+                    if (delay > 0) {
+                        expiryLock.wait(Math.min(delay, MAX_EXPIRY_WAIT_MS));
+                        continue;
+                    }
+                }
+                expireDueRequests(System.currentTimeMillis());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("处理到期的挂起请求失败", e);
+            }
+        }
+    }
+    
+    private long nextExpiryDelay() {
+        PendingGroupRequest head = expiryHead();
+        return head == null ? MAX_EXPIRY_WAIT_MS : head.getExpireAt() - System.currentTimeMillis();
+    }
+    
+    // 过期队列的队首，队列为空时返回null
+    private PendingGroupRequest expiryHead() {
+        Iterator<PendingGroupRequest> iterator = expiryQueue.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
     }
     
     /**
      * 获取挂起请求数量
      */
     public int getSuspendedRequestCount() {
-        return (int) suspendedRequests.values().stream()
-                .filter(request -> request.getStatus() == RequestStatus.SUSPENDED)
-                .count();
+        return statusCounts.get(RequestStatus.SUSPENDED).get();
+    }
+    
+    /**
+     * 获取指定状态的请求数量
+     * SUSPENDED为当前挂起的数量，APPROVED和REJECTED为本次运行以来手动处理的数量
+     */
+    public int getRequestCount(RequestStatus status) {
+        return statusCounts.get(status).get();
+    }
+    
+    /**
+     * 关闭持久化存储，程序关闭时调用
+     */
+    public void close() {
+        closed = true;
+        expiryThread.interrupt();
+        store.close();
     }
     
     /**
@@ -171,7 +657,11 @@ public class GroupRequestManager {
         private String comment;
         private String reason;
         private long timestamp;
+        private int level = -1;
         private RequestStatus status;
+        private long expireAt = Long.MAX_VALUE;
+        private SuspendExpireAction expireAction = SuspendExpireAction.DROP;
+        private String expireMessage;
         
         // Getters and Setters
         public long getGroupId() {
@@ -214,6 +704,14 @@ public class GroupRequestManager {
             this.reason = reason;
         }
         
+        public int getLevel() {
+            return level;
+        }
+        
+        public void setLevel(int level) {
+            this.level = level;
+        }
+        
         public long getTimestamp() {
             return timestamp;
         }
@@ -230,6 +728,30 @@ public class GroupRequestManager {
             this.status = status;
         }
         
+        public long getExpireAt() {
+            return expireAt;
+        }
+        
+        public void setExpireAt(long expireAt) {
+            this.expireAt = expireAt;
+        }
+        
+        public SuspendExpireAction getExpireAction() {
+            return expireAction;
+        }
+        
+        public void setExpireAction(SuspendExpireAction expireAction) {
+            this.expireAction = expireAction;
+        }
+        
+        public String getExpireMessage() {
+            return expireMessage;
+        }
+        
+        public void setExpireMessage(String expireMessage) {
+            this.expireMessage = expireMessage;
+        }
+        
         @Override
         public String toString() {
             return String.format("PendingGroupRequest{groupId=%d, userId=%d, flag='%s', comment='%s', reason='%s', status=%s}",
@@ -237,6 +759,57 @@ public class GroupRequestManager {
         }
     }
     
+    /**
+     * 批量处理的筛选条件，未设置的条件不限制
+     */
+    @Data
+    public static class RequestSelector {
+        private Long groupId;            // 群号
+        private long minAgeMs;           // 挂起时间不短于该值（毫秒）
+        private Pattern commentPattern;  // 申请信息需包含匹配该正则的内容
+        private Integer minLevel;        // 最低等级（含），等级未知的请求不匹配
+        private Integer maxLevel;        // 最高等级（含），等级未知的请求不匹配
+        
+        boolean matches(PendingGroupRequest request, long now) {
+            if (groupId != null && request.getGroupId() != groupId) {
+                return false;
+            }
+            if (minAgeMs > 0 && now - request.getTimestamp() < minAgeMs) {
+                return false;
+            }
+            if (commentPattern != null && (request.getComment() == null || !commentPattern.matcher(request.getComment()).find())) {
+                return false;
+            }
+            if ((minLevel != null || maxLevel != null) && request.getLevel() < 0) {
+                return false;
+            }
+            if (minLevel != null && request.getLevel() < minLevel) {
+                return false;
+            }
+            return maxLevel == null || request.getLevel() <= maxLevel;
+        }
+    }
+    
+    /**
+     * 批量处理的结果
+     */
+    @Data
+    public static class BulkResult {
+        private int selected;    // 选中的请求数
+        private int succeeded;   // 收到成功响应的请求数
+        private int failed;      // 失败或超时的请求数
+        private int skipped;     // 已被处理或正在处理而跳过的请求数
+        private long elapsedMs;  // 用时（毫秒）
+        private List<String> failures = new ArrayList<>(); // 失败的请求和原因
+        
+        /**
+         * 每秒完成的动作数
+         */
+        public double getThroughput() {
+            return elapsedMs == 0 ? succeeded + failed : (succeeded + failed) * 1000.0 / elapsedMs;
+        }
+    }
+    
     /**
      * 请求状态枚举
      */
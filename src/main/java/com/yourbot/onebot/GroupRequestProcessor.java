@@ -3,14 +3,17 @@ package com.yourbot.onebot;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.yourbot.config.ConfigManager;
 import com.yourbot.scheduler.ScheduledTask;
-import com.yourbot.scheduler.TaskType;
+import com.yourbot.scheduler.VerifyRule;
 import com.yourbot.util.ConsoleUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 进群请求处理器
@@ -18,8 +21,17 @@ import java.util.concurrent.ConcurrentHashMap;
 public class GroupRequestProcessor {
     private static final Logger logger = LoggerFactory.getLogger(GroupRequestProcessor.class);
     
-    // 缓存正在处理的进群请求，键为请求标识(flag)，值为请求信息
-    private final Map<String, GroupJoinRequest> pendingRequests = new ConcurrentHashMap<>();
+    // 最多同时跟踪的进群请求数
+    private static final int MAX_IN_FLIGHT = 1000;
+    // 进群请求的最长处理时间（毫秒），超过后不再跟踪
+    private static final long IN_FLIGHT_TTL_MS = 5 * 60 * 1000;
+    // 处理进群请求的线程数，查询等级等信息时需要等待OneBot的响应
+    private static final int WORKER_THREADS = 4;
+    
+    private static GroupRequestProcessor instance;
+    
+    // 正在处理的进群请求，用于忽略重复投递的请求
+    private final InFlightRequests inFlight = new InFlightRequests(MAX_IN_FLIGHT, IN_FLIGHT_TTL_MS);
     
     // OneBotClient实例
     private final OneBotClient client = OneBotClient.getInstance();
@@ -27,6 +39,30 @@ public class GroupRequestProcessor {
     // GroupRequestManager实例
     private final GroupRequestManager requestManager = GroupRequestManager.getInstance();
     
+    // 进群防护，按群检测申请速率
+    private final RaidGuard raidGuard = new RaidGuard(client);
+    
+    // 处理进群请求的线程池：事件在WebSocket读取线程上分发，OneBot的响应也只能由该线程读取，
+    // 在读取线程上等待响应只会等到超时，因此进群请求交给线程池处理
+    private final ExecutorService workers;
+    
+    private GroupRequestProcessor() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_IN_FLIGHT), r -> {
+                    Thread thread = new Thread(r, "GroupRequestWorker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    public static synchronized GroupRequestProcessor getInstance() {
+        if (instance == null) {
+            instance = new GroupRequestProcessor();
+        }
+        return instance;
+    }
+    
     /**
      * 初始化处理器
      */
@@ -47,7 +83,7 @@ public class GroupRequestProcessor {
     }
     
     /**
-     * 处理进群请求事件
+     * 处理进群请求事件，在WebSocket读取线程上去重后交给线程池处理
      */
     private void handleGroupJoinRequest(JsonNode data) {
         try {
@@ -55,35 +91,61 @@ public class GroupRequestProcessor {
             long userId = data.get("user_id").asLong();
             String flag = data.get("flag").asText();
             String comment = data.has("comment") ? data.get("comment").asText() : "";
+            // 通过群成员邀请申请时为邀请人QQ号
+            long invitorId = data.path("invitor_id").asLong(0);
             
-            GroupJoinRequest request = new GroupJoinRequest();
-            request.setGroupId(groupId);
-            request.setUserId(userId);
-            request.setFlag(flag);
-            request.setComment(comment);
-            request.setTimestamp(System.currentTimeMillis());
-            
-            // 将请求加入缓存
-            pendingRequests.put(flag, request);
+            long now = System.currentTimeMillis();
             
-            logger.info("收到进群请求: 群 {}, 用户 {}, 验证信息: {}", groupId, userId, comment);
-            ConsoleUtil.info("收到进群请求: 群 " + groupId + ", 用户 " + userId + ", 验证信息: " + comment);
-            
-            // 获取此群配置的验证任务
-            ScheduledTask verifyTask = getVerifyTaskForGroup(groupId);
+            // 同一请求正在处理或已挂起时忽略重复的请求
+            if (requestManager.getRequestByFlag(flag) != null || !inFlight.begin(flag, now)) {
+                logger.debug("进群请求 {} 已在处理中，忽略重复的请求", flag);
+                return;
+            }
             
-            // 如果有为此群配置进群验证任务
-            if (verifyTask != null) {
-                processVerification(verifyTask, groupId, userId, flag, comment);
-            } else {
-                logger.info("群 {} 没有配置进群验证任务，忽略此请求", groupId);
-                ConsoleUtil.info("群 " + groupId + " 没有配置进群验证任务，忽略此请求");
+            try {
+                workers.execute(() -> {
+                    try {
+                        processJoinRequest(groupId, userId, flag, comment, invitorId, now);
+                    } catch (Exception e) {
+                        logger.error("处理进群请求失败", e);
+                        ConsoleUtil.error("处理进群请求失败: " + e.getMessage());
+                    } finally {
+                        // 无论同意、拒绝、挂起还是忽略，处理结束后都不再跟踪
+                        inFlight.end(flag);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 请求仍保留在QQ中，可由管理员手动处理或等待申请人重新申请
+                inFlight.end(flag);
+                logger.warn("进群请求处理队列已满，不处理用户 {} 加入群 {} 的请求", userId, groupId);
+                ConsoleUtil.warn("进群请求处理队列已满，不处理用户 " + userId + " 加入群 " + groupId + " 的请求");
             }
         } catch (Exception e) {
             logger.error("处理进群请求失败", e);
             ConsoleUtil.error("处理进群请求失败: " + e.getMessage());
         }
     }
+    
+    /**
+     * 按群配置的验证任务处理进群请求
+     */
+    private void processJoinRequest(long groupId, long userId, String flag, String comment, long invitorId,
+                                    long now) {
+        logger.info("收到进群请求: 群 {}, 用户 {}, 验证信息: {}", groupId, userId, comment);
+        ConsoleUtil.info("收到进群请求: 群 " + groupId + ", 用户 " + userId + ", 验证信息: " + comment);
+        
+        // 获取此群配置的验证任务
+        ScheduledTask verifyTask = getVerifyTaskForGroup(groupId);
+        
+        // 如果有为此群配置进群验证任务
+        if (verifyTask != null) {
+            boolean raid = raidGuard.onRequest(verifyTask, groupId, now);
+            processVerification(verifyTask, groupId, userId, flag, comment, invitorId, raid);
+        } else {
+            logger.info("群 {} 没有配置进群验证任务，忽略此请求", groupId);
+            ConsoleUtil.info("群 " + groupId + " 没有配置进群验证任务，忽略此请求");
+        }
+    }
 
     /**
      * 处理群邀请事件
@@ -131,15 +193,50 @@ public class GroupRequestProcessor {
 
     /**
      * 处理进群验证
+     * @param invitorId 邀请人QQ号，不是邀请时为0
+     * @param raid 该群是否处于防护模式，防护模式下先按防护策略检查，同意和拒绝动作合并发送
      */
-    private void processVerification(ScheduledTask verifyTask, long groupId, long userId, String flag, String comment) {
+    private void processVerification(ScheduledTask verifyTask, long groupId, long userId, String flag, String comment,
+                                     long invitorId, boolean raid) {
+        if (raid && verifyTask.getRaidPolicy() == ScheduledTask.RaidPolicy.SUSPEND_ALL) {
+            // 不查询成员信息，直接挂起
+            requestManager.addSuspendedRequest(verifyTask, groupId, userId, -1, flag, comment, "防护模式：挂起所有申请");
+            raidGuard.recordSuspended(groupId);
+            return;
+        }
+        
+        // 申请信息，等级和注册时间在第一次使用时查询
+        RequestFacts facts = new RequestFacts(verifyTask, groupId, userId, comment, invitorId);
+        
+        if (raid) {
+            String raidRejectReason = checkRaidPolicy(verifyTask, facts);
+            if (raidRejectReason != null && raidRejectReason.isEmpty()) {
+                // 防护策略无法判断，挂起
+                String unknown = verifyTask.getRaidPolicy() == ScheduledTask.RaidPolicy.REQUIRE_LEVEL ? "用户等级" : "账号注册时间";
+                requestManager.addSuspendedRequest(verifyTask, groupId, userId, facts.knownLevel(), flag, comment, "防护模式：无法获取" + unknown);
+                raidGuard.recordSuspended(groupId);
+                return;
+            }
+            if (raidRejectReason != null) {
+                logger.info("防护模式：拒绝用户 {} 的请求，原因: {}", userId, raidRejectReason);
+                String rejectMessage = verifyTask.getRaidRejectMessage() != null && !verifyTask.getRaidRejectMessage().isEmpty()
+                        ? verifyTask.getRaidRejectMessage() : buildRejectMessage(verifyTask, raidRejectReason);
+                sendDecision(groupId, userId, flag, raid, false, raidRejectReason, rejectMessage);
+                return;
+            }
+        }
+        
+        if (verifyTask.hasVerifyRule()) {
+            processVerifyRule(verifyTask, groupId, userId, flag, comment, facts, raid);
+            return;
+        }
+        
         // 提取用户提供的答案
         String answer = client.extractVerifyAnswer(comment);
         logger.debug("提取的验证答案: {}", answer);
         
         // 获取用户等级
-        int userLevel = client.getGroupMemberLevel(groupId, userId);
-        logger.debug("用户 {} 在群 {} 的等级: {}", userId, groupId, userLevel);
+        int userLevel = facts.level();
         
         // 验证结果
         boolean answerCorrect = verifyTask.checkAnswer(answer);
@@ -157,8 +254,8 @@ public class GroupRequestProcessor {
         boolean processingRequired = true;
         String rejectReason = null;
         
-        // 如果达到自动通过等级，直接同意
         if (autoAcceptLevel) {
+            // 如果达到自动通过等级，直接同意
             logger.info("用户 {} 等级达到自动通过标准，直接同意", userId);
             accept = true;
         } else {
@@ -173,7 +270,7 @@ public class GroupRequestProcessor {
                 case SUSPEND_ALL:
                     // 挂起所有请求
                     processingRequired = false;
-                    requestManager.addSuspendedRequest(groupId, userId, flag, comment, "验证模式配置为挂起所有请求");
+                    requestManager.addSuspendedRequest(verifyTask, groupId, userId, userLevel, flag, comment, "验证模式配置为挂起所有请求");
                     logger.info("验证模式为挂起所有，挂起用户 {} 的请求", userId);
                     ConsoleUtil.info("验证模式为挂起所有，挂起用户 " + userId + " 的请求");
                     break;
@@ -228,7 +325,7 @@ public class GroupRequestProcessor {
                     } else if (answerCorrect) {
                         // 答案通过但等级未通过，不处理
                         processingRequired = false;
-                        requestManager.addSuspendedRequest(groupId, userId, flag, comment, "答案验证通过但等级未达标");
+                        requestManager.addSuspendedRequest(verifyTask, groupId, userId, userLevel, flag, comment, "答案验证通过但等级未达标");
                         logger.info("用户 {} 答案验证通过但等级未达标，请求挂起", userId);
                         ConsoleUtil.info("用户 " + userId + " 答案验证通过但等级未达标，请求挂起");
                     } else {
@@ -245,7 +342,7 @@ public class GroupRequestProcessor {
                     } else if (levelPassed) {
                         // 等级通过但答案未通过，不处理
                         processingRequired = false;
-                        requestManager.addSuspendedRequest(groupId, userId, flag, comment, "等级验证通过但答案未通过");
+                        requestManager.addSuspendedRequest(verifyTask, groupId, userId, userLevel, flag, comment, "等级验证通过但答案未通过");
                         logger.info("用户 {} 等级验证通过但答案未通过，请求挂起", userId);
                         ConsoleUtil.info("用户 " + userId + " 等级验证通过但答案未通过，请求挂起");
                     } else {
@@ -259,97 +356,232 @@ public class GroupRequestProcessor {
         
         // 处理请求
         if (processingRequired) {
-            if (accept) {
-                // 同意请求
-                client.handleGroupRequest(flag, true, null);
-                logger.info("验证通过，同意 {} 加入群 {}", userId, groupId);
-                ConsoleUtil.success("验证通过，同意 " + userId + " 加入群 " + groupId);
-            } else {
-                // 拒绝请求
-                String rejectMessage = verifyTask.getRejectMessage();
-                if (rejectMessage == null || rejectMessage.isEmpty()) {
-                    if (rejectReason != null) {
-                        rejectMessage = "验证未通过，原因：" + rejectReason;
-                    } else {
-                        rejectMessage = "验证未通过，请重新申请并正确回答问题：" + verifyTask.getVerifyQuestion();
-                    }
+            sendDecision(groupId, userId, flag, raid, accept, rejectReason,
+                    accept ? null : buildRejectMessage(verifyTask, rejectReason));
+        }
+    }
+    
+    /**
+     * 按验证规则处理进群验证，规则用到的信息才会查询
+     */
+    private void processVerifyRule(ScheduledTask verifyTask, long groupId, long userId, String flag, String comment,
+                                   RequestFacts facts, boolean raid) {
+        VerifyRule.Decision decision;
+        try {
+            decision = verifyTask.evaluateVerifyRule(facts);
+        } catch (IllegalArgumentException e) {
+            // 规则有误时不自动处理，等待管理员修正规则后处理
+            logger.error("任务 {} 的{}", verifyTask.getName(), e.getMessage());
+            requestManager.addSuspendedRequest(verifyTask, groupId, userId, facts.knownLevel(), flag, comment, "验证规则有误");
+            if (raid) {
+                raidGuard.recordSuspended(groupId);
+            }
+            return;
+        }
+        
+        String rule = decision.getRule() != null ? decision.getRule() : "没有满足的规则";
+        logger.debug("用户 {} 的验证规则结果: {}, 规则: {}", userId, decision.getAction(), rule);
+        
+        switch (decision.getAction()) {
+            case ACCEPT:
+                logger.info("用户 {} 满足验证规则 {}", userId, rule);
+                sendDecision(groupId, userId, flag, raid, true, null, null);
+                break;
+            case REJECT:
+                String rejectReason = decision.getRule() != null ? "满足拒绝规则 " + rule : "不满足任何验证规则";
+                String rejectMessage = decision.getMessage() != null
+                        ? decision.getMessage() : buildRejectMessage(verifyTask, rejectReason);
+                sendDecision(groupId, userId, flag, raid, false, rejectReason, rejectMessage);
+                break;
+            case SUSPEND:
+            default:
+                String reason;
+                if (decision.getUnknown() != null) {
+                    reason = "无法获取" + decision.getUnknown() + "，规则 " + rule + " 无法判断";
+                } else {
+                    reason = decision.getMessage() != null ? decision.getMessage() : "满足挂起规则 " + rule;
+                }
+                requestManager.addSuspendedRequest(verifyTask, groupId, userId, facts.knownLevel(), flag, comment, reason);
+                if (raid) {
+                    raidGuard.recordSuspended(groupId);
+                }
+                logger.info("用户 {} 的请求挂起，原因: {}", userId, reason);
+                ConsoleUtil.info("用户 " + userId + " 的请求挂起，原因: " + reason);
+                break;
+        }
+    }
+    
+    /**
+     * 发送同意或拒绝动作，防护模式下加入防护队列合并发送
+     */
+    private void sendDecision(long groupId, long userId, String flag, boolean raid, boolean accept,
+                              String rejectReason, String rejectMessage) {
+        if (raid) {
+            // 防护模式下合并发送，由防护线程输出汇总日志
+            raidGuard.enqueue(groupId, userId, flag, accept, rejectMessage);
+            logger.debug("防护模式：{} 用户 {} 加入群 {}", accept ? "同意" : "拒绝", userId, groupId);
+        } else if (accept) {
+            // 同意请求
+            client.handleGroupRequest(flag, true, null);
+            logger.info("验证通过，同意 {} 加入群 {}", userId, groupId);
+            ConsoleUtil.success("验证通过，同意 " + userId + " 加入群 " + groupId);
+        } else {
+            // 拒绝请求
+            client.handleGroupRequest(flag, false, rejectMessage);
+            logger.info("验证失败，拒绝 {} 加入群 {}, 原因: {}", userId, groupId, rejectReason);
+            ConsoleUtil.warn("验证失败，拒绝 " + userId + " 加入群 " + groupId);
+        }
+    }
+    
+    /**
+     * 按防护策略检查申请
+     * @return 拒绝原因；通过时返回null，无法判断时返回空字符串
+     */
+    private String checkRaidPolicy(ScheduledTask verifyTask, RequestFacts facts) {
+        switch (verifyTask.getRaidPolicy()) {
+            case REQUIRE_LEVEL:
+                int minLevel = verifyTask.getRaidMinLevel() > 0 ? verifyTask.getRaidMinLevel() : verifyTask.getMinLevel();
+                int level = facts.level();
+                if (level < 0) {
+                    return "";
+                }
+                return level < minLevel ? "防护模式：等级低于 " + minLevel : null;
+            case REJECT_NEW_ACCOUNTS:
+                int ageDays = facts.accountAgeDays();
+                if (ageDays < 0) {
+                    return "";
                 }
-                
-                client.handleGroupRequest(flag, false, rejectMessage);
-                logger.info("验证失败，拒绝 {} 加入群 {}, 原因: {}", userId, groupId, rejectReason);
-                ConsoleUtil.warn("验证失败，拒绝 " + userId + " 加入群 " + groupId);
+                return ageDays < verifyTask.getRaidMinAccountAgeDays()
+                        ? "防护模式：账号注册不足 " + verifyTask.getRaidMinAccountAgeDays() + " 天" : null;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 生成拒绝理由，未配置拒绝消息时根据拒绝原因生成
+     */
+    private String buildRejectMessage(ScheduledTask verifyTask, String rejectReason) {
+        String rejectMessage = verifyTask.getRejectMessage();
+        if (rejectMessage == null || rejectMessage.isEmpty()) {
+            if (rejectReason != null) {
+                rejectMessage = "验证未通过，原因：" + rejectReason;
+            } else {
+                rejectMessage = "验证未通过，请重新申请并正确回答问题：" + verifyTask.getVerifyQuestion();
             }
-            
-            // 处理完毕，从缓存中移除
-            pendingRequests.remove(flag);
         }
+        return rejectMessage;
     }
     
     /**
      * 获取群对应的验证任务
      */
     private ScheduledTask getVerifyTaskForGroup(long groupId) {
-        List<ScheduledTask> tasks = ConfigManager.getInstance().getScheduledTasks();
-        
-        for (ScheduledTask task : tasks) {
-            if (task.getType() == TaskType.GROUP_REQUEST_VERIFY &&
-                    "GROUP".equals(task.getTargetType()) &&
-                    task.getTargetIds().contains(groupId)) {
-                return task;
-            }
-        }
-        
-        return null;
+        return new VerifyTaskLookup(ConfigManager.getInstance().getScheduledTasks()).find(groupId);
     }
     
     /**
-     * 进群请求信息
+     * 正在处理的进群请求数
      */
-    private static class GroupJoinRequest {
-        private long groupId;
-        private long userId;
-        private String flag;
-        private String comment;
-        private long timestamp;
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    /**
+     * 最早的正在处理的进群请求已处理的时间（毫秒）
+     */
+    public long getOldestInFlightAgeMs() {
+        return inFlight.oldestAgeMs(System.currentTimeMillis());
+    }
+    
+    /**
+     * 因处理超时或超过容量而不再跟踪的进群请求数
+     */
+    public long getInFlightEvictions() {
+        return inFlight.getEvictions();
+    }
+    
+    /**
+     * 一个进群申请的信息，需要调用OneBot接口的信息在第一次使用时查询并缓存；
+     * 查询会等待OneBot的响应，只在进群请求线程池中使用
+     */
+    private class RequestFacts implements VerifyRule.Facts {
+        private final ScheduledTask verifyTask;
+        private final long groupId;
+        private final long userId;
+        private final String comment;
+        private final long invitorId;
         
-        public long getGroupId() {
-            return groupId;
-        }
+        private Boolean answerCorrect;
+        private Integer level;
+        private Integer accountAgeDays;
+        private String invitorRole;
+        private boolean invitorRoleFetched;
         
-        public void setGroupId(long groupId) {
+        RequestFacts(ScheduledTask verifyTask, long groupId, long userId, String comment, long invitorId) {
+            this.verifyTask = verifyTask;
             this.groupId = groupId;
+            this.userId = userId;
+            this.comment = comment;
+            this.invitorId = invitorId;
         }
         
-        public long getUserId() {
-            return userId;
-        }
-        
-        public void setUserId(long userId) {
-            this.userId = userId;
+        @Override
+        public boolean answerCorrect() {
+            if (answerCorrect == null) {
+                String answer = client.extractVerifyAnswer(comment);
+                logger.debug("提取的验证答案: {}", answer);
+                answerCorrect = verifyTask.checkAnswer(answer);
+            }
+            return answerCorrect;
         }
         
-        public String getFlag() {
-            return flag;
+        @Override
+        public String comment() {
+            return comment;
         }
         
-        public void setFlag(String flag) {
-            this.flag = flag;
+        @Override
+        public int level() {
+            if (level == null) {
+                level = client.getGroupMemberLevel(groupId, userId);
+                logger.debug("用户 {} 在群 {} 的等级: {}", userId, groupId, level);
+            }
+            return level;
         }
         
-        public String getComment() {
-            return comment;
+        /**
+         * 已查询过的等级，未查询时返回-1
+         */
+        int knownLevel() {
+            return level != null ? level : -1;
         }
         
-        public void setComment(String comment) {
-            this.comment = comment;
+        @Override
+        public int accountAgeDays() {
+            if (accountAgeDays == null) {
+                accountAgeDays = client.getAccountAgeDays(userId);
+                logger.debug("用户 {} 的注册天数: {}", userId, accountAgeDays);
+            }
+            return accountAgeDays;
         }
         
-        public long getTimestamp() {
-            return timestamp;
+        @Override
+        public boolean invited() {
+            return invitorId != 0;
         }
         
-        public void setTimestamp(long timestamp) {
-            this.timestamp = timestamp;
+        @Override
+        public Boolean invitedByAdmin() {
+            if (!invited()) {
+                return false;
+            }
+            if (!invitorRoleFetched) {
+                invitorRole = client.getGroupMemberRole(groupId, invitorId);
+                invitorRoleFetched = true;
+                logger.debug("邀请人 {} 在群 {} 的身份: {}", invitorId, groupId, invitorRole);
+            }
+            return invitorRole == null ? null : "owner".equals(invitorRole) || "admin".equals(invitorRole);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,373 @@
+package com.yourbot.onebot;
+
+import com.yourbot.onebot.GroupRequestManager.PendingGroupRequest;
+import com.yourbot.onebot.GroupRequestManager.RequestStatus;
+import com.yourbot.scheduler.ScheduledTask.SuspendExpireAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 挂起进群申请的持久化存储
+ * 每次状态变化作为一条带校验和的记录追加到预写日志并刷盘，一条记录要么完整生效要么在启动时被丢弃；
+ * 日志中的记录数明显多于仍挂起的申请时，将挂起的申请写入快照并清空日志，
+ * 启动时读取快照和其后的日志，耗时与挂起的申请数成正比
+ */
+class GroupRequestStore {
+    private static final Logger logger = LoggerFactory.getLogger(GroupRequestStore.class);
+    
+    static final String SNAPSHOT_FILE = "requests.snapshot";
+    static final String WAL_FILE = "requests.wal";
+    
+    private static final int SNAPSHOT_MAGIC = 0x47525353; // "GRSS"
+    private static final int WAL_MAGIC = 0x47525741;      // "GRWA"
+    private static final byte VERSION = 1;
+    private static final int WAL_HEADER_SIZE = 5;
+    
+    // 记录类型
+    private static final byte OP_SUSPEND = 1;
+    private static final byte OP_RESOLVE = 2;
+    private static final byte OP_REMOVE = 3;
+    
+    // 日志记录数超过该值且超过挂起申请数的两倍时压缩
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    
+    private final Path dir;
+    private FileChannel wal;
+    private int walRecords;
+    
+    // 仍挂起的申请，与日志同步更新，压缩时写入快照
+    private final Map<String, PendingGroupRequest> live = new LinkedHashMap<>();
+    
+    GroupRequestStore(Path dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * 读取快照和日志，恢复仍挂起的申请；日志末尾不完整的记录会被截断
+     */
+    synchronized List<PendingGroupRequest> load() throws IOException {
+        Files.createDirectories(dir);
+        live.clear();
+        readSnapshot();
+        
+        wal = FileChannel.open(dir.resolve(WAL_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = replayWal();
+        if (validEnd < wal.size()) {
+            logger.warn("挂起申请日志末尾有 {} 字节不完整的记录，已丢弃", wal.size() - validEnd);
+            wal.truncate(validEnd);
+        }
+        wal.position(validEnd);
+        if (validEnd == 0) {
+            writeWalHeader();
+        }
+        return new ArrayList<>(live.values());
+    }
+    
+    /**
+     * 记录新挂起的申请
+     */
+    synchronized void recordSuspended(PendingGroupRequest request) throws IOException {
+        append(encodeSuspend(request));
+        live.put(request.getFlag(), request);
+        compactIfNeeded();
+    }
+    
+    /**
+     * 记录申请被同意或拒绝，记录写入并刷盘后才返回
+     */
+    synchronized void recordResolved(String flag, RequestStatus status) throws IOException {
+        append(encodeResolve(flag, status));
+        live.remove(flag);
+        compactIfNeeded();
+    }
+    
+    /**
+     * 记录一批申请被同意或拒绝，所有记录写入后只刷盘一次
+     */
+    synchronized void recordResolved(List<String> flags, RequestStatus status) throws IOException {
+        if (flags.isEmpty()) {
+            return;
+        }
+        for (String flag : flags) {
+            write(encodeResolve(flag, status));
+        }
+        wal.force(false);
+        for (String flag : flags) {
+            live.remove(flag);
+        }
+        compactIfNeeded();
+    }
+    
+    /**
+     * 记录申请因过期被移除
+     */
+    synchronized void recordRemoved(String flag) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_REMOVE);
+        writeString(out, flag);
+        append(bytes.toByteArray());
+        live.remove(flag);
+        compactIfNeeded();
+    }
+    
+    synchronized void close() {
+        if (wal == null) {
+            return;
+        }
+        try {
+            wal.force(true);
+            wal.close();
+        } catch (IOException e) {
+            logger.warn("关闭挂起申请日志失败", e);
+        }
+        wal = null;
+    }
+    
+    /**
+     * 追加一条记录：长度、CRC32和内容一次写入并刷盘
+     */
+    private void append(byte[] payload) throws IOException {
+        write(payload);
+        wal.force(false);
+    }
+    
+    /**
+     * 写入一条记录但不刷盘
+     */
+    private void write(byte[] payload) throws IOException {
+        if (wal == null) {
+            throw new IOException("挂起申请存储未打开");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+        walRecords++;
+    }
+    
+    private void compactIfNeeded() {
+        if (walRecords < COMPACT_MIN_RECORDS || walRecords < live.size() * 2) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            // 压缩失败不影响已写入的日志，下次写入时重试
+            logger.warn("压缩挂起申请日志失败", e);
+        }
+    }
+    
+    /**
+     * 将挂起的申请写入新快照并清空日志
+     * 快照先写临时文件再原子替换，替换后、清空日志前崩溃时，重放日志得到的结果与快照一致
+     */
+    private void compact() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(live.size());
+        for (PendingGroupRequest request : live.values()) {
+            byte[] payload = encodeSuspend(request);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        wal.truncate(0);
+        wal.position(0);
+        writeWalHeader();
+        wal.force(true);
+        logger.debug("挂起申请日志已压缩: {} 条记录, {} 个挂起的申请", walRecords, live.size());
+        walRecords = 0;
+    }
+    
+    private void writeWalHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_SIZE);
+        header.putInt(WAL_MAGIC).put(VERSION).flip();
+        while (header.hasRemaining()) {
+            wal.write(header);
+        }
+    }
+    
+    private void readSnapshot() throws IOException {
+        Path file = dir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < 4) {
+            throw new IOException("挂起申请快照已损坏: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        int expected = ByteBuffer.wrap(data, data.length - 4, 4).getInt();
+        if ((int) crc.getValue() != expected) {
+            throw new IOException("挂起申请快照校验失败: " + file);
+        }
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != VERSION) {
+            throw new IOException("无法识别的挂起申请快照: " + file);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            apply(payload);
+        }
+    }
+    
+    /**
+     * 重放日志
+     * @return 最后一条完整记录的结束位置
+     */
+    private long replayWal() throws IOException {
+        long size = wal.size();
+        if (size < WAL_HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_SIZE);
+        wal.read(header, 0);
+        header.flip();
+        if (header.getInt() != WAL_MAGIC || header.get() != VERSION) {
+            throw new IOException("无法识别的挂起申请日志: " + dir.resolve(WAL_FILE));
+        }
+        
+        long position = WAL_HEADER_SIZE;
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            frame.clear();
+            wal.read(frame, position);
+            frame.flip();
+            int length = frame.getInt();
+            int expected = frame.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            wal.read(payload, position + 8);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+            apply(payload.array());
+            walRecords++;
+            position += 8 + length;
+        }
+        return position;
+    }
+    
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case OP_SUSPEND:
+                PendingGroupRequest request = new PendingGroupRequest();
+                request.setFlag(readString(in));
+                request.setGroupId(in.readLong());
+                request.setUserId(in.readLong());
+                request.setComment(readString(in));
+                request.setReason(readString(in));
+                request.setTimestamp(in.readLong());
+                request.setExpireAt(in.readLong());
+                request.setExpireAction(SuspendExpireAction.values()[in.readByte()]);
+                request.setExpireMessage(readString(in));
+                request.setLevel(in.readInt());
+                request.setStatus(RequestStatus.SUSPENDED);
+                live.put(request.getFlag(), request);
+                break;
+            case OP_RESOLVE:
+            case OP_REMOVE:
+                live.remove(readString(in));
+                break;
+            default:
+                throw new IOException("未知的挂起申请记录类型: " + op);
+        }
+    }
+    
+    private static byte[] encodeSuspend(PendingGroupRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_SUSPEND);
+        writeString(out, request.getFlag());
+        out.writeLong(request.getGroupId());
+        out.writeLong(request.getUserId());
+        writeString(out, request.getComment());
+        writeString(out, request.getReason());
+        out.writeLong(request.getTimestamp());
+        out.writeLong(request.getExpireAt());
+        out.writeByte(request.getExpireAction().ordinal());
+        writeString(out, request.getExpireMessage());
+        out.writeInt(request.getLevel());
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] encodeResolve(String flag, RequestStatus status) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_RESOLVE);
+        writeString(out, flag);
+        out.writeByte(status.ordinal());
+        return bytes.toByteArray();
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new EOFException("字符串长度超出记录范围");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package com.yourbot.onebot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 正在处理的进群请求
+ * 按开始处理的顺序记录请求标识和开始时间，处理结束（同意、拒绝、挂起或忽略）时移除；
+ * 超过有效期仍未结束的请求和超过容量时最早的请求会被淘汰并计数，
+ * 保证处理异常时占用的内存也有上限
+ */
+class InFlightRequests {
+    private static final Logger logger = LoggerFactory.getLogger(InFlightRequests.class);
+    
+    private final int capacity;
+    private final long ttlMs;
+    // 请求标识 -> 开始处理的时间，按插入顺序
+    private final LinkedHashMap<String, Long> started = new LinkedHashMap<>();
+    private long evictions;
+    
+    /**
+     * @param capacity 最多记录的请求数
+     * @param ttlMs 请求的最长处理时间（毫秒）
+     */
+    InFlightRequests(int capacity, long ttlMs) {
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+    }
+    
+    /**
+     * 开始处理一个请求
+     * @return 是否开始处理，同一请求正在处理时返回false
+     */
+    synchronized boolean begin(String flag, long now) {
+        expire(now);
+        if (started.containsKey(flag)) {
+            return false;
+        }
+        if (started.size() >= capacity) {
+            Iterator<Map.Entry<String, Long>> it = started.entrySet().iterator();
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            evictions++;
+            logger.warn("正在处理的进群请求超过 {} 个，不再跟踪最早的请求 {}", capacity, eldest.getKey());
+        }
+        started.put(flag, now);
+        return true;
+    }
+    
+    /**
+     * 请求处理结束
+     */
+    synchronized void end(String flag) {
+        started.remove(flag);
+    }
+    
+    /**
+     * 正在处理的请求数
+     */
+    synchronized int size() {
+        return started.size();
+    }
+    
+    /**
+     * 最早的正在处理的请求已处理的时间（毫秒），没有时返回0
+     */
+    synchronized long oldestAgeMs(long now) {
+        expire(now);
+        return started.isEmpty() ? 0 : now - started.values().iterator().next();
+    }
+    
+    /**
+     * 因超时或超过容量被淘汰的请求数
+     */
+    synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Long>> it = started.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (now - eldest.getValue() < ttlMs) {
+                break;
+            }
+            it.remove();
+            evictions++;
+            logger.warn("进群请求 {} 处理超过 {} 秒仍未结束，不再跟踪", eldest.getKey(), ttlMs / 1000);
+        }
+    }
+}
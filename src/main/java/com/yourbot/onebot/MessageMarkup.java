@@ -0,0 +1,91 @@
+package com.yourbot.onebot;
+
+import com.yourbot.util.ConsoleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 消息标记转换
+ * 将任务消息中的换行符 \n、[艾特全体]、[艾特:QQ号] 和 [图片:地址] 标记转换为OneBot的CQ码
+ */
+public final class MessageMarkup {
+    private static final Logger logger = LoggerFactory.getLogger(MessageMarkup.class);
+    
+    private MessageMarkup() {
+    }
+    
+    /**
+     * 处理消息中的特殊内容（换行符、图片和艾特）
+     * @return 转换后的消息，出错时返回原始消息
+     */
+    public static String toCqCode(String message) {
+        try {
+            // 处理换行符
+            message = message.replace("\\n", "\n");
+            ConsoleUtil.debug("处理换行后: {}", message);
+            
+            // 处理艾特全体成员
+            if (message.contains("[艾特全体]")) {
+                ConsoleUtil.debug("处理艾特全体成员标记");
+                message = message.replace("[艾特全体]", "[CQ:at,qq=all]");
+            }
+            
+            // 处理艾特指定成员
+            if (message.contains("[艾特:")) {
+                ConsoleUtil.debug("检测到艾特标记，开始处理...");
+                
+                String tempMessage = message;
+                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[艾特:(\\d+)\\]");
+                java.util.regex.Matcher matcher = pattern.matcher(tempMessage);
+                StringBuffer sb = new StringBuffer();
+                while (matcher.find()) {
+                    String qq = matcher.group(1);
+                    ConsoleUtil.debug("处理艾特成员: {}", qq);
+                    matcher.appendReplacement(sb, "[CQ:at,qq=" + qq + "]");
+                }
+                matcher.appendTail(sb);
+                message = sb.toString();
+                
+                ConsoleUtil.debug("艾特处理完成: {}", message);
+            }
+            
+            // 处理图片链接
+            if (message.contains("[图片:")) {
+                ConsoleUtil.debug("检测到图片标记，开始处理...");
+                
+                // 处理网络图片
+                String tempMessage = message;
+                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[图片:(https?://[^\\]]+)\\]");
+                java.util.regex.Matcher matcher = pattern.matcher(tempMessage);
+                StringBuffer sb = new StringBuffer();
+                while (matcher.find()) {
+                    String url = matcher.group(1);
+                    ConsoleUtil.debug("处理网络图片: {}", url);
+                    matcher.appendReplacement(sb, "[CQ:image,file=" + url + "]");
+                }
+                matcher.appendTail(sb);
+                message = sb.toString();
+                
+                // 处理本地图片
+                pattern = java.util.regex.Pattern.compile("\\[图片:file://([^\\]]+)\\]");
+                matcher = pattern.matcher(message);
+                sb = new StringBuffer();
+                while (matcher.find()) {
+                    String path = matcher.group(1);
+                    ConsoleUtil.debug("处理本地图片: {}", path);
+                    matcher.appendReplacement(sb, "[CQ:image,file=file://" + path + "]");
+                }
+                matcher.appendTail(sb);
+                message = sb.toString();
+                
+                ConsoleUtil.debug("图片处理完成: {}", message);
+            }
+            
+            return message;
+        } catch (Exception e) {
+            logger.error("处理消息内容失败", e);
+            ConsoleUtil.error("处理消息内容失败: " + e.getMessage());
+            return message; // 发生错误时返回原始消息
+        }
+    }
+}
@@ -16,7 +16,9 @@ import java.util.UUID;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class OneBotClient {
     private static final Logger logger = LoggerFactory.getLogger(OneBotClient.class);
@@ -42,6 +44,14 @@ public class OneBotClient {
     // 添加消息长度限制
     private static final int MAX_MESSAGE_LENGTH = 4500;
     
+    // 异步动作等待响应的超时时间(毫秒)
+    private static final long ACTION_TIMEOUT_MS = 10000;
+    
+    // 重复事件过滤：记录最近的事件标识数量和有效期(毫秒)
+    private static final int EVENT_FILTER_CAPACITY = 10000;
+    private static final long EVENT_FILTER_TTL_MS = 10 * 60 * 1000;
+    private final RecentEventFilter eventFilter = new RecentEventFilter(EVENT_FILTER_CAPACITY, EVENT_FILTER_TTL_MS);
+    
     private OneBotClient() {
         connect();
     }
@@ -90,84 +100,7 @@ public class OneBotClient {
                 
                 @Override
                 public void onMessage(String message) {
-                    try {
-                        JsonNode json = mapper.readTree(message);
-                        
-                        // 处理心跳消息
-                        if (isHeartbeatMessage(json)) {
-                            return;
-                        }
-                        
-                        // 处理API调用响应
-                        if (json.has("echo") && json.has("status") && json.has("retcode")) {
-                            String echo = json.get("echo").asText();
-                            synchronized (responseFutures) {
-                                CompletableFuture<JsonNode> future = responseFutures.get(echo);
-                                if (future != null) {
-                                    future.complete(json);
-                                }
-                            }
-                            return;
-                        }
-                        
-                        // 处理事件消息
-                        if (json.has("post_type")) {
-                            String postType = json.get("post_type").asText();
-                            
-                            // 记录收到的消息
-                            if (ConfigManager.getInstance().getBotConfig().getLog().isEnableMessageLog()) {
-                                logger.info("收到消息: {}", message);
-                            }
-                            
-                            // 消息事件
-                            if ("message".equals(postType)) {
-                                String messageType = json.get("message_type").asText();
-                                String rawMessage = json.has("raw_message") ? 
-                                        json.get("raw_message").asText() : json.get("message").asText();
-                                long senderId = json.get("sender").get("user_id").asLong();
-                                
-                                if ("group".equals(messageType)) {
-                                    long groupId = json.get("group_id").asLong();
-                                    logger.debug("收到群 {} 中用户 {} 的消息: {}", groupId, senderId, rawMessage);
-                                    OneBotEventListener.fireEvent("message.group", json);
-                                } else if ("private".equals(messageType)) {
-                                    logger.debug("收到用户 {} 的私聊消息: {}", senderId, rawMessage);
-                                    OneBotEventListener.fireEvent("message.private", json);
-                                }
-                            }
-                            // 请求事件（如加群请求）
-                            else if ("request".equals(postType)) {
-                                String requestType = json.get("request_type").asText();
-                                
-                                if ("group".equals(requestType)) {
-                                    String subType = json.get("sub_type").asText();
-                                    if ("add".equals(subType)) {
-                                        logger.debug("收到进群请求事件");
-                                        OneBotEventListener.fireEvent("request.group.add", json);
-                                    } else if ("invite".equals(subType)) {
-                                        logger.debug("收到群邀请事件");
-                                        OneBotEventListener.fireEvent("request.group.invite", json);
-                                    }
-                                }
-                            }
-                            // 通知事件
-                            else if ("notice".equals(postType)) {
-                                String noticeType = json.get("notice_type").asText();
-                                OneBotEventListener.fireEvent("notice." + noticeType, json);
-                            }
-                            // 元事件
-                            else if ("meta_event".equals(postType)) {
-                                String metaType = json.get("meta_event_type").asText();
-                                if ("heartbeat".equals(metaType)) {
-                                    // 心跳事件，不做处理
-                                } else {
-                                    OneBotEventListener.fireEvent("meta." + metaType, json);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        logger.error("处理WebSocket消息时发生错误: {}", e.getMessage(), e);
-                    }
+                    handleIncomingMessage(message);
                 }
                 
                 @Override
@@ -210,6 +143,98 @@ public class OneBotClient {
         }
     }
     
+    /**
+     * 处理收到的WebSocket消息：动作响应交给等待的请求，事件按类型分发给监听器
+     */
+    private void handleIncomingMessage(String message) {
+        try {
+            JsonNode json = mapper.readTree(message);
+            
+            // 处理心跳消息
+            if (isHeartbeatMessage(json)) {
+                return;
+            }
+            
+            // 处理API调用响应
+            if (json.has("echo") && json.has("status") && json.has("retcode")) {
+                String echo = json.get("echo").asText();
+                handleResponse(json);
+                synchronized (responseFutures) {
+                    CompletableFuture<JsonNode> future = responseFutures.get(echo);
+                    if (future != null) {
+                        future.complete(json);
+                    }
+                }
+                return;
+            }
+            
+            // 处理事件消息
+            if (json.has("post_type")) {
+                String postType = json.get("post_type").asText();
+                
+                // 丢弃重连或重发导致的重复事件，避免重复处理
+                String eventKey = eventKey(postType, json);
+                if (eventKey != null && !eventFilter.firstSeen(eventKey, System.currentTimeMillis())) {
+                    logger.debug("丢弃重复投递的事件: {}", eventKey);
+                    return;
+                }
+                
+                // 记录收到的消息
+                if (ConfigManager.getInstance().getBotConfig().getLog().isEnableMessageLog()) {
+                    logger.info("收到消息: {}", message);
+                }
+                
+                // 消息事件
+                if ("message".equals(postType)) {
+                    String messageType = json.get("message_type").asText();
+                    String rawMessage = json.has("raw_message") ? 
+                            json.get("raw_message").asText() : json.get("message").asText();
+                    long senderId = json.get("sender").get("user_id").asLong();
+                    
+                    if ("group".equals(messageType)) {
+                        long groupId = json.get("group_id").asLong();
+                        logger.debug("收到群 {} 中用户 {} 的消息: {}", groupId, senderId, rawMessage);
+                        OneBotEventListener.fireEvent("message.group", json);
+                    } else if ("private".equals(messageType)) {
+                        logger.debug("收到用户 {} 的私聊消息: {}", senderId, rawMessage);
+                        OneBotEventListener.fireEvent("message.private", json);
+                    }
+                }
+                // 请求事件（如加群请求）
+                else if ("request".equals(postType)) {
+                    String requestType = json.get("request_type").asText();
+                    
+                    if ("group".equals(requestType)) {
+                        String subType = json.get("sub_type").asText();
+                        if ("add".equals(subType)) {
+                            logger.debug("收到进群请求事件");
+                            OneBotEventListener.fireEvent("request.group.add", json);
+                        } else if ("invite".equals(subType)) {
+                            logger.debug("收到群邀请事件");
+                            OneBotEventListener.fireEvent("request.group.invite", json);
+                        }
+                    }
+                }
+                // 通知事件
+                else if ("notice".equals(postType)) {
+                    String noticeType = json.get("notice_type").asText();
+                    OneBotEventListener.fireEvent("notice." + noticeType, json);
+                }
+                // 元事件
+                else if ("meta_event".equals(postType)) {
+                    String metaType = json.get("meta_event_type").asText();
+                    if ("heartbeat".equals(metaType)) {
+                        // 心跳事件，不做处理
+                    } else {
+                        OneBotEventListener.fireEvent("meta." + metaType, json);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("处理WebSocket消息时发生错误: {}", e.getMessage(), e);
+        }
+    }
+    
     public boolean isConnected() {
         return connected && client != null && client.isOpen();
     }
@@ -218,11 +243,19 @@ public class OneBotClient {
      * 发送群消息
      */
     public void sendGroupMessage(long groupId, String message) {
+        sendGroupMessageAsync(groupId, message);
+    }
+    
+    /**
+     * 发送群消息，返回OneBot的动作响应（包含message_id）
+     * @return 动作响应，未连接、发送过于频繁或发送失败时以异常完成
+     */
+    public CompletableFuture<JsonNode> sendGroupMessageAsync(long groupId, String message) {
         try {
             if (!isConnected()) {
                 logger.warn("未连接到OneBot服务器，无法发送群消息");
                 ConsoleUtil.warn("未连接到OneBot服务器，无法发送群消息");
-                return;
+                return CompletableFuture.failedFuture(new IllegalStateException("未连接到OneBot服务器"));
             }
             
             // 检查消息长度
@@ -234,36 +267,25 @@ public class OneBotClient {
             // 检查消息频率
             if (!checkMessageFrequency(groupId, true)) {
                 logger.warn("消息发送过于频繁，已跳过本次发送");
-                return;
+                return CompletableFuture.failedFuture(new IllegalStateException("消息发送过于频繁，已跳过"));
             }
             
             logger.info("发送群消息到 {}: {}", groupId, message);
-            ConsoleUtil.debug("原始消息内容: " + message);
+            ConsoleUtil.debug("原始消息内容: {}", message);
             
             // 处理换行符和图片
-            String processedMessage = processMessage(message);
-            ConsoleUtil.debug("处理后的消息内容: " + processedMessage);
-            
-            ObjectNode json = mapper.createObjectNode();
-            json.put("action", "send_group_msg");
+            String processedMessage = MessageMarkup.toCqCode(message);
+            ConsoleUtil.debug("处理后的消息内容: {}", processedMessage);
             
             ObjectNode params = mapper.createObjectNode();
             params.put("group_id", groupId);
             params.put("message", processedMessage);
             params.put("auto_escape", false);  // 不转义CQ码
             
-            json.set("params", params);
-            String echo = UUID.randomUUID().toString();
-            json.put("echo", echo);
-            
-            String jsonStr = json.toString();
-            logger.debug("发送WebSocket消息: {}", jsonStr);
-            ConsoleUtil.debug("发送WebSocket消息: " + jsonStr);
-            
-            client.send(jsonStr);
+            CompletableFuture<JsonNode> response = callAction("send_group_msg", params);
             lastMsgTime = System.currentTimeMillis();
             
-            ConsoleUtil.success("消息已发送到群 " + groupId);
+            return reportOutcome(response, "消息已发送到群 " + groupId, "发送消息到群 " + groupId + " 失败");
         } catch (Exception e) {
             logger.error("发送群消息失败", e);
             ConsoleUtil.error("发送群消息失败: " + e.getMessage());
@@ -279,179 +301,169 @@ public class OneBotClient {
             } else if (e instanceof java.net.UnknownHostException) {
                 ConsoleUtil.error("无法解析服务器地址，请检查WebSocket地址是否正确");
             }
+            return CompletableFuture.failedFuture(e);
         }
     }
     
+    public void sendPrivateMessage(long userId, String message) {
+        sendPrivateMessageAsync(userId, message);
+    }
+    
     /**
-     * 处理消息中的特殊内容（换行符、图片和艾特）
+     * 发送私聊消息，返回OneBot的动作响应（包含message_id）
+     * @return 动作响应，未连接或发送失败时以异常完成
      */
-    private String processMessage(String message) {
-        try {
-            // 处理换行符
-            message = message.replace("\\n", "\n");
-            ConsoleUtil.debug("处理换行后: " + message);
-            
-            // 处理艾特全体成员
-            if (message.contains("[艾特全体]")) {
-                ConsoleUtil.debug("处理艾特全体成员标记");
-                message = message.replace("[艾特全体]", "[CQ:at,qq=all]");
-            }
-            
-            // 处理艾特指定成员
-            if (message.contains("[艾特:")) {
-                ConsoleUtil.debug("检测到艾特标记，开始处理...");
-                
-                String tempMessage = message;
-                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[艾特:(\\d+)\\]");
-                java.util.regex.Matcher matcher = pattern.matcher(tempMessage);
-                StringBuffer sb = new StringBuffer();
-                while (matcher.find()) {
-                    String qq = matcher.group(1);
-                    ConsoleUtil.debug("处理艾特成员: " + qq);
-                    matcher.appendReplacement(sb, "[CQ:at,qq=" + qq + "]");
-                }
-                matcher.appendTail(sb);
-                message = sb.toString();
-                
-                ConsoleUtil.debug("艾特处理完成: " + message);
-            }
-            
-            // 处理图片链接
-            if (message.contains("[图片:")) {
-                ConsoleUtil.debug("检测到图片标记，开始处理...");
-                
-                // 处理网络图片
-                String tempMessage = message;
-                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[图片:(https?://[^\\]]+)\\]");
-                java.util.regex.Matcher matcher = pattern.matcher(tempMessage);
-                StringBuffer sb = new StringBuffer();
-                while (matcher.find()) {
-                    String url = matcher.group(1);
-                    ConsoleUtil.debug("处理网络图片: " + url);
-                    matcher.appendReplacement(sb, "[CQ:image,file=" + url + "]");
-                }
-                matcher.appendTail(sb);
-                message = sb.toString();
-                
-                // 处理本地图片
-                pattern = java.util.regex.Pattern.compile("\\[图片:file://([^\\]]+)\\]");
-                matcher = pattern.matcher(message);
-                sb = new StringBuffer();
-                while (matcher.find()) {
-                    String path = matcher.group(1);
-                    ConsoleUtil.debug("处理本地图片: " + path);
-                    matcher.appendReplacement(sb, "[CQ:image,file=file://" + path + "]");
-                }
-                matcher.appendTail(sb);
-                message = sb.toString();
-                
-                ConsoleUtil.debug("图片处理完成: " + message);
-            }
-            
-            return message;
-        } catch (Exception e) {
-            logger.error("处理消息内容失败", e);
-            ConsoleUtil.error("处理消息内容失败: " + e.getMessage());
-            return message; // 发生错误时返回原始消息
+    public CompletableFuture<JsonNode> sendPrivateMessageAsync(long userId, String message) {
+        if (!isConnected()) {
+            logger.warn("未连接到OneBot服务器，无法发送私聊消息");
+            ConsoleUtil.warn("未连接到OneBot服务器，无法发送私聊消息");
+            return CompletableFuture.failedFuture(new IllegalStateException("未连接到OneBot服务器"));
         }
+        
+        logger.info("发送私聊消息到 {}: {}", userId, message);
+        
+        ObjectNode params = mapper.createObjectNode();
+        params.put("user_id", userId);
+        params.put("message", new String(message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        
+        return reportOutcome(callAction("send_private_msg", params),
+                "已发送私聊消息到 " + userId, "发送私聊消息到 " + userId + " 失败");
     }
     
-    public void sendPrivateMessage(long userId, String message) {
-        try {
-            if (!isConnected()) {
-                logger.warn("未连接到OneBot服务器，无法发送私聊消息");
-                System.err.println("未连接到OneBot服务器，无法发送私聊消息");
-                return;
-            }
-            
-            logger.info("发送私聊消息到 {}: {}", userId, message);
-            
-            ObjectNode json = mapper.createObjectNode();
-            json.put("action", "send_private_msg");
-            
-            ObjectNode params = mapper.createObjectNode();
-            params.put("user_id", userId);
-            params.put("message", new String(message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
-            
-            json.set("params", params);
-            json.put("echo", UUID.randomUUID().toString());
-            
-            String jsonStr = json.toString();
-            logger.debug("发送WebSocket消息: {}", jsonStr);
-            client.send(jsonStr);
-            
-            System.out.println("已发送私聊消息到 " + userId + ": " + message);
-        } catch (Exception e) {
-            logger.error("发送私聊消息失败", e);
-            System.err.println("发送私聊消息失败: " + e.getMessage());
+    public void setGroupWholeBan(long groupId, boolean enable) {
+        setGroupWholeBanAsync(groupId, enable);
+    }
+    
+    /**
+     * 设置全体禁言，返回OneBot的动作响应
+     * @return 动作响应，未连接或发送失败时以异常完成
+     */
+    public CompletableFuture<JsonNode> setGroupWholeBanAsync(long groupId, boolean enable) {
+        if (!isConnected()) {
+            logger.warn("未连接到OneBot服务器，无法设置全体禁言");
+            ConsoleUtil.warn("未连接到OneBot服务器，无法设置全体禁言");
+            return CompletableFuture.failedFuture(new IllegalStateException("未连接到OneBot服务器"));
         }
+        
+        logger.info("设置群 {} 全体禁言: {}", groupId, enable);
+        
+        ObjectNode params = mapper.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("enable", enable);
+        
+        String action = (enable ? "开启" : "关闭") + "群 " + groupId + " 的全体禁言";
+        return reportOutcome(callAction("set_group_whole_ban", params), "已" + action, action + "失败");
     }
     
-    public void setGroupWholeBan(long groupId, boolean enable) {
-        try {
-            if (!isConnected()) {
-                logger.warn("未连接到OneBot服务器，无法设置全体禁言");
-                System.err.println("未连接到OneBot服务器，无法设置全体禁言");
-                return;
+    /**
+     * 收到动作响应后在控制台输出结果，返回原响应
+     */
+    private CompletableFuture<JsonNode> reportOutcome(CompletableFuture<JsonNode> response, String success, String failure) {
+        response.whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                String detail = cause instanceof TimeoutException ? "等待响应超时" : cause.getMessage();
+                logger.warn("{}: {}", failure, detail);
+                ConsoleUtil.error(failure + ": " + detail);
+            } else if (isActionOk(result)) {
+                ConsoleUtil.success(success);
+            } else {
+                String detail = result.has("wording") ? result.get("wording").asText()
+                        : result.has("msg") ? result.get("msg").asText()
+                        : "retcode " + result.path("retcode").asInt(-1);
+                logger.warn("{}: {}", failure, detail);
+                ConsoleUtil.error(failure + ": " + detail);
             }
-            
-            logger.info("设置群 {} 全体禁言: {}", groupId, enable);
-            
-            ObjectNode json = mapper.createObjectNode();
-            json.put("action", "set_group_whole_ban");
-            
-            ObjectNode params = mapper.createObjectNode();
-            params.put("group_id", groupId);
-            params.put("enable", enable);
-            
-            json.set("params", params);
-            json.put("echo", UUID.randomUUID().toString());
-            
-            String jsonStr = json.toString();
-            logger.debug("发送WebSocket消息: {}", jsonStr);
-            client.send(jsonStr);
-            
-            System.out.println("已" + (enable ? "开启" : "关闭") + "群 " + groupId + " 的全体禁言");
-        } catch (Exception e) {
-            logger.error("设置全体禁言失败", e);
-            System.err.println("设置全体禁言失败: " + e.getMessage());
-        }
+        });
+        return response;
     }
     
-    public void setGroupBan(long groupId, long userId, int duration) {
-        try {
-            if (!isConnected()) {
-                logger.warn("未连接到OneBot服务器，无法设置成员禁言");
-                System.err.println("未连接到OneBot服务器，无法设置成员禁言");
-                return;
+    /**
+     * 异步设置成员禁言，返回OneBot的动作响应
+     * @param groupId 群号
+     * @param userId 成员QQ号
+     * @param duration 禁言时长（秒），0表示解除禁言
+     * @return 动作响应
+     */
+    public CompletableFuture<JsonNode> setGroupBanAsync(long groupId, long userId, int duration) {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("user_id", userId);
+        params.put("duration", duration);
+        return callAction("set_group_ban", params);
+    }
+    
+    /**
+     * 发送动作并通过echo关联其响应
+     * @param action 动作名称
+     * @param params 动作参数
+     * @return 动作响应，超时或未连接时以异常完成
+     */
+    public CompletableFuture<JsonNode> callAction(String action, ObjectNode params) {
+        if (!isConnected()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("未连接到OneBot服务器"));
+        }
+        
+        String echo = UUID.randomUUID().toString();
+        String jsonStr = buildActionFrame(action, params, echo);
+        
+        CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        synchronized (responseFutures) {
+            responseFutures.put(echo, future);
+        }
+        
+        future.orTimeout(ACTION_TIMEOUT_MS, TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+            synchronized (responseFutures) {
+                responseFutures.remove(echo);
             }
-            
-            logger.info("设置群 {} 成员 {} 禁言 {} 秒", groupId, userId, duration);
-            
-            ObjectNode json = mapper.createObjectNode();
-            json.put("action", "set_group_ban");
-            
-            ObjectNode params = mapper.createObjectNode();
-            params.put("group_id", groupId);
-            params.put("user_id", userId);
-            params.put("duration", duration);
-            
-            json.set("params", params);
-            json.put("echo", UUID.randomUUID().toString());
-            
-            String jsonStr = json.toString();
+        });
+        
+        try {
             logger.debug("发送WebSocket消息: {}", jsonStr);
             client.send(jsonStr);
-            
-            if (duration > 0) {
-                System.out.println("已禁言群 " + groupId + " 中的成员 " + userId + " " + duration + " 秒");
-            } else {
-                System.out.println("已解除群 " + groupId + " 中成员 " + userId + " 的禁言");
-            }
         } catch (Exception e) {
-            logger.error("设置成员禁言失败", e);
-            System.err.println("设置成员禁言失败: " + e.getMessage());
+            logger.error("发送动作 {} 失败", action, e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * 生成发送给OneBot的动作消息
+     */
+    private String buildActionFrame(String action, ObjectNode params, String echo) {
+        ObjectNode json = mapper.createObjectNode();
+        json.put("action", action);
+        json.set("params", params);
+        json.put("echo", echo);
+        return json.toString();
+    }
+    
+    /**
+     * 事件的唯一标识：请求事件使用flag，消息事件使用message_id，其他事件没有可靠的标识，返回null
+     */
+    private static String eventKey(String postType, JsonNode json) {
+        if ("request".equals(postType) && json.hasNonNull("flag")) {
+            return "request:" + json.get("flag").asText();
         }
+        if ("message".equals(postType) && json.hasNonNull("message_id")) {
+            return "message:" + json.get("message_id").asText();
+        }
+        return null;
+    }
+    
+    /**
+     * 已丢弃的重复事件数
+     */
+    public long getDuplicateEventCount() {
+        return eventFilter.getDuplicateCount();
+    }
+    
+    /**
+     * 判断动作响应是否成功
+     */
+    public static boolean isActionOk(JsonNode response) {
+        return response != null && response.has("retcode") && response.get("retcode").asInt() == 0;
     }
     
     /**
@@ -552,6 +564,24 @@ public class OneBotClient {
         }
     }
     
+    /**
+     * 异步处理进群请求，返回OneBot的动作响应
+     * @param flag 请求标识
+     * @param approve 是否同意
+     * @param reason 拒绝理由，同意时忽略
+     * @return 动作响应
+     */
+    public CompletableFuture<JsonNode> handleGroupRequestAsync(String flag, boolean approve, String reason) {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("flag", flag);
+        params.put("sub_type", "add");
+        params.put("approve", approve);
+        if (!approve && reason != null && !reason.trim().isEmpty()) {
+            params.put("reason", reason);
+        }
+        return callAction("set_group_add_request", params);
+    }
+    
     /**
      * 获取进群请求中的验证回答
      * @param comment 验证信息
@@ -575,65 +605,97 @@ public class OneBotClient {
         return comment.trim();
     }
     
+    /**
+     * 获取账号的注册天数
+     * 优先使用响应中的注册时间 reg_time，没有时使用登录天数 login_days
+     * 会等待OneBot的响应，不能在WebSocket读取线程（事件监听器）中调用
+     * @param userId 用户QQ号
+     * @return 注册天数，无法获取时返回-1
+     */
+    public int getAccountAgeDays(long userId) {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("user_id", userId);
+        params.put("no_cache", false);
+        try {
+            JsonNode response = callAction("get_stranger_info", params).join();
+            if (!isActionOk(response)) {
+                logger.warn("获取用户 {} 的信息失败: {}", userId, response);
+                return -1;
+            }
+            JsonNode data = response.path("data");
+            long regTime = data.path("reg_time").asLong(0);
+            if (regTime > 0) {
+                return (int) Math.max(0, (System.currentTimeMillis() / 1000 - regTime) / 86400);
+            }
+            return data.has("login_days") ? data.get("login_days").asInt() : -1;
+        } catch (Exception e) {
+            logger.warn("获取用户 {} 的信息失败: {}", userId, e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * 获取群成员的身份
+     * @param groupId 群号
+     * @param userId 用户QQ号
+     * @return owner、admin或member，无法获取时返回null
+     */
+    public String getGroupMemberRole(long groupId, long userId) {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("user_id", userId);
+        params.put("no_cache", false);
+        try {
+            JsonNode response = callAction("get_group_member_info", params).join();
+            if (!isActionOk(response)) {
+                logger.warn("获取群 {} 成员 {} 的信息失败: {}", groupId, userId, response);
+                return null;
+            }
+            JsonNode role = response.path("data").path("role");
+            return role.isTextual() ? role.asText() : null;
+        } catch (Exception e) {
+            logger.warn("获取群 {} 成员 {} 的信息失败: {}", groupId, userId, e.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * 获取群成员信息，包括等级
+     * 会等待OneBot的响应，不能在WebSocket读取线程（事件监听器）中调用
      * @param groupId 群号
      * @param userId 用户QQ号
-     * @return 用户等级，如果获取失败则返回0
+     * @return 用户等级，未连接、超时、请求失败或响应中没有等级时返回-1
      */
     public int getGroupMemberLevel(long groupId, long userId) {
         if (!isConnected()) {
             logger.error("Bot未连接到服务器，无法获取群成员等级");
-            return 0;
+            return -1;
         }
         
+        ObjectNode params = mapper.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("user_id", userId);
+        params.put("no_cache", true);
+        
+        JsonNode response;
         try {
-            ObjectNode json = mapper.createObjectNode();
-            json.put("action", "get_group_member_info");
-            json.put("params", mapper.createObjectNode()
-                .put("group_id", groupId)
-                .put("user_id", userId)
-                .put("no_cache", true));
-                
-            String requestStr = mapper.writeValueAsString(json);
-            logger.debug("发送获取群成员信息请求: {}", requestStr);
-            
-            // 这里使用同步方式获取群成员信息
-            CompletableFuture<JsonNode> future = new CompletableFuture<>();
-            String requestId = UUID.randomUUID().toString();
-            json.put("echo", requestId);
-            
-            synchronized (responseFutures) {
-                responseFutures.put(requestId, future);
-            }
-            
-            client.send(requestStr);
-            
-            // 等待响应，最多等待5秒
-            JsonNode response;
-            try {
-                response = future.get(5, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                logger.error("获取群成员信息超时或失败", e);
-                return 0;
-            } finally {
-                synchronized (responseFutures) {
-                    responseFutures.remove(requestId);
-                }
-            }
-            
-            if (response != null && response.has("data")) {
-                JsonNode data = response.get("data");
-                if (data.has("level")) {
-                    return data.get("level").asInt(0);
-                }
-            }
-            
-            logger.warn("无法获取用户等级信息，可能是API不支持");
-            return 0;
+            // 最多等待5秒
+            response = callAction("get_group_member_info", params).get(5, TimeUnit.SECONDS);
         } catch (Exception e) {
-            logger.error("获取群成员等级失败", e);
-            return 0;
+            logger.error("获取群成员信息超时或失败", e);
+            return -1;
+        }
+        
+        if (!isActionOk(response)) {
+            logger.warn("获取群 {} 成员 {} 的信息失败: {}", groupId, userId, response);
+            return -1;
+        }
+        
+        JsonNode level = response.path("data").path("level");
+        if (level.isMissingNode() || level.isNull()) {
+            logger.warn("无法获取用户等级信息，可能是API不支持");
+            return -1;
         }
+        return level.asInt(-1);
     }
 }
@@ -0,0 +1,380 @@
+package com.yourbot.onebot;
+
+import com.yourbot.log.TaskExecutionLog;
+import com.yourbot.log.TaskLogManager;
+import com.yourbot.scheduler.ScheduledTask;
+import com.yourbot.util.ConsoleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进群防护
+ * 按群统计滑动窗口内的进群申请数，达到验证任务的 raidThreshold 时进入防护模式，
+ * 申请数降到阈值一半以下并持续 raidCooldownSeconds 后自动退出；
+ * 防护模式下的同意和拒绝动作先进入队列，由后台线程每秒合并为一批发送，每批只输出一条汇总日志；
+ * 同时等待响应的动作达到上限时后台线程不等待，收到响应后继续发送；
+ * 每次防护结束时，等该次防护的动作全部收到响应后记录一条任务执行日志
+ */
+class RaidGuard {
+    private static final Logger logger = LoggerFactory.getLogger(RaidGuard.class);
+    
+    // 滑动窗口划分的桶数
+    private static final int BUCKETS = 12;
+    // 批量发送和检查退出的间隔（毫秒）
+    private static final long TICK_MS = 1000;
+    // 批量发送时同时等待响应的动作上限
+    private static final int MAX_IN_FLIGHT = 10;
+    
+    private final OneBotClient client;
+    private final Map<Long, GroupState> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    
+    RaidGuard(OneBotClient client) {
+        this.client = client;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RaidGuard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 记录一个进群申请
+     * @return 该群是否处于防护模式
+     */
+    boolean onRequest(ScheduledTask task, long groupId, long now) {
+        if (task.getRaidThreshold() <= 0) {
+            // 已在队列中的动作仍由后台线程发送，发送后再退出
+            GroupState state = groups.get(groupId);
+            if (state != null && state.raid) {
+                ticker.execute(() -> {
+                    flush(groupId, state);
+                    exitRaid(groupId, state, now, "防护已在配置中关闭");
+                });
+            }
+            return false;
+        }
+        
+        GroupState state = groups.computeIfAbsent(groupId, k -> new GroupState());
+        boolean entered;
+        synchronized (state) {
+            state.task = task;
+            state.configure(task.getRaidWindowSeconds());
+            int count = state.record(now);
+            if (count >= exitThreshold(task)) {
+                state.lastBusy = now;
+            }
+            state.peak = Math.max(state.peak, count);
+            entered = !state.raid && count >= task.getRaidThreshold();
+            if (entered) {
+                state.raid = true;
+                state.raidSince = now;
+                state.peak = count;
+                state.total = 0;
+                state.suspended = 0;
+                state.approved = 0;
+                state.rejected = 0;
+                // 上次防护中仍在等待响应的动作计入上次防护
+                state.failed = new AtomicInteger();
+            }
+            if (state.raid) {
+                state.total++;
+            }
+        }
+        if (entered) {
+            logger.warn("群 {} 在 {} 秒内收到 {} 个进群申请，进入防护模式，策略: {}",
+                    groupId, task.getRaidWindowSeconds(), task.getRaidThreshold(), task.getRaidPolicy());
+            ConsoleUtil.warn("群 " + groupId + " 进群申请过多，进入防护模式，策略: " + task.getRaidPolicy());
+        }
+        return state.raid;
+    }
+    
+    /**
+     * 防护模式下挂起了一个申请
+     */
+    void recordSuspended(long groupId) {
+        GroupState state = groups.get(groupId);
+        if (state != null) {
+            synchronized (state) {
+                state.suspended++;
+            }
+        }
+    }
+    
+    /**
+     * 将同意或拒绝动作加入该群的发送队列
+     */
+    void enqueue(long groupId, long userId, String flag, boolean approve, String reason) {
+        GroupState state = groups.computeIfAbsent(groupId, k -> new GroupState());
+        synchronized (state) {
+            state.queue.add(new QueuedAction(userId, flag, approve, reason));
+            if (approve) {
+                state.approved++;
+            } else {
+                state.rejected++;
+            }
+        }
+    }
+    
+    private static int exitThreshold(ScheduledTask task) {
+        return Math.max(1, task.getRaidThreshold() / 2);
+    }
+    
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, GroupState> entry : groups.entrySet()) {
+                long groupId = entry.getKey();
+                GroupState state = entry.getValue();
+                flush(groupId, state);
+                
+                boolean exit;
+                synchronized (state) {
+                    if (state.raid && state.task != null && state.count(now) >= exitThreshold(state.task)) {
+                        state.lastBusy = now;
+                    }
+                    exit = state.raid && state.task != null
+                            && now - state.lastBusy >= state.task.getRaidCooldownSeconds() * 1000L;
+                }
+                if (exit) {
+                    exitRaid(groupId, state, now, null);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("进群防护检查失败", e);
+        }
+    }
+    
+    /**
+     * 将队列中的动作作为一批开始发送，在后台线程上调用
+     */
+    private void flush(long groupId, GroupState state) {
+        synchronized (state) {
+            if (!state.queue.isEmpty()) {
+                Batch batch = new Batch(state.queue, state.failed);
+                state.queue = new ArrayList<>();
+                state.sending.add(batch);
+                state.outstanding.add(batch.done);
+            }
+        }
+        send(groupId, state);
+    }
+    
+    /**
+     * 按顺序发送各批中未发送的动作，同时等待响应的动作达到上限时立即返回，
+     * 收到响应释放许可后再回到后台线程继续发送；只在后台线程上调用
+     */
+    private void send(long groupId, GroupState state) {
+        Batch batch;
+        while ((batch = state.sending.peek()) != null) {
+            while (batch.next < batch.actions.size()) {
+                if (!state.permits.tryAcquire()) {
+                    return;
+                }
+                QueuedAction action = batch.actions.get(batch.next++);
+                Batch current = batch;
+                client.handleGroupRequestAsync(action.flag, action.approve, action.reason)
+                        .handle((response, error) -> {
+                            if (error == null && OneBotClient.isActionOk(response)) {
+                                (action.approve ? current.approved : current.rejected).incrementAndGet();
+                            } else {
+                                current.failed.incrementAndGet();
+                                current.raidFailed.incrementAndGet();
+                                logger.warn("防护模式处理申请失败: 群 {}, 用户 {}, {}", groupId, action.userId,
+                                        error != null ? error.getMessage() : response);
+                            }
+                            state.permits.release();
+                            ticker.execute(() -> send(groupId, state));
+                            if (current.remaining.decrementAndGet() == 0) {
+                                finishBatch(groupId, state, current);
+                            }
+                            return null;
+                        });
+            }
+            state.sending.poll();
+        }
+    }
+    
+    /**
+     * 一批动作全部收到响应后输出汇总日志
+     */
+    private void finishBatch(long groupId, GroupState state, Batch batch) {
+        int size = batch.actions.size();
+        logger.info("防护模式批量处理群 {} 的 {} 个申请: 同意 {}, 拒绝 {}, 失败 {}",
+                groupId, size, batch.approved.get(), batch.rejected.get(), batch.failed.get());
+        ConsoleUtil.info("防护模式批量处理群 " + groupId + " 的 " + size + " 个申请: 同意 "
+                + batch.approved.get() + ", 拒绝 " + batch.rejected.get() + ", 失败 " + batch.failed.get());
+        synchronized (state) {
+            state.outstanding.remove(batch.done);
+        }
+        batch.done.complete(null);
+    }
+    
+    /**
+     * 退出防护模式，该次防护已发送的动作全部收到响应后写入执行日志
+     */
+    private void exitRaid(long groupId, GroupState state, long now, String note) {
+        ScheduledTask task;
+        long since;
+        String counts;
+        AtomicInteger failed;
+        CompletableFuture<Void> delivered;
+        synchronized (state) {
+            if (!state.raid) {
+                return;
+            }
+            state.raid = false;
+            task = state.task;
+            since = state.raidSince;
+            counts = String.format("群 %d 防护模式: 策略 %s, 持续 %d 秒, 窗口内最多 %d 个申请, 共处理 %d 个申请, 挂起 %d, 同意 %d, 拒绝 %d",
+                    groupId, task.getRaidPolicy(), (now - since) / 1000, state.peak, state.total,
+                    state.suspended, state.approved, state.rejected);
+            failed = state.failed;
+            delivered = CompletableFuture.allOf(state.outstanding.toArray(new CompletableFuture[0]));
+        }
+        logger.info("群 {} 进群申请恢复正常，退出防护模式。{}", groupId, counts);
+        ConsoleUtil.success("群 " + groupId + " 进群申请恢复正常，退出防护模式");
+        delivered.thenRun(() -> writeRaidLog(groupId, task, since, now, counts, failed.get(), note));
+    }
+    
+    private void writeRaidLog(long groupId, ScheduledTask task, long since, long now, String counts,
+                              int failed, String note) {
+        String summary = counts + ", 发送失败 " + failed + (note != null ? " (" + note + ")" : "");
+        TaskExecutionLog log = new TaskExecutionLog();
+        log.setId(TaskExecutionLog.generateId());
+        log.setTaskName(task.getName());
+        log.setTaskType(String.valueOf(task.getType()));
+        // 日志在批次送达后才写入，执行时间记为写入时间，与同一任务的其他日志保持写入顺序
+        log.setExecutionTime(LocalDateTime.now());
+        log.setTargetType("GROUP");
+        log.setTargetId(groupId);
+        log.setDetails(summary);
+        log.setSuccess(failed == 0);
+        if (failed > 0) {
+            log.setErrorMessage(failed + " 个动作未成功送达");
+        }
+        log.setDurationMs(now - since);
+        TaskLogManager.getInstance().logTaskExecution(log);
+    }
+    
+    /**
+     * 一个群的申请统计和防护状态，访问时对自身加锁；
+     * sending只由后台线程访问，permits和各批的计数由响应线程更新
+     */
+    private static class GroupState {
+        private long bucketMs;
+        private long[] bucketIndex = new long[BUCKETS];
+        private int[] bucketCount = new int[BUCKETS];
+        
+        private ScheduledTask task;
+        private boolean raid;
+        private long raidSince;
+        private long lastBusy;
+        private int peak;
+        private int total;
+        private int suspended;
+        private int approved;
+        private int rejected;
+        // 本次防护中发送失败的动作数，进入防护时重新创建
+        private AtomicInteger failed = new AtomicInteger();
+        private List<QueuedAction> queue = new ArrayList<>();
+        // 还有动作未发送的批次
+        private final Deque<Batch> sending = new ArrayDeque<>();
+        // 还有动作未收到响应的批次
+        private final List<CompletableFuture<Void>> outstanding = new ArrayList<>();
+        private final Semaphore permits = new Semaphore(MAX_IN_FLIGHT);
+        
+        /**
+         * 窗口长度变化（如重新加载配置）时清空计数
+         */
+        void configure(int windowSeconds) {
+            long ms = Math.max(1000L, Math.max(1, windowSeconds) * 1000L / BUCKETS);
+            if (ms != bucketMs) {
+                bucketMs = ms;
+                bucketIndex = new long[BUCKETS];
+                bucketCount = new int[BUCKETS];
+            }
+        }
+        
+        /**
+         * 记录一次申请
+         * @return 窗口内的申请数
+         */
+        int record(long now) {
+            long index = now / bucketMs;
+            int slot = (int) (index % BUCKETS);
+            if (bucketIndex[slot] != index) {
+                bucketIndex[slot] = index;
+                bucketCount[slot] = 0;
+            }
+            bucketCount[slot]++;
+            return count(now);
+        }
+        
+        int count(long now) {
+            if (bucketMs == 0) {
+                return 0;
+            }
+            long oldest = now / bucketMs - BUCKETS;
+            int count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (bucketIndex[i] > oldest) {
+                    count += bucketCount[i];
+                }
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * 一次合并发送的动作及其结果
+     */
+    private static class Batch {
+        final List<QueuedAction> actions;
+        // 下一个要发送的动作，只由后台线程访问
+        int next;
+        final AtomicInteger remaining;
+        final AtomicInteger approved = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        // 所属防护的发送失败计数
+        final AtomicInteger raidFailed;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        Batch(List<QueuedAction> actions, AtomicInteger raidFailed) {
+            this.actions = actions;
+            this.remaining = new AtomicInteger(actions.size());
+            this.raidFailed = raidFailed;
+        }
+    }
+    
+    // 等待发送的同意或拒绝动作
+    private static class QueuedAction {
+        final long userId;
+        final String flag;
+        final boolean approve;
+        final String reason;
+        
+        QueuedAction(long userId, String flag, boolean approve, String reason) {
+            this.userId = userId;
+            this.flag = flag;
+            this.approve = approve;
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.yourbot.onebot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近事件过滤器
+ * 记录最近收到的事件标识（如进群请求的flag、消息的message_id）及首次收到的时间，
+ * 有效期内再次收到同一标识时判定为重复投递；
+ * 按首次收到的顺序保存，超过有效期或超过容量时从最早的开始淘汰
+ */
+class RecentEventFilter {
+    private final int capacity;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Long> seen;
+    private long duplicates;
+
+    /**
+     * @param capacity 最多记录的标识数
+     * @param ttlMs 标识的有效期（毫秒）
+     */
+    RecentEventFilter(int capacity, long ttlMs) {
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+        this.seen = new LinkedHashMap<>(Math.min(capacity, 1024) * 4 / 3 + 1) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > RecentEventFilter.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 记录一个事件标识
+     * @return 是否是有效期内第一次收到，重复时返回false
+     */
+    synchronized boolean firstSeen(String key, long now) {
+        expire(now);
+        Long firstTime = seen.get(key);
+        if (firstTime != null) {
+            duplicates++;
+            return false;
+        }
+        seen.put(key, now);
+        return true;
+    }
+
+    /**
+     * 已丢弃的重复事件数
+     */
+    synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+
+    private void expire(long now) {
+        Iterator<Long> it = seen.values().iterator();
+        while (it.hasNext() && now - it.next() >= ttlMs) {
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.yourbot.onebot;
+
+import com.yourbot.scheduler.ScheduledTask;
+import com.yourbot.scheduler.TaskType;
+
+import java.util.List;
+
+/**
+ * 按群号查找进群验证任务
+ * 在给定的任务列表上按顺序查找，不依赖配置管理器和机器人的其他组件
+ */
+public class VerifyTaskLookup {
+    private final List<ScheduledTask> tasks;
+    
+    public VerifyTaskLookup(List<ScheduledTask> tasks) {
+        this.tasks = tasks;
+    }
+    
+    /**
+     * 获取群对应的验证任务
+     * @return 第一个以该群为目标的验证任务，没有时返回null
+     */
+    public ScheduledTask find(long groupId) {
+        for (ScheduledTask task : tasks) {
+            if (task.getType() == TaskType.GROUP_REQUEST_VERIFY &&
+                    "GROUP".equals(task.getTargetType()) &&
+                    task.getTargetIds().contains(groupId)) {
+                return task;
+            }
+        }
+        
+        return null;
+    }
+}
@@ -0,0 +1,378 @@
+package com.yourbot.scheduler;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * 编译后的验证答案匹配器
+ * 配置的答案在编译时统一规范化：NFKC规范化（全角字母、数字、符号和空格转为半角），
+ * 不区分大小写时做大小写折叠，忽略空格时去掉所有空白字符，启用拼音时把汉字替换为读音；
+ * 精确匹配使用哈希集合；包含模式使用Aho-Corasick自动机判断用户答案是否包含某个正确答案，
+ * 使用后缀自动机判断用户答案是否是某个正确答案的一部分，每次匹配只扫描用户答案一遍；
+ * 编辑距离模式判断用户答案中是否有与某个正确答案相差不超过允许编辑次数的片段
+ */
+public final class AnswerMatcher {
+    private final boolean caseSensitive;
+    private final boolean ignoreWhitespace;
+    private final boolean fuzzy;
+    private final boolean pinyin;
+
+    // 精确匹配：规范化后的答案
+    private final Set<String> exactAnswers;
+    // 模糊匹配：用户答案包含任一正确答案（编辑距离模式下只包含不允许编辑的答案）
+    private final AhoCorasick containsAnswer;
+    // 包含模式：用户答案是某个正确答案的子串
+    private final SubstringAutomaton withinAnswer;
+    // 编辑距离模式：允许编辑的答案
+    private final List<EditDistance> approximateAnswers;
+
+    private AnswerMatcher(ScheduledTask task) {
+        this.caseSensitive = task.isCaseSensitive();
+        this.ignoreWhitespace = task.isIgnoreWhitespace();
+        this.fuzzy = task.isFuzzyMatch();
+        this.pinyin = fuzzy && task.isFuzzyPinyin();
+        boolean editDistance = fuzzy && task.getFuzzyMode() == ScheduledTask.FuzzyMode.EDIT_DISTANCE;
+
+        Set<String> normalized = new HashSet<>();
+        if (task.getVerifyAnswers() != null) {
+            for (String answer : task.getVerifyAnswers()) {
+                String value = answer != null ? normalize(answer) : "";
+                // 空答案在模糊匹配时会匹配任何输入，忽略
+                if (!value.isEmpty()) {
+                    normalized.add(value);
+                }
+            }
+        }
+
+        Set<String> exact = new HashSet<>();
+        List<EditDistance> approximate = new ArrayList<>();
+        if (editDistance) {
+            // 每 fuzzyCharsPerEdit 个字符允许一次编辑，短答案不允许编辑，避免匹配任意输入
+            int charsPerEdit = Math.max(1, task.getFuzzyCharsPerEdit());
+            for (String value : normalized) {
+                int k = Math.min(Math.max(0, task.getFuzzyMaxDistance()), value.length() / charsPerEdit);
+                if (k >= value.length()) {
+                    k = value.length() - 1;
+                }
+                if (k == 0) {
+                    exact.add(value);
+                } else {
+                    approximate.add(new EditDistance(value, k));
+                }
+            }
+        }
+
+        this.exactAnswers = fuzzy ? Set.of() : Set.copyOf(normalized);
+        this.containsAnswer = !fuzzy ? null : new AhoCorasick(editDistance ? exact : normalized);
+        this.withinAnswer = fuzzy && !editDistance ? new SubstringAutomaton(normalized) : null;
+        this.approximateAnswers = List.copyOf(approximate);
+    }
+
+    /**
+     * 按任务的验证选项编译答案列表
+     */
+    public static AnswerMatcher compile(ScheduledTask task) {
+        return new AnswerMatcher(task);
+    }
+
+    /**
+     * 检查用户答案是否正确
+     */
+    public boolean matches(String answer) {
+        if (answer == null || answer.isEmpty()) {
+            return false;
+        }
+        String value = normalize(answer);
+        if (value.isEmpty()) {
+            return false;
+        }
+        if (!fuzzy) {
+            return exactAnswers.contains(value);
+        }
+        if (containsAnswer.containsAny(value)) {
+            return true;
+        }
+        if (withinAnswer != null) {
+            return withinAnswer.isSubstring(value);
+        }
+        for (EditDistance approximate : approximateAnswers) {
+            if (approximate.occursIn(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按编译时的选项规范化文本
+     */
+    String normalize(String text) {
+        // 纯ASCII文本NFKC不会改变，跳过规范化
+        String value = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFKC);
+        if (!caseSensitive) {
+            // 先转大写再转小写，使ß、ﬁ等字符与展开后的形式一致
+            value = value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        }
+        if (ignoreWhitespace) {
+            value = removeWhitespace(value);
+        }
+        if (pinyin) {
+            value = PinyinNormalizer.normalize(value);
+        }
+        return value;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String removeWhitespace(String text) {
+        int i = 0;
+        while (i < text.length() && !isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i == text.length()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        sb.append(text, 0, i);
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    /**
+     * 编译后的状态转移表：以(状态, 字符)为键的开放寻址哈希表，查询时不创建对象
+     */
+    private static final class Transitions {
+        private final long[] keys;
+        private final int[] targets;
+        private final int mask;
+
+        Transitions(List<Map<Character, Integer>> states) {
+            int count = 0;
+            for (Map<Character, Integer> edges : states) {
+                count += edges.size();
+            }
+            int capacity = Integer.highestOneBit(Math.max(4, count * 2 - 1)) << 1;
+            keys = new long[capacity];
+            targets = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, -1L);
+            for (int state = 0; state < states.size(); state++) {
+                for (Map.Entry<Character, Integer> edge : states.get(state).entrySet()) {
+                    long key = key(state, edge.getKey());
+                    int slot = slot(key);
+                    while (keys[slot] != -1L) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                    targets[slot] = edge.getValue();
+                }
+            }
+        }
+
+        /**
+         * @return 目标状态，没有转移时返回-1
+         */
+        int next(int state, char c) {
+            long key = key(state, c);
+            for (int slot = slot(key); keys[slot] != -1L; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return targets[slot];
+                }
+            }
+            return -1;
+        }
+
+        private static long key(int state, char c) {
+            return ((long) state << 16) | c;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * Aho-Corasick自动机，判断文本是否包含任一模式串
+     */
+    private static final class AhoCorasick {
+        private final Transitions transitions;
+        private final int[] fail;
+        // 到达该状态时是否已匹配某个模式串（含通过失败链接可达的模式串）
+        private final boolean[] terminal;
+
+        AhoCorasick(Set<String> patterns) {
+            List<Map<Character, Integer>> trie = new ArrayList<>();
+            List<Boolean> ends = new ArrayList<>();
+            trie.add(new HashMap<>());
+            ends.add(false);
+            for (String pattern : patterns) {
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    Integer next = trie.get(state).get(pattern.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new HashMap<>());
+                        ends.add(false);
+                        trie.get(state).put(pattern.charAt(i), next);
+                    }
+                    state = next;
+                }
+                ends.set(state, true);
+            }
+
+            transitions = new Transitions(trie);
+            fail = new int[trie.size()];
+            terminal = new boolean[trie.size()];
+            for (int i = 0; i < terminal.length; i++) {
+                terminal[i] = ends.get(i);
+            }
+
+            // 按层计算失败链接，子状态的失败链接由父状态的失败链接推出
+            Queue<Integer> queue = new ArrayDeque<>(trie.get(0).values());
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                    int child = edge.getValue();
+                    int f = fail[state];
+                    int target = -1;
+                    while (state != 0) {
+                        target = transitions.next(f, edge.getKey());
+                        if (target >= 0 || f == 0) {
+                            break;
+                        }
+                        f = fail[f];
+                    }
+                    fail[child] = state == 0 || target < 0 ? 0 : target;
+                    terminal[child] |= terminal[fail[child]];
+                    queue.add(child);
+                }
+            }
+        }
+
+        boolean containsAny(String text) {
+            if (terminal[0]) {
+                return true;
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int next;
+                while ((next = transitions.next(state, c)) < 0 && state != 0) {
+                    state = fail[state];
+                }
+                state = Math.max(next, 0);
+                if (terminal[state]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 多个字符串的后缀自动机，接受且只接受这些字符串的子串
+     */
+    private static final class SubstringAutomaton {
+        private final Transitions transitions;
+
+        SubstringAutomaton(Set<String> texts) {
+            List<Map<Character, Integer>> next = new ArrayList<>();
+            List<Integer> len = new ArrayList<>();
+            List<Integer> link = new ArrayList<>();
+            next.add(new HashMap<>());
+            len.add(0);
+            link.add(-1);
+
+            for (String text : texts) {
+                int last = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    last = extend(next, len, link, last, text.charAt(i));
+                }
+            }
+            transitions = new Transitions(next);
+        }
+
+        /**
+         * 在状态last之后追加字符c，已存在相同转移时复用或拆分已有状态
+         * @return 追加后的状态
+         */
+        private static int extend(List<Map<Character, Integer>> next, List<Integer> len, List<Integer> link,
+                                  int last, char c) {
+            Integer existing = next.get(last).get(c);
+            if (existing != null) {
+                // 该前缀已在之前的字符串中出现过
+                if (len.get(existing) == len.get(last) + 1) {
+                    return existing;
+                }
+                return split(next, len, link, last, existing, c);
+            }
+
+            int cur = next.size();
+            next.add(new HashMap<>());
+            len.add(len.get(last) + 1);
+            link.add(0);
+            int p = last;
+            while (p != -1 && !next.get(p).containsKey(c)) {
+                next.get(p).put(c, cur);
+                p = link.get(p);
+            }
+            if (p != -1) {
+                int q = next.get(p).get(c);
+                link.set(cur, len.get(p) + 1 == len.get(q) ? q : split(next, len, link, p, q, c));
+            }
+            return cur;
+        }
+
+        /**
+         * 复制状态q，使从p经c到达的状态长度恰好为len(p)+1
+         * @return 复制出的状态
+         */
+        private static int split(List<Map<Character, Integer>> next, List<Integer> len, List<Integer> link,
+                                 int p, int q, char c) {
+            int clone = next.size();
+            next.add(new HashMap<>(next.get(q)));
+            len.add(len.get(p) + 1);
+            link.add(link.get(q));
+            while (p != -1 && Integer.valueOf(q).equals(next.get(p).get(c))) {
+                next.get(p).put(c, clone);
+                p = link.get(p);
+            }
+            link.set(q, clone);
+            return clone;
+        }
+
+        boolean isSubstring(String text) {
+            int state = 0;
+            for (int i = 0; i < text.length() && state >= 0; i++) {
+                state = transitions.next(state, text.charAt(i));
+            }
+            return state >= 0;
+        }
+    }
+}
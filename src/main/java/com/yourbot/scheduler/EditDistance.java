@@ -0,0 +1,140 @@
+package com.yourbot.scheduler;
+
+/**
+ * 有界编辑距离搜索
+ * 判断文本中是否存在与模式串编辑距离不超过k的子串；
+ * 模式串不超过64个字符时使用Myers位并行算法，每个文本字符只需常数次位运算，
+ * 更长的模式串使用逐列动态规划
+ */
+final class EditDistance {
+    private static final int WORD_SIZE = 64;
+
+    private final String pattern;
+    private final int maxDistance;
+
+    // 位并行：每个字符在模式串中出现位置的位掩码，开放寻址存储
+    private final char[] peqChars;
+    private final long[] peqMasks;
+    private final boolean[] peqUsed;
+    private final int peqMask;
+    private final long highBit;
+
+    /**
+     * @param pattern 模式串，不能为空
+     * @param maxDistance 允许的最大编辑距离
+     */
+    EditDistance(String pattern, int maxDistance) {
+        this.pattern = pattern;
+        this.maxDistance = maxDistance;
+        if (pattern.length() > WORD_SIZE) {
+            peqChars = null;
+            peqMasks = null;
+            peqUsed = null;
+            peqMask = 0;
+            highBit = 0;
+            return;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, pattern.length() * 2 - 1)) << 1;
+        peqChars = new char[capacity];
+        peqMasks = new long[capacity];
+        peqUsed = new boolean[capacity];
+        peqMask = capacity - 1;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            int slot = c & peqMask;
+            while (peqUsed[slot] && peqChars[slot] != c) {
+                slot = (slot + 1) & peqMask;
+            }
+            peqUsed[slot] = true;
+            peqChars[slot] = c;
+            peqMasks[slot] |= 1L << i;
+        }
+        highBit = 1L << (pattern.length() - 1);
+    }
+
+    int maxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * 文本中是否存在与模式串编辑距离不超过k的子串
+     */
+    boolean occursIn(String text) {
+        if (pattern.length() - maxDistance <= 0) {
+            return true;
+        }
+        return peqMasks != null ? searchBitParallel(text) : searchDynamic(text);
+    }
+
+    private long peq(char c) {
+        int slot = c & peqMask;
+        while (peqUsed[slot]) {
+            if (peqChars[slot] == c) {
+                return peqMasks[slot];
+            }
+            slot = (slot + 1) & peqMask;
+        }
+        return 0;
+    }
+
+    /**
+     * Myers位并行算法：Pv/Mv表示当前列相邻行差值为+1/-1的位置，
+     * score为最后一行（整个模式串）在当前文本位置的最小编辑距离；
+     * 第一行恒为0，即匹配可以从文本的任意位置开始
+     */
+    private boolean searchBitParallel(String text) {
+        long pv = -1L;
+        long mv = 0;
+        int score = pattern.length();
+        for (int i = 0; i < text.length(); i++) {
+            long eq = peq(text.charAt(i));
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & highBit) != 0) {
+                score++;
+            } else if ((mh & highBit) != 0) {
+                score--;
+            }
+            ph <<= 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if (score <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean searchDynamic(String text) {
+        int m = pattern.length();
+        int[] column = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            column[j] = j;
+        }
+        int[] next = new int[m + 1];
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            next[0] = 0;
+            for (int j = 1; j <= m; j++) {
+                int substitute = column[j - 1] + (pattern.charAt(j - 1) == c ? 0 : 1);
+                next[j] = Math.min(substitute, Math.min(column[j], next[j - 1]) + 1);
+            }
+            if (next[m] <= maxDistance) {
+                return true;
+            }
+            int[] swap = column;
+            column = next;
+            next = swap;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return pattern + "(k=" + maxDistance + ")";
+    }
+}
@@ -0,0 +1,104 @@
+package com.yourbot.scheduler;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 拼音规范化
+ * 将汉字替换为代表其读音（不带声调）的字符，同音字和繁简体（如"东"和"東"）替换后相同；
+ * 每个读音对应一个私用区字符，一个汉字仍占一个字符，编辑距离按汉字计算；
+ * 多音字取最常用的读音。
+ * 读音字符按读音的字母顺序分配，每次运行都相同；文本中原有的私用区字符替换为U+FFFD，不会与读音字符混淆
+ */
+final class PinyinNormalizer {
+    // 汉字范围：CJK统一汉字扩展A和基本区
+    private static final char HAN_START = (char) 0x3400;
+    private static final char HAN_END = (char) 0x9FFF;
+    // 读音字符从私用区开始分配
+    private static final char PRIVATE_USE_START = (char) 0xE000;
+    private static final char PRIVATE_USE_END = (char) 0xF8FF;
+    // 替换文本中原有的私用区字符
+    private static final char REPLACEMENT = (char) 0xFFFD;
+    // 表中表示没有读音
+    private static final char NO_SYLLABLE = (char) 0xFFFF;
+
+    private PinyinNormalizer() {}
+
+    /**
+     * 将文本中的汉字替换为读音字符，私用区字符替换为U+FFFD，其他字符不变
+     */
+    static String normalize(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char replacement;
+            if (c >= HAN_START && c <= HAN_END) {
+                replacement = Table.SYLLABLES[c - HAN_START];
+                if (replacement == NO_SYLLABLE) {
+                    continue;
+                }
+            } else if (c >= PRIVATE_USE_START && c <= PRIVATE_USE_END) {
+                replacement = REPLACEMENT;
+            } else {
+                continue;
+            }
+            if (chars == null) {
+                chars = text.toCharArray();
+            }
+            chars[i] = replacement;
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    /**
+     * 每个汉字的读音字符，第一次使用时查询全部汉字的读音后生成
+     */
+    private static final class Table {
+        static final char[] SYLLABLES = build();
+
+        private static char[] build() {
+            HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+            format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+            format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+            format.setVCharType(HanyuPinyinVCharType.WITH_V);
+
+            String[] readings = new String[HAN_END - HAN_START + 1];
+            TreeSet<String> sorted = new TreeSet<>();
+            for (int i = 0; i < readings.length; i++) {
+                try {
+                    String[] all = PinyinHelper.toHanyuPinyinStringArray((char) (HAN_START + i), format);
+                    if (all != null && all.length > 0) {
+                        readings[i] = all[0];
+                        sorted.add(all[0]);
+                    }
+                } catch (BadHanyuPinyinOutputFormatCombination e) {
+                    // 输出格式是固定的，不会发生
+                }
+            }
+
+            Map<String, Character> syllables = new HashMap<>();
+            for (String reading : sorted) {
+                int next = PRIVATE_USE_START + syllables.size();
+                if (next > PRIVATE_USE_END) {
+                    break;
+                }
+                syllables.put(reading, (char) next);
+            }
+
+            char[] table = new char[readings.length];
+            for (int i = 0; i < readings.length; i++) {
+                Character syllable = readings[i] != null ? syllables.get(readings[i]) : null;
+                table[i] = syllable != null ? syllable : NO_SYLLABLE;
+            }
+            return table;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.yourbot.scheduler;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -15,8 +19,12 @@ public class ScheduledTask {
     private boolean enable;        // 是否启用（用于GROUP_BAN_ALL类型）
     private List<Long> memberIds = new ArrayList<>();  // 成员ID列表（用于GROUP_BAN_MEMBER类型）
     private int duration;          // 禁言时长（秒）（用于GROUP_BAN_MEMBER类型）
+    private boolean batchMode;     // 是否批量并发执行禁言并合并通知（用于GROUP_BAN_MEMBER类型）
+    private int batchConcurrency = 10; // 批量模式下同时等待响应的禁言动作上限
     private boolean sendNotice;    // 是否发送通知消息
     private String noticeContent;  // 通知消息内容
+    private int jitterSeconds = 0; // 触发抖动窗口（秒），按任务名确定性地推迟执行，0表示不抖动
+    private List<WorkflowStep> steps = new ArrayList<>(); // 工作流步骤（用于WORKFLOW类型）
     
     // 进群验证相关属性
     private String verifyQuestion;  // 验证问题
@@ -27,10 +35,41 @@ public class ScheduledTask {
     // 新增验证相关属性
     private boolean ignoreWhitespace = false; // 答案是否忽略空格
     private boolean fuzzyMatch = false;       // 答案是否模糊匹配
+    private FuzzyMode fuzzyMode = FuzzyMode.CONTAINS; // 模糊匹配方式
+    private int fuzzyMaxDistance = 2;         // 编辑距离模式下允许的最大编辑次数
+    private int fuzzyCharsPerEdit = 3;        // 编辑距离模式下答案每多少个字符允许一次编辑
+    private boolean fuzzyPinyin = false;      // 模糊匹配时是否按拼音比较汉字（同音字、繁简体视为相同）
     private int minLevel = 0;                 // 最低等级要求（0表示不检查）
     private int maxAutoAcceptLevel = 0;       // 达到多少等级时自动同意（0表示不自动同意）
     private VerifyMode verifyMode = VerifyMode.ANSWER_ONLY; // 验证模式
     private InviteAction inviteAction = InviteAction.AUTO; // 邀请处理模式
+    private String verifyRule;                // 验证规则，设置后代替验证模式和自动通过等级
+    
+    // 挂起申请到期处理
+    private int suspendTtlHours = 168;        // 挂起申请的保留时间（小时），0表示不过期
+    private SuspendExpireAction suspendExpireAction = SuspendExpireAction.DROP; // 挂起申请到期后的处理方式
+    private String suspendExpireMessage;      // 到期自动拒绝时的拒绝理由
+    
+    // 进群防护：短时间内申请过多时按防护策略处理
+    private int raidThreshold = 0;            // 统计窗口内的申请数达到该值时进入防护模式，0表示不启用
+    private int raidWindowSeconds = 60;       // 申请数的统计窗口（秒）
+    private int raidCooldownSeconds = 300;    // 申请数降到阈值一半以下并持续该时间（秒）后退出防护模式
+    private RaidPolicy raidPolicy = RaidPolicy.SUSPEND_ALL; // 防护策略
+    private int raidMinLevel = 0;             // REQUIRE_LEVEL策略要求的最低等级，0表示使用minLevel
+    private int raidMinAccountAgeDays = 30;   // REJECT_NEW_ACCOUNTS策略要求的最短注册天数
+    private String raidRejectMessage;         // 防护策略拒绝申请时的拒绝理由
+    
+    // 编译后的答案匹配器，加载配置时生成，修改答案或匹配选项后重新生成
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile AnswerMatcher answerMatcher;
+    
+    // 编译后的验证规则，加载配置时生成，修改规则后重新生成
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile VerifyRule compiledVerifyRule;
     
     // 验证模式枚举
     public enum VerifyMode {
@@ -52,6 +91,26 @@ public class ScheduledTask {
         IGNORE_ALL   // 总是忽略邀请
     }
     
+    // 模糊匹配方式枚举
+    public enum FuzzyMode {
+        CONTAINS,      // 用户答案包含正确答案，或正确答案包含用户答案
+        EDIT_DISTANCE  // 用户答案中有与正确答案相差不超过允许编辑次数的片段
+    }
+    
+    // 防护策略枚举
+    public enum RaidPolicy {
+        SUSPEND_ALL,          // 挂起所有申请，不查询成员信息
+        REQUIRE_LEVEL,        // 等级低于要求的申请直接拒绝，其余按验证模式处理
+        REJECT_NEW_ACCOUNTS   // 注册时间过短的账号直接拒绝，无法获取注册时间时挂起，其余按验证模式处理
+    }
+    
+    // 挂起申请到期处理方式枚举
+    public enum SuspendExpireAction {
+        DROP,     // 只从挂起列表中移除，不处理申请
+        REJECT,   // 自动拒绝
+        APPROVE   // 自动同意
+    }
+    
     // 兼容单个目标ID的setter
     public void setTargetId(long targetId) {
         this.targetIds.clear();
@@ -80,6 +139,91 @@ public class ScheduledTask {
         if (verifyAnswer != null && !verifyAnswer.isEmpty()) {
             this.verifyAnswers.add(verifyAnswer);
         }
+        this.answerMatcher = null;
+    }
+    
+    public void setVerifyAnswers(List<String> verifyAnswers) {
+        this.verifyAnswers = verifyAnswers;
+        this.answerMatcher = null;
+    }
+    
+    public void setCaseSensitive(boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        this.answerMatcher = null;
+    }
+    
+    public void setIgnoreWhitespace(boolean ignoreWhitespace) {
+        this.ignoreWhitespace = ignoreWhitespace;
+        this.answerMatcher = null;
+    }
+    
+    public void setFuzzyMatch(boolean fuzzyMatch) {
+        this.fuzzyMatch = fuzzyMatch;
+        this.answerMatcher = null;
+    }
+    
+    public void setFuzzyMode(FuzzyMode fuzzyMode) {
+        this.fuzzyMode = fuzzyMode;
+        this.answerMatcher = null;
+    }
+    
+    public void setFuzzyMaxDistance(int fuzzyMaxDistance) {
+        this.fuzzyMaxDistance = fuzzyMaxDistance;
+        this.answerMatcher = null;
+    }
+    
+    public void setFuzzyCharsPerEdit(int fuzzyCharsPerEdit) {
+        this.fuzzyCharsPerEdit = fuzzyCharsPerEdit;
+        this.answerMatcher = null;
+    }
+    
+    public void setFuzzyPinyin(boolean fuzzyPinyin) {
+        this.fuzzyPinyin = fuzzyPinyin;
+        this.answerMatcher = null;
+    }
+    
+    /**
+     * 编译验证答案，加载配置时调用；未编译时在第一次检查答案时编译
+     */
+    public AnswerMatcher compileAnswerMatcher() {
+        AnswerMatcher matcher = AnswerMatcher.compile(this);
+        this.answerMatcher = matcher;
+        return matcher;
+    }
+    
+    public void setVerifyRule(String verifyRule) {
+        this.verifyRule = verifyRule;
+        this.compiledVerifyRule = null;
+    }
+    
+    /**
+     * 是否配置了验证规则
+     */
+    public boolean hasVerifyRule() {
+        return verifyRule != null && !verifyRule.isBlank();
+    }
+    
+    /**
+     * 编译验证规则，加载配置时调用；未编译时在第一次使用规则时编译
+     * @return 编译后的规则，没有配置规则时返回null
+     * @throws IllegalArgumentException 规则有语法错误
+     */
+    public VerifyRule compileVerifyRule() {
+        VerifyRule rule = hasVerifyRule() ? VerifyRule.compile(verifyRule) : null;
+        this.compiledVerifyRule = rule;
+        return rule;
+    }
+    
+    /**
+     * 按验证规则判断申请
+     * @throws IllegalArgumentException 规则有语法错误
+     */
+    public VerifyRule.Decision evaluateVerifyRule(VerifyRule.Facts facts) {
+        VerifyRule rule = compiledVerifyRule;
+        if (rule == null) {
+            rule = compileVerifyRule();
+        }
+        return rule.evaluate(facts);
     }
     
     // 兼容单个验证答案的getter
@@ -93,44 +237,15 @@ public class ScheduledTask {
      * @return 是否正确
      */
     public boolean checkAnswer(String answer) {
-        if (answer == null || answer.isEmpty() || verifyAnswers.isEmpty()) {
+        if (answer == null || answer.isEmpty() || verifyAnswers == null || verifyAnswers.isEmpty()) {
             return false;
         }
         
-        // 处理空格忽略
-        String processedUserAnswer = answer;
-        if (ignoreWhitespace) {
-            processedUserAnswer = answer.replaceAll("\\s+", "");
+        AnswerMatcher matcher = answerMatcher;
+        if (matcher == null) {
+            matcher = compileAnswerMatcher();
         }
-        
-        for (String correctAnswer : verifyAnswers) {
-            String processedCorrectAnswer = correctAnswer;
-            if (ignoreWhitespace) {
-                processedCorrectAnswer = correctAnswer.replaceAll("\\s+", "");
-            }
-            
-            // 不区分大小写情况
-            if (!caseSensitive) {
-                processedUserAnswer = processedUserAnswer.toLowerCase();
-                processedCorrectAnswer = processedCorrectAnswer.toLowerCase();
-            }
-            
-            // 检查答案
-            if (fuzzyMatch) {
-                // 模糊匹配，只要用户答案包含正确答案或正确答案包含用户答案就算通过
-                if (processedUserAnswer.contains(processedCorrectAnswer) || 
-                    processedCorrectAnswer.contains(processedUserAnswer)) {
-                    return true;
-                }
-            } else {
-                // 精确匹配
-                if (processedCorrectAnswer.equals(processedUserAnswer)) {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+        return matcher.matches(answer);
     }
     
     /**
@@ -4,12 +4,18 @@ import com.yourbot.config.ConfigManager;
 import com.yourbot.onebot.OneBotClient;
 import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 import com.yourbot.util.ConsoleUtil;
 import com.yourbot.log.TaskExecutionLog;
@@ -56,9 +62,9 @@ public class SchedulerManager {
     
     public void loadTasks() {
         try {
-            // 清除所有现有任务
+            // 清除所有现有任务，等待中的工作流延迟步骤保留
             logger.info("清除所有现有任务");
-            scheduler.clear();
+            scheduler.deleteJobs(new ArrayList<>(scheduler.getJobKeys(GroupMatcher.jobGroupEquals("tasks"))));
             
             List<ScheduledTask> tasks = ConfigManager.getInstance().getScheduledTasks();
             if (tasks == null || tasks.isEmpty()) {
@@ -70,10 +76,15 @@ public class SchedulerManager {
             logger.info("开始加载 {} 个定时任务", tasks.size());
             ConsoleUtil.info("开始加载 " + tasks.size() + " 个定时任务");
             
+            // 根据Cron表达式和目标数量规划发送负载
+            ConfigManager.SafetyConfig safety = ConfigManager.getInstance().getBotConfig().getSafety();
+            TaskLoadPlanner.LoadPlan loadPlan = TaskLoadPlanner.plan(tasks, safety);
+            long paceIntervalMs = safety != null && safety.isEnableLoadSpreading() ? safety.getMsgIntervalMs() : 0;
+            
             int successCount = 0;
             for (ScheduledTask task : tasks) {
                 try {
-                    scheduleTask(task);
+                    scheduleTask(task, loadPlan.getOffset(task.getName()), paceIntervalMs);
                     successCount++;
                 } catch (Exception e) {
                     logger.error("加载任务 {} 失败: {}", task.getName(), e.getMessage());
@@ -84,6 +95,11 @@ public class SchedulerManager {
             logger.info("成功加载 {} 个定时任务，失败 {} 个", successCount, tasks.size() - successCount);
             ConsoleUtil.success("成功加载 " + successCount + " 个定时任务" + 
                     (tasks.size() - successCount > 0 ? "，失败 " + (tasks.size() - successCount) + " 个" : ""));
+            
+            reportLoadPlan(loadPlan, safety);
+            
+            // 恢复重启前未执行的工作流延迟步骤
+            WorkflowExecutor.getInstance().resumePending(tasks, oneBotClient, paceIntervalMs);
         } catch (SchedulerException e) {
             logger.error("加载定时任务失败", e);
             ConsoleUtil.error("加载定时任务失败: " + e.getMessage());
@@ -91,7 +107,66 @@ public class SchedulerManager {
         }
     }
     
-    private void scheduleTask(ScheduledTask task) throws SchedulerException {
+    /**
+     * 输出负载规划结果：错峰偏移和发送热点
+     */
+    private void reportLoadPlan(TaskLoadPlanner.LoadPlan loadPlan, ConfigManager.SafetyConfig safety) {
+        int horizonHours = safety != null ? safety.getLoadPlanHorizonHours() : 24;
+        String horizon = describeHorizon(loadPlan.getHorizonMs());
+        if (!loadPlan.getTruncatedTasks().isEmpty()) {
+            logger.warn("负载规划: 任务 {} 触发过于频繁，只规划了未来 {}（配置为 {} 小时）",
+                    loadPlan.getTruncatedTasks(), horizon, horizonHours);
+            ConsoleUtil.warn("负载规划: 任务 " + String.join(", ", loadPlan.getTruncatedTasks())
+                    + " 触发过于频繁，只规划了未来 " + horizon + "（配置为 " + horizonHours + " 小时）");
+        }
+        
+        loadPlan.getOffsets().forEach((taskName, offset) -> {
+            if (offset > 0) {
+                logger.info("任务 {} 错峰延后 {} 毫秒执行", taskName, offset);
+                ConsoleUtil.info("任务 " + taskName + " 错峰延后 " + (offset / 1000) + " 秒执行");
+            }
+        });
+        
+        List<TaskLoadPlanner.HotSpot> hotSpots = loadPlan.getHotSpots();
+        if (hotSpots.isEmpty()) {
+            logger.info("负载规划: 未来 {}内未发现发送热点", horizon);
+            return;
+        }
+        
+        logger.warn("负载规划: 未来 {}内发现 {} 个发送热点（安全速率 {} 条/秒）",
+                horizon, hotSpots.size(), loadPlan.getSafeSendsPerSecond());
+        ConsoleUtil.warn("负载规划: 未来 " + horizon + "内发现 " + hotSpots.size() + 
+                " 个发送热点（安全速率 " + loadPlan.getSafeSendsPerSecond() + " 条/秒）");
+        
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd HH:mm:ss");
+        for (TaskLoadPlanner.HotSpot spot : hotSpots.subList(0, Math.min(5, hotSpots.size()))) {
+            String time = Instant.ofEpochSecond(spot.getEpochSecond())
+                    .atZone(ZoneId.systemDefault()).format(formatter);
+            logger.warn("发送热点 {}: 预计 {} 条, 任务 {}", time, spot.getSends(), spot.getTaskNames());
+            ConsoleUtil.warn("  " + time + " 预计 " + spot.getSends() + " 条, 任务: " + 
+                    String.join(", ", spot.getTaskNames()));
+        }
+        
+        if (safety == null || !safety.isEnableLoadSpreading()) {
+            ConsoleUtil.warn("可在 config.yml 中设置 bot.safety.enableLoadSpreading: true 自动错峰执行");
+        }
+    }
+    
+    /**
+     * 规划时长的描述，如 "24 小时"、"33 分钟"
+     */
+    private static String describeHorizon(long horizonMs) {
+        long minutes = horizonMs / 60_000;
+        if (minutes < 1) {
+            return Math.max(0, horizonMs / 1000) + " 秒";
+        }
+        if (minutes < 60) {
+            return minutes + " 分钟";
+        }
+        return minutes % 60 == 0 ? (minutes / 60) + " 小时" : (minutes / 60) + " 小时 " + (minutes % 60) + " 分钟";
+    }
+    
+    private void scheduleTask(ScheduledTask task, long startOffsetMs, long paceIntervalMs) throws SchedulerException {
         logger.debug("开始调度任务: {}", task.getName());
         
         // 跳过事件驱动的任务（如进群验证），这些任务不需要定时执行
@@ -108,6 +183,11 @@ public class SchedulerManager {
             return;
         }
         
+        // 校验工作流步骤的依赖关系
+        if (task.getType() == TaskType.WORKFLOW) {
+            WorkflowExecutor.validate(task);
+        }
+        
         try {
             // 验证Cron表达式
             CronScheduleBuilder.cronSchedule(task.getCronExpression());
@@ -123,6 +203,8 @@ public class SchedulerManager {
         
         job.getJobDataMap().put("task", task);
         job.getJobDataMap().put("oneBotClient", oneBotClient);
+        job.getJobDataMap().put("startOffsetMs", startOffsetMs);
+        job.getJobDataMap().put("paceIntervalMs", paceIntervalMs);
         
         CronTrigger trigger = TriggerBuilder.newTrigger()
                 .withIdentity(task.getName() + "_trigger", "tasks")
@@ -148,6 +230,16 @@ public class SchedulerManager {
         
         @Override
         public void execute(JobExecutionContext context) throws JobExecutionException {
+            // 负载规划分配了错峰偏移时，推迟到偏移后的时间再执行
+            JobDataMap jobData = context.getJobDetail().getJobDataMap();
+            long startOffsetMs = jobData.containsKey("startOffsetMs") ? jobData.getLong("startOffsetMs") : 0;
+            if (startOffsetMs > 0 && !context.getMergedJobDataMap().containsKey("offsetApplied")
+                    && deferExecution(context, startOffsetMs)) {
+                return;
+            }
+            
+            long paceIntervalMs = jobData.containsKey("paceIntervalMs") ? jobData.getLong("paceIntervalMs") : 0;
+            
             int retryCount = 0;
             Exception lastException = null;
             
@@ -179,82 +271,30 @@ public class SchedulerManager {
                     
                     StringBuilder details = new StringBuilder();
                     
-                    switch (task.getType()) {
-                        case SEND_MESSAGE:
-                            // 发送消息到所有目标
-                            for (long targetId : task.getTargetIds()) {
-                                if ("GROUP".equals(task.getTargetType())) {
-                                    jobLogger.info("发送群消息到 {}: {}", targetId, task.getContent());
-                                    ConsoleUtil.task(task.getName(), "发送群消息到 " + targetId);
-                                    client.sendGroupMessage(targetId, task.getContent());
-                                    details.append("发送群消息到 ").append(targetId);
-                                } else if ("PRIVATE".equals(task.getTargetType())) {
-                                    jobLogger.info("发送私聊消息到 {}: {}", targetId, task.getContent());
-                                    ConsoleUtil.task(task.getName(), "发送私聊消息到 " + targetId);
-                                    client.sendPrivateMessage(targetId, task.getContent());
-                                    details.append("发送私聊消息到 ").append(targetId);
-                                }
-                                details.append("; ");
-                            }
-                            break;
-                            
-                        case GROUP_BAN_ALL:
-                            // 设置所有群的全体禁言状态
-                            for (long groupId : task.getTargetIds()) {
-                                jobLogger.info("设置群 {} 全体禁言: {}", groupId, task.isEnable());
-                                ConsoleUtil.task(task.getName(), "设置群 " + groupId + " 全体" + (task.isEnable() ? "禁言" : "解禁"));
-                                client.setGroupWholeBan(groupId, task.isEnable());
-                                details.append(task.isEnable() ? "开启" : "关闭")
-                                       .append("群 ").append(groupId).append(" 的全体禁言; ");
-                                
-                                if (task.isSendNotice()) {
-                                    jobLogger.info("发送全体{}通知: {}", task.isEnable() ? "禁言" : "解禁", task.getNoticeContent());
-                                    ConsoleUtil.task(task.getName(), "发送全体" + (task.isEnable() ? "禁言" : "解禁") + "通知");
-                                    client.sendGroupMessage(groupId, task.getNoticeContent());
-                                    details.append("发送通知到群 ").append(groupId).append("; ");
-                                }
-                            }
-                            break;
-                            
-                        case GROUP_BAN_MEMBER:
-                            // 为每个群的每个成员设置禁言
-                            for (long groupId : task.getTargetIds()) {
-                                for (long memberId : task.getMemberIds()) {
-                                    jobLogger.info("设置群 {} 成员 {} 禁言 {} 秒", 
-                                            groupId, memberId, task.getDuration());
-                                    ConsoleUtil.task(task.getName(), "设置群 " + groupId + " 成员 " + memberId + 
-                                            (task.getDuration() > 0 ? " 禁言 " + formatDuration(task.getDuration()) : " 解除禁言"));
-                                    client.setGroupBan(groupId, memberId, task.getDuration());
-                                    details.append(task.getDuration() > 0 ? "禁言" : "解除禁言")
-                                           .append("群 ").append(groupId)
-                                           .append(" 的成员 ").append(memberId).append("; ");
-                                    
-                                    if (task.isSendNotice()) {
-                                        String noticeMsg = task.getNoticeContent()
-                                            .replace("{memberId}", String.valueOf(memberId))
-                                            .replace("{duration}", formatDuration(task.getDuration()));
-                                        jobLogger.info("发送成员{}通知: {}", task.getDuration() > 0 ? "禁言" : "解禁", noticeMsg);
-                                        ConsoleUtil.task(task.getName(), "发送成员" + (task.getDuration() > 0 ? "禁言" : "解禁") + "通知");
-                                        client.sendGroupMessage(groupId, noticeMsg);
-                                        details.append("发送通知到群 ").append(groupId).append("; ");
-                                    }
-                                }
-                            }
-                            break;
-                            
-                        default:
-                            jobLogger.warn("未知的任务类型: {}", task.getType());
-                            ConsoleUtil.warn("未知的任务类型: " + task.getType());
-                            details.append("未知的任务类型: ").append(task.getType());
-                            break;
+                    if (task.getType() == TaskType.WORKFLOW) {
+                        // 工作流异步执行，全部步骤结束后再记录为一次执行日志
+                        WorkflowExecutor.getInstance().start(task, client, paceIntervalMs, log);
+                        lastTaskExecutionTime = currentTime;
+                        return;
+                    }
+                    
+                    TaskActionExecutor executor = new TaskActionExecutor(client, paceIntervalMs);
+                    if (!executor.execute(task, details)) {
+                        log.setSuccess(false);
+                        log.setErrorMessage("部分动作未收到成功响应");
                     }
                     
                     jobLogger.info("任务 {} 执行完成", task.getName());
                     ConsoleUtil.task(task.getName(), "执行完成");
                     
-                    // 设置日志详情并记录
+                    // 设置日志详情，所有动作收到响应后连同送达回执一起记录
                     log.setDetails(details.toString());
-                    TaskLogManager.getInstance().logTaskExecution(log);
+                    CompletableFuture<Void> delivered = executor.whenDelivered().thenAccept(receipts -> {
+                        log.applyReceipts(receipts);
+                        log.setDurationMs(System.currentTimeMillis() - currentTime);
+                        log.setExecutionTime(LocalDateTime.now());
+                    });
+                    TaskLogManager.getInstance().logTaskExecutionWhenDone(log, delivered);
                     
                     // 更新最后执行时间
                     lastTaskExecutionTime = currentTime;
@@ -284,35 +324,26 @@ public class SchedulerManager {
         }
         
         /**
-         * 格式化禁言时长
+         * 以偏移后的时间重新触发本任务
+         * @return 是否已成功推迟
          */
-        private String formatDuration(int seconds) {
-            if (seconds <= 0) {
-                return "永久";
-            }
-            
-            StringBuilder sb = new StringBuilder();
-            int days = seconds / (24 * 3600);
-            seconds %= (24 * 3600);
-            int hours = seconds / 3600;
-            seconds %= 3600;
-            int minutes = seconds / 60;
-            seconds %= 60;
-            
-            if (days > 0) {
-                sb.append(days).append("天");
-            }
-            if (hours > 0) {
-                sb.append(hours).append("小时");
-            }
-            if (minutes > 0) {
-                sb.append(minutes).append("分钟");
+        private boolean deferExecution(JobExecutionContext context, long startOffsetMs) {
+            Date fireTime = context.getScheduledFireTime() != null ? context.getScheduledFireTime() : new Date();
+            String taskName = context.getJobDetail().getKey().getName();
+            try {
+                Trigger delayed = TriggerBuilder.newTrigger()
+                        .withIdentity(taskName + "_offset_" + fireTime.getTime(), "tasks")
+                        .forJob(context.getJobDetail())
+                        .usingJobData("offsetApplied", Boolean.TRUE)
+                        .startAt(new Date(fireTime.getTime() + startOffsetMs))
+                        .build();
+                context.getScheduler().scheduleJob(delayed);
+                jobLogger.debug("任务 {} 错峰推迟 {} 毫秒执行", taskName, startOffsetMs);
+                return true;
+            } catch (SchedulerException e) {
+                jobLogger.warn("任务 {} 错峰推迟失败，立即执行: {}", taskName, e.getMessage());
+                return false;
             }
-            if (seconds > 0 || sb.length() == 0) {
-                sb.append(seconds).append("秒");
-            }
-            
-            return sb.toString();
         }
     }
     
@@ -0,0 +1,287 @@
+package com.yourbot.scheduler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yourbot.log.TaskDeliveryReceipt;
+import com.yourbot.onebot.OneBotClient;
+import com.yourbot.util.ConsoleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 任务动作执行器
+ * 负责执行单个任务（或工作流步骤）对应的OneBot动作，并在相邻动作之间限速；
+ * 每个动作通过echo关联OneBot的响应，生成送达回执
+ */
+public class TaskActionExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(TaskActionExecutor.class);
+
+    private final OneBotClient client;
+    private final long paceIntervalMs;
+
+    // 上一个出站动作的时间，用于限速
+    private long lastActionTime = 0;
+    
+    // 已发送动作的送达回执
+    private final List<CompletableFuture<TaskDeliveryReceipt>> receipts = new ArrayList<>();
+
+    public TaskActionExecutor(OneBotClient client, long paceIntervalMs) {
+        this.client = client;
+        this.paceIntervalMs = paceIntervalMs;
+    }
+
+    /**
+     * 执行任务动作
+     * @param task 任务配置
+     * @param details 执行详情，动作完成后追加到其中
+     * @return 是否没有已确认失败的动作；其余动作的结果通过 whenDelivered 获取
+     */
+    public boolean execute(ScheduledTask task, StringBuilder details) throws InterruptedException {
+        switch (task.getType()) {
+            case SEND_MESSAGE:
+                // 发送消息到所有目标
+                for (long targetId : task.getTargetIds()) {
+                    if ("GROUP".equals(task.getTargetType())) {
+                        logger.info("发送群消息到 {}: {}", targetId, task.getContent());
+                        ConsoleUtil.task(task.getName(), "发送群消息到 " + targetId);
+                        pace();
+                        track("send_group_msg", targetId, 0, () -> client.sendGroupMessageAsync(targetId, task.getContent()));
+                        details.append("发送群消息到 ").append(targetId);
+                    } else if ("PRIVATE".equals(task.getTargetType())) {
+                        logger.info("发送私聊消息到 {}: {}", targetId, task.getContent());
+                        ConsoleUtil.task(task.getName(), "发送私聊消息到 " + targetId);
+                        pace();
+                        track("send_private_msg", targetId, 0, () -> client.sendPrivateMessageAsync(targetId, task.getContent()));
+                        details.append("发送私聊消息到 ").append(targetId);
+                    }
+                    details.append("; ");
+                }
+                break;
+
+            case GROUP_BAN_ALL:
+                // 设置所有群的全体禁言状态
+                for (long groupId : task.getTargetIds()) {
+                    logger.info("设置群 {} 全体禁言: {}", groupId, task.isEnable());
+                    ConsoleUtil.task(task.getName(), "设置群 " + groupId + " 全体" + (task.isEnable() ? "禁言" : "解禁"));
+                    pace();
+                    track("set_group_whole_ban", groupId, 0, () -> client.setGroupWholeBanAsync(groupId, task.isEnable()));
+                    details.append(task.isEnable() ? "开启" : "关闭")
+                           .append("群 ").append(groupId).append(" 的全体禁言; ");
+
+                    if (task.isSendNotice()) {
+                        logger.info("发送全体{}通知: {}", task.isEnable() ? "禁言" : "解禁", task.getNoticeContent());
+                        ConsoleUtil.task(task.getName(), "发送全体" + (task.isEnable() ? "禁言" : "解禁") + "通知");
+                        pace();
+                        track("send_group_msg", groupId, 0, () -> client.sendGroupMessageAsync(groupId, task.getNoticeContent()));
+                        details.append("发送通知到群 ").append(groupId).append("; ");
+                    }
+                }
+                break;
+
+            case GROUP_BAN_MEMBER:
+                if (task.isBatchMode()) {
+                    return executeBatchBan(task, details);
+                }
+
+                // 为每个群的每个成员设置禁言
+                for (long groupId : task.getTargetIds()) {
+                    for (long memberId : task.getMemberIds()) {
+                        logger.info("设置群 {} 成员 {} 禁言 {} 秒",
+                                groupId, memberId, task.getDuration());
+                        ConsoleUtil.task(task.getName(), "设置群 " + groupId + " 成员 " + memberId +
+                                (task.getDuration() > 0 ? " 禁言 " + formatDuration(task.getDuration()) : " 解除禁言"));
+                        pace();
+                        track("set_group_ban", groupId, memberId,
+                                () -> client.setGroupBanAsync(groupId, memberId, task.getDuration()));
+                        details.append(task.getDuration() > 0 ? "禁言" : "解除禁言")
+                               .append("群 ").append(groupId)
+                               .append(" 的成员 ").append(memberId).append("; ");
+
+                        if (task.isSendNotice()) {
+                            String noticeMsg = task.getNoticeContent()
+                                .replace("{memberId}", String.valueOf(memberId))
+                                .replace("{duration}", formatDuration(task.getDuration()));
+                            logger.info("发送成员{}通知: {}", task.getDuration() > 0 ? "禁言" : "解禁", noticeMsg);
+                            ConsoleUtil.task(task.getName(), "发送成员" + (task.getDuration() > 0 ? "禁言" : "解禁") + "通知");
+                            pace();
+                            track("send_group_msg", groupId, 0, () -> client.sendGroupMessageAsync(groupId, noticeMsg));
+                            details.append("发送通知到群 ").append(groupId).append("; ");
+                        }
+                    }
+                }
+                break;
+
+            default:
+                logger.warn("未知的任务类型: {}", task.getType());
+                ConsoleUtil.warn("未知的任务类型: " + task.getType());
+                details.append("未知的任务类型: ").append(task.getType());
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * 批量禁言：并发发送禁言动作（限制同时等待响应的数量），按响应统计结果，
+     * 每个群只发送一条汇总通知
+     */
+    private boolean executeBatchBan(ScheduledTask task, StringBuilder details) throws InterruptedException {
+        int duration = task.getDuration();
+        String action = duration > 0 ? "禁言" : "解除禁言";
+        Semaphore inFlight = new Semaphore(Math.max(1, task.getBatchConcurrency()));
+        Map<Long, Map<Long, CompletableFuture<TaskDeliveryReceipt>>> results = new LinkedHashMap<>();
+
+        long startTime = System.currentTimeMillis();
+        for (long groupId : task.getTargetIds()) {
+            Map<Long, CompletableFuture<TaskDeliveryReceipt>> groupResults = new LinkedHashMap<>();
+            results.put(groupId, groupResults);
+            for (long memberId : task.getMemberIds()) {
+                inFlight.acquire();
+                CompletableFuture<TaskDeliveryReceipt> result = track("set_group_ban", groupId, memberId,
+                        () -> client.setGroupBanAsync(groupId, memberId, duration));
+                result.whenComplete((receipt, e) -> inFlight.release());
+                groupResults.put(memberId, result);
+            }
+        }
+
+        boolean allSucceeded = true;
+        for (Map.Entry<Long, Map<Long, CompletableFuture<TaskDeliveryReceipt>>> entry : results.entrySet()) {
+            long groupId = entry.getKey();
+            List<Long> succeeded = new ArrayList<>();
+            List<Long> failed = new ArrayList<>();
+            entry.getValue().forEach((memberId, result) -> {
+                TaskDeliveryReceipt receipt = result.join();
+                if (receipt.isOk()) {
+                    succeeded.add(memberId);
+                } else {
+                    logger.warn("{}群 {} 成员 {} 未收到成功响应: {}", action, groupId, memberId, receipt.getError());
+                    failed.add(memberId);
+                }
+            });
+            allSucceeded &= failed.isEmpty();
+
+            logger.info("批量{}群 {}: 成功 {} 个, 失败 {} 个", action, groupId, succeeded.size(), failed.size());
+            ConsoleUtil.task(task.getName(), "批量" + action + "群 " + groupId + " 成员: 成功 " + succeeded.size() +
+                    " 个" + (failed.isEmpty() ? "" : ", 失败 " + failed.size() + " 个"));
+            details.append("批量").append(action).append("群 ").append(groupId)
+                   .append(" 的成员: 成功 ").append(succeeded.size()).append(" 个");
+            if (!failed.isEmpty()) {
+                details.append(", 失败 ").append(failed.size()).append(" 个 ").append(failed);
+            }
+            details.append("; ");
+
+            // 合并为一条汇总通知
+            if (task.isSendNotice() && !succeeded.isEmpty()) {
+                String memberList = succeeded.stream().map(String::valueOf).collect(Collectors.joining("、"));
+                String noticeMsg = task.getNoticeContent()
+                    .replace("{memberId}", memberList)
+                    .replace("{count}", String.valueOf(succeeded.size()))
+                    .replace("{duration}", formatDuration(duration));
+                pace();
+                track("send_group_msg", groupId, 0, () -> client.sendGroupMessageAsync(groupId, noticeMsg));
+                details.append("发送汇总通知到群 ").append(groupId).append("; ");
+            }
+        }
+
+        logger.info("任务 {} 批量{}完成，用时 {} 毫秒", task.getName(), action, System.currentTimeMillis() - startTime);
+        return allSucceeded;
+    }
+
+    /**
+     * 所有已发送动作收到响应或超时后完成
+     * @return 按发送顺序排列的送达回执
+     */
+    public CompletableFuture<List<TaskDeliveryReceipt>> whenDelivered() {
+        List<CompletableFuture<TaskDeliveryReceipt>> pending = new ArrayList<>(receipts);
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                .thenApply(v -> pending.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+    
+    /**
+     * 发送动作并根据其响应生成送达回执，回执总是正常完成
+     */
+    private CompletableFuture<TaskDeliveryReceipt> track(String action, long targetId, long memberId,
+                                                         Supplier<CompletableFuture<JsonNode>> send) {
+        long startTime = System.nanoTime();
+        CompletableFuture<TaskDeliveryReceipt> receipt = send.get().handle((response, error) -> {
+            TaskDeliveryReceipt r = new TaskDeliveryReceipt();
+            r.setAction(action);
+            r.setTargetId(targetId);
+            r.setMemberId(memberId);
+            r.setLatencyMs((System.nanoTime() - startTime) / 1_000_000);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                r.setError(cause instanceof TimeoutException ? "等待响应超时" : cause.getMessage());
+                return r;
+            }
+            r.setRetcode(response.path("retcode").asInt(-1));
+            r.setOk(OneBotClient.isActionOk(response));
+            JsonNode messageId = response.path("data").path("message_id");
+            if (messageId.canConvertToLong()) {
+                r.setMessageId(messageId.asLong());
+            }
+            if (!r.isOk()) {
+                r.setError(response.has("wording") ? response.get("wording").asText()
+                        : response.has("msg") ? response.get("msg").asText()
+                        : "retcode " + r.getRetcode());
+            }
+            return r;
+        });
+        receipts.add(receipt);
+        return receipt;
+    }
+    
+    /**
+     * 限速：相邻两个出站动作至少间隔指定毫秒
+     */
+    private void pace() throws InterruptedException {
+        if (paceIntervalMs > 0 && lastActionTime > 0) {
+            long wait = lastActionTime + paceIntervalMs - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+        lastActionTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 格式化禁言时长
+     */
+    public static String formatDuration(int seconds) {
+        if (seconds <= 0) {
+            return "永久";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int days = seconds / (24 * 3600);
+        seconds %= (24 * 3600);
+        int hours = seconds / 3600;
+        seconds %= 3600;
+        int minutes = seconds / 60;
+        seconds %= 60;
+
+        if (days > 0) {
+            sb.append(days).append("天");
+        }
+        if (hours > 0) {
+            sb.append(hours).append("小时");
+        }
+        if (minutes > 0) {
+            sb.append(minutes).append("分钟");
+        }
+        if (seconds > 0 || sb.length() == 0) {
+            sb.append(seconds).append("秒");
+        }
+
+        return sb.toString();
+    }
+}
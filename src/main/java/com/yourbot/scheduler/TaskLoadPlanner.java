@@ -0,0 +1,328 @@
+package com.yourbot.scheduler;
+
+import com.yourbot.config.ConfigManager;
+import org.quartz.CronExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 任务负载规划器
+ * 在加载任务时根据Cron表达式和目标数量估算每秒发送量，找出发送热点，
+ * 并可为同时触发的任务分配确定性的错峰偏移，使整体发送速率保持在安全范围内
+ */
+public class TaskLoadPlanner {
+    private static final Logger logger = LoggerFactory.getLogger(TaskLoadPlanner.class);
+
+    // 单个任务在规划窗口内最多展开的触发次数，避免每秒触发的任务拖慢加载；
+    // 有任务达到上限时，规划窗口缩短到该任务最后一次展开的触发时间
+    private static final int MAX_FIRES_PER_TASK = 2000;
+
+    // 错峰偏移的搜索步长(毫秒)
+    private static final long OFFSET_STEP_MS = 1000;
+
+    private TaskLoadPlanner() {}
+
+    /**
+     * 为任务列表生成负载规划
+     * @param tasks 任务列表
+     * @param safety 安全配置
+     * @return 负载规划结果
+     */
+    public static LoadPlan plan(List<ScheduledTask> tasks, ConfigManager.SafetyConfig safety) {
+        if (safety == null) {
+            safety = new ConfigManager.SafetyConfig();
+        }
+
+        long now = System.currentTimeMillis();
+        long horizonEnd = now + Math.max(1, safety.getLoadPlanHorizonHours()) * 3600_000L;
+        long msgInterval = Math.max(1, safety.getMsgIntervalMs());
+        int safeSendsPerSecond = (int) Math.max(1, 1000 / msgInterval);
+
+        // 展开每个定时任务在规划窗口内的触发时间
+        List<TaskFires> planned = new ArrayList<>();
+        List<String> truncated = new ArrayList<>();
+        long coveredEnd = horizonEnd;
+        for (ScheduledTask task : tasks) {
+            if (task.getType() == null || task.getType() == TaskType.GROUP_REQUEST_VERIFY) {
+                continue;
+            }
+            int actions = estimateActions(task);
+            if (actions <= 0) {
+                continue;
+            }
+            List<Long> fires = expandFireTimes(task, now, horizonEnd);
+            if (fires.isEmpty()) {
+                continue;
+            }
+            if (fires.size() >= MAX_FIRES_PER_TASK) {
+                truncated.add(task.getName());
+                coveredEnd = Math.min(coveredEnd, fires.get(fires.size() - 1) + 1);
+            }
+            planned.add(new TaskFires(task, actions, fires, jitterOffset(task)));
+        }
+        // 只规划所有任务都已完整展开的时间段，否则之后的热点会被漏算
+        if (coveredEnd < horizonEnd) {
+            long end = coveredEnd;
+            for (TaskFires tf : planned) {
+                tf.fires.removeIf(fire -> fire >= end);
+            }
+            planned.removeIf(tf -> tf.fires.isEmpty());
+        }
+
+        LoadPlan plan = new LoadPlan(safeSendsPerSecond, coveredEnd - now, truncated);
+
+        // 按名称排序保证每次加载得到相同的偏移
+        planned.sort(Comparator.comparing(tf -> tf.task.getName()));
+
+        if (safety.isEnableLoadSpreading()) {
+            spread(planned, safety, msgInterval);
+        }
+
+        for (TaskFires tf : planned) {
+            plan.offsets.put(tf.task.getName(), tf.offsetMs);
+        }
+
+        long paceInterval = safety.isEnableLoadSpreading() ? msgInterval : 0;
+        plan.hotSpots.addAll(findHotSpots(planned, paceInterval, safeSendsPerSecond));
+        return plan;
+    }
+
+    /**
+     * 估算任务单次执行产生的出站动作数量
+     */
+    public static int estimateActions(ScheduledTask task) {
+        int targets = task.getTargetIds().size();
+        switch (task.getType()) {
+            case SEND_MESSAGE:
+                return targets;
+            case GROUP_BAN_ALL:
+                return targets * (task.isSendNotice() ? 2 : 1);
+            case GROUP_BAN_MEMBER:
+                if (task.isBatchMode()) {
+                    // 批量模式下每个群只发送一条汇总通知
+                    return targets * task.getMemberIds().size() + (task.isSendNotice() ? targets : 0);
+                }
+                return targets * task.getMemberIds().size() * (task.isSendNotice() ? 2 : 1);
+            case WORKFLOW:
+                int actions = 0;
+                for (WorkflowStep step : task.getSteps()) {
+                    if (step.getType() != null && step.getType() != TaskType.WORKFLOW) {
+                        actions += estimateActions(step.toTask(task));
+                    }
+                }
+                return actions;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 根据任务名计算确定性的抖动偏移
+     */
+    private static long jitterOffset(ScheduledTask task) {
+        if (task.getJitterSeconds() <= 0 || task.getName() == null) {
+            return 0;
+        }
+        return Math.floorMod(task.getName().hashCode(), task.getJitterSeconds()) * 1000L;
+    }
+
+    /**
+     * 展开任务在[from, to)内的触发时间
+     */
+    private static List<Long> expandFireTimes(ScheduledTask task, long from, long to) {
+        List<Long> fires = new ArrayList<>();
+        try {
+            CronExpression cron = new CronExpression(task.getCronExpression());
+            Date next = cron.getNextValidTimeAfter(new Date(from));
+            while (next != null && next.getTime() < to && fires.size() < MAX_FIRES_PER_TASK) {
+                fires.add(next.getTime());
+                next = cron.getNextValidTimeAfter(next);
+            }
+        } catch (Exception e) {
+            // Cron表达式无效的任务由调度器单独报错，这里直接跳过
+            logger.debug("任务 {} 的Cron表达式无法用于负载规划: {}", task.getName(), e.getMessage());
+        }
+        return fires;
+    }
+
+    /**
+     * 为任务分配错峰偏移，使各任务的发送窗口互不重叠
+     */
+    private static void spread(List<TaskFires> planned, ConfigManager.SafetyConfig safety, long msgInterval) {
+        long maxOffset = Math.max(0, safety.getMaxSpreadSeconds()) * 1000L;
+        long minGap = Math.max(0, safety.getTaskMinIntervalMs());
+
+        // 已占用的发送窗口，键为开始时间，值为结束时间
+        TreeMap<Long, Long> occupied = new TreeMap<>();
+
+        for (TaskFires tf : planned) {
+            long window = Math.max(minGap, tf.actions * msgInterval);
+            long chosen = -1;
+            for (long offset = tf.offsetMs; offset <= tf.offsetMs + maxOffset; offset += OFFSET_STEP_MS) {
+                if (fits(occupied, tf.fires, offset, window)) {
+                    chosen = offset;
+                    break;
+                }
+            }
+
+            if (chosen < 0) {
+                logger.warn("任务 {} 在 {} 秒错峰范围内找不到空闲窗口，保持原有触发时间",
+                        tf.task.getName(), safety.getMaxSpreadSeconds());
+                chosen = tf.offsetMs;
+            }
+
+            tf.offsetMs = chosen;
+            for (long fire : tf.fires) {
+                long start = fire + chosen;
+                occupied.merge(start, start + window, Math::max);
+            }
+        }
+    }
+
+    private static boolean fits(TreeMap<Long, Long> occupied, List<Long> fires, long offset, long window) {
+        for (long fire : fires) {
+            long start = fire + offset;
+            long end = start + window;
+            Map.Entry<Long, Long> before = occupied.floorEntry(start);
+            if (before != null && before.getValue() > start) {
+                return false;
+            }
+            Long after = occupied.ceilingKey(start);
+            if (after != null && after < end) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 统计每秒的预计发送量，找出超过安全速率的时间点
+     * 启用错峰时任务内按安全间隔逐条发送，否则发送量集中在触发的那一秒
+     */
+    private static List<HotSpot> findHotSpots(List<TaskFires> planned, long paceInterval, int safeSendsPerSecond) {
+        Map<Long, HotSpot> buckets = new HashMap<>();
+        for (TaskFires tf : planned) {
+            for (long fire : tf.fires) {
+                long start = fire + tf.offsetMs;
+                for (int i = 0; i < tf.actions; i++) {
+                    long second = (start + i * paceInterval) / 1000;
+                    HotSpot spot = buckets.computeIfAbsent(second, HotSpot::new);
+                    spot.sends++;
+                    if (!spot.taskNames.contains(tf.task.getName())) {
+                        spot.taskNames.add(tf.task.getName());
+                    }
+                }
+            }
+        }
+
+        List<HotSpot> hotSpots = new ArrayList<>();
+        for (HotSpot spot : buckets.values()) {
+            if (spot.sends > safeSendsPerSecond) {
+                hotSpots.add(spot);
+            }
+        }
+        hotSpots.sort(Comparator.comparingInt(HotSpot::getSends).reversed()
+                .thenComparingLong(HotSpot::getEpochSecond));
+        return hotSpots;
+    }
+
+    /**
+     * 单个任务的规划数据
+     */
+    private static class TaskFires {
+        final ScheduledTask task;
+        final int actions;
+        final List<Long> fires;
+        long offsetMs;
+
+        TaskFires(ScheduledTask task, int actions, List<Long> fires, long offsetMs) {
+            this.task = task;
+            this.actions = actions;
+            this.fires = fires;
+            this.offsetMs = offsetMs;
+        }
+    }
+
+    /**
+     * 负载规划结果
+     */
+    public static class LoadPlan {
+        private final Map<String, Long> offsets = new HashMap<>();
+        private final List<HotSpot> hotSpots = new ArrayList<>();
+        private final int safeSendsPerSecond;
+        private final long horizonMs;
+        private final List<String> truncatedTasks;
+
+        LoadPlan(int safeSendsPerSecond, long horizonMs, List<String> truncatedTasks) {
+            this.safeSendsPerSecond = safeSendsPerSecond;
+            this.horizonMs = horizonMs;
+            this.truncatedTasks = truncatedTasks;
+        }
+
+        /**
+         * 获取任务的启动偏移(毫秒)
+         */
+        public long getOffset(String taskName) {
+            return offsets.getOrDefault(taskName, 0L);
+        }
+
+        public Map<String, Long> getOffsets() {
+            return offsets;
+        }
+
+        public List<HotSpot> getHotSpots() {
+            return hotSpots;
+        }
+
+        public int getSafeSendsPerSecond() {
+            return safeSendsPerSecond;
+        }
+
+        /**
+         * 实际规划的时长(毫秒)，有任务的触发次数达到展开上限时短于配置的规划窗口
+         */
+        public long getHorizonMs() {
+            return horizonMs;
+        }
+
+        /**
+         * 触发次数达到展开上限、使规划窗口缩短的任务
+         */
+        public List<String> getTruncatedTasks() {
+            return truncatedTasks;
+        }
+    }
+
+    /**
+     * 发送热点：某一秒内预计发送量超过安全速率
+     */
+    public static class HotSpot {
+        private final long epochSecond;
+        private int sends;
+        private final List<String> taskNames = new ArrayList<>();
+
+        HotSpot(long epochSecond) {
+            this.epochSecond = epochSecond;
+        }
+
+        public long getEpochSecond() {
+            return epochSecond;
+        }
+
+        public int getSends() {
+            return sends;
+        }
+
+        public List<String> getTaskNames() {
+            return taskNames;
+        }
+    }
+}
@@ -4,5 +4,6 @@ public enum TaskType {
     SEND_MESSAGE,      // 发送消息
     GROUP_BAN_ALL,     // 全体禁言/解禁
     GROUP_BAN_MEMBER,  // 禁言/解禁特定成员
-    GROUP_REQUEST_VERIFY // 进群请求验证
+    GROUP_REQUEST_VERIFY, // 进群请求验证
+    WORKFLOW           // 工作流（多个步骤组成的依赖图）
 } 
\ No newline at end of file
@@ -0,0 +1,763 @@
+package com.yourbot.scheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 编译后的进群验证规则
+ * 规则按顺序书写，每条规则为“条件 -> 动作”，动作为 accept、reject 或 suspend，
+ * 后面可以跟一个带引号的消息（拒绝理由或挂起原因）；最后一条可以是“else -> 动作”，
+ * 没有规则满足时拒绝申请。例如：
+ * <pre>
+ * level >= 10 -> accept
+ * answer and accountAge > 30d -> accept
+ * invitedByAdmin -> accept
+ * answer -> suspend "答案正确，等待管理员审核"
+ * else -> reject "验证未通过"
+ * </pre>
+ * 条件支持 and/&amp;&amp;、or/||、not/!、括号、比较运算和 comment ~ "正则表达式"；
+ * 加载配置时编译为判定树，常量条件在编译时化简，且/或的操作数按获取成本排序，
+ * 求值时短路，只在需要时才查询等级、注册时间等需要调用OneBot接口的信息；
+ * 信息无法获取时条件结果为未知，遇到结果未知的规则时挂起申请，不再判断后面的规则
+ */
+public final class VerifyRule {
+    // 三值逻辑的取值
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = 2;
+
+    // 远程查询的成本，本地判断的成本为0或1
+    private static final int REMOTE_COST = 10;
+
+    private final String source;
+    private final Node root;
+
+    private VerifyRule(String source, Node root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * 规则的判断结果
+     */
+    public enum Action {
+        ACCEPT,   // 同意
+        REJECT,   // 拒绝
+        SUSPEND   // 挂起
+    }
+
+    /**
+     * 求值时使用的申请信息，实现需要缓存需要远程查询的信息，同一次求值中只查询一次
+     */
+    public interface Facts {
+        /**
+         * 答案是否正确
+         */
+        boolean answerCorrect();
+
+        /**
+         * 验证信息原文
+         */
+        String comment();
+
+        /**
+         * 用户等级，无法获取时返回-1
+         */
+        int level();
+
+        /**
+         * 账号注册天数，无法获取时返回-1
+         */
+        int accountAgeDays();
+
+        /**
+         * 是否由群成员邀请
+         */
+        boolean invited();
+
+        /**
+         * 邀请人是否是群主或管理员，无法获取时返回null
+         */
+        Boolean invitedByAdmin();
+    }
+
+    /**
+     * 判断结果：动作、规则指定的消息和作出判断的规则
+     */
+    public static final class Decision {
+        private final Action action;
+        private final String message;
+        private final String rule;
+        private final String unknown;
+
+        Decision(Action action, String message, String rule, String unknown) {
+            this.action = action;
+            this.message = message;
+            this.rule = rule;
+            this.unknown = unknown;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * 规则指定的拒绝理由或挂起原因，没有指定时返回null
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * 作出判断的规则条件，没有规则满足时返回null
+         */
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * 因信息无法获取而挂起时，无法获取的信息
+         */
+        public String getUnknown() {
+            return unknown;
+        }
+    }
+
+    /**
+     * 编译验证规则
+     * @throws IllegalArgumentException 规则有语法错误时抛出，消息中包含出错的行和列
+     */
+    public static VerifyRule compile(String source) {
+        return new VerifyRule(source, new Parser(source).parseRules());
+    }
+
+    /**
+     * 对申请求值
+     */
+    public Decision evaluate(Facts facts) {
+        return root.decide(new Evaluation(facts));
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * 一次求值的上下文，记录结果未知的信息
+     */
+    private static final class Evaluation {
+        final Facts facts;
+        String unknown;
+
+        Evaluation(Facts facts) {
+            this.facts = facts;
+        }
+
+        int unknown(Fact fact) {
+            if (unknown == null) {
+                unknown = fact.label;
+            } else if (!unknown.contains(fact.label)) {
+                unknown += "、" + fact.label;
+            }
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * 规则中可以使用的申请信息
+     */
+    private enum Fact {
+        ANSWER("answer", "答案", false, 1),
+        INVITED("invited", "邀请人", false, 0),
+        INVITED_BY_ADMIN("invitedByAdmin", "邀请人身份", false, REMOTE_COST),
+        LEVEL("level", "等级", true, REMOTE_COST),
+        ACCOUNT_AGE("accountAge", "注册时间", true, REMOTE_COST);
+
+        final String name;
+        final String label;
+        final boolean numeric;
+        final int cost;
+
+        Fact(String name, String label, boolean numeric, int cost) {
+            this.name = name;
+            this.label = label;
+            this.numeric = numeric;
+            this.cost = cost;
+        }
+
+        static Fact of(String name) {
+            for (Fact fact : values()) {
+                if (fact.name.equalsIgnoreCase(name)) {
+                    return fact;
+                }
+            }
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- 条件
+
+    private abstract static class Condition {
+        /**
+         * @return TRUE、FALSE或UNKNOWN
+         */
+        abstract int eval(Evaluation evaluation);
+
+        /**
+         * 求值的估计成本，用于排序且/或的操作数
+         */
+        abstract int cost();
+    }
+
+    private static final class Constant extends Condition {
+        static final Constant TRUE_CONDITION = new Constant(TRUE);
+        static final Constant FALSE_CONDITION = new Constant(FALSE);
+
+        final int value;
+
+        private Constant(int value) {
+            this.value = value;
+        }
+
+        static Constant of(boolean value) {
+            return value ? TRUE_CONDITION : FALSE_CONDITION;
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            return value;
+        }
+
+        @Override
+        int cost() {
+            return 0;
+        }
+    }
+
+    private static final class BooleanFact extends Condition {
+        final Fact fact;
+
+        BooleanFact(Fact fact) {
+            this.fact = fact;
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            switch (fact) {
+                case ANSWER:
+                    return evaluation.facts.answerCorrect() ? TRUE : FALSE;
+                case INVITED:
+                    return evaluation.facts.invited() ? TRUE : FALSE;
+                case INVITED_BY_ADMIN:
+                    if (!evaluation.facts.invited()) {
+                        return FALSE;
+                    }
+                    Boolean admin = evaluation.facts.invitedByAdmin();
+                    return admin == null ? evaluation.unknown(fact) : admin ? TRUE : FALSE;
+                default:
+                    throw new IllegalStateException(fact.name);
+            }
+        }
+
+        @Override
+        int cost() {
+            return fact.cost;
+        }
+    }
+
+    private static final class Comparison extends Condition {
+        final Fact fact;
+        final String operator;
+        final long value;
+
+        Comparison(Fact fact, String operator, long value) {
+            this.fact = fact;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            int actual = fact == Fact.LEVEL ? evaluation.facts.level() : evaluation.facts.accountAgeDays();
+            if (actual < 0) {
+                return evaluation.unknown(fact);
+            }
+            boolean result;
+            switch (operator) {
+                case ">=": result = actual >= value; break;
+                case ">": result = actual > value; break;
+                case "<=": result = actual <= value; break;
+                case "<": result = actual < value; break;
+                case "!=": result = actual != value; break;
+                default: result = actual == value; break;
+            }
+            return result ? TRUE : FALSE;
+        }
+
+        @Override
+        int cost() {
+            return fact.cost;
+        }
+    }
+
+    private static final class CommentMatches extends Condition {
+        final Pattern pattern;
+
+        CommentMatches(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            String comment = evaluation.facts.comment();
+            return comment != null && pattern.matcher(comment).find() ? TRUE : FALSE;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+    }
+
+    private static final class Not extends Condition {
+        final Condition operand;
+
+        Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        static Condition of(Condition operand) {
+            if (operand instanceof Constant) {
+                return Constant.of(((Constant) operand).value == FALSE);
+            }
+            if (operand instanceof Not) {
+                return ((Not) operand).operand;
+            }
+            return new Not(operand);
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            int value = operand.eval(evaluation);
+            return value == UNKNOWN ? UNKNOWN : value == TRUE ? FALSE : TRUE;
+        }
+
+        @Override
+        int cost() {
+            return operand.cost();
+        }
+    }
+
+    /**
+     * 且/或：按成本从低到高求值，遇到决定结果的值时停止
+     */
+    private static final class Junction extends Condition {
+        final boolean and;
+        final Condition[] operands;
+        final int cost;
+
+        private Junction(boolean and, List<Condition> operands) {
+            this.and = and;
+            this.operands = operands.toArray(new Condition[0]);
+            int total = 0;
+            for (Condition operand : operands) {
+                total += operand.cost();
+            }
+            this.cost = total;
+        }
+
+        /**
+         * 展开嵌套的同类条件，去掉不影响结果的常量，再按成本排序
+         */
+        static Condition of(boolean and, List<Condition> operands) {
+            int identity = and ? TRUE : FALSE;
+            List<Condition> flat = new ArrayList<>();
+            for (Condition operand : operands) {
+                if (operand instanceof Junction && ((Junction) operand).and == and) {
+                    flat.addAll(List.of(((Junction) operand).operands));
+                } else if (operand instanceof Constant) {
+                    if (((Constant) operand).value != identity) {
+                        return operand;
+                    }
+                } else {
+                    flat.add(operand);
+                }
+            }
+            if (flat.isEmpty()) {
+                return Constant.of(identity == TRUE);
+            }
+            if (flat.size() == 1) {
+                return flat.get(0);
+            }
+            flat.sort(Comparator.comparingInt(Condition::cost));
+            return new Junction(and, flat);
+        }
+
+        @Override
+        int eval(Evaluation evaluation) {
+            int result = and ? TRUE : FALSE;
+            int decisive = and ? FALSE : TRUE;
+            for (Condition operand : operands) {
+                int value = operand.eval(evaluation);
+                if (value == decisive) {
+                    return decisive;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return cost;
+        }
+    }
+
+    // ---------------------------------------------------------------- 判定树
+
+    private abstract static class Node {
+        abstract Decision decide(Evaluation evaluation);
+    }
+
+    private static final class Leaf extends Node {
+        final Decision decision;
+
+        Leaf(Decision decision) {
+            this.decision = decision;
+        }
+
+        @Override
+        Decision decide(Evaluation evaluation) {
+            return decision;
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Condition condition;
+        final String rule;
+        final Decision then;
+        final Node otherwise;
+
+        Branch(Condition condition, String rule, Decision then, Node otherwise) {
+            this.condition = condition;
+            this.rule = rule;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        Decision decide(Evaluation evaluation) {
+            evaluation.unknown = null;
+            switch (condition.eval(evaluation)) {
+                case TRUE:
+                    return then;
+                case FALSE:
+                    return otherwise.decide(evaluation);
+                default:
+                    return new Decision(Action.SUSPEND, null, rule, evaluation.unknown);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 语法分析
+
+    private static final class Token {
+        static final int IDENT = 0;
+        static final int NUMBER = 1;
+        static final int STRING = 2;
+        static final int SYMBOL = 3;
+        static final int END = 4;
+
+        final int type;
+        final String text;
+        final int start;
+        final int end;
+        // 数字是否带天数单位d
+        final boolean days;
+
+        Token(int type, String text, int start, int end, boolean days) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.days = days;
+        }
+
+        boolean is(String value) {
+            return (type == IDENT || type == SYMBOL) && text.equalsIgnoreCase(value);
+        }
+    }
+
+    private static final class Parser {
+        private static final String[] SYMBOLS = {"->", ">=", "<=", "==", "!=", "&&", "||", ">", "<", "=", "!", "(", ")", "~"};
+
+        private final String source;
+        private final List<Token> tokens = new ArrayList<>();
+        private int index;
+
+        Parser(String source) {
+            this.source = source != null ? source : "";
+            tokenize();
+        }
+
+        Node parseRules() {
+            List<Condition> conditions = new ArrayList<>();
+            List<String> rules = new ArrayList<>();
+            List<Decision> decisions = new ArrayList<>();
+            Decision fallback = new Decision(Action.REJECT, null, null, null);
+
+            while (peek().type != Token.END) {
+                if (peek().is("else")) {
+                    next();
+                    expect("->");
+                    fallback = parseAction(null);
+                    if (peek().type != Token.END) {
+                        throw error(peek(), "else 必须是最后一条规则");
+                    }
+                    break;
+                }
+                int start = peek().start;
+                Condition condition = parseOr();
+                String rule = source.substring(start, peek().start).trim().replaceAll("\\s+", " ");
+                expect("->");
+                conditions.add(condition);
+                rules.add(rule);
+                decisions.add(parseAction(rule));
+            }
+            if (tokens.size() == 1) {
+                throw error(0, "没有规则");
+            }
+
+            // 从最后一条规则开始向前构建，条件恒为真的规则之后的规则不会执行
+            Node node = new Leaf(fallback);
+            for (int i = conditions.size() - 1; i >= 0; i--) {
+                Condition condition = conditions.get(i);
+                if (condition instanceof Constant) {
+                    if (((Constant) condition).value == TRUE) {
+                        node = new Leaf(decisions.get(i));
+                    }
+                } else {
+                    node = new Branch(condition, rules.get(i), decisions.get(i), node);
+                }
+            }
+            return node;
+        }
+
+        private Decision parseAction(String rule) {
+            Token token = next();
+            Action action;
+            if (token.is("accept")) {
+                action = Action.ACCEPT;
+            } else if (token.is("reject")) {
+                action = Action.REJECT;
+            } else if (token.is("suspend")) {
+                action = Action.SUSPEND;
+            } else {
+                throw error(token, "期望 accept、reject 或 suspend");
+            }
+            String message = null;
+            if (peek().type == Token.STRING) {
+                message = next().text;
+            }
+            return new Decision(action, message, rule, null);
+        }
+
+        private Condition parseOr() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (peek().is("or") || peek().is("||")) {
+                next();
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : Junction.of(false, operands);
+        }
+
+        private Condition parseAnd() {
+            List<Condition> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (peek().is("and") || peek().is("&&")) {
+                next();
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : Junction.of(true, operands);
+        }
+
+        private Condition parseUnary() {
+            if (peek().is("not") || peek().is("!")) {
+                next();
+                return Not.of(parseUnary());
+            }
+            return parsePrimary();
+        }
+
+        private Condition parsePrimary() {
+            Token token = next();
+            if (token.is("(")) {
+                Condition condition = parseOr();
+                expect(")");
+                return condition;
+            }
+            if (token.type != Token.IDENT) {
+                throw error(token, "期望条件");
+            }
+            if (token.is("true") || token.is("false")) {
+                return Constant.of(token.is("true"));
+            }
+            if (token.is("comment")) {
+                expect("~");
+                Token pattern = next();
+                if (pattern.type != Token.STRING) {
+                    throw error(pattern, "期望带引号的正则表达式");
+                }
+                try {
+                    return new CommentMatches(Pattern.compile(pattern.text));
+                } catch (PatternSyntaxException e) {
+                    throw error(pattern, "正则表达式有误: " + e.getDescription());
+                }
+            }
+
+            Fact fact = Fact.of(token.text);
+            if (fact == null) {
+                throw error(token, "未知的条件 " + token.text
+                        + "，可用: answer, invited, invitedByAdmin, level, accountAge, comment");
+            }
+            if (!fact.numeric) {
+                return new BooleanFact(fact);
+            }
+
+            Token operator = next();
+            String op = operator.is("=") ? "==" : operator.text.toLowerCase(Locale.ROOT);
+            if (operator.type != Token.SYMBOL || !List.of(">=", ">", "<=", "<", "==", "!=").contains(op)) {
+                throw error(operator, fact.name + " 后面需要比较运算符");
+            }
+            Token number = next();
+            if (number.type != Token.NUMBER) {
+                throw error(number, "期望数字");
+            }
+            if (number.days && fact != Fact.ACCOUNT_AGE) {
+                throw error(number, "只有 accountAge 可以使用天数单位 d");
+            }
+            try {
+                return new Comparison(fact, op, Long.parseLong(number.text));
+            } catch (NumberFormatException e) {
+                throw error(number, "数字过大");
+            }
+        }
+
+        private Token peek() {
+            return tokens.get(index);
+        }
+
+        private Token next() {
+            Token token = tokens.get(index);
+            if (token.type != Token.END) {
+                index++;
+            }
+            return token;
+        }
+
+        private void expect(String symbol) {
+            Token token = next();
+            if (!token.is(symbol)) {
+                throw error(token, "期望 " + symbol);
+            }
+        }
+
+        private void tokenize() {
+            int i = 0;
+            int n = source.length();
+            while (i < n) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c) || c == ';' || c == '；') {
+                    i++;
+                } else if (c == '#') {
+                    while (i < n && source.charAt(i) != '\n') {
+                        i++;
+                    }
+                } else if (Character.isLetter(c) || c == '_') {
+                    int start = i;
+                    while (i < n && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+                        i++;
+                    }
+                    tokens.add(new Token(Token.IDENT, source.substring(start, i), start, i, false));
+                } else if (c >= '0' && c <= '9') {
+                    int start = i;
+                    while (i < n && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+                        i++;
+                    }
+                    String digits = source.substring(start, i);
+                    boolean days = i < n && (source.charAt(i) == 'd' || source.charAt(i) == 'D')
+                            && (i + 1 == n || !Character.isLetterOrDigit(source.charAt(i + 1)));
+                    if (days) {
+                        i++;
+                    }
+                    tokens.add(new Token(Token.NUMBER, digits, start, i, days));
+                } else if (c == '"' || c == '“') {
+                    i = readString(i);
+                } else {
+                    String symbol = null;
+                    for (String candidate : SYMBOLS) {
+                        if (source.startsWith(candidate, i)) {
+                            symbol = candidate;
+                            break;
+                        }
+                    }
+                    if (symbol == null) {
+                        throw error(i, "无法识别的字符 '" + c + "'");
+                    }
+                    tokens.add(new Token(Token.SYMBOL, symbol, i, i + symbol.length(), false));
+                    i += symbol.length();
+                }
+            }
+            tokens.add(new Token(Token.END, "", n, n, false));
+        }
+
+        /**
+         * 读取带引号的字符串，支持英文双引号（可用反斜杠转义）和中文引号
+         * @return 字符串结束后的位置
+         */
+        private int readString(int start) {
+            char close = source.charAt(start) == '"' ? '"' : '”';
+            StringBuilder sb = new StringBuilder();
+            int i = start + 1;
+            while (i < source.length() && source.charAt(i) != close) {
+                char c = source.charAt(i);
+                if (c == '\\' && close == '"' && i + 1 < source.length()) {
+                    c = source.charAt(++i);
+                }
+                sb.append(c);
+                i++;
+            }
+            if (i >= source.length()) {
+                throw error(start, "字符串缺少结束引号");
+            }
+            tokens.add(new Token(Token.STRING, sb.toString(), start, i + 1, false));
+            return i + 1;
+        }
+
+        private IllegalArgumentException error(Token token, String message) {
+            return error(token.start, token.type == Token.END ? message + "，但规则已结束" : message);
+        }
+
+        private IllegalArgumentException error(int position, String message) {
+            int line = 1;
+            int column = 1;
+            for (int i = 0; i < position && i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    line++;
+                    column = 1;
+                } else {
+                    column++;
+                }
+            }
+            return new IllegalArgumentException(String.format("验证规则第 %d 行第 %d 列: %s", line, column, message));
+        }
+    }
+}
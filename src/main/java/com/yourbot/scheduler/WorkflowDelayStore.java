@@ -0,0 +1,145 @@
+package com.yourbot.scheduler;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 等待执行的工作流延迟步骤的持久化存储
+ * 步骤开始等待时加入、执行完成后移除，每次变化都整体写入临时文件并刷盘后替换；
+ * 每条记录同时保存同一次执行中已结束步骤的状态，程序重启后仍在文件中的步骤由 WorkflowExecutor 按这些状态恢复执行
+ */
+class WorkflowDelayStore {
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowDelayStore.class);
+
+    static final String FILE = "delayed-steps.json";
+
+    private final Path dir;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // 按 执行ID/步骤ID 索引的等待中的步骤
+    private final Map<String, PendingStep> pending = new LinkedHashMap<>();
+
+    WorkflowDelayStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 读取上次运行时未执行的延迟步骤
+     */
+    synchronized List<PendingStep> load() throws IOException {
+        pending.clear();
+        Path file = dir.resolve(FILE);
+        if (Files.exists(file)) {
+            List<PendingStep> steps = mapper.readValue(file.toFile(), new TypeReference<List<PendingStep>>() {});
+            for (PendingStep step : steps) {
+                pending.put(key(step.getRunId(), step.getStepId()), step);
+            }
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * 记录开始等待的步骤，已记录的步骤会被替换
+     */
+    synchronized void add(PendingStep step) {
+        pending.put(key(step.getRunId(), step.getStepId()), step);
+        save();
+    }
+
+    /**
+     * 记录同一次执行中结束的步骤的状态，该次执行没有等待中的步骤时不写入
+     */
+    synchronized void recordFinished(String runId, String stepId, String status) {
+        boolean changed = false;
+        for (PendingStep step : pending.values()) {
+            if (step.getRunId().equals(runId) && !status.equals(step.getFinished().put(stepId, status))) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * 移除已执行或无法恢复的步骤
+     */
+    synchronized void remove(String runId, String stepId) {
+        if (pending.remove(key(runId, stepId)) != null) {
+            save();
+        }
+    }
+
+    /**
+     * 当前等待中的步骤
+     */
+    synchronized List<PendingStep> entries() {
+        return new ArrayList<>(pending.values());
+    }
+
+    private static String key(String runId, String stepId) {
+        return runId + "/" + stepId;
+    }
+
+    /**
+     * 先写入临时文件并刷盘再替换，写入失败时只记录日志，步骤仍在内存中等待执行
+     */
+    private void save() {
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve(FILE);
+            Path tmp = dir.resolve(FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                out.write(mapper.writeValueAsBytes(new ArrayList<>(pending.values())));
+                channel.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("保存工作流延迟步骤失败，程序重启后这些步骤不会恢复执行", e);
+        }
+    }
+
+    /**
+     * 一个等待执行的延迟步骤
+     */
+    @Data
+    @NoArgsConstructor
+    static class PendingStep {
+        private String runId;        // 工作流本次执行的ID，与执行日志ID相同
+        private String workflow;     // 工作流任务名
+        private String stepId;       // 步骤标识
+        private long startedAt;      // 工作流开始执行的时间戳（毫秒）
+        private long dueAt;          // 步骤应执行的时间戳（毫秒）
+        // 本次执行中已结束的步骤及其状态（SUCCESS、FAILED或SKIPPED）
+        private Map<String, String> finished = new LinkedHashMap<>();
+
+        PendingStep(String runId, String workflow, String stepId, long startedAt, long dueAt,
+                    Map<String, String> finished) {
+            this.runId = runId;
+            this.workflow = workflow;
+            this.stepId = stepId;
+            this.startedAt = startedAt;
+            this.dueAt = dueAt;
+            this.finished = new LinkedHashMap<>(finished);
+        }
+    }
+}
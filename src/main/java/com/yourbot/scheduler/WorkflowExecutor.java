@@ -0,0 +1,552 @@
+package com.yourbot.scheduler;
+
+import com.yourbot.log.TaskDeliveryReceipt;
+import com.yourbot.log.TaskExecutionLog;
+import com.yourbot.log.TaskLogManager;
+import com.yourbot.onebot.OneBotClient;
+import com.yourbot.scheduler.WorkflowDelayStore.PendingStep;
+import com.yourbot.util.ConsoleUtil;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作流执行器
+ * 按依赖关系执行工作流步骤：相互独立的分支并行执行，步骤可配置延迟和执行条件，
+ * 整个工作流结束后记录为一条任务执行日志；
+ * 延迟步骤保存到 data/workflows 并由一次性的Quartz触发器执行，重新加载配置时继续等待，
+ * 程序重启后由 resumePending 恢复执行
+ */
+public class WorkflowExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowExecutor.class);
+
+    // 延迟步骤触发器所在的分组，重新加载配置时不会被清除
+    static final String STEP_GROUP = "workflow-steps";
+
+    private static final String STORE_DIR = "data/workflows";
+
+    private static WorkflowExecutor instance;
+
+    // 步骤执行线程池，延迟等待不占用线程
+    private final ExecutorService workers;
+
+    // 等待执行的延迟步骤
+    private final WorkflowDelayStore store = new WorkflowDelayStore(Paths.get(STORE_DIR));
+
+    // 正在执行的工作流，按执行ID索引
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    private WorkflowExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "WorkflowWorker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            store.load();
+        } catch (IOException e) {
+            logger.error("读取工作流延迟步骤失败，上次运行中未执行的延迟步骤不会恢复", e);
+            ConsoleUtil.error("读取工作流延迟步骤失败: " + e.getMessage());
+        }
+    }
+
+    public static synchronized WorkflowExecutor getInstance() {
+        if (instance == null) {
+            instance = new WorkflowExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * 校验工作流配置并返回拓扑顺序
+     * @throws IllegalArgumentException 步骤标识重复、依赖不存在或存在循环依赖时抛出
+     */
+    public static List<WorkflowStep> validate(ScheduledTask workflow) {
+        List<WorkflowStep> steps = workflow.getSteps();
+        if (steps == null || steps.isEmpty()) {
+            throw new IllegalArgumentException("工作流没有配置任何步骤");
+        }
+
+        Map<String, WorkflowStep> byId = new LinkedHashMap<>();
+        for (WorkflowStep step : steps) {
+            if (step.getId() == null || step.getId().trim().isEmpty()) {
+                throw new IllegalArgumentException("工作流步骤缺少id");
+            }
+            if (byId.put(step.getId(), step) != null) {
+                throw new IllegalArgumentException("工作流步骤id重复: " + step.getId());
+            }
+            if (step.getType() == null || step.getType() == TaskType.WORKFLOW
+                    || step.getType() == TaskType.GROUP_REQUEST_VERIFY) {
+                throw new IllegalArgumentException("工作流步骤 " + step.getId() + " 的类型不支持: " + step.getType());
+            }
+            if (step.getDelaySeconds() < 0) {
+                throw new IllegalArgumentException("工作流步骤 " + step.getId() + " 的delaySeconds不能为负数");
+            }
+        }
+
+        // Kahn算法求拓扑顺序，同时检测循环依赖
+        Map<String, Integer> inDegree = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (WorkflowStep step : steps) {
+            inDegree.put(step.getId(), step.getDependsOn().size());
+            for (String dep : step.getDependsOn()) {
+                if (!byId.containsKey(dep)) {
+                    throw new IllegalArgumentException("工作流步骤 " + step.getId() + " 依赖了不存在的步骤: " + dep);
+                }
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(step.getId());
+            }
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        inDegree.forEach((id, degree) -> {
+            if (degree == 0) {
+                ready.add(id);
+            }
+        });
+
+        List<WorkflowStep> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            order.add(byId.get(id));
+            for (String next : dependents.getOrDefault(id, List.of())) {
+                if (inDegree.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+
+        if (order.size() != steps.size()) {
+            throw new IllegalArgumentException("工作流步骤存在循环依赖");
+        }
+        return order;
+    }
+
+    /**
+     * 异步启动工作流
+     * @param workflow 工作流任务
+     * @param client OneBot客户端
+     * @param paceIntervalMs 步骤内相邻动作的最小间隔
+     * @param log 本次执行的日志，工作流结束后写入；日志ID同时作为本次执行的ID
+     */
+    public CompletableFuture<Void> start(ScheduledTask workflow, OneBotClient client,
+                                         long paceIntervalMs, TaskExecutionLog log) {
+        List<WorkflowStep> order = validate(workflow);
+        Run run = new Run(workflow, client, paceIntervalMs, log);
+        return launch(run, order, Map.of(), Map.of());
+    }
+
+    /**
+     * 创建各步骤的future并登记本次执行
+     * @param earlier 重启前已结束的步骤及其结果，不再执行
+     * @param resumed 重启前在等待中的延迟步骤及其应执行的时间，不再判断执行条件
+     */
+    private CompletableFuture<Void> launch(Run run, List<WorkflowStep> order, Map<String, StepResult> earlier,
+                                           Map<String, Long> resumed) {
+        runs.put(run.id, run);
+        Map<String, CompletableFuture<StepResult>> futures = run.futures;
+
+        // 按拓扑顺序创建，保证依赖的future已存在
+        for (WorkflowStep step : order) {
+            CompletableFuture<StepResult> future;
+            if (earlier.containsKey(step.getId())) {
+                future = CompletableFuture.completedFuture(earlier.get(step.getId()));
+            } else if (resumed.containsKey(step.getId())) {
+                future = delay(run, step, resumed.get(step.getId()));
+            } else {
+                CompletableFuture<?>[] deps = step.getDependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+
+                future = CompletableFuture.allOf(deps).thenCompose(v -> {
+                    List<StepResult> depResults = new ArrayList<>();
+                    for (String dep : step.getDependsOn()) {
+                        depResults.add(futures.get(dep).join());
+                    }
+                    if (!shouldRun(step, depResults)) {
+                        return CompletableFuture.completedFuture(StepResult.skipped(step.getId()));
+                    }
+                    if (step.getDelaySeconds() > 0) {
+                        return delay(run, step, System.currentTimeMillis() + step.getDelaySeconds() * 1000L);
+                    }
+                    return CompletableFuture.supplyAsync(() -> runStep(run.workflow, step, run.client, run.paceIntervalMs), workers);
+                });
+            }
+            futures.put(step.getId(), future);
+            future.thenAccept(result -> stepFinished(run, result));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenRun(() -> finish(run.workflow, order, futures, run.log))
+                .whenComplete((v, e) -> runs.remove(run.id));
+    }
+
+    /**
+     * 记录结束的步骤，本次执行有等待中的延迟步骤时一并保存，重启后按此状态判断后续步骤的执行条件
+     */
+    private void stepFinished(Run run, StepResult result) {
+        synchronized (run) {
+            run.finished.put(result.stepId, result.status);
+            store.recordFinished(run.id, result.stepId, result.status.name());
+        }
+    }
+
+    /**
+     * 保存延迟步骤并创建到期时执行的一次性Quartz触发器
+     * 无法创建触发器时退回到内存中等待，重启后仍会从保存的记录中恢复
+     */
+    private CompletableFuture<StepResult> delay(Run run, WorkflowStep step, long dueAt) {
+        CompletableFuture<StepResult> future = new CompletableFuture<>();
+        run.delayed.put(step.getId(), future);
+        // 与 stepFinished 互斥，保存的记录包含此前结束的所有步骤
+        synchronized (run) {
+            Map<String, String> finished = new LinkedHashMap<>();
+            run.finished.forEach((id, status) -> finished.put(id, status.name()));
+            store.add(new PendingStep(run.id, run.workflow.getName(), step.getId(), run.startedAt, dueAt, finished));
+        }
+
+        String identity = run.id + "/" + step.getId();
+        try {
+            Scheduler scheduler = SchedulerManager.getInstance().getScheduler();
+            if (scheduler == null) {
+                throw new SchedulerException("Quartz调度器未启动");
+            }
+            JobDetail job = JobBuilder.newJob(DelayedStepJob.class)
+                    .withIdentity(identity, STEP_GROUP)
+                    .usingJobData("runId", run.id)
+                    .usingJobData("stepId", step.getId())
+                    .build();
+            Trigger trigger = TriggerBuilder.newTrigger()
+                    .withIdentity(identity, STEP_GROUP)
+                    .startAt(new Date(dueAt))
+                    .build();
+            scheduler.scheduleJob(job, trigger);
+            logger.debug("工作流 {} 的步骤 {} 将于 {} 执行", run.workflow.getName(), step.getId(), new Date(dueAt));
+        } catch (SchedulerException e) {
+            logger.warn("创建工作流 {} 的步骤 {} 的触发器失败，改为在内存中等待: {}",
+                    run.workflow.getName(), step.getId(), e.getMessage());
+            long waitMs = Math.max(0, dueAt - System.currentTimeMillis());
+            CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS, workers)
+                    .execute(() -> fireDelayedStep(run.id, step.getId()));
+        }
+        return future;
+    }
+
+    /**
+     * 延迟步骤到期，在步骤线程池中执行；执行完成后才从保存的记录中移除
+     */
+    void fireDelayedStep(String runId, String stepId) {
+        Run run = runs.get(runId);
+        CompletableFuture<StepResult> future = run != null ? run.delayed.remove(stepId) : null;
+        if (future == null) {
+            logger.warn("工作流执行 {} 已结束，忽略延迟步骤 {}", runId, stepId);
+            store.remove(runId, stepId);
+            return;
+        }
+        WorkflowStep step = run.workflow.getSteps().stream()
+                .filter(s -> s.getId().equals(stepId))
+                .findFirst()
+                .orElse(null);
+        workers.execute(() -> {
+            StepResult result = step != null
+                    ? runStep(run.workflow, step, run.client, run.paceIntervalMs)
+                    : new StepResult(stepId, StepStatus.FAILED, "", "步骤已不存在", List.of());
+            store.remove(runId, stepId);
+            future.complete(result);
+        });
+    }
+
+    /**
+     * 恢复上次运行中未执行的延迟步骤
+     * 重启前已结束的步骤不再执行，按保存的状态（成功、失败或跳过）判断后续步骤的执行条件；
+     * 等待中的步骤按原定时间执行（已过时间的立即执行），依赖它们的步骤在其结束后照常执行；
+     * 重启时可能正在执行的步骤不再执行，按失败处理；本次运行中仍在执行的工作流不受影响
+     * @param tasks 当前配置的任务，工作流和步骤按名称和标识匹配
+     */
+    public void resumePending(List<ScheduledTask> tasks, OneBotClient client, long paceIntervalMs) {
+        Map<String, List<PendingStep>> byRun = new LinkedHashMap<>();
+        for (PendingStep pending : store.entries()) {
+            if (!runs.containsKey(pending.getRunId())) {
+                byRun.computeIfAbsent(pending.getRunId(), k -> new ArrayList<>()).add(pending);
+            }
+        }
+
+        for (List<PendingStep> pendingSteps : byRun.values()) {
+            PendingStep first = pendingSteps.get(0);
+            ScheduledTask workflow = tasks.stream()
+                    .filter(t -> t.getType() == TaskType.WORKFLOW && first.getWorkflow().equals(t.getName()))
+                    .findFirst()
+                    .orElse(null);
+            List<WorkflowStep> order;
+            try {
+                if (workflow == null) {
+                    throw new IllegalArgumentException("工作流已不在配置中");
+                }
+                order = validate(workflow);
+            } catch (IllegalArgumentException e) {
+                dropPending(pendingSteps, e.getMessage());
+                continue;
+            }
+
+            Map<String, Long> resumed = new LinkedHashMap<>();
+            List<PendingStep> missing = new ArrayList<>();
+            Set<String> stepIds = new HashSet<>();
+            order.forEach(step -> stepIds.add(step.getId()));
+            for (PendingStep pending : pendingSteps) {
+                if (stepIds.contains(pending.getStepId())) {
+                    resumed.put(pending.getStepId(), pending.getDueAt());
+                } else {
+                    missing.add(pending);
+                }
+            }
+            if (!missing.isEmpty()) {
+                dropPending(missing, "步骤已不在配置中");
+            }
+            if (resumed.isEmpty()) {
+                continue;
+            }
+
+            // 各条记录保存时已结束的步骤不同，合并后得到重启前已结束的全部步骤
+            Map<String, StepResult> earlier = new HashMap<>();
+            for (PendingStep pending : pendingSteps) {
+                pending.getFinished().forEach((stepId, status) -> {
+                    StepResult result = restoredResult(stepId, status);
+                    if (stepIds.contains(stepId) && result != null) {
+                        earlier.put(stepId, result);
+                    }
+                });
+            }
+            // 依赖在重启前都已结束、自身却没有结果也不在等待的步骤，重启时可能正在执行，不再重复执行；
+            // 依赖它们的步骤按失败判断执行条件
+            Set<String> restored = new HashSet<>(earlier.keySet());
+            for (WorkflowStep step : order) {
+                String id = step.getId();
+                if (!restored.contains(id) && !resumed.containsKey(id) && restored.containsAll(step.getDependsOn())) {
+                    earlier.put(id, new StepResult(id, StepStatus.FAILED, "", "程序重启时未完成", List.of()));
+                }
+            }
+
+            TaskExecutionLog log = new TaskExecutionLog();
+            log.setId(first.getRunId());
+            log.setTaskName(workflow.getName());
+            log.setTaskType(workflow.getType().toString());
+            log.setExecutionTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(first.getStartedAt()), ZoneId.systemDefault()));
+            log.setTargetType(workflow.getTargetType());
+            log.setTargetIds(workflow.getTargetIds());
+            log.setSuccess(true);
+
+            logger.info("恢复工作流 {} 重启前未执行的延迟步骤: {}", workflow.getName(), resumed.keySet());
+            ConsoleUtil.task(workflow.getName(), "恢复重启前未执行的延迟步骤: " + String.join(", ", resumed.keySet()));
+            launch(new Run(workflow, client, paceIntervalMs, log), order, earlier, resumed);
+        }
+    }
+
+    /**
+     * 由保存的状态还原重启前已结束的步骤的结果，无法识别的状态返回null
+     */
+    private static StepResult restoredResult(String stepId, String status) {
+        try {
+            switch (StepStatus.valueOf(status)) {
+                case SUCCESS:
+                    return new StepResult(stepId, StepStatus.SUCCESS, "重启前已完成; ", null, List.of());
+                case FAILED:
+                    return new StepResult(stepId, StepStatus.FAILED, "", "重启前执行失败", List.of());
+                case SKIPPED:
+                    return StepResult.skipped(stepId);
+                default:
+                    return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void dropPending(List<PendingStep> pendingSteps, String reason) {
+        for (PendingStep pending : pendingSteps) {
+            logger.warn("无法恢复工作流 {} 的延迟步骤 {}: {}", pending.getWorkflow(), pending.getStepId(), reason);
+            ConsoleUtil.warn("无法恢复工作流 " + pending.getWorkflow() + " 的延迟步骤 " + pending.getStepId() + ": " + reason);
+            store.remove(pending.getRunId(), pending.getStepId());
+        }
+    }
+
+    /**
+     * 根据依赖步骤的结果判断是否执行
+     */
+    private static boolean shouldRun(WorkflowStep step, List<StepResult> depResults) {
+        if (depResults.isEmpty()) {
+            return true;
+        }
+        switch (step.getRunIf()) {
+            case ALWAYS:
+                return true;
+            case FAILURE:
+                return depResults.stream().anyMatch(r -> r.status == StepStatus.FAILED);
+            case SUCCESS:
+            default:
+                return depResults.stream().allMatch(r -> r.status == StepStatus.SUCCESS);
+        }
+    }
+
+    private StepResult runStep(ScheduledTask workflow, WorkflowStep step, OneBotClient client, long paceIntervalMs) {
+        ConsoleUtil.task(workflow.getName(), "执行步骤 " + step.getId());
+        StringBuilder details = new StringBuilder();
+        try {
+            TaskActionExecutor executor = new TaskActionExecutor(client, paceIntervalMs);
+            boolean ok = executor.execute(step.toTask(workflow), details);
+            // 等待动作响应，依赖本步骤的步骤按实际送达结果判断执行条件
+            List<TaskDeliveryReceipt> receipts = executor.whenDelivered().join();
+            long undelivered = receipts.stream().filter(r -> !r.isOk()).count();
+            if (!ok || undelivered > 0) {
+                String error = undelivered > 0 ? undelivered + "/" + receipts.size() + " 个动作未成功送达" : "部分动作未收到成功响应";
+                return new StepResult(step.getId(), StepStatus.FAILED, details.toString(), error, receipts);
+            }
+            return new StepResult(step.getId(), StepStatus.SUCCESS, details.toString(), null, receipts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new StepResult(step.getId(), StepStatus.FAILED, details.toString(), "步骤被中断", List.of());
+        } catch (Exception e) {
+            logger.error("工作流 {} 的步骤 {} 执行失败", workflow.getName(), step.getId(), e);
+            ConsoleUtil.error("工作流 " + workflow.getName() + " 的步骤 " + step.getId() + " 执行失败: " + e.getMessage());
+            return new StepResult(step.getId(), StepStatus.FAILED, details.toString(), e.getMessage(), List.of());
+        }
+    }
+
+    /**
+     * 汇总步骤结果并写入执行日志
+     */
+    private void finish(ScheduledTask workflow, List<WorkflowStep> order,
+                        Map<String, CompletableFuture<StepResult>> futures, TaskExecutionLog log) {
+        StringBuilder details = new StringBuilder();
+        List<String> failed = new ArrayList<>();
+        for (WorkflowStep step : order) {
+            StepResult result = futures.get(step.getId()).join();
+            log.getReceipts().addAll(result.receipts);
+            details.append("[").append(result.stepId).append("] ");
+            switch (result.status) {
+                case SUCCESS:
+                    details.append("成功: ").append(result.details);
+                    break;
+                case FAILED:
+                    details.append("失败: ").append(result.error).append("; ");
+                    failed.add(result.stepId);
+                    break;
+                case SKIPPED:
+                    details.append("跳过; ");
+                    break;
+            }
+        }
+
+        log.setDetails(details.toString());
+        log.setSuccess(failed.isEmpty());
+        if (!failed.isEmpty()) {
+            log.setErrorMessage("失败的步骤: " + String.join(", ", failed));
+        }
+        // 执行时间记为结束时间，与同一任务的其他日志保持写入顺序
+        LocalDateTime finishedAt = LocalDateTime.now();
+        log.setDurationMs(Duration.between(log.getExecutionTime(), finishedAt).toMillis());
+        log.setExecutionTime(finishedAt);
+        TaskLogManager.getInstance().logTaskExecution(log);
+
+        logger.info("工作流 {} 执行完成, 失败步骤: {}", workflow.getName(), failed);
+        ConsoleUtil.task(workflow.getName(), failed.isEmpty() ? "工作流执行完成" : "工作流执行完成，失败步骤: " + failed);
+    }
+
+    // 步骤执行状态
+    private enum StepStatus {
+        SUCCESS,
+        FAILED,
+        SKIPPED
+    }
+
+    /**
+     * 工作流的一次执行
+     */
+    private static class Run {
+        final String id;
+        final ScheduledTask workflow;
+        final OneBotClient client;
+        final long paceIntervalMs;
+        final TaskExecutionLog log;
+        // 开始时间，日志的执行时间在结束时改为结束时间
+        final long startedAt;
+        final Map<String, CompletableFuture<StepResult>> futures = new ConcurrentHashMap<>();
+        // 等待到期的延迟步骤
+        final Map<String, CompletableFuture<StepResult>> delayed = new ConcurrentHashMap<>();
+        // 已结束的步骤的状态，修改和保存时持有本对象的锁
+        final Map<String, StepStatus> finished = new LinkedHashMap<>();
+
+        Run(ScheduledTask workflow, OneBotClient client, long paceIntervalMs, TaskExecutionLog log) {
+            this.id = log.getId();
+            this.workflow = workflow;
+            this.client = client;
+            this.paceIntervalMs = paceIntervalMs;
+            this.log = log;
+            this.startedAt = log.getExecutionTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * 到期执行延迟步骤的Quartz任务
+     */
+    public static class DelayedStepJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) {
+            JobDataMap data = context.getJobDetail().getJobDataMap();
+            getInstance().fireDelayedStep(data.getString("runId"), data.getString("stepId"));
+        }
+    }
+
+    /**
+     * 步骤执行结果
+     */
+    private static class StepResult {
+        final String stepId;
+        final StepStatus status;
+        final String details;
+        final String error;
+        final List<TaskDeliveryReceipt> receipts;
+
+        StepResult(String stepId, StepStatus status, String details, String error, List<TaskDeliveryReceipt> receipts) {
+            this.stepId = stepId;
+            this.status = status;
+            this.details = details;
+            this.error = error;
+            this.receipts = receipts;
+        }
+
+        static StepResult skipped(String stepId) {
+            return new StepResult(stepId, StepStatus.SKIPPED, "", null, List.of());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.yourbot.scheduler;
+
+import lombok.Data;
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * 工作流步骤
+ * 未配置的目标类型和目标ID沿用所属工作流任务的配置
+ */
+@Data
+public class WorkflowStep {
+    private String id;             // 步骤标识，工作流内唯一
+    private TaskType type;         // 步骤动作类型（SEND_MESSAGE、GROUP_BAN_ALL、GROUP_BAN_MEMBER）
+    private List<String> dependsOn = new ArrayList<>(); // 依赖的步骤标识
+    private int delaySeconds;      // 依赖满足后延迟执行的秒数
+    private RunCondition runIf = RunCondition.SUCCESS; // 执行条件
+    private String targetType;     // 目标类型：GROUP或PRIVATE
+    private List<Long> targetIds = new ArrayList<>();  // 目标ID列表
+    private String content;        // 消息内容
+    private boolean enable;        // 是否开启全体禁言
+    private List<Long> memberIds = new ArrayList<>();  // 成员ID列表
+    private int duration;          // 禁言时长（秒）
+    private boolean batchMode;     // 是否批量执行成员禁言
+    private int batchConcurrency = 10; // 批量模式下同时等待响应的禁言动作上限
+    private boolean sendNotice;    // 是否发送通知消息
+    private String noticeContent;  // 通知消息内容
+
+    // 步骤执行条件枚举
+    public enum RunCondition {
+        SUCCESS,  // 所有依赖步骤都成功时执行
+        FAILURE,  // 任一依赖步骤失败时执行
+        ALWAYS    // 依赖步骤结束后总是执行
+    }
+
+    /**
+     * 转换为可执行的任务配置
+     * @param workflow 所属工作流任务
+     */
+    public ScheduledTask toTask(ScheduledTask workflow) {
+        ScheduledTask task = new ScheduledTask();
+        task.setName(workflow.getName() + "/" + id);
+        task.setType(type);
+        task.setTargetType(targetType != null ? targetType : workflow.getTargetType());
+        task.setTargetIds(targetIds.isEmpty() ? workflow.getTargetIds() : targetIds);
+        task.setContent(content);
+        task.setEnable(enable);
+        task.setMemberIds(memberIds);
+        task.setDuration(duration);
+        task.setBatchMode(batchMode);
+        task.setBatchConcurrency(batchConcurrency);
+        task.setSendNotice(sendNotice);
+        task.setNoticeContent(noticeContent);
+        return task;
+    }
+}
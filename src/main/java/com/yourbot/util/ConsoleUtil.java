@@ -1,11 +1,22 @@
 package com.yourbot.util;
 
 import com.yourbot.gui.GuiManager;
+import java.io.PrintStream;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 控制台输出工具类，提供带颜色和时间戳的日志输出
+ * 调用线程只判断级别并把消息放入有界队列，时间戳格式化和输出到控制台、GUI由后台线程批量完成；
+ * 低于当前级别的日志直接返回，带参数的重载只在级别启用时才拼接消息
  */
 public class ConsoleUtil {
     // ANSI颜色代码
@@ -19,14 +30,38 @@ public class ConsoleUtil {
     public static final String ANSI_CYAN = "\u001B[36m";
     public static final String ANSI_WHITE = "\u001B[37m";
     
-    // 日期格式化器
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // 日志级别，SUCCESS和任务消息按INFO级别处理
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+    
+    // 输出队列容量，队列满时调用线程等待，与直接写控制台时的背压一致
+    private static final int QUEUE_CAPACITY = 8192;
+    // 每批最多输出的行数
+    private static final int MAX_BATCH = 512;
     
     // 是否启用颜色输出
-    private static boolean colorEnabled = true;
+    private static volatile boolean colorEnabled = true;
     
     // 是否启用GUI
-    private static boolean guiEnabled = false;
+    private static volatile boolean guiEnabled = false;
+    
+    // 最低输出级别，配置加载前输出所有级别
+    private static volatile Level level = Level.DEBUG;
+    
+    private static final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final TimestampCache timestamps = new TimestampCache();
+    // 保证同一时间只有一个线程输出，flush 时不与后台线程交错
+    private static final Object writeLock = new Object();
+    
+    static {
+        Thread writer = new Thread(ConsoleUtil::runWriter, "ConsoleWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
     
     /**
      * 设置是否启用颜色输出
@@ -43,24 +78,22 @@ public class ConsoleUtil {
     }
     
     /**
-     * 获取当前时间戳
+     * 设置最低输出级别
      */
-    private static String timestamp() {
-        return LocalDateTime.now().format(formatter);
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+    
+    public static boolean isDebugEnabled() {
+        return level == Level.DEBUG;
     }
     
     /**
      * 输出信息日志
      */
     public static void info(String message) {
-        if (colorEnabled) {
-            System.out.println(timestamp() + " " + ANSI_GREEN + "[INFO] " + ANSI_RESET + message);
-        } else {
-            System.out.println(timestamp() + " [INFO] " + message);
-        }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [INFO] " + message, "INFO");
+        if (level.compareTo(Level.INFO) <= 0) {
+            submit(Kind.INFO, null, message);
         }
     }
     
@@ -68,14 +101,32 @@ public class ConsoleUtil {
      * 输出调试日志
      */
     public static void debug(String message) {
-        if (colorEnabled) {
-            System.out.println(timestamp() + " " + ANSI_BLUE + "[DEBUG] " + ANSI_RESET + message);
-        } else {
-            System.out.println(timestamp() + " [DEBUG] " + message);
+        if (level == Level.DEBUG) {
+            submit(Kind.DEBUG, null, message);
         }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [DEBUG] " + message, "DEBUG");
+    }
+    
+    /**
+     * 输出调试日志，消息中的 {} 依次替换为参数，调试级别未启用时不拼接消息
+     */
+    public static void debug(String template, Object arg) {
+        if (level == Level.DEBUG) {
+            submit(Kind.DEBUG, null, format(template, arg));
+        }
+    }
+    
+    public static void debug(String template, Object arg1, Object arg2) {
+        if (level == Level.DEBUG) {
+            submit(Kind.DEBUG, null, format(template, arg1, arg2));
+        }
+    }
+    
+    /**
+     * 输出调试日志，调试级别未启用时不调用消息生成函数
+     */
+    public static void debug(Supplier<String> message) {
+        if (level == Level.DEBUG) {
+            submit(Kind.DEBUG, null, message.get());
         }
     }
     
@@ -83,14 +134,8 @@ public class ConsoleUtil {
      * 输出警告日志
      */
     public static void warn(String message) {
-        if (colorEnabled) {
-            System.out.println(timestamp() + " " + ANSI_YELLOW + "[WARN] " + ANSI_RESET + message);
-        } else {
-            System.out.println(timestamp() + " [WARN] " + message);
-        }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [WARN] " + message, "WARN");
+        if (level.compareTo(Level.WARN) <= 0) {
+            submit(Kind.WARN, null, message);
         }
     }
     
@@ -98,29 +143,15 @@ public class ConsoleUtil {
      * 输出错误日志
      */
     public static void error(String message) {
-        if (colorEnabled) {
-            System.err.println(timestamp() + " " + ANSI_RED + "[ERROR] " + ANSI_RESET + message);
-        } else {
-            System.err.println(timestamp() + " [ERROR] " + message);
-        }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [ERROR] " + message, "ERROR");
-        }
+        submit(Kind.ERROR, null, message);
     }
     
     /**
      * 输出成功消息
      */
     public static void success(String message) {
-        if (colorEnabled) {
-            System.out.println(timestamp() + " " + ANSI_GREEN + "[SUCCESS] " + message + ANSI_RESET);
-        } else {
-            System.out.println(timestamp() + " [SUCCESS] " + message);
-        }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [SUCCESS] " + message, "SUCCESS");
+        if (level.compareTo(Level.INFO) <= 0) {
+            submit(Kind.SUCCESS, null, message);
         }
     }
     
@@ -128,14 +159,186 @@ public class ConsoleUtil {
      * 输出任务执行消息
      */
     public static void task(String taskName, String message) {
-        if (colorEnabled) {
-            System.out.println(timestamp() + " " + ANSI_CYAN + "[TASK:" + taskName + "] " + ANSI_RESET + message);
-        } else {
-            System.out.println(timestamp() + " [TASK:" + taskName + "] " + message);
+        if (level.compareTo(Level.INFO) <= 0) {
+            submit(Kind.TASK, taskName, message);
+        }
+    }
+    
+    /**
+     * 输出队列中剩余的日志，程序关闭时调用
+     */
+    public static void flush() {
+        // 先等后台线程输出，最多等待1秒
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized (writeLock) {
+            List<Line> batch = new ArrayList<>();
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+    
+    private static void submit(Kind kind, String taskName, String message) {
+        Line line = new Line(kind, System.currentTimeMillis(), taskName, message);
+        if (queue.offer(line)) {
+            return;
+        }
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void runWriter() {
+        List<Line> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Line first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("控制台输出失败: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
         }
-        
-        if (guiEnabled) {
-            GuiManager.getInstance().appendLog(timestamp() + " [TASK:" + taskName + "] " + message, "normal");
+    }
+    
+    /**
+     * 输出一批日志，连续输出到同一个流的行合并为一次写入
+     */
+    private static void write(List<Line> batch) {
+        StringBuilder sb = new StringBuilder(batch.size() * 96);
+        PrintStream current = null;
+        for (Line line : batch) {
+            PrintStream stream = line.kind == Kind.ERROR ? System.err : System.out;
+            if (stream != current && sb.length() > 0) {
+                current.print(sb);
+                current.flush();
+                sb.setLength(0);
+            }
+            current = stream;
+            
+            String timestamp = timestamps.format(line.timeMillis);
+            String tag = line.kind == Kind.TASK ? "[TASK:" + line.taskName + "] " : line.kind.tag;
+            sb.append(timestamp).append(' ');
+            if (!colorEnabled) {
+                sb.append(tag).append(line.message);
+            } else if (line.kind == Kind.SUCCESS) {
+                sb.append(line.kind.color).append(tag).append(line.message).append(ANSI_RESET);
+            } else {
+                sb.append(line.kind.color).append(tag).append(ANSI_RESET).append(line.message);
+            }
+            sb.append(System.lineSeparator());
+            
+            if (guiEnabled) {
+                GuiManager.getInstance().appendLog(timestamp + " " + tag + line.message, line.kind.guiStyle);
+            }
+        }
+        if (current != null && sb.length() > 0) {
+            current.print(sb);
+            current.flush();
+        }
+    }
+    
+    /**
+     * 将 {} 依次替换为参数
+     */
+    private static String format(String template, Object... args) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        int start = 0;
+        for (Object arg : args) {
+            int index = template.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            sb.append(template, start, index).append(arg);
+            start = index + 2;
+        }
+        return sb.append(template, start, template.length()).toString();
+    }
+    
+    // 输出类型，决定颜色、标签和GUI样式
+    private enum Kind {
+        DEBUG(ANSI_BLUE, "[DEBUG] ", "DEBUG"),
+        INFO(ANSI_GREEN, "[INFO] ", "INFO"),
+        WARN(ANSI_YELLOW, "[WARN] ", "WARN"),
+        ERROR(ANSI_RED, "[ERROR] ", "ERROR"),
+        SUCCESS(ANSI_GREEN, "[SUCCESS] ", "SUCCESS"),
+        TASK(ANSI_CYAN, null, "normal");
+    
+        final String color;
+        final String tag;
+        final String guiStyle;
+    
+        Kind(String color, String tag, String guiStyle) {
+            this.color = color;
+            this.tag = tag;
+            this.guiStyle = guiStyle;
+        }
+    }
+    
+    /**
+     * 一条待输出的日志
+     */
+    private static class Line {
+        final Kind kind;
+        final long timeMillis;
+        final String taskName;
+        final String message;
+    
+        Line(Kind kind, long timeMillis, String taskName, String message) {
+            this.kind = kind;
+            this.timeMillis = timeMillis;
+            this.taskName = taskName;
+            this.message = message;
+        }
+    }
+    
+    /**
+     * 时间戳缓存：同一毫秒复用整个字符串，同一秒只重新拼接毫秒部分
+     */
+    private static class TimestampCache {
+        private static final DateTimeFormatter SECOND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.");
+    
+        private long lastSecond = Long.MIN_VALUE;
+        private String secondPrefix;
+        private long lastMillis = Long.MIN_VALUE;
+        private String lastTimestamp;
+    
+        synchronized String format(long millis) {
+            if (millis == lastMillis) {
+                return lastTimestamp;
+            }
+            long second = Math.floorDiv(millis, 1000);
+            if (second != lastSecond) {
+                secondPrefix = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+                        .format(SECOND_FORMATTER);
+                lastSecond = second;
+            }
+            int ms = (int) Math.floorMod(millis, 1000);
+            lastTimestamp = secondPrefix + (ms < 10 ? "00" : ms < 100 ? "0" : "") + ms;
+            lastMillis = millis;
+            return lastTimestamp;
         }
     }
-} 
\ No newline at end of file
+}
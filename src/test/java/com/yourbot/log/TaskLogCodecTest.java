@@ -0,0 +1,179 @@
+package com.yourbot.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskLogCodecTest {
+
+    @TempDir
+    Path dir;
+
+    private static TaskExecutionLog log() {
+        TaskExecutionLog log = new TaskExecutionLog();
+        log.setId("0f8fad5b-d9cb-469f-a165-70867728950e");
+        log.setTaskName("每日签到提醒");
+        log.setTaskType("GROUP_MESSAGE");
+        log.setTargetType("群");
+        log.setExecutionTime(LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_793_238));
+        log.setSuccess(true);
+        log.setTargetIds(new ArrayList<>(List.of(123456L, 0L, -1L, Long.MAX_VALUE)));
+        log.setMemberIds(new ArrayList<>(List.of(654321L)));
+        log.setDetails("发送消息: 早上好");
+        log.setDurationMs(42);
+        return log;
+    }
+
+    private static TaskDeliveryReceipt receipt(boolean ok, Long messageId, String error) {
+        TaskDeliveryReceipt receipt = new TaskDeliveryReceipt();
+        receipt.setAction("send_group_msg");
+        receipt.setTargetId(123456L);
+        receipt.setOk(ok);
+        receipt.setRetcode(ok ? 0 : 100);
+        receipt.setMessageId(messageId);
+        receipt.setLatencyMs(17);
+        receipt.setError(error);
+        return receipt;
+    }
+
+    private TaskExecutionLog roundTrip(TaskExecutionLog log, boolean compress) throws IOException {
+        TaskLogCodec codec = new TaskLogCodec(compress);
+        byte[] payload = codec.encode(log, TaskLogDictionary.open(dir));
+        // 重新打开字典，编号必须能从文件恢复
+        return codec.decode(payload, TaskLogDictionary.open(dir));
+    }
+
+    // ---------------------------------------------------------------- 往返
+
+    @Test
+    void roundTripsAllFields() throws IOException {
+        TaskExecutionLog log = log();
+        log.getReceipts().add(receipt(true, 987654321L, null));
+        log.getReceipts().add(receipt(false, null, "群不存在"));
+        assertEquals(log, roundTrip(log, false));
+    }
+
+    @Test
+    void roundTripsFailureWithErrorAndNoOptionalFields() throws IOException {
+        TaskExecutionLog log = log();
+        log.setSuccess(false);
+        log.setDetails(null);
+        log.setDurationMs(0);
+        log.setTargetType(null);
+        log.setErrorMessage("未连接到OneBot");
+        TaskExecutionLog decoded = roundTrip(log, true);
+        assertEquals(log, decoded);
+        assertNull(decoded.getTargetType());
+    }
+
+    @Test
+    void nonUuidIdIsStoredAsString() throws IOException {
+        TaskExecutionLog log = log();
+        log.setId("legacy-42");
+        assertEquals("legacy-42", roundTrip(log, false).getId());
+        // 大写的UUID不能原样还原，按字符串保存
+        log.setId("0F8FAD5B-D9CB-469F-A165-70867728950E");
+        assertEquals("0F8FAD5B-D9CB-469F-A165-70867728950E", roundTrip(log, false).getId());
+    }
+
+    @Test
+    void preservesNanosecondsAndTimesBeforeEpoch() throws IOException {
+        TaskExecutionLog log = log();
+        log.setExecutionTime(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_999));
+        assertEquals(log.getExecutionTime(), roundTrip(log, false).getExecutionTime());
+    }
+
+    @Test
+    void longDetailsAreCompressedOnlyWhenEnabled() throws IOException {
+        TaskExecutionLog log = log();
+        log.setDetails("群 123456 发送成功；".repeat(100));
+        TaskLogDictionary dictionary = TaskLogDictionary.open(dir);
+        byte[] plain = new TaskLogCodec(false).encode(log, dictionary);
+        byte[] deflated = new TaskLogCodec(true).encode(log, dictionary);
+        assertTrue(deflated.length < plain.length / 4);
+        assertEquals(log, new TaskLogCodec(false).decode(deflated, dictionary));
+        assertEquals(log, new TaskLogCodec(true).decode(plain, dictionary));
+    }
+
+    @Test
+    void varLongRoundTripsBoundaryValues() {
+        for (long value : new long[] {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TaskLogCodec.writeVarLong(out, value);
+            assertEquals(value, TaskLogCodec.readVarLong(ByteBuffer.wrap(out.toByteArray())));
+        }
+    }
+
+    // ---------------------------------------------------------------- 损坏的记录
+
+    @Test
+    void truncatedRecordIsRejected() throws IOException {
+        TaskExecutionLog log = log();
+        log.getReceipts().add(receipt(true, 1L, null));
+        TaskLogDictionary dictionary = TaskLogDictionary.open(dir);
+        TaskLogCodec codec = new TaskLogCodec(false);
+        byte[] payload = codec.encode(log, dictionary);
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThrows(IOException.class, () -> codec.decode(truncated, dictionary), () -> "length " + truncated.length);
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws IOException {
+        TaskLogDictionary dictionary = TaskLogDictionary.open(dir);
+        byte[] payload = new TaskLogCodec(false).encode(log(), dictionary);
+        payload[0] = 99;
+        IOException e = assertThrows(IOException.class, () -> new TaskLogCodec(false).decode(payload, dictionary));
+        assertEquals("不支持的任务日志编码版本: 99", e.getMessage());
+    }
+
+    @Test
+    void corruptCompressedDetailsAreRejected() throws IOException {
+        TaskExecutionLog log = log();
+        log.setDetails("x".repeat(1000));
+        log.setDurationMs(0);
+        TaskLogDictionary dictionary = TaskLogDictionary.open(dir);
+        byte[] payload = new TaskLogCodec(true).encode(log, dictionary);
+        // 压缩数据位于记录末尾
+        payload[payload.length - 3] ^= 0x55;
+        assertThrows(IOException.class, () -> new TaskLogCodec(true).decode(payload, dictionary));
+    }
+
+    @Test
+    void missingDictionaryEntryIsRejected() throws IOException {
+        byte[] payload = new TaskLogCodec(false).encode(log(), TaskLogDictionary.open(dir));
+        Files.delete(dir.resolve(TaskLogDictionary.FILE_NAME));
+        TaskLogDictionary empty = TaskLogDictionary.open(dir);
+        assertThrows(IOException.class, () -> new TaskLogCodec(false).decode(payload, empty));
+    }
+
+    @Test
+    void dictionaryTruncatesIncompleteTailEntry() throws IOException {
+        TaskLogDictionary dictionary = TaskLogDictionary.open(dir);
+        assertEquals(0, dictionary.idOf("a"));
+        assertEquals(1, dictionary.idOf("b"));
+        Path file = dir.resolve(TaskLogDictionary.FILE_NAME);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 1));
+
+        TaskLogDictionary reopened = TaskLogDictionary.open(dir);
+        assertEquals("a", reopened.valueOf(0));
+        assertEquals(1, reopened.idOf("c"));
+        assertEquals("c", TaskLogDictionary.open(dir).valueOf(1));
+    }
+}
@@ -0,0 +1,87 @@
+package com.yourbot.log;
+
+import com.yourbot.log.TaskLogManager.RollupResolution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskLogRollupTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 14, 12, 0);
+
+    private static TaskExecutionLog log(LocalDateTime time, boolean success, long durationMs) {
+        TaskExecutionLog log = new TaskExecutionLog();
+        log.setTaskName("提醒");
+        log.setTargetType("GROUP");
+        log.setTargetIds(new ArrayList<>(List.of(123456L)));
+        log.setExecutionTime(time);
+        log.setSuccess(success);
+        log.setDurationMs(durationMs);
+        return log;
+    }
+
+    private static long[] executions(TaskLogRollup rollup, String key, RollupResolution resolution, int count) {
+        return rollup.buckets(key, resolution, count, NOW).stream()
+                .mapToLong(TaskLogRollupBucket::getExecutions).toArray();
+    }
+
+    @Test
+    void bucketsFarApartInTheRingAreCountedSeparately() {
+        TaskLogRollup rollup = TaskLogRollup.load(dir.resolve(TaskLogRollup.FILE_NAME), 30);
+        rollup.record("t", 1, 10, log(NOW, true, 120));
+        rollup.record("t", 1, 20, log(NOW.minusHours(20), false, 0));
+
+        List<TaskLogRollupBucket> minutes = rollup.buckets(TaskLogRollup.targetSeries("GROUP", 123456L),
+                RollupResolution.MINUTE, 24 * 60, NOW);
+        assertEquals(1, minutes.get(minutes.size() - 1).getExecutions());
+        assertEquals(1, minutes.get(minutes.size() - 1).getLatencyHistogram()[1]);
+        assertEquals(1, minutes.get(minutes.size() - 1 - 20 * 60).getFailures());
+        assertEquals(2, minutes.stream().mapToLong(TaskLogRollupBucket::getExecutions).sum());
+        long[] hours = executions(rollup, TaskLogRollup.ALL, RollupResolution.HOUR, 24);
+        assertEquals(1, hours[3]);
+        assertEquals(1, hours[23]);
+    }
+
+    @Test
+    void newerBucketReplacesOlderOneInSameSlot() {
+        TaskLogRollup rollup = TaskLogRollup.load(dir.resolve(TaskLogRollup.FILE_NAME), 30);
+        rollup.record("t", 1, 10, log(NOW.minusDays(1), true, 0));
+        rollup.record("t", 1, 20, log(NOW, true, 0));
+        // 一天前的分钟桶与现在的桶在同一槽位，已被覆盖
+        rollup.record("t", 1, 30, log(NOW.minusDays(1), true, 0));
+
+        assertEquals(1, executions(rollup, TaskLogRollup.ALL, RollupResolution.MINUTE, 1)[0]);
+        // 天粒度的两个桶在不同槽位，都不受影响
+        assertArrayEquals(new long[] {2, 1}, executions(rollup, TaskLogRollup.ALL, RollupResolution.DAY, 2));
+    }
+
+    @Test
+    void savedRollupLoadsWithWatermarks() throws IOException {
+        Path file = dir.resolve(TaskLogRollup.FILE_NAME);
+        TaskLogRollup rollup = TaskLogRollup.load(file, 30);
+        rollup.record("t", 3, 40, log(NOW, true, 700));
+        rollup.record("t", 3, 80, log(NOW.minusMinutes(90), false, 0));
+        rollup.save();
+
+        TaskLogRollup loaded = TaskLogRollup.load(file, 7);
+        assertArrayEquals(new long[] {3, 80}, loaded.watermark("t"));
+        String task = TaskLogRollup.taskSeries("提醒");
+        assertArrayEquals(executions(rollup, task, RollupResolution.MINUTE, 120),
+                executions(loaded, task, RollupResolution.MINUTE, 120));
+        TaskLogRollupBucket last = loaded.buckets(task, RollupResolution.HOUR, 1, NOW).get(0);
+        assertEquals(1, last.getSuccesses());
+        assertEquals(700, last.getTotalLatencyMs());
+        assertEquals(1000, last.getLatencyPercentile(50));
+    }
+}
@@ -0,0 +1,195 @@
+package com.yourbot.log;
+
+import com.yourbot.log.TaskLogSegment.RecordIndexer;
+import com.yourbot.log.TaskLogSegment.RecordMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskLogSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    // 补建索引的次数
+    private final AtomicInteger described = new AtomicInteger();
+
+    /**
+     * 测试记录的内容：[时间戳 long][任务编号 int][状态 byte]
+     */
+    private final RecordIndexer indexer = (type, payload) -> {
+        described.incrementAndGet();
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        return new RecordMeta(in.getLong(), in.getInt(), in.get());
+    };
+
+    private static byte[] payload(long timestamp, int taskId) {
+        return ByteBuffer.allocate(13).putLong(timestamp).putInt(taskId)
+                .put(TaskLogSegment.STATUS_SUCCESS).array();
+    }
+
+    private static void append(TaskLogSegment segment, long timestamp, int taskId) throws IOException {
+        segment.append(TaskLogSegment.TYPE_EXECUTION_BINARY, payload(timestamp, taskId),
+                new RecordMeta(timestamp, taskId, TaskLogSegment.STATUS_SUCCESS));
+    }
+
+    private Path logFile() {
+        return dir.resolve(TaskLogSegment.fileName(1) + TaskLogSegment.LOG_SUFFIX);
+    }
+
+    private Path indexFile() {
+        return dir.resolve(TaskLogSegment.fileName(1) + TaskLogSegment.INDEX_SUFFIX);
+    }
+
+    private TaskLogSegment writeSealed(long... timestamps) throws IOException {
+        TaskLogSegment segment = TaskLogSegment.openActive(dir, 1, Long.MIN_VALUE, indexer);
+        for (int i = 0; i < timestamps.length; i++) {
+            append(segment, timestamps[i], i);
+        }
+        segment.seal();
+        return segment;
+    }
+
+    // ---------------------------------------------------------------- 往返
+
+    @Test
+    void sealedSegmentReadsBackIndexAndPayloads() throws IOException {
+        writeSealed(1000, 2000, 3000);
+
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        assertEquals(3, sealed.getEntryCount());
+        assertEquals(3000, sealed.getMaxTimestamp());
+        for (int i = 0; i < 3; i++) {
+            assertEquals((i + 1) * 1000L, sealed.entryTimestamp(i));
+            assertEquals(i, sealed.entryTaskId(i));
+            assertEquals(TaskLogSegment.TYPE_EXECUTION_BINARY, sealed.entryType(i));
+            assertEquals(TaskLogSegment.STATUS_SUCCESS, sealed.entryStatus(i));
+            assertArrayEquals(payload((i + 1) * 1000L, i), sealed.readPayload(i));
+        }
+        assertEquals(0, described.get());
+    }
+
+    @Test
+    void indexGrowsPastPreallocatedEntries() throws IOException {
+        long[] timestamps = new long[5000];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i;
+        }
+        writeSealed(timestamps);
+
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        assertEquals(5000, sealed.getEntryCount());
+        assertArrayEquals(payload(4999, 4999), sealed.readPayload(4999));
+    }
+
+    @Test
+    void maxTimestampKeepsBinarySearchCorrectForOutOfOrderRecords() throws IOException {
+        TaskLogSegment segment = writeSealed(1000, 5000, 2000, 6000);
+        assertEquals(5000, segment.entryMaxTimestamp(2));
+        // 第三条记录早于3000，但之前已有更晚的记录，查找从第二条开始
+        assertEquals(1, segment.firstEntryNotBefore(3000, segment.getEntryCount()));
+        assertEquals(3, segment.firstEntryNotBefore(5500, segment.getEntryCount()));
+        assertEquals(4, segment.firstEntryNotBefore(7000, segment.getEntryCount()));
+    }
+
+    @Test
+    void reopenedActiveSegmentAppendsAfterExistingRecords() throws IOException {
+        writeSealed(1000, 2000);
+        TaskLogSegment segment = TaskLogSegment.openActive(dir, 1, Long.MIN_VALUE, indexer);
+        append(segment, 3000, 2);
+        segment.seal();
+
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        assertEquals(3, sealed.getEntryCount());
+        assertArrayEquals(payload(3000, 2), sealed.readPayload(2));
+        assertEquals(0, described.get());
+    }
+
+    // ---------------------------------------------------------------- 恢复
+
+    @Test
+    void missingIndexIsRebuiltFromLog() throws IOException {
+        writeSealed(1000, 5000, 2000);
+        Files.delete(indexFile());
+
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        assertEquals(3, described.get());
+        assertEquals(3, sealed.getEntryCount());
+        assertEquals(2000, sealed.entryTimestamp(2));
+        assertEquals(5000, sealed.entryMaxTimestamp(2));
+        assertArrayEquals(payload(2000, 2), sealed.readPayload(2));
+    }
+
+    @Test
+    void recordsWrittenWithoutIndexEntriesAreReindexed() throws IOException {
+        writeSealed(1000, 2000, 3000);
+        // 模拟日志已写入、索引项未写入时崩溃：清除最后两条索引项
+        try (FileChannel channel = FileChannel.open(indexFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(2 * TaskLogSegment.INDEX_ENTRY_SIZE), TaskLogSegment.INDEX_ENTRY_SIZE);
+        }
+
+        TaskLogSegment segment = TaskLogSegment.openActive(dir, 1, Long.MIN_VALUE, indexer);
+        assertEquals(2, described.get());
+        assertEquals(3, segment.getEntryCount());
+        assertEquals(3000, segment.getMaxTimestamp());
+        assertArrayEquals(payload(3000, 2), segment.readPayload(2));
+    }
+
+    @Test
+    void incompleteTailRecordIsTruncatedWithItsIndexEntry() throws IOException {
+        writeSealed(1000, 2000, 3000);
+        long size = Files.size(logFile());
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        TaskLogSegment segment = TaskLogSegment.openActive(dir, 1, Long.MIN_VALUE, indexer);
+        assertEquals(2, segment.getEntryCount());
+        assertEquals(size - TaskLogSegment.HEADER_SIZE - 13, Files.size(logFile()));
+        assertEquals(0, described.get());
+
+        append(segment, 4000, 3);
+        segment.seal();
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        assertEquals(3, sealed.getEntryCount());
+        assertArrayEquals(payload(4000, 3), sealed.readPayload(2));
+    }
+
+    @Test
+    void corruptTailRecordIsDiscardedOnRecovery() throws IOException {
+        writeSealed(1000, 2000);
+        long size = Files.size(logFile());
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), size - 1);
+        }
+
+        TaskLogSegment segment = TaskLogSegment.openActive(dir, 1, Long.MIN_VALUE, indexer);
+        assertEquals(1, segment.getEntryCount());
+        assertEquals(TaskLogSegment.HEADER_SIZE + 13, Files.size(logFile()));
+    }
+
+    @Test
+    void corruptRecordFailsChecksumOnRead() throws IOException {
+        writeSealed(1000, 2000);
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), TaskLogSegment.HEADER_SIZE + 2);
+        }
+
+        TaskLogSegment sealed = TaskLogSegment.openSealed(dir, 1, indexer);
+        IOException e = assertThrows(IOException.class, () -> sealed.readPayload(0));
+        assertTrue(e.getMessage().endsWith("的记录校验失败"));
+        assertArrayEquals(payload(2000, 1), sealed.readPayload(1));
+    }
+}
@@ -0,0 +1,221 @@
+package com.yourbot.onebot;
+
+import com.yourbot.onebot.GroupRequestManager.PendingGroupRequest;
+import com.yourbot.onebot.GroupRequestManager.RequestStatus;
+import com.yourbot.scheduler.ScheduledTask.SuspendExpireAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupRequestStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static PendingGroupRequest request(String flag) {
+        PendingGroupRequest request = new PendingGroupRequest();
+        request.setFlag(flag);
+        request.setGroupId(123456L);
+        request.setUserId(654321L);
+        request.setComment("答案：北京");
+        request.setReason("答案正确，等待审核");
+        request.setTimestamp(1_700_000_000_000L);
+        request.setExpireAt(1_700_086_400_000L);
+        request.setExpireAction(SuspendExpireAction.REJECT);
+        request.setExpireMessage("超时未审核");
+        request.setLevel(12);
+        request.setStatus(RequestStatus.SUSPENDED);
+        return request;
+    }
+
+    private List<PendingGroupRequest> reopen() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        try {
+            return store.load();
+        } finally {
+            store.close();
+        }
+    }
+
+    private static List<String> flags(List<PendingGroupRequest> requests) {
+        List<String> flags = new ArrayList<>();
+        for (PendingGroupRequest request : requests) {
+            flags.add(request.getFlag());
+        }
+        return flags;
+    }
+
+    // ---------------------------------------------------------------- 往返
+
+    @Test
+    void suspendedRequestSurvivesRestartWithAllFields() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        assertTrue(store.load().isEmpty());
+        store.recordSuspended(request("a"));
+        store.close();
+
+        List<PendingGroupRequest> loaded = reopen();
+        assertEquals(1, loaded.size());
+        PendingGroupRequest request = loaded.get(0);
+        assertEquals("a", request.getFlag());
+        assertEquals(123456L, request.getGroupId());
+        assertEquals(654321L, request.getUserId());
+        assertEquals("答案：北京", request.getComment());
+        assertEquals("答案正确，等待审核", request.getReason());
+        assertEquals(1_700_000_000_000L, request.getTimestamp());
+        assertEquals(1_700_086_400_000L, request.getExpireAt());
+        assertEquals(SuspendExpireAction.REJECT, request.getExpireAction());
+        assertEquals("超时未审核", request.getExpireMessage());
+        assertEquals(12, request.getLevel());
+        assertEquals(RequestStatus.SUSPENDED, request.getStatus());
+    }
+
+    @Test
+    void nullStringsRoundTrip() throws IOException {
+        PendingGroupRequest request = request("a");
+        request.setComment(null);
+        request.setExpireMessage(null);
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request);
+        store.close();
+
+        PendingGroupRequest loaded = reopen().get(0);
+        assertNull(loaded.getComment());
+        assertNull(loaded.getExpireMessage());
+    }
+
+    @Test
+    void resolvedAndRemovedRequestsAreNotRestored() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        for (String flag : List.of("a", "b", "c", "d", "e")) {
+            store.recordSuspended(request(flag));
+        }
+        store.recordResolved("a", RequestStatus.APPROVED);
+        store.recordResolved(List.of("b", "c"), RequestStatus.REJECTED);
+        store.recordRemoved("d");
+        store.close();
+
+        assertEquals(List.of("e"), flags(reopen()));
+    }
+
+    @Test
+    void appendsAfterReopenAreKept() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request("a"));
+        store.close();
+
+        store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request("b"));
+        store.recordResolved("a", RequestStatus.APPROVED);
+        store.close();
+
+        assertEquals(List.of("b"), flags(reopen()));
+    }
+
+    // ---------------------------------------------------------------- 快照
+
+    @Test
+    void compactionWritesSnapshotAndKeepsLaterRecords() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        // 反复挂起和同意，日志记录数超过压缩阈值，只剩最后几个申请挂起
+        for (int i = 0; i < 1200; i++) {
+            store.recordSuspended(request("r" + i));
+            if (i < 1195) {
+                store.recordResolved("r" + i, RequestStatus.APPROVED);
+            }
+        }
+        store.close();
+
+        assertTrue(Files.exists(dir.resolve(GroupRequestStore.SNAPSHOT_FILE)));
+        assertTrue(Files.size(dir.resolve(GroupRequestStore.WAL_FILE)) < 1024 * 64);
+        assertEquals(List.of("r1195", "r1196", "r1197", "r1198", "r1199"), flags(reopen()));
+    }
+
+    @Test
+    void corruptSnapshotIsRejected() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        for (int i = 0; i < 1100; i++) {
+            store.recordSuspended(request("r" + i));
+            store.recordResolved("r" + i, RequestStatus.APPROVED);
+        }
+        store.recordSuspended(request("kept"));
+        store.close();
+
+        Path snapshot = dir.resolve(GroupRequestStore.SNAPSHOT_FILE);
+        byte[] data = Files.readAllBytes(snapshot);
+        data[data.length / 2] ^= 0x01;
+        Files.write(snapshot, data);
+
+        // 快照损坏时不能静默丢弃其中的申请
+        assertThrows(IOException.class, () -> new GroupRequestStore(dir).load());
+    }
+
+    // ---------------------------------------------------------------- 损坏的日志
+
+    @Test
+    void truncatedTailRecordIsDiscarded() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request("a"));
+        store.recordSuspended(request("b"));
+        store.close();
+
+        Path wal = dir.resolve(GroupRequestStore.WAL_FILE);
+        byte[] data = Files.readAllBytes(wal);
+        Files.write(wal, Arrays.copyOf(data, data.length - 3));
+
+        assertEquals(List.of("a"), flags(reopen()));
+        // 不完整的记录已被截断，之后追加的记录不受影响
+        store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request("c"));
+        store.close();
+        assertEquals(List.of("a", "c"), flags(reopen()));
+    }
+
+    @Test
+    void checksumMismatchStopsReplayAtCorruptRecord() throws IOException {
+        GroupRequestStore store = new GroupRequestStore(dir);
+        store.load();
+        store.recordSuspended(request("a"));
+        long firstEnd = Files.size(dir.resolve(GroupRequestStore.WAL_FILE));
+        store.recordSuspended(request("b"));
+        store.recordSuspended(request("c"));
+        store.close();
+
+        Path wal = dir.resolve(GroupRequestStore.WAL_FILE);
+        byte[] data = Files.readAllBytes(wal);
+        // 修改第二条记录的内容，校验和不再匹配
+        data[(int) firstEnd + 12] ^= 0x01;
+        Files.write(wal, data);
+
+        assertEquals(List.of("a"), flags(reopen()));
+        assertEquals(firstEnd, Files.size(wal));
+    }
+
+    @Test
+    void unknownWalHeaderIsRejected() throws IOException {
+        Files.write(dir.resolve(GroupRequestStore.WAL_FILE), new byte[] {1, 2, 3, 4, 5, 6});
+        GroupRequestStore store = new GroupRequestStore(dir);
+        assertThrows(IOException.class, store::load);
+        assertFalse(Files.exists(dir.resolve(GroupRequestStore.SNAPSHOT_FILE)));
+    }
+}
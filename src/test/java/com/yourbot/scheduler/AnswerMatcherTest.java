@@ -0,0 +1,242 @@
+package com.yourbot.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnswerMatcherTest {
+
+    private static ScheduledTask task(String... answers) {
+        ScheduledTask task = new ScheduledTask();
+        task.setVerifyAnswers(new ArrayList<>(List.of(answers)));
+        return task;
+    }
+
+    private static ScheduledTask editDistance(int maxDistance, int charsPerEdit, String... answers) {
+        ScheduledTask task = task(answers);
+        task.setFuzzyMatch(true);
+        task.setFuzzyMode(ScheduledTask.FuzzyMode.EDIT_DISTANCE);
+        task.setFuzzyMaxDistance(maxDistance);
+        task.setFuzzyCharsPerEdit(charsPerEdit);
+        return task;
+    }
+
+    // ---------------------------------------------------------------- 精确匹配
+
+    @Test
+    void exactMatchesWholeAnswerOnly() {
+        AnswerMatcher matcher = AnswerMatcher.compile(task("北京", "Beijing"));
+        assertTrue(matcher.matches("北京"));
+        assertTrue(matcher.matches("beijing"));
+        assertFalse(matcher.matches("北京市"));
+        assertFalse(matcher.matches("北"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    void exactRespectsCaseSensitivity() {
+        ScheduledTask task = task("Beijing");
+        task.setCaseSensitive(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        assertTrue(matcher.matches("Beijing"));
+        assertFalse(matcher.matches("beijing"));
+    }
+
+    @Test
+    void exactNormalizesFullWidthAndWhitespace() {
+        ScheduledTask task = task("ab 12");
+        task.setIgnoreWhitespace(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        assertTrue(matcher.matches("ＡＢ１２"));
+        assertTrue(matcher.matches(" a b　 1 2 "));
+        assertFalse(matcher.matches("ab123"));
+    }
+
+    @Test
+    void foldsExpandingCaseMappings() {
+        AnswerMatcher matcher = AnswerMatcher.compile(task("strasse"));
+        assertTrue(matcher.matches("STRASSE"));
+        assertTrue(matcher.matches("Straße"));
+    }
+
+    // ---------------------------------------------------------------- 包含模式
+
+    @Test
+    void containsMatchesInBothDirections() {
+        ScheduledTask task = task("北京", "shanghai");
+        task.setFuzzyMatch(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        assertTrue(matcher.matches("我来自北京"));
+        assertTrue(matcher.matches("北"));
+        assertTrue(matcher.matches("HAI"));
+        assertTrue(matcher.matches("I live in Shanghai now"));
+        assertFalse(matcher.matches("天津"));
+        assertFalse(matcher.matches("shangha1"));
+    }
+
+    @Test
+    void containsIgnoresEmptyAnswersAndBlankInput() {
+        ScheduledTask task = task("", "北京");
+        task.setFuzzyMatch(true);
+        task.setIgnoreWhitespace(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        assertFalse(matcher.matches("天津"));
+        assertFalse(matcher.matches("   "));
+    }
+
+    /**
+     * 包含模式下的ASCII答案与原先逐个比较的checkAnswer结果一致
+     */
+    @Test
+    void containsMatchesLegacyCheckAnswer() {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            List<String> answers = new ArrayList<>();
+            int count = 1 + random.nextInt(4);
+            while (answers.size() < count) {
+                String answer = randomText(random, 1 + random.nextInt(6));
+                // 空答案原先会匹配任何输入，现在编译时忽略
+                if (!answer.isBlank()) {
+                    answers.add(answer);
+                }
+            }
+            ScheduledTask task = task(answers.toArray(new String[0]));
+            task.setFuzzyMatch(true);
+            task.setCaseSensitive(random.nextBoolean());
+            task.setIgnoreWhitespace(random.nextBoolean());
+            AnswerMatcher matcher = AnswerMatcher.compile(task);
+
+            for (int i = 0; i < 20; i++) {
+                String input = random.nextInt(3) == 0
+                        ? answers.get(random.nextInt(answers.size())) : randomText(random, 1 + random.nextInt(10));
+                if (input.isBlank()) {
+                    // 只含空格的答案原先会在模糊匹配时通过，现在不再通过
+                    continue;
+                }
+                assertEquals(legacyCheckAnswer(task, input), matcher.matches(input),
+                        () -> answers + " / \"" + input + "\" caseSensitive=" + task.isCaseSensitive()
+                                + " ignoreWhitespace=" + task.isIgnoreWhitespace());
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 编辑距离模式
+
+    @Test
+    void editDistanceAllowsOneEditPerCharsPerEdit() {
+        AnswerMatcher matcher = AnswerMatcher.compile(editDistance(2, 3, "abcdef"));
+        assertTrue(matcher.matches("abcdef"));
+        assertTrue(matcher.matches("xxabdefyy"));
+        assertTrue(matcher.matches("azcdxf"));
+        assertFalse(matcher.matches("azcyxf"));
+    }
+
+    @Test
+    void editDistanceShortAnswersRequireExactOccurrence() {
+        // 2个字符不到 fuzzyCharsPerEdit，k=0，只能原样出现
+        AnswerMatcher matcher = AnswerMatcher.compile(editDistance(2, 3, "北京"));
+        assertTrue(matcher.matches("我在北京"));
+        assertFalse(matcher.matches("北经"));
+        assertFalse(matcher.matches("北"));
+    }
+
+    @Test
+    void editDistanceZeroMaxDistanceIsExactSubstring() {
+        AnswerMatcher matcher = AnswerMatcher.compile(editDistance(0, 1, "abcdef"));
+        assertTrue(matcher.matches("xxabcdefxx"));
+        assertFalse(matcher.matches("abcdxf"));
+    }
+
+    @Test
+    void editDistanceNeverAllowsWholeAnswerToBeEdited() {
+        // k 不超过答案长度减一，否则任何输入都会匹配
+        AnswerMatcher matcher = AnswerMatcher.compile(editDistance(10, 1, "abc"));
+        assertTrue(matcher.matches("xbx"));
+        assertFalse(matcher.matches("xyz"));
+    }
+
+    @Test
+    void editDistanceAroundWordSize() {
+        String answer64 = "abcdefgh".repeat(8);
+        String answer65 = answer64 + "z";
+        for (String answer : List.of(answer64, answer65)) {
+            AnswerMatcher matcher = AnswerMatcher.compile(editDistance(2, 3, answer));
+            String twoEdits = "X" + answer.substring(1, 30) + "Y" + answer.substring(31);
+            String threeEdits = "X" + answer.substring(1, 30) + "Y" + answer.substring(31, 50) + "Z" + answer.substring(51);
+            assertTrue(matcher.matches("prefix " + answer + " suffix"), () -> answer.length() + " exact");
+            assertTrue(matcher.matches(twoEdits), () -> answer.length() + " two edits");
+            assertFalse(matcher.matches(threeEdits), () -> answer.length() + " three edits");
+        }
+    }
+
+    @Test
+    void pinyinTreatsHomophonesAndTraditionalFormsAsEqual() {
+        ScheduledTask task = editDistance(1, 3, "北京");
+        task.setFuzzyPinyin(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        assertTrue(matcher.matches("北经"));
+        assertTrue(matcher.matches("我在北京"));
+        assertFalse(matcher.matches("南京"));
+
+        ScheduledTask traditional = editDistance(1, 3, "东京");
+        traditional.setFuzzyPinyin(true);
+        assertTrue(AnswerMatcher.compile(traditional).matches("東京"));
+    }
+
+    @Test
+    void pinyinDoesNotTreatPrivateUseCharactersAsSyllables() {
+        ScheduledTask task = task("北京");
+        task.setFuzzyMatch(true);
+        task.setFuzzyPinyin(true);
+        AnswerMatcher matcher = AnswerMatcher.compile(task);
+        for (char c = '\uE000'; c < '\uE200'; c++) {
+            String forged = "" + c + c;
+            assertFalse(matcher.matches(forged), () -> Integer.toHexString(forged.charAt(0)));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "abAB c";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 编译答案之前的 ScheduledTask.checkAnswer 实现
+     */
+    private static boolean legacyCheckAnswer(ScheduledTask task, String answer) {
+        String processedUserAnswer = answer;
+        if (task.isIgnoreWhitespace()) {
+            processedUserAnswer = answer.replaceAll("\\s+", "");
+        }
+        for (String correctAnswer : task.getVerifyAnswers()) {
+            String processedCorrectAnswer = correctAnswer;
+            if (task.isIgnoreWhitespace()) {
+                processedCorrectAnswer = correctAnswer.replaceAll("\\s+", "");
+            }
+            if (!task.isCaseSensitive()) {
+                processedUserAnswer = processedUserAnswer.toLowerCase();
+                processedCorrectAnswer = processedCorrectAnswer.toLowerCase();
+            }
+            if (task.isFuzzyMatch()) {
+                if (processedUserAnswer.contains(processedCorrectAnswer)
+                        || processedCorrectAnswer.contains(processedUserAnswer)) {
+                    return true;
+                }
+            } else if (processedCorrectAnswer.equals(processedUserAnswer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
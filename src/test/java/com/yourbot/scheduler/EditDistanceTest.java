@@ -0,0 +1,133 @@
+package com.yourbot.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditDistanceTest {
+
+    @Test
+    void zeroDistanceFindsOnlyExactOccurrences() {
+        EditDistance distance = new EditDistance("hello", 0);
+        assertTrue(distance.occursIn("hello"));
+        assertTrue(distance.occursIn("say hello world"));
+        assertFalse(distance.occursIn("helo"));
+        assertFalse(distance.occursIn("hellx"));
+        assertFalse(distance.occursIn(""));
+    }
+
+    @Test
+    void allowsSubstitutionInsertionAndDeletion() {
+        EditDistance distance = new EditDistance("beijing", 1);
+        assertTrue(distance.occursIn("i live in beijxng"));
+        assertTrue(distance.occursIn("beiijing"));
+        assertTrue(distance.occursIn("bejing"));
+        assertFalse(distance.occursIn("bejxng"));
+    }
+
+    @Test
+    void distanceAtLeastPatternLengthMatchesAnything() {
+        assertTrue(new EditDistance("abc", 3).occursIn(""));
+        assertTrue(new EditDistance("abc", 3).occursIn("xyz"));
+    }
+
+    /**
+     * 64个字符是位并行算法能处理的最长模式串，65个字符改用动态规划，两边的结果都要与参考实现一致
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 63, 64, 65, 80})
+    void matchesReferenceAroundWordSize(int length) {
+        Random random = new Random(length);
+        for (int round = 0; round < 50; round++) {
+            String pattern = randomText(random, length);
+            int k = random.nextInt(Math.min(length, 4) + 1);
+            String text = randomText(random, random.nextInt(8)) + mutate(random, pattern, random.nextInt(6))
+                    + randomText(random, random.nextInt(8));
+            assertEquals(reference(pattern, text, k), new EditDistance(pattern, k).occursIn(text),
+                    () -> pattern + " / " + text + " k=" + k);
+        }
+    }
+
+    @Test
+    void sixtyFourCharacterPatternUsesHighBit() {
+        String pattern = "a".repeat(63) + "b";
+        assertTrue(new EditDistance(pattern, 0).occursIn("x" + pattern + "x"));
+        assertFalse(new EditDistance(pattern, 0).occursIn("a".repeat(64)));
+        assertTrue(new EditDistance(pattern, 1).occursIn("a".repeat(64)));
+
+        String longer = "a".repeat(64) + "b";
+        assertTrue(new EditDistance(longer, 0).occursIn("x" + longer + "x"));
+        assertFalse(new EditDistance(longer, 0).occursIn("a".repeat(65)));
+        assertTrue(new EditDistance(longer, 1).occursIn("a".repeat(65)));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(Random random, String text, int edits) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(sb.length() + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.insert(position, (char) ('a' + random.nextInt(3)));
+                    break;
+                case 1:
+                    if (position < sb.length()) {
+                        sb.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (position < sb.length()) {
+                        sb.setCharAt(position, (char) ('a' + random.nextInt(3)));
+                    }
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 参考实现：文本的某个子串与模式串的编辑距离不超过k，长度相差超过k的子串不可能满足
+     */
+    private static boolean reference(String pattern, String text, int k) {
+        for (int start = 0; start <= text.length(); start++) {
+            int from = start + Math.max(0, pattern.length() - k);
+            int to = Math.min(text.length(), start + pattern.length() + k);
+            for (int end = from; end <= to; end++) {
+                if (levenshtein(pattern, text.substring(start, end)) <= k) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(substitute, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
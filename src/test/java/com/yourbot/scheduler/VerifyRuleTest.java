@@ -0,0 +1,266 @@
+package com.yourbot.scheduler;
+
+import com.yourbot.scheduler.VerifyRule.Action;
+import com.yourbot.scheduler.VerifyRule.Decision;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VerifyRuleTest {
+
+    /**
+     * 可配置的申请信息，记录远程查询的次数
+     */
+    private static final class TestFacts implements VerifyRule.Facts {
+        boolean answer;
+        String comment = "";
+        int level = 1;
+        int accountAgeDays = 100;
+        boolean invited;
+        Boolean invitedByAdmin = false;
+        int levelCalls;
+        int accountAgeCalls;
+        int invitedByAdminCalls;
+
+        @Override
+        public boolean answerCorrect() {
+            return answer;
+        }
+
+        @Override
+        public String comment() {
+            return comment;
+        }
+
+        @Override
+        public int level() {
+            levelCalls++;
+            return level;
+        }
+
+        @Override
+        public int accountAgeDays() {
+            accountAgeCalls++;
+            return accountAgeDays;
+        }
+
+        @Override
+        public boolean invited() {
+            return invited;
+        }
+
+        @Override
+        public Boolean invitedByAdmin() {
+            invitedByAdminCalls++;
+            return invitedByAdmin;
+        }
+    }
+
+    private static Action decide(String rule, TestFacts facts) {
+        return VerifyRule.compile(rule).evaluate(facts).getAction();
+    }
+
+    private static String syntaxError(String rule) {
+        return assertThrows(IllegalArgumentException.class, () -> VerifyRule.compile(rule)).getMessage();
+    }
+
+    // ---------------------------------------------------------------- 规则顺序和动作
+
+    @Test
+    void firstMatchingRuleDecides() {
+        String rule = "level >= 10 -> accept\n"
+                + "answer -> suspend \"答案正确，等待审核\"\n"
+                + "else -> reject \"验证未通过\"";
+        TestFacts facts = new TestFacts();
+        facts.level = 20;
+        assertEquals(Action.ACCEPT, decide(rule, facts));
+
+        facts.level = 1;
+        facts.answer = true;
+        Decision decision = VerifyRule.compile(rule).evaluate(facts);
+        assertEquals(Action.SUSPEND, decision.getAction());
+        assertEquals("答案正确，等待审核", decision.getMessage());
+        assertEquals("answer", decision.getRule());
+
+        facts.answer = false;
+        decision = VerifyRule.compile(rule).evaluate(facts);
+        assertEquals(Action.REJECT, decision.getAction());
+        assertEquals("验证未通过", decision.getMessage());
+        assertNull(decision.getRule());
+    }
+
+    @Test
+    void rejectsWhenNoRuleMatchesWithoutElse() {
+        Decision decision = VerifyRule.compile("answer -> accept").evaluate(new TestFacts());
+        assertEquals(Action.REJECT, decision.getAction());
+        assertNull(decision.getMessage());
+    }
+
+    @Test
+    void accountAgeAcceptsDayUnitAndCommentRegex() {
+        TestFacts facts = new TestFacts();
+        facts.accountAgeDays = 31;
+        facts.comment = "邀请码 A123";
+        assertEquals(Action.ACCEPT, decide("accountAge > 30d and comment ~ \"A\\\\d+\" -> accept", facts));
+        facts.comment = "没有邀请码";
+        assertEquals(Action.REJECT, decide("accountAge > 30d and comment ~ \"A\\\\d+\" -> accept", facts));
+    }
+
+    // ---------------------------------------------------------------- 优先级
+
+    @Test
+    void notBindsTighterThanAndWhichBindsTighterThanOr() {
+        // 按 (not answer) or (level >= 10 and invited) 解析
+        TestFacts facts = new TestFacts();
+        facts.answer = false;
+        facts.level = 0;
+        facts.invited = false;
+        assertEquals(Action.ACCEPT, decide("not answer or level >= 10 and invited -> accept", facts));
+
+        // 按 answer or (invited and level >= 10) 解析
+        facts.answer = true;
+        assertEquals(Action.ACCEPT, decide("answer or invited && level >= 10 -> accept", facts));
+        assertEquals(Action.REJECT, decide("(answer or invited) && level >= 10 -> accept", facts));
+    }
+
+    @Test
+    void notAppliesToParenthesizedCondition() {
+        TestFacts facts = new TestFacts();
+        facts.answer = true;
+        facts.invited = false;
+        assertEquals(Action.ACCEPT, decide("!(answer and invited) -> accept", facts));
+        assertEquals(Action.REJECT, decide("!answer and invited -> accept", facts));
+    }
+
+    @Test
+    void constantRulesAreFolded() {
+        TestFacts facts = new TestFacts();
+        assertEquals(Action.ACCEPT, decide("true -> accept\nlevel >= 10 -> reject", facts));
+        assertEquals(0, facts.levelCalls);
+        assertEquals(Action.REJECT, decide("false or answer -> accept", facts));
+    }
+
+    // ---------------------------------------------------------------- 短路求值
+
+    @Test
+    void andStopsAtFirstFalseOperand() {
+        TestFacts facts = new TestFacts();
+        facts.answer = false;
+        assertEquals(Action.REJECT, decide("answer and level >= 10 -> accept", facts));
+        assertEquals(0, facts.levelCalls);
+    }
+
+    @Test
+    void orStopsAtFirstTrueOperand() {
+        TestFacts facts = new TestFacts();
+        facts.answer = true;
+        assertEquals(Action.ACCEPT, decide("answer or accountAge > 30d -> accept", facts));
+        assertEquals(0, facts.accountAgeCalls);
+    }
+
+    @Test
+    void localFactsAreEvaluatedBeforeRemoteLookups() {
+        // 书写顺序中远程查询在前，求值时仍先判断答案
+        TestFacts facts = new TestFacts();
+        facts.answer = false;
+        assertEquals(Action.REJECT, decide("level >= 10 and accountAge > 30d and answer -> accept", facts));
+        assertEquals(0, facts.levelCalls);
+        assertEquals(0, facts.accountAgeCalls);
+    }
+
+    @Test
+    void invitedByAdminIsNotLookedUpWithoutInviter() {
+        TestFacts facts = new TestFacts();
+        facts.invited = false;
+        facts.invitedByAdmin = null;
+        assertEquals(Action.REJECT, decide("invitedByAdmin -> accept", facts));
+        assertEquals(0, facts.invitedByAdminCalls);
+    }
+
+    // ---------------------------------------------------------------- 未知信息
+
+    @Test
+    void unknownFactSuspendsAndStopsLaterRules() {
+        TestFacts facts = new TestFacts();
+        facts.level = -1;
+        facts.answer = true;
+        Decision decision = VerifyRule.compile("level >= 10 -> accept\nanswer -> accept").evaluate(facts);
+        assertEquals(Action.SUSPEND, decision.getAction());
+        assertEquals("level >= 10", decision.getRule());
+        assertEquals("等级", decision.getUnknown());
+    }
+
+    @Test
+    void unknownIsIgnoredWhenAnotherOperandDecides() {
+        TestFacts facts = new TestFacts();
+        facts.level = -1;
+        facts.answer = true;
+        assertEquals(Action.ACCEPT, decide("answer or level >= 10 -> accept", facts));
+        facts.answer = false;
+        assertEquals(Action.REJECT, decide("answer and level >= 10 -> accept", facts));
+    }
+
+    @Test
+    void notOfUnknownIsUnknown() {
+        TestFacts facts = new TestFacts();
+        facts.accountAgeDays = -1;
+        Decision decision = VerifyRule.compile("not accountAge < 7d -> accept").evaluate(facts);
+        assertEquals(Action.SUSPEND, decision.getAction());
+        assertEquals("注册时间", decision.getUnknown());
+    }
+
+    @Test
+    void unknownListsEveryMissingFact() {
+        TestFacts facts = new TestFacts();
+        facts.level = -1;
+        facts.invited = true;
+        facts.invitedByAdmin = null;
+        Decision decision = VerifyRule.compile("level >= 10 or invitedByAdmin -> accept").evaluate(facts);
+        assertEquals(Action.SUSPEND, decision.getAction());
+        assertEquals("等级、邀请人身份", decision.getUnknown());
+    }
+
+    // ---------------------------------------------------------------- 语法错误
+
+    @Test
+    void reportsUnknownActionColumn() {
+        assertEquals("验证规则第 1 行第 11 列: 期望 accept、reject 或 suspend", syntaxError("answer -> acept"));
+    }
+
+    @Test
+    void reportsLineAndColumnOnLaterLines() {
+        assertEquals("验证规则第 2 行第 8 列: 期望数字", syntaxError("answer -> accept\nlevel >> 3 -> accept"));
+    }
+
+    @Test
+    void reportsUnexpectedEnd() {
+        assertEquals("验证规则第 1 行第 10 列: 期望 accept、reject 或 suspend，但规则已结束", syntaxError("answer ->"));
+    }
+
+    @Test
+    void reportsUnrecognizedCharacter() {
+        assertEquals("验证规则第 1 行第 18 列: 无法识别的字符 '$'", syntaxError("answer -> accept $"));
+    }
+
+    @Test
+    void reportsDayUnitOnLevel() {
+        assertEquals("验证规则第 1 行第 10 列: 只有 accountAge 可以使用天数单位 d", syntaxError("level >= 10d -> accept"));
+    }
+
+    @Test
+    void reportsRulesAfterElse() {
+        assertEquals("验证规则第 2 行第 1 列: else 必须是最后一条规则", syntaxError("else -> reject\nanswer -> accept"));
+    }
+
+    @Test
+    void reportsUnclosedString() {
+        assertEquals("验证规则第 1 行第 18 列: 字符串缺少结束引号", syntaxError("answer -> reject \"理由"));
+    }
+
+    @Test
+    void reportsEmptyRule() {
+        assertEquals("验证规则第 1 行第 1 列: 没有规则", syntaxError("# 只有注释\n"));
+    }
+}